@@ -57,8 +57,8 @@ public class ItemInfoAction extends SingleItemAction implements DumbAware {
     }
 
     final String serverPath = extendedItem.getTitem() != null ? extendedItem.getTitem() : extendedItem.getSitem();
-    final Collection<BranchRelative> branches = workspace.getServer().getVCS()
-      .queryBranches(serverPath, new ChangesetVersionSpec(extendedItem.getLver()), project, TFSBundle.message("loading.branches"));
+    final Collection<BranchRelative> branches = workspace.getServer().getVCS().getBranchCache()
+      .getBranches(serverPath, new ChangesetVersionSpec(extendedItem.getLver()), project, TFSBundle.message("loading.branches"));
 
     ItemInfoDialog d = new ItemInfoDialog(project, workspace, extendedItem, branches, getActionTitle(localPath.isDirectory()));
     d.show();
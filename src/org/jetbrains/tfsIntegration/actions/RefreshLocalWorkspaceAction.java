@@ -0,0 +1,66 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.actions;
+
+import com.intellij.openapi.actionSystem.ActionPlaces;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.intellij.openapi.vcs.changes.VcsDirtyScopeManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.core.TFSVcs;
+import org.jetbrains.tfsIntegration.core.tfs.LocalWorkspaceState;
+import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
+import org.jetbrains.tfsIntegration.core.tfs.WorkspaceInfo;
+import org.jetbrains.tfsIntegration.core.tfs.Workstation;
+
+/**
+ * Drops the local state tables of the local workspaces of the project, so that status is loaded from the server again.
+ * Needed when the workspace is changed by other clients, e.g. changes are pended from Visual Studio or tf.exe.
+ */
+public class RefreshLocalWorkspaceAction extends DumbAwareAction {
+
+  @Override
+  public void update(@NotNull AnActionEvent e) {
+    Project project = e.getProject();
+    if (ActionPlaces.isPopupPlace(e.getPlace())) {
+      e.getPresentation().setVisible(project != null);
+    }
+    else {
+      e.getPresentation().setEnabled(project != null);
+    }
+  }
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent e) {
+    Project project = e.getProject();
+    if (project == null) {
+      return;
+    }
+    TFSVcs vcs = TFSVcs.getInstance(project);
+    for (FilePath root : TfsFileUtil.getFilePaths(ProjectLevelVcsManager.getInstance(project).getRootsUnderVcs(vcs))) {
+      for (WorkspaceInfo workspace : Workstation.getInstance().findWorkspacesCached(root, true)) {
+        if (workspace.isLocal()) {
+          LocalWorkspaceState.getInstance(workspace).clear();
+        }
+      }
+    }
+    VcsDirtyScopeManager.getInstance(project).markEverythingDirty();
+  }
+}
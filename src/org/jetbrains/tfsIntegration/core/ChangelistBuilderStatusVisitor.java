@@ -24,9 +24,9 @@ import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vcs.changes.CurrentContentRevision;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.tfsIntegration.core.revision.TFSContentRevision;
+import org.jetbrains.tfsIntegration.core.tfs.LocalFileScanner;
 import org.jetbrains.tfsIntegration.core.tfs.ServerStatus;
 import org.jetbrains.tfsIntegration.core.tfs.StatusVisitor;
-import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
 import org.jetbrains.tfsIntegration.core.tfs.WorkspaceInfo;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
@@ -34,13 +34,16 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
   private @NotNull final Project myProject;
   private @NotNull final ChangelistBuilder myChangelistBuilder;
   private @NotNull final WorkspaceInfo myWorkspace;
+  private @NotNull final LocalFileScanner.Snapshot myLocalFiles;
 
   ChangelistBuilderStatusVisitor(final @NotNull Project project,
                                         final @NotNull ChangelistBuilder changelistBuilder,
-                                        final @NotNull WorkspaceInfo workspace) {
+                                        final @NotNull WorkspaceInfo workspace,
+                                        final @NotNull LocalFileScanner.Snapshot localFiles) {
     myProject = project;
     myChangelistBuilder = changelistBuilder;
     myWorkspace = workspace;
+    myLocalFiles = localFiles;
   }
 
   @Override
@@ -99,7 +102,7 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
   @Override
   public void upToDate(final @NotNull FilePath localPath, final boolean localItemExists, final @NotNull ServerStatus serverStatus) {
     if (localItemExists) {
-      if (!myWorkspace.isLocal() && TfsFileUtil.isFileWritable(localPath)) {
+      if (!myWorkspace.isLocal() && myLocalFiles.isWritableFile(localPath)) {
         myChangelistBuilder.processModifiedWithoutCheckout(localPath.getVirtualFile());
       }
     }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.intellij.openapi.vcs.changes.committed.CommittedChangesCache;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Change;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Changeset;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ItemType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.core.tfs.*;
+import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.webservice.TfsRequestManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically asks the server for the latest changeset under every mapped root, which is a single cheap request per root.
+ * Only when it moves, the new changesets are loaded along with their changed items: local files affected are marked dirty
+ * to have their status refreshed and incoming changes are refreshed by committed changes cache, which loads the new changesets only.
+ * Servers we are not logged in to are skipped, the poller never asks for credentials.
+ * <p/>
+ * Local state tables of local workspaces don't see new changesets, so the affected paths are invalidated there. The first poll
+ * invalidates the whole root, since the table may have been saved before changesets were checked in or changes were pended by
+ * other clients.
+ */
+public class IncomingChangesPoller implements Disposable {
+
+  private static final Logger LOG = Logger.getInstance(IncomingChangesPoller.class.getName());
+
+  private static final long INTERVAL = Long.getLong("org.jetbrains.tfsIntegration.incomingChangesPollInterval", 300000);
+
+  // when more changesets arrive at once, the whole root is refreshed
+  private static final int MAX_CHANGESETS = 100;
+
+  private final @NotNull Project myProject;
+  private final @NotNull TFSVcs myVcs;
+  private final Map<String, Integer> myLatestChangesets = new ConcurrentHashMap<>(); // server uri + server path -> changeset id
+  private ScheduledFuture<?> myFuture;
+
+  public IncomingChangesPoller(@NotNull Project project, @NotNull TFSVcs vcs) {
+    myProject = project;
+    myVcs = vcs;
+  }
+
+  public synchronized void start() {
+    if (INTERVAL > 0 && myFuture == null) {
+      // scheduler thread should not be blocked by requests; the first poll takes the latest changesets known right away,
+      // so that changesets checked in before the next one are noticed
+      myFuture = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+        () -> ApplicationManager.getApplication().executeOnPooledThread(this::poll), 0, INTERVAL, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public synchronized void dispose() {
+    if (myFuture != null) {
+      myFuture.cancel(false);
+      myFuture = null;
+    }
+  }
+
+  private void poll() {
+    if (myProject.isDisposed()) {
+      return;
+    }
+    final List<FilePath> roots = TfsFileUtil.getFilePaths(ProjectLevelVcsManager.getInstance(myProject).getRootsUnderVcs(myVcs));
+    final Collection<FilePath> outdatedFiles = new ArrayList<>();
+    final Collection<FilePath> outdatedRoots = new ArrayList<>();
+    try {
+      WorkstationHelper.processByWorkspaces(roots, false, myProject, new WorkstationHelper.VoidProcessDelegate() {
+        @Override
+        public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) throws TfsException {
+          if (TfsRequestManager.shouldShowLoginDialog(workspace.getServer().getUri())) {
+            return;
+          }
+          for (ItemPath path : paths) {
+            poll(workspace, path, outdatedFiles, outdatedRoots);
+          }
+        }
+      });
+    }
+    catch (TfsException e) {
+      LOG.debug(e);
+    }
+    catch (ProcessCanceledException e) {
+      return;
+    }
+
+    if (!outdatedFiles.isEmpty() || !outdatedRoots.isEmpty()) {
+      TfsFileUtil.markDirty(myProject, outdatedRoots, outdatedFiles);
+      CommittedChangesCache.getInstance(myProject).refreshIncomingChangesAsync();
+    }
+  }
+
+  private void poll(final WorkspaceInfo workspace,
+                    final ItemPath root,
+                    final Collection<FilePath> outdatedFiles,
+                    final Collection<FilePath> outdatedRoots) throws TfsException {
+    final String key = workspace.getServer().getUri() + StringUtil.toLowerCase(root.getServerPath());
+    final VersionControlServer vcs = workspace.getServer().getVCS();
+    int latest = vcs.getLatestChangeset(workspace.getName(), workspace.getOwnerName(), root.getServerPath(), myProject,
+                                        TFSBundle.message("loading.history"));
+    Integer known = myLatestChangesets.put(key, latest);
+    if (known == null) {
+      if (workspace.isLocal()) {
+        invalidateLocalState(workspace, Collections.singletonList(root.getLocalPath()));
+        outdatedRoots.add(root.getLocalPath());
+      }
+      return;
+    }
+    if (latest <= known) {
+      return;
+    }
+
+    List<Changeset> changesets =
+      vcs.queryHistory(workspace, root.getServerPath(), true, null, new ChangesetVersionSpec(known + 1), new ChangesetVersionSpec(latest),
+                       myProject, TFSBundle.message("loading.history"), MAX_CHANGESETS);
+    if (changesets.size() >= MAX_CHANGESETS) {
+      invalidateLocalState(workspace, Collections.singletonList(root.getLocalPath()));
+      outdatedRoots.add(root.getLocalPath());
+      return;
+    }
+    MappingTable mappings = workspace.getMappingTable(myProject);
+    List<FilePath> changedFiles = new ArrayList<>();
+    for (Changeset changeset : changesets) {
+      if (changeset.getChanges() == null || changeset.getChanges().getChange() == null) {
+        continue;
+      }
+      for (Change change : changeset.getChanges().getChange()) {
+        FilePath localPath = mappings.getLocalPath(change.getItem().getItem(), change.getItem().getType() == ItemType.Folder);
+        if (localPath != null) {
+          changedFiles.add(localPath);
+        }
+      }
+    }
+    invalidateLocalState(workspace, changedFiles);
+    outdatedFiles.addAll(changedFiles);
+  }
+
+  private static void invalidateLocalState(WorkspaceInfo workspace, Collection<FilePath> paths) {
+    if (workspace.isLocal() && !paths.isEmpty()) {
+      LocalWorkspaceState.getInstance(workspace).invalidate(ContainerUtil.map(paths, FilePath::getPath), Collections.emptyList());
+    }
+  }
+}
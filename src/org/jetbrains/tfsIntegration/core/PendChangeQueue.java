@@ -0,0 +1,277 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.AbstractVcsHelper;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.vcsUtil.VcsUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects file additions, deletions and renames reported by VFS events and sends them to the server in the background.
+ * Changes arriving within a short window are coalesced: redundant sequences collapse (rename A->B->C becomes A->C,
+ * add-then-delete disappears) and the rest is pended with a few large requests instead of a couple of requests per event.
+ * Renames are sent first, then deletions and additions, except for deleted paths taken by a rename afterwards: those are deleted
+ * before renames. Errors are reported once the whole batch is processed.
+ */
+public class PendChangeQueue implements Disposable {
+
+  private static final long DELAY = Long.getLong("org.jetbrains.tfsIntegration.pendChangeDelay", 500);
+
+  public interface Handler {
+    /**
+     * @param movedPaths source -> target
+     */
+    void rename(@NotNull Map<FilePath, FilePath> movedPaths, @NotNull List<VcsException> errors);
+
+    void delete(@NotNull List<FilePath> deletedFiles, @NotNull List<VcsException> errors);
+
+    void add(@NotNull List<FilePath> addedFiles, @NotNull List<VcsException> errors);
+  }
+
+  /**
+   * Not thread safe.
+   */
+  public static class Changes {
+    private final Map<FilePath, FilePath> myRenames = new LinkedHashMap<>(); // target -> original source
+    private final Set<FilePath> myDeletesBeforeRenames = new LinkedHashSet<>(); // paths as they are before renames
+    private Set<FilePath> myDeletes = new LinkedHashSet<>(); // paths as they are after renames
+    private Set<FilePath> myAdds = new LinkedHashSet<>();
+
+    public void add(@NotNull FilePath path) {
+      if (myDeletes.remove(path) || myDeletesBeforeRenames.remove(path)) {
+        // deleted and created again: the versioned item is back
+        return;
+      }
+      myAdds.add(path);
+    }
+
+    public void delete(@NotNull FilePath path) {
+      // whatever was added under a deleted folder never reaches the server
+      boolean added = myAdds.remove(path);
+      myAdds.removeIf(addedPath -> isUnder(path, addedPath));
+      if (added) {
+        return;
+      }
+      FilePath source = myRenames.remove(path);
+      myDeletes.add(source != null ? source : path);
+    }
+
+    public void rename(@NotNull FilePath from, @NotNull FilePath to) {
+      boolean added = myAdds.contains(from);
+      myAdds = rebase(myAdds, from, to);
+      if (added) {
+        // not on the server yet, just add it under the new name
+        return;
+      }
+      // the rename takes the place of deleted items which should be gone by then
+      for (Iterator<FilePath> i = myDeletes.iterator(); i.hasNext(); ) {
+        FilePath deleted = i.next();
+        if (isUnder(to, deleted)) {
+          myDeletesBeforeRenames.add(deleted);
+          i.remove();
+        }
+      }
+      myDeletes = rebase(myDeletes, from, to);
+      FilePath source = myRenames.remove(from);
+      if (source == null) {
+        source = from;
+      }
+      if (!source.equals(to)) {
+        myRenames.put(to, source);
+      }
+    }
+
+    /**
+     * @return source -> target
+     */
+    @NotNull
+    public Map<FilePath, FilePath> getRenames() {
+      Map<FilePath, FilePath> result = new LinkedHashMap<>(myRenames.size());
+      for (Map.Entry<FilePath, FilePath> entry : myRenames.entrySet()) {
+        result.put(entry.getValue(), entry.getKey());
+      }
+      return result;
+    }
+
+    /**
+     * @return deleted paths to be sent before renames
+     */
+    @NotNull
+    public List<FilePath> getDeletesBeforeRenames() {
+      return new ArrayList<>(myDeletesBeforeRenames);
+    }
+
+    /**
+     * @return deleted paths to be sent after renames
+     */
+    @NotNull
+    public List<FilePath> getDeletes() {
+      return new ArrayList<>(myDeletes);
+    }
+
+    @NotNull
+    public List<FilePath> getAdds() {
+      return new ArrayList<>(myAdds);
+    }
+
+    public boolean isEmpty() {
+      return myRenames.isEmpty() && myDeletesBeforeRenames.isEmpty() && myDeletes.isEmpty() && myAdds.isEmpty();
+    }
+
+    private static Set<FilePath> rebase(Set<FilePath> paths, FilePath from, FilePath to) {
+      Set<FilePath> result = new LinkedHashSet<>(paths.size());
+      for (FilePath path : paths) {
+        if (isUnder(from, path)) {
+          String relativePath = path.getPath().substring(from.getPath().length());
+          result.add(VcsUtil.getFilePath(to.getPath() + relativePath, path.isDirectory()));
+        }
+        else {
+          result.add(path);
+        }
+      }
+      return result;
+    }
+
+    private static boolean isUnder(FilePath parent, FilePath child) {
+      return FileUtil.isAncestor(parent.getPath(), child.getPath(), false);
+    }
+  }
+
+  private final @NotNull Project myProject;
+  private final @NotNull Handler myHandler;
+
+  private final Object myLock = new Object();
+  private Changes myChanges = new Changes(); // guarded by myLock
+  private boolean myScheduled; // guarded by myLock, true while batch is waiting or being sent
+  private volatile boolean myDisposed;
+
+  public PendChangeQueue(@NotNull Project project, @NotNull Handler handler) {
+    myProject = project;
+    myHandler = handler;
+  }
+
+  public void queueAdd(@NotNull Collection<? extends FilePath> paths) {
+    synchronized (myLock) {
+      for (FilePath path : paths) {
+        myChanges.add(path);
+      }
+    }
+    schedule();
+  }
+
+  public void queueDelete(@NotNull Collection<? extends FilePath> paths) {
+    synchronized (myLock) {
+      for (FilePath path : paths) {
+        myChanges.delete(path);
+      }
+    }
+    schedule();
+  }
+
+  /**
+   * @param movedPaths source -> target
+   */
+  public void queueRename(@NotNull Map<? extends FilePath, ? extends FilePath> movedPaths) {
+    synchronized (myLock) {
+      for (Map.Entry<? extends FilePath, ? extends FilePath> entry : movedPaths.entrySet()) {
+        myChanges.rename(entry.getKey(), entry.getValue());
+      }
+    }
+    schedule();
+  }
+
+  private void schedule() {
+    synchronized (myLock) {
+      if (myScheduled || myChanges.isEmpty() || myDisposed) {
+        return;
+      }
+      myScheduled = true;
+    }
+    // changes arriving meanwhile join the same batch
+    AppExecutorUtil.getAppScheduledExecutorService().schedule(
+      () -> ApplicationManager.getApplication().invokeLater(this::send, myProject.getDisposed()), DELAY, TimeUnit.MILLISECONDS);
+  }
+
+  private void send() {
+    final Changes changes;
+    synchronized (myLock) {
+      changes = myChanges;
+      myChanges = new Changes();
+      if (myDisposed || changes.isEmpty()) {
+        myScheduled = false;
+        return;
+      }
+    }
+
+    new Task.Backgroundable(myProject, TFSBundle.message("pending.changes"), false) {
+      private final List<VcsException> myErrors = new ArrayList<>();
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        List<FilePath> deletesBeforeRenames = changes.getDeletesBeforeRenames();
+        if (!deletesBeforeRenames.isEmpty()) {
+          indicator.setText(TFSBundle.message("scheduling.for.deletion"));
+          myHandler.delete(deletesBeforeRenames, myErrors);
+        }
+        // renames go before the rest: deleted and added paths are the ones after rename
+        Map<FilePath, FilePath> renames = changes.getRenames();
+        if (!renames.isEmpty()) {
+          indicator.setText(TFSBundle.message("renaming"));
+          myHandler.rename(renames, myErrors);
+        }
+        List<FilePath> deletes = changes.getDeletes();
+        if (!deletes.isEmpty()) {
+          indicator.setText(TFSBundle.message("scheduling.for.deletion"));
+          myHandler.delete(deletes, myErrors);
+        }
+        List<FilePath> adds = changes.getAdds();
+        if (!adds.isEmpty()) {
+          indicator.setText(TFSBundle.message("scheduling.for.addition"));
+          myHandler.add(adds, myErrors);
+        }
+      }
+
+      @Override
+      public void onFinished() {
+        synchronized (myLock) {
+          myScheduled = false;
+        }
+        if (!myErrors.isEmpty() && !myProject.isDisposed()) {
+          AbstractVcsHelper.getInstance(myProject).showErrors(myErrors, TFSVcs.TFS_NAME);
+        }
+        schedule();
+      }
+    }.queue();
+  }
+
+  @Override
+  public void dispose() {
+    myDisposed = true;
+  }
+}
@@ -31,7 +31,9 @@ import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservi
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.tfs.AnnotationBuilder;
+import org.jetbrains.tfsIntegration.core.tfs.AnnotationCache;
 import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
+import org.jetbrains.tfsIntegration.core.tfs.TfsRevisionNumber;
 import org.jetbrains.tfsIntegration.core.tfs.WorkspaceInfo;
 import org.jetbrains.tfsIntegration.core.tfs.Workstation;
 import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
@@ -134,6 +136,14 @@ public class TFSAnnotationProvider implements AnnotationProvider {
 
     final ProgressIndicator progressIndicator = ProgressManager.getInstance().getProgressIndicator();
 
+    final String serverUri = workspace.getServer().getUri().toASCIIString();
+    final AnnotationBuilder.KnownAnnotations knownAnnotations = AnnotationCache.isEnabled() ? new AnnotationBuilder.KnownAnnotations() {
+      @Override
+      public int[] getLineChangesets(final TFSFileRevision revision) {
+        return AnnotationCache.getInstance().get(serverUri, getItemId(revision), revision.getRevisionNumber().getValue());
+      }
+    } : null;
+
     final AnnotationBuilder annotationBuilder = new AnnotationBuilder(revisions, new AnnotationBuilder.ContentProvider() {
       @Override
       public String getContent(final TFSFileRevision revision) throws VcsException {
@@ -147,9 +157,19 @@ public class TFSAnnotationProvider implements AnnotationProvider {
         }
         return content;
       }
-    });
+    }, knownAnnotations);
+
+    if (AnnotationCache.isEnabled()) {
+      final TFSFileRevision annotatedRevision = revisions.get(0);
+      AnnotationCache.getInstance().put(serverUri, getItemId(annotatedRevision), annotatedRevision.getRevisionNumber().getValue(),
+                                        annotationBuilder.getLineChangesets());
+    }
 
     return new TFSFileAnnotation(myVcs, workspace, annotationBuilder.getAnnotatedContent(), annotationBuilder.getLineRevisions(),
                                  localPath.getVirtualFile());
   }
+
+  private static int getItemId(final TFSFileRevision revision) {
+    return ((TfsRevisionNumber)revision.getRevisionNumber()).getItemId();
+  }
 }
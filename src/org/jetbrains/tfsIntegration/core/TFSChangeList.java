@@ -29,6 +29,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.revision.TFSContentRevision;
 import org.jetbrains.tfsIntegration.core.tfs.ChangeTypeMask;
+import org.jetbrains.tfsIntegration.core.tfs.MappingTable;
 import org.jetbrains.tfsIntegration.core.tfs.VersionControlServer;
 import org.jetbrains.tfsIntegration.core.tfs.WorkspaceInfo;
 import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
@@ -188,9 +189,10 @@ public class TFSChangeList implements CommittedChangeList {
       Changeset changeset =
         myWorkspace.getServer().getVCS().queryChangeset(myRevisionNumber, myVcs.getProject(), TFSBundle.message("loading.changes"));
 
+      MappingTable mappings = myWorkspace.getMappingTable(myVcs.getProject());
       for (com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Change change : changeset.getChanges()
         .getChange()) {
-        processChange(changeset.getCset(), change);
+        processChange(changeset.getCset(), change, mappings);
       }
     }
     catch (TfsException e) {
@@ -199,13 +201,12 @@ public class TFSChangeList implements CommittedChangeList {
   }
 
   private void processChange(int changeset,
-                             final com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Change change)
+                             final com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Change change,
+                             final MappingTable mappings)
     throws TfsException {
     final ChangeTypeMask changeType = new ChangeTypeMask(change.getType());
 
-    final FilePath localPath =
-      myWorkspace
-        .findLocalPathByServerPath(change.getItem().getItem(), change.getItem().getType() == ItemType.Folder, getVcs().getProject());
+    final FilePath localPath = mappings.getLocalPath(change.getItem().getItem(), change.getItem().getType() == ItemType.Folder);
 
     if (localPath == null) {
       // original path is out of current mappings -> no way to determine local path for it
@@ -245,8 +246,7 @@ public class TFSChangeList implements CommittedChangeList {
         return;
       }
       Item item = getPreviousVersion(change.getItem(), changeset);
-      FilePath originalPath = myWorkspace
-        .findLocalPathByServerPath(item.getItem(), item.getType() == ItemType.Folder, getVcs().getProject());
+      FilePath originalPath = mappings.getLocalPath(item.getItem(), item.getType() == ItemType.Folder);
 
       if (originalPath != null) {
         myMovedPaths.put(originalPath, Pair.create(localPath, item.getCs()));
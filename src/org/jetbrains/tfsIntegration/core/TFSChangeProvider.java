@@ -83,8 +83,16 @@ public class TFSChangeProvider implements ChangeProvider {
       WorkstationHelper.processByWorkspaces(roots, true, myProject, new WorkstationHelper.VoidProcessDelegate() {
         @Override
         public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) throws TfsException {
-          StatusProvider
-            .visitByStatus(workspace, paths, true, progress, new ChangelistBuilderStatusVisitor(myProject, builder, workspace), myProject);
+          // all the local files are examined once, both to find out their status and to build changes
+          LocalFileScanner.Snapshot localFiles = LocalFileScanner.scan(paths, true, progress);
+          ChangelistBuilderStatusVisitor visitor = new ChangelistBuilderStatusVisitor(myProject, builder, workspace, localFiles);
+          // local workspaces are refreshed without the server once their state is known, except for the invalidated parts
+          if (workspace.isLocal()) {
+            StatusProvider.visitByLocalStatusSynchronized(workspace, paths, true, progress, visitor, myProject, localFiles);
+          }
+          else {
+            StatusProvider.visitByStatus(workspace, paths, true, progress, visitor, myProject, localFiles);
+          }
           mappingFound.set(true);
         }
       });
@@ -169,6 +169,18 @@ public class TFSCheckinEnvironment implements CheckinEnvironment {
         @Override
         public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) throws TfsException {
           try {
+            if (workspace.isLocal()) {
+              // edits in local workspaces are detected locally, pend them on the server now
+              List<ItemPath> detectedEdits = LocalWorkspaceState.getInstance(workspace).getDetectedEdits(paths);
+              if (!detectedEdits.isEmpty()) {
+                TFSProgressUtil.setProgressText(progressIndicator, TFSBundle.message("checking.out"));
+                ResultWithFailures<GetOperation> checkoutResult = workspace.getServer().getVCS()
+                  .checkoutForEdit(workspace.getName(), workspace.getOwnerName(), detectedEdits, myVcs.getProject(),
+                                   TFSBundle.message("checking.out"));
+                errors.addAll(TfsUtil.getVcsExceptions(checkoutResult.getFailures()));
+              }
+            }
+
             TFSProgressUtil.setProgressText(progressIndicator, TFSBundle.message("loading.pending.changes"));
             // get pending changes for given items
             Collection<PendingChange> pendingChanges = workspace.getServer().getVCS()
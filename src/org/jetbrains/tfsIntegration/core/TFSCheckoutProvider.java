@@ -30,11 +30,11 @@ import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.vcsUtil.VcsUtil;
-import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.RecursionType;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.tfs.VersionControlServer;
 import org.jetbrains.tfsIntegration.core.tfs.WorkingFolderInfo;
 import org.jetbrains.tfsIntegration.core.tfs.WorkspaceInfo;
 import org.jetbrains.tfsIntegration.core.tfs.Workstation;
@@ -50,6 +50,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class TFSCheckoutProvider implements CheckoutProvider {
@@ -84,13 +85,12 @@ public class TFSCheckoutProvider implements CheckoutProvider {
 
         // TODO when checking out after working folder mappings were changed, GetOps may contain inappropriate 'move' operations
 
-        final List<GetOperation> operations = workspace.getServer().getVCS()
-          .get(workspace.getName(), workspace.getOwnerName(), model.getServerPath(), LatestVersionSpec.INSTANCE, RecursionType.Full, null,
-               null);
+        final List<VersionControlServer.GetRequestParams> requests = Collections.singletonList(
+          new VersionControlServer.GetRequestParams(model.getServerPath(), RecursionType.Full, LatestVersionSpec.INSTANCE));
 
         final Collection<VcsException> applyErrors = ApplyGetOperations
-          .execute(ProjectManager.getInstance().getDefaultProject(), workspace, operations,
-                   new ApplyProgress.ProgressIndicatorWrapper(progressIndicator), null, ApplyGetOperations.DownloadMode.ALLOW);
+          .executeGet(ProjectManager.getInstance().getDefaultProject(), workspace, requests,
+                      new ApplyProgress.ProgressIndicatorWrapper(progressIndicator), null, null, ApplyGetOperations.DownloadMode.ALLOW);
         // TODO: DownloadMode.FORCE?
         errors.addAll(applyErrors);
       }
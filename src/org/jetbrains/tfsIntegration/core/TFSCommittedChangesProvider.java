@@ -241,8 +241,8 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
 
   @Override
   public boolean refreshIncomingWithCommitted() {
-    // TODO
-    return false;
+    // new changesets are detected by IncomingChangesPoller, so refreshing incoming along with committed is cheap
+    return true;
   }
 
   @Override
@@ -20,9 +20,12 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.EditFileProvider;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
+import org.jetbrains.tfsIntegration.core.revision.TFSBaselineStore;
 import org.jetbrains.tfsIntegration.core.tfs.*;
+import org.jetbrains.tfsIntegration.core.tfs.operations.GetOperationsUtil;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import java.io.IOException;
@@ -55,6 +58,7 @@ public class TFSEditFileProvider implements EditFileProvider {
               VirtualFile file = VersionControlPath.getVirtualFile(getOperation.getSlocal());
               if (file != null && file.isValid() && !file.isDirectory()) {
                 makeWritable.add(file);
+                captureBaseline(workspace, getOperation, file);
               }
             }
             try {
@@ -83,6 +87,21 @@ public class TFSEditFileProvider implements EditFileProvider {
     }
   }
 
+  /**
+   * Keeps pristine content to show and commit local changes without downloading it. The file is about to be made writable and
+   * edited, so content is captured in background only if it still matches the hash of the checked out version.
+   */
+  private static void captureBaseline(WorkspaceInfo workspace, GetOperation getOperation, VirtualFile file) {
+    if (TFSBaselineStore.isEnabled() && !file.isWritable()) {
+      int version = getOperation.getLver() != Integer.MIN_VALUE ? getOperation.getLver() : getOperation.getSver();
+      byte[] hash = GetOperationsUtil.getHash(getOperation);
+      if (hash != null) {
+        TFSBaselineStore.getInstance().captureLater(workspace.getServer().getUri().toASCIIString(), getOperation.getItemid(), version, hash,
+                                                    VfsUtilCore.virtualToIoFile(file));
+      }
+    }
+  }
+
   @Override
   public String getRequestText() {
     return "Perform a checkout?";
@@ -17,6 +17,7 @@
 package org.jetbrains.tfsIntegration.core;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vcs.AbstractVcsHelper;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
@@ -36,8 +37,27 @@ import java.util.*;
 
 public class TFSFileListener extends VcsVFSListener {
 
+  private final PendChangeQueue myQueue;
+
   public TFSFileListener( TFSVcs vcs) {
     super(vcs);
+    myQueue = new PendChangeQueue(myProject, new PendChangeQueue.Handler() {
+      @Override
+      public void rename(@NotNull Map<FilePath, FilePath> movedPaths, @NotNull List<VcsException> errors) {
+        renameFiles(movedPaths, errors);
+      }
+
+      @Override
+      public void delete(@NotNull List<FilePath> deletedFiles, @NotNull List<VcsException> errors) {
+        deleteFiles(deletedFiles, errors);
+      }
+
+      @Override
+      public void add(@NotNull List<FilePath> addedFiles, @NotNull List<VcsException> errors) {
+        addFiles(addedFiles, errors);
+      }
+    });
+    Disposer.register(this, myQueue);
   }
 
   @NotNull
@@ -58,14 +78,13 @@ public class TFSFileListener extends VcsVFSListener {
     return TFSBundle.message("add.item.prompt","");
   }
 
-  @Override
-  protected void executeAdd() {
-    List<VirtualFile> addedFiles = myProcessor.acquireAddedFiles();
+  private void addFiles(final List<FilePath> addedFiles, final List<VcsException> errors) {
     try {
-      WorkstationHelper.processByWorkspaces(TfsFileUtil.getFilePaths(addedFiles), false, myProject,
-                                            new WorkstationHelper.VoidProcessDelegate() {
+      final List<FilePath> orphans =
+        WorkstationHelper.processByWorkspaces(addedFiles, false, myProject, new WorkstationHelper.VoidProcessDelegate() {
         @Override
         public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) throws TfsException {
+          final List<ItemPath> pathsToAdd = new ArrayList<>(paths);
           StatusProvider.visitByStatus(workspace, paths, false, null, new StatusVisitor() {
             @Override
             public void unversioned(final @NotNull FilePath localPath,
@@ -85,7 +104,7 @@ public class TFSFileListener extends VcsVFSListener {
             public void scheduledForAddition(final @NotNull FilePath localPath,
                                              final boolean localItemExists,
                                              final @NotNull ServerStatus serverStatus) {
-              addedFiles.remove(localPath.getVirtualFile());
+              pathsToAdd.removeIf(path -> path.getLocalPath().equals(localPath));
             }
 
             @Override
@@ -137,26 +156,43 @@ public class TFSFileListener extends VcsVFSListener {
             }
 
           }, myProject);
+
+          if (!pathsToAdd.isEmpty()) {
+            errors.addAll(ScheduleForAddition.execute(myProject, workspace, pathsToAdd));
+          }
         }
       });
+
+      if (!orphans.isEmpty()) {
+        StringBuilder s = new StringBuilder();
+        for (FilePath orpan : orphans) {
+          if (s.length() > 0) {
+            s.append("\n");
+          }
+          s.append(orpan.getPresentableUrl());
+        }
+        errors.add(new VcsException("Team Foundation Server mappings not found for: " + s.toString()));
+      }
     }
     catch (TfsException e) {
-      AbstractVcsHelper.getInstance(myProject).showError(new VcsException(e), TFSVcs.TFS_NAME);
-    }
-    if (!addedFiles.isEmpty()) {
-      super.executeAdd();
+      errors.add(new VcsException(e));
     }
   }
 
   @Override
   protected void executeDelete() {
-    // choose roots
-    // revert all pending schedules for addition recursively
-    // throw out all the unversioned items
     AllDeletedFiles files = myProcessor.acquireAllDeletedFiles();
     List<FilePath> deletedFiles = files.deletedFiles;
     deletedFiles.addAll(files.deletedWithoutConfirmFiles);
+    if (!deletedFiles.isEmpty()) {
+      myQueue.queueDelete(deletedFiles);
+    }
+  }
 
+  private void deleteFiles(final List<FilePath> deletedFiles, final List<VcsException> errors) {
+    // choose roots
+    // revert all pending schedules for addition recursively
+    // throw out all the unversioned items
     try {
       WorkstationHelper.processByWorkspaces(deletedFiles, false, myProject, new WorkstationHelper.VoidProcessDelegate() {
         @Override
@@ -187,10 +223,7 @@ public class TFSFileListener extends VcsVFSListener {
           UndoPendingChanges.UndoPendingChangesResult undoResult =
             UndoPendingChanges.execute(myProject, workspace, revertImmediately, true, ApplyProgress.EMPTY, false);
 
-          if (!undoResult.errors.isEmpty()) {
-            // TODO list -> collection
-            AbstractVcsHelper.getInstance(myProject).showErrors(new ArrayList<>(undoResult.errors), TFSVcs.TFS_NAME);
-          }
+          errors.addAll(undoResult.errors);
 
           StatusProvider.visitByStatus(workspace, pathsToProcess, false, null, new StatusVisitor() {
             @Override
@@ -265,17 +298,24 @@ public class TFSFileListener extends VcsVFSListener {
       });
     }
     catch (TfsException e) {
-      AbstractVcsHelper.getInstance(myProject).showError(new VcsException(e), TFSVcs.TFS_NAME);
+      errors.add(new VcsException(e));
     }
 
     if (!deletedFiles.isEmpty()) {
-      performDeletion(deletedFiles);
+      scheduleForDeletion(deletedFiles, errors);
     }
   }
 
   @Override
   protected void performDeletion(@NotNull final List<FilePath> filesToDelete) {
     final List<VcsException> errors = new ArrayList<>();
+    scheduleForDeletion(filesToDelete, errors);
+    if (!errors.isEmpty()) {
+      AbstractVcsHelper.getInstance(myProject).showErrors(errors, TFSVcs.TFS_NAME);
+    }
+  }
+
+  private void scheduleForDeletion(final List<FilePath> filesToDelete, final List<VcsException> errors) {
     try {
       WorkstationHelper.processByWorkspaces(filesToDelete, false, myProject, new WorkstationHelper.VoidProcessDelegate() {
         @Override
@@ -288,42 +328,11 @@ public class TFSFileListener extends VcsVFSListener {
     catch (TfsException e) {
       errors.add(new VcsException(e));
     }
-    if (!errors.isEmpty()) {
-      AbstractVcsHelper.getInstance(myProject).showErrors(errors, TFSVcs.TFS_NAME);
-    }
   }
 
   @Override
   protected void performAdding(@NotNull final Collection<VirtualFile> addedFiles, @NotNull final Map<VirtualFile, VirtualFile> copyFromMap) {
-    final List<VcsException> errors = new ArrayList<>();
-    try {
-      final List<FilePath> orphans =
-        WorkstationHelper.processByWorkspaces(TfsFileUtil.getFilePaths(addedFiles), false, myProject,
-                                              new WorkstationHelper.VoidProcessDelegate() {
-          @Override
-          public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) {
-            Collection<VcsException> schedulingErrors = ScheduleForAddition.execute(myProject, workspace, paths);
-            errors.addAll(schedulingErrors);
-          }
-        });
-
-      if (!orphans.isEmpty()) {
-        StringBuilder s = new StringBuilder();
-        for (FilePath orpan : orphans) {
-          if (s.length() > 0) {
-            s.append("\n");
-          }
-          s.append(orpan.getPresentableUrl());
-        }
-        errors.add(new VcsException("Team Foundation Server mappings not found for: " + s.toString()));
-      }
-    }
-    catch (TfsException e) {
-      errors.add(new VcsException(e));
-    }
-    if (!errors.isEmpty()) {
-      AbstractVcsHelper.getInstance(myProject).showErrors(errors, TFSVcs.TFS_NAME);
-    }
+    myQueue.queueAdd(TfsFileUtil.getFilePaths(addedFiles));
   }
 
   @NotNull
@@ -344,11 +353,14 @@ public class TFSFileListener extends VcsVFSListener {
 
   @Override
   protected void performMoveRename(@NotNull final List<MovedFileInfo> movedFiles) {
-    final Map<FilePath, FilePath> movedPaths = new HashMap<>(movedFiles.size());
+    final Map<FilePath, FilePath> movedPaths = new LinkedHashMap<>(movedFiles.size());
     for (MovedFileInfo movedFileInfo : movedFiles) {
       movedPaths.put(VcsUtil.getFilePath(movedFileInfo.myOldPath), VcsUtil.getFilePath(movedFileInfo.myNewPath));
     }
-    final List<VcsException> errors = new ArrayList<>();
+    myQueue.queueRename(movedPaths);
+  }
+
+  private void renameFiles(final Map<FilePath, FilePath> movedPaths, final List<VcsException> errors) {
     final Map<FilePath, FilePath> scheduleMove = new HashMap<>();
     try {
       WorkstationHelper.processByWorkspaces(movedPaths.keySet(), false, myProject, new WorkstationHelper.VoidProcessDelegate() {
@@ -445,9 +457,6 @@ public class TFSFileListener extends VcsVFSListener {
     catch (TfsException e) {
       errors.add(new VcsException(e));
     }
-    if (!errors.isEmpty()) {
-      AbstractVcsHelper.getInstance(myProject).showErrors(errors, TFSVcs.TFS_NAME);
-    }
   }
 
   @Override
@@ -17,15 +17,19 @@
 package org.jetbrains.tfsIntegration.core;
 
 import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsConfiguration;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.history.*;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ThrowableConsumer;
 import com.intellij.util.ui.ColumnInfo;
-import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Changeset;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ExtendedItem;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Item;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ItemType;
@@ -38,6 +42,7 @@ import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
 import org.jetbrains.tfsIntegration.core.tfs.version.LatestVersionSpec;
 import org.jetbrains.tfsIntegration.core.tfs.version.VersionSpecBase;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.exceptions.UserCancelledException;
 
 import javax.swing.*;
 import java.util.ArrayList;
@@ -121,11 +126,48 @@ public class TFSHistoryProvider implements VcsHistoryProvider {
     };
   }
 
+  /**
+   * Revisions are reported as soon as they are read from the server response, so the first page of a long history
+   * is shown while the rest is still being loaded.
+   */
   @Override
-  public void reportAppendableHistory(FilePath path, VcsAppendableHistorySessionPartner partner) throws VcsException {
-    //??
-    final VcsHistorySession session = createSessionFor(path);
-    partner.reportCreatedEmptySession((VcsAbstractHistorySession)session);
+  public void reportAppendableHistory(FilePath path, final VcsAppendableHistorySessionPartner partner) throws VcsException {
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    try {
+      final Pair<WorkspaceInfo, ExtendedItem> workspaceAndItem =
+        TfsUtil.getWorkspaceAndExtendedItem(path, myProject, TFSBundle.message("loading.item"));
+      if (workspaceAndItem == null || workspaceAndItem.second == null) {
+        partner.reportCreatedEmptySession(null);
+        return;
+      }
+
+      final Ref<Boolean> sessionCreated = new Ref<>(false);
+      queryRevisions(myProject, workspaceAndItem.second.getSitem(), path.isDirectory(), workspaceAndItem.first, LatestVersionSpec.INSTANCE,
+                     revision -> {
+                       // we are called within the request, so cancellation should be reported in terms of TfsException
+                       if (indicator != null && indicator.isCanceled()) {
+                         throw new UserCancelledException();
+                       }
+                       if (sessionCreated.get()) {
+                         partner.acceptRevision(revision);
+                       }
+                       else {
+                         List<VcsFileRevision> revisions = new ArrayList<>();
+                         revisions.add(revision);
+                         partner.reportCreatedEmptySession(createSession(workspaceAndItem, revisions));
+                         sessionCreated.set(true);
+                       }
+                     });
+      if (!sessionCreated.get()) {
+        partner.reportCreatedEmptySession(null);
+      }
+    }
+    catch (TfsException e) {
+      if (e instanceof UserCancelledException && indicator != null && indicator.isCanceled()) {
+        throw new ProcessCanceledException();
+      }
+      throw new VcsException(e);
+    }
   }
 
   public static List<TFSFileRevision> getRevisions(final Project project,
@@ -133,21 +175,27 @@ public class TFSHistoryProvider implements VcsHistoryProvider {
                                                    final boolean isDirectory,
                                                    WorkspaceInfo workspace,
                                                    VersionSpecBase versionTo) throws TfsException {
+    List<TFSFileRevision> revisions = new ArrayList<>();
+    queryRevisions(project, serverPath, isDirectory, workspace, versionTo, revisions::add);
+    return revisions;
+  }
+
+  private static void queryRevisions(final Project project,
+                                     final String serverPath,
+                                     final boolean isDirectory,
+                                     final WorkspaceInfo workspace,
+                                     VersionSpecBase versionTo,
+                                     final ThrowableConsumer<TFSFileRevision, TfsException> consumer) throws TfsException {
     VcsConfiguration vcsConfiguration = VcsConfiguration.getInstance(project);
     int maxCount = vcsConfiguration.LIMIT_HISTORY ? vcsConfiguration.MAXIMUM_HISTORY_ROWS : Integer.MAX_VALUE;
-    List<Changeset> changesets =
-      workspace.getServer().getVCS().queryHistory(workspace, serverPath, isDirectory, null, new ChangesetVersionSpec(1), versionTo, project,
-                                                  TFSBundle.message("loading.item"), maxCount);
-
-    List<TFSFileRevision> revisions = new ArrayList<>(changesets.size());
-    for (Changeset changeset : changesets) {
-      final Item item = changeset.getChanges().getChange()[0].getItem();
-      revisions.add(
-        new TFSFileRevision(project, workspace, item.getItemid(), changeset.getDate().getTime(), changeset.getComment(),
-                            changeset.getOwner(),
-                            changeset.getCset()));
-    }
-    return revisions;
+    workspace.getServer().getVCS().queryHistory(workspace, serverPath, isDirectory, null, new ChangesetVersionSpec(1), versionTo,
+                                                changeset -> {
+                                                  final Item item = changeset.getChanges().getChange()[0].getItem();
+                                                  consumer.consume(
+                                                    new TFSFileRevision(project, workspace, item.getItemid(),
+                                                                        changeset.getDate().getTime(), changeset.getComment(),
+                                                                        changeset.getOwner(), changeset.getCset()));
+                                                }, project, TFSBundle.message("loading.item"), maxCount);
   }
 
   @Override
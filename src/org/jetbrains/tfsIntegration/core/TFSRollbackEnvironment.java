@@ -27,6 +27,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.RecursionType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.tfs.*;
 import org.jetbrains.tfsIntegration.core.tfs.operations.ApplyGetOperations;
 import org.jetbrains.tfsIntegration.core.tfs.operations.ApplyProgress;
@@ -37,6 +38,7 @@ import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class TFSRollbackEnvironment extends DefaultRollbackEnvironment {
@@ -180,17 +182,7 @@ public class TFSRollbackEnvironment extends DefaultRollbackEnvironment {
           //Map<ItemPath, ExtendedItem> extendedItems = workspace.getExtendedItems(paths);
 
           // query GetOperation-s
-          List<VersionControlServer.GetRequestParams> requests = new ArrayList<>(paths.size());
-          final WorkspaceVersionSpec versionSpec = new WorkspaceVersionSpec(workspace.getName(), workspace.getOwnerName());
-          for (ItemPath e : paths) {
-            requests.add(new VersionControlServer.GetRequestParams(e.getServerPath(), RecursionType.None, versionSpec));
-          }
-          List<GetOperation> operations = workspace.getServer().getVCS()
-            .get(workspace.getName(), workspace.getOwnerName(), requests, myProject, TFSBundle.message("preparing.for.download"));
-          final Collection<VcsException> applyingErrors = ApplyGetOperations
-            .execute(myProject, workspace, operations, new ApplyProgress.RollbackProgressWrapper(listener), null,
-                     ApplyGetOperations.DownloadMode.FORCE);
-          errors.addAll(applyingErrors);
+          restoreWorkspaceVersion(workspace, paths, errors, listener);
         }
       });
     }
@@ -199,6 +191,31 @@ public class TFSRollbackEnvironment extends DefaultRollbackEnvironment {
     }
   }
 
+  private void restoreWorkspaceVersion(final WorkspaceInfo workspace,
+                                       final List<ItemPath> paths,
+                                       final List<? super VcsException> errors,
+                                       final RollbackProgressListener listener) throws TfsException {
+    restoreWorkspaceVersion(workspace, paths, errors, listener, null);
+  }
+
+  private void restoreWorkspaceVersion(final WorkspaceInfo workspace,
+                                       final List<ItemPath> paths,
+                                       final List<? super VcsException> errors,
+                                       final RollbackProgressListener listener,
+                                       final @Nullable Collection<FilePath> changedPaths) throws TfsException {
+    List<VersionControlServer.GetRequestParams> requests = new ArrayList<>(paths.size());
+    final WorkspaceVersionSpec versionSpec = new WorkspaceVersionSpec(workspace.getName(), workspace.getOwnerName());
+    for (ItemPath e : paths) {
+      requests.add(new VersionControlServer.GetRequestParams(e.getServerPath(), RecursionType.None, versionSpec));
+    }
+    List<GetOperation> operations = workspace.getServer().getVCS()
+      .get(workspace.getName(), workspace.getOwnerName(), requests, myProject, TFSBundle.message("preparing.for.download"));
+    final Collection<VcsException> applyingErrors = ApplyGetOperations
+      .execute(myProject, workspace, operations, new ApplyProgress.RollbackProgressWrapper(listener), null, changedPaths,
+               ApplyGetOperations.DownloadMode.FORCE);
+    errors.addAll(applyingErrors);
+  }
+
   private void undoPendingChanges(final List<FilePath> localPaths,
                                   final List<VcsException> errors,
                                   @NotNull final RollbackProgressListener listener,
@@ -207,26 +224,34 @@ public class TFSRollbackEnvironment extends DefaultRollbackEnvironment {
       WorkstationHelper.processByWorkspaces(localPaths, false, myProject, new WorkstationHelper.VoidProcessDelegate() {
         @Override
         public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) throws TfsException {
+          Collection<ItemPath> detectedEdits = Collections.emptyList();
+          List<FilePath> refresh = new ArrayList<>();
+          if (workspace.isLocal()) {
+            // edits detected in local workspaces have nothing to undo on the server, just restore the content
+            detectedEdits = LocalWorkspaceState.getInstance(workspace).getDetectedEdits(paths);
+            if (!detectedEdits.isEmpty()) {
+              restoreWorkspaceVersion(workspace, new ArrayList<>(detectedEdits), errors, listener, refresh);
+            }
+          }
           Collection<String> serverPaths = new ArrayList<>(paths.size());
           for (ItemPath itemPath : paths) {
-            serverPaths.add(itemPath.getServerPath());
+            if (!detectedEdits.contains(itemPath)) {
+              serverPaths.add(itemPath.getServerPath());
+            }
           }
           UndoPendingChanges.UndoPendingChangesResult undoResult = UndoPendingChanges
             .execute(myProject, workspace, serverPaths, false, new ApplyProgress.RollbackProgressWrapper(listener),
                      tolerateNoChangesFailure);
           errors.addAll(undoResult.errors);
-          List<VirtualFile> refresh = new ArrayList<>(paths.size());
+          refresh.addAll(undoResult.changedPaths);
           for (ItemPath path : paths) {
             listener.accept(path.getLocalPath());
 
+            // status changes even if the content does not
             ItemPath undone = undoResult.undonePaths.get(path);
-            FilePath subject = (undone != null ? undone : path).getLocalPath();
-            VirtualFile file = subject.getVirtualFileParent();
-            if (file != null && file.exists()) {
-              refresh.add(file);
-            }
+            refresh.add((undone != null ? undone : path).getLocalPath());
           }
-          TfsFileUtil.refreshAndMarkDirty(myProject, refresh, true);
+          TfsFileUtil.refreshAndMarkDirtyChanged(myProject, refresh, true);
         }
       });
     }
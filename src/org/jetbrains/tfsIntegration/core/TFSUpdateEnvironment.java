@@ -57,6 +57,7 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
                                          final ProgressIndicator progressIndicator,
                                          @NotNull final Ref<SequentialUpdatesContext> context) throws ProcessCanceledException {
     final List<VcsException> exceptions = new ArrayList<>();
+    final Collection<FilePath> changedPaths = new ArrayList<>();
     TFSProgressUtil.setProgressText(progressIndicator, "Request update information");
     try {
       final Map<WorkspaceInfo, Collection<Conflict>> workspace2Conflicts = new HashMap<>();
@@ -80,13 +81,10 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
               TFSProgressUtil.checkCanceled(progressIndicator);
             }
 
-            List<GetOperation> operations = workspace.getServer().getVCS()
-              .get(workspace.getName(), workspace.getOwnerName(), requests, myVcs.getProject(),
-                   TFSBundle.message("preparing.for.download"));
-            // execute GetOperation-s, conflicting ones will be skipped
+            // execute GetOperation-s as they arrive, conflicting ones will be skipped
             final Collection<VcsException> applyErrors = ApplyGetOperations
-              .execute(myVcs.getProject(), workspace, operations, new ApplyProgress.ProgressIndicatorWrapper(progressIndicator),
-                       updatedFiles, ApplyGetOperations.DownloadMode.ALLOW);
+              .executeGet(myVcs.getProject(), workspace, requests, new ApplyProgress.ProgressIndicatorWrapper(progressIndicator),
+                          updatedFiles, changedPaths, ApplyGetOperations.DownloadMode.ALLOW);
             exceptions.addAll(applyErrors);
 
             Collection<Conflict> conflicts =
@@ -97,6 +95,11 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
             final Collection<Conflict> unresolvedConflicts = ResolveConflictHelper.getUnresolvedConflicts(conflicts);
             if (!unresolvedConflicts.isEmpty()) {
               workspace2Conflicts.put(workspace, unresolvedConflicts);
+              // resolving the conflicts changes these as well
+              for (Conflict conflict : unresolvedConflicts) {
+                addLocalPath(changedPaths, conflict.getSrclitem(), conflict);
+                addLocalPath(changedPaths, conflict.getTgtlitem(), conflict);
+              }
             }
           }
         });
@@ -114,8 +117,7 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
       exceptions.add(new VcsException(e));
     }
 
-    // TODO content roots can be renamed while executing
-    TfsFileUtil.refreshAndInvalidate(myVcs.getProject(), contentRoots, false);
+    TfsFileUtil.refreshAndMarkDirtyChanged(myVcs.getProject(), changedPaths, false);
 
     return new UpdateSession() {
       @Override
@@ -136,6 +138,12 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
     };
   }
 
+  private static void addLocalPath(@NotNull Collection<FilePath> paths, @Nullable String localItem, @NotNull Conflict conflict) {
+    if (localItem != null) {
+      paths.add(VersionControlPath.getFilePath(localItem, conflict.getYtype() == ItemType.Folder));
+    }
+  }
+
   @Override
   @Nullable
   public Configurable createConfigurable(final Collection<FilePath> files) {
@@ -162,19 +170,15 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
             }
 
             // determine common ancestor of all the paths
-            ExtendedItem someExtendedItem = items.iterator().next();
-            UpdateSettingsForm.WorkspaceSettings workspaceSettings =
-              new UpdateSettingsForm.WorkspaceSettings(someExtendedItem.getSitem(), someExtendedItem.getType() == ItemType.Folder);
+            ServerPathTrie<ExtendedItem> trie = new ServerPathTrie<>();
             for (ExtendedItem extendedItem : items) {
-              final String path1 = workspaceSettings.serverPath;
-              final String path2 = extendedItem.getSitem();
-              if (VersionControlPath.isUnder(path2, path1)) {
-                workspaceSettings = new UpdateSettingsForm.WorkspaceSettings(path2, extendedItem.getType() == ItemType.Folder);
-              }
-              else if (!VersionControlPath.isUnder(path1, path2)) {
-                workspaceSettings = new UpdateSettingsForm.WorkspaceSettings(VersionControlPath.getCommonAncestor(path1, path2), true);
-              }
+              trie.put(extendedItem.getSitem(), extendedItem);
             }
+            String commonAncestor = trie.getCommonAncestor();
+            ExtendedItem commonItem = trie.get(commonAncestor);
+            UpdateSettingsForm.WorkspaceSettings workspaceSettings =
+              new UpdateSettingsForm.WorkspaceSettings(commonItem != null ? commonItem.getSitem() : commonAncestor,
+                                                       commonItem == null || commonItem.getType() == ItemType.Folder);
             workspacesSettings.put(workspace, workspaceSettings);
           }
         });
@@ -60,6 +60,7 @@ public class TFSVcs extends AbstractVcs {
   private static final VcsKey ourKey = createKey(TFS_NAME);
 
   private VcsVFSListener myFileListener;
+  private IncomingChangesPoller myIncomingChangesPoller;
   private final VcsShowConfirmationOption myAddConfirmation;
   private final VcsShowConfirmationOption myDeleteConfirmation;
   private final VcsShowSettingOption myCheckoutOptions;
@@ -104,12 +105,15 @@ public class TFSVcs extends AbstractVcs {
   @Override
   public void activate() {
     myFileListener = new TFSFileListener( this);
+    myIncomingChangesPoller = new IncomingChangesPoller(myProject, this);
+    myIncomingChangesPoller.start();
     TfsSdkManager.activate();
   }
 
   @Override
   public void deactivate() {
     Disposer.dispose(myFileListener);
+    Disposer.dispose(myIncomingChangesPoller);
   }
 
   @Override
@@ -3,24 +3,26 @@ package org.jetbrains.tfsIntegration.core;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.ThrowableComputable;
 import com.microsoft.schemas.teamfoundation._2005._06.services.groupsecurity._03.GroupSecurityServiceStub;
 import com.microsoft.schemas.teamfoundation._2005._06.services.registration._03.*;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.RepositoryStub;
 import com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.ClientService2Stub;
+import org.apache.axis2.AxisFault;
 import org.apache.axis2.context.ConfigurationContext;
 import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpConnectionManager;
-import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
-import org.apache.commons.httpclient.params.HttpClientParams;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.configuration.Credentials;
 import org.jetbrains.tfsIntegration.core.tfs.TfsUtil;
 import org.jetbrains.tfsIntegration.exceptions.HostNotApplicableException;
+import org.jetbrains.tfsIntegration.webservice.TfsConnectionPool;
 import org.jetbrains.tfsIntegration.webservice.WebServiceHelper;
 
 import java.net.URI;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TfsBeansHolder {
 
@@ -35,7 +37,14 @@ public class TfsBeansHolder {
   private GroupSecurityServiceStub myGroupSecurityService;
   private String myDownloadUrl;
   private String myUploadUrl;
-  private final HttpClient[] myUploadDownloadClients = new HttpClient[2]; // regular, proxy
+  private final TfsConnectionPool myConnectionPool = new TfsConnectionPool();
+
+  // Stubs are not thread safe since every request sets up options of the stub's service client.
+  // Requests executed concurrently with the regular one use their own repository stubs.
+  private final ThreadLocal<RepositoryStub> myOwnRepository = new ThreadLocal<>();
+  private final List<RepositoryStub> myIdleRepositories = new ArrayList<>();
+  private ConfigurationContext myConfigContext;
+  private String myRepositoryUrl;
 
   public TfsBeansHolder(URI serverUri) {
     myServerUri = serverUri;
@@ -47,10 +56,43 @@ public class TfsBeansHolder {
     if (myRepository == null) {
       createStubs(credentials, pi);
     }
+    RepositoryStub ownRepository = myOwnRepository.get();
+    if (ownRepository != null) {
+      WebServiceHelper.setupStub(ownRepository, credentials, myServerUri);
+      return ownRepository;
+    }
     WebServiceHelper.setupStub(myRepository, credentials, myServerUri);
     return myRepository;
   }
 
+  /**
+   * Runs the computation so that {@link #getRepositoryStub} called within it returns a stub not shared with other threads.
+   * Stubs must be already created.
+   */
+  public <T> T computeWithOwnRepositoryStub(@NotNull ThrowableComputable<T, Exception> computable) throws Exception {
+    RepositoryStub stub = borrowRepositoryStub();
+    myOwnRepository.set(stub);
+    try {
+      return computable.compute();
+    }
+    finally {
+      myOwnRepository.remove();
+      synchronized (myIdleRepositories) {
+        myIdleRepositories.add(stub);
+      }
+    }
+  }
+
+  private RepositoryStub borrowRepositoryStub() throws AxisFault {
+    synchronized (myIdleRepositories) {
+      if (!myIdleRepositories.isEmpty()) {
+        return myIdleRepositories.remove(myIdleRepositories.size() - 1);
+      }
+    }
+    LOG.assertTrue(myRepositoryUrl != null, "Stubs not created");
+    return new RepositoryStub(myConfigContext, myRepositoryUrl);
+  }
+
   @NotNull
   public RepositoryStub getRepository4Stub(Credentials credentials, ProgressIndicator pi)
     throws HostNotApplicableException, RemoteException {
@@ -107,7 +149,7 @@ public class TfsBeansHolder {
       pi.setText(TFSBundle.message("loading.services"));
     }
 
-    final ConfigurationContext configContext = WebServiceHelper.getStubConfigurationContext();
+    final ConfigurationContext configContext = WebServiceHelper.getStubConfigurationContext(myConnectionPool);
 
     RegistrationStub registrationStub =
       new RegistrationStub(configContext, TfsUtil.appendPath(myServerUri, TFSConstants.REGISTRATION_ASMX));
@@ -163,9 +205,14 @@ public class TfsBeansHolder {
     myUploadUrl = upload;
     try {
       if (configContext == null) {
-        configContext = WebServiceHelper.getStubConfigurationContext();
+        configContext = WebServiceHelper.getStubConfigurationContext(myConnectionPool);
       }
-      myRepository = new RepositoryStub(configContext, TfsUtil.appendPath(myServerUri, isccProvider));
+      myConfigContext = configContext;
+      myRepositoryUrl = TfsUtil.appendPath(myServerUri, isccProvider);
+      synchronized (myIdleRepositories) {
+        myIdleRepositories.clear();
+      }
+      myRepository = new RepositoryStub(configContext, myRepositoryUrl);
       myRepository4 = new RepositoryStub(configContext, TfsUtil.appendPath(myServerUri, isccProvider4));
       myWorkItemTrackingClientService =
         new ClientService2Stub(configContext, TfsUtil.appendPath(myServerUri, workItemService));
@@ -178,16 +225,12 @@ public class TfsBeansHolder {
   }
   
   public HttpClient getUploadDownloadClient(boolean forProxy) {
-    int index = forProxy ? 1 : 0;
-    if (myUploadDownloadClients[index] == null) {
-      HttpConnectionManager connManager = new MultiThreadedHttpConnectionManager();
-      myUploadDownloadClients[index] = new HttpClient(connManager);
-      HttpClientParams clientParams = new HttpClientParams();
-      // Set the default timeout in case we have a connection pool starvation to 30sec
-      clientParams.setConnectionManagerTimeout(30000);
-      myUploadDownloadClients[index].setParams(clientParams);
-    }
-    return myUploadDownloadClients[index];
+    return myConnectionPool.getUploadDownloadClient(forProxy);
+  }
+
+  @NotNull
+  public TfsConnectionPool getConnectionPool() {
+    return myConnectionPool;
   }
 
   @Nullable
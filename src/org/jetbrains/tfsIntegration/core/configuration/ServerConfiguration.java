@@ -18,22 +18,51 @@ package org.jetbrains.tfsIntegration.core.configuration;
 
 import com.intellij.notification.Notification;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.util.xmlb.annotations.Attribute;
 import com.intellij.util.xmlb.annotations.Tag;
 import com.intellij.util.xmlb.annotations.Transient;
+import com.intellij.util.xmlb.annotations.XMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 @Tag(value = "configuration")
 public class ServerConfiguration {
 
+  // proxy that failed is tried again after this time
+  public static final long PROXY_RECHECK_INTERVAL = Long.getLong("org.jetbrains.tfsIntegration.proxyRecheckInterval", 10 * 60000);
+
   private @Nullable Credentials myCredentials;
 
   private @Nullable String myProxyUri;
 
-  private boolean myProxyInaccessible;
+  private long myProxyInaccessibleTime; // 0 if accessible
 
   private Notification myAuthCanceledNotification;
 
+  // lower case qualified user name -> identity, replaced rather than modified
+  private Map<String, CachedIdentity> myIdentities = Collections.emptyMap();
+
+  @Tag(value = "identity")
+  public static class CachedIdentity {
+    @Attribute(value = "displayName")
+    public String displayName;
+
+    @Attribute(value = "time")
+    public long time;
+
+    public CachedIdentity() {
+    }
+
+    public CachedIdentity(String displayName, long time) {
+      this.displayName = displayName;
+      this.time = time;
+    }
+  }
+
   public ServerConfiguration() {
   }
 
@@ -59,18 +88,18 @@ public class ServerConfiguration {
 
   public void setProxyUri(@Nullable final String proxyUri) {
     if (!Comparing.equal(myProxyUri, proxyUri)) {
-      myProxyInaccessible = false;
+      myProxyInaccessibleTime = 0;
     }
     myProxyUri = proxyUri;
   }
 
   @Transient
   public boolean isProxyInaccessible() {
-    return myProxyInaccessible;
+    return myProxyInaccessibleTime != 0 && System.currentTimeMillis() - myProxyInaccessibleTime < PROXY_RECHECK_INTERVAL;
   }
 
   public void setProxyInaccessible() {
-    myProxyInaccessible = true;
+    myProxyInaccessibleTime = System.currentTimeMillis();
   }
 
   @Transient
@@ -81,4 +110,20 @@ public class ServerConfiguration {
   public void setAuthCanceledNotification(Notification authCanceledNotification) {
     myAuthCanceledNotification = authCanceledNotification;
   }
+
+  @Tag(value = "identities")
+  @XMap(entryTagName = "user", keyAttributeName = "name")
+  public Map<String, CachedIdentity> getIdentities() {
+    return myIdentities;
+  }
+
+  public void setIdentities(@NotNull Map<String, CachedIdentity> identities) {
+    myIdentities = identities;
+  }
+
+  public void addIdentity(@NotNull String qualifiedUsername, @NotNull CachedIdentity identity) {
+    Map<String, CachedIdentity> identities = new HashMap<>(myIdentities);
+    identities.put(qualifiedUsername, identity);
+    myIdentities = identities;
+  }
 }
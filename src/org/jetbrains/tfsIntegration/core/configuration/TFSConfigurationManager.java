@@ -26,6 +26,7 @@ import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.xmlb.annotations.OptionTag;
 import com.intellij.util.xmlb.annotations.XMap;
 import org.jetbrains.annotations.NotNull;
@@ -132,6 +133,17 @@ public class TFSConfigurationManager implements PersistentStateComponent<TFSConf
     getConfiguration(serverUri).setProxyInaccessible();
   }
 
+  @Nullable
+  public synchronized ServerConfiguration.CachedIdentity getCachedIdentity(@NotNull URI serverUri, @NotNull String qualifiedUsername) {
+    final ServerConfiguration serverConfiguration = getConfiguration(serverUri);
+    return serverConfiguration != null ? serverConfiguration.getIdentities().get(StringUtil.toLowerCase(qualifiedUsername)) : null;
+  }
+
+  public synchronized void cacheIdentity(@NotNull URI serverUri, @NotNull String qualifiedUsername, @NotNull String displayName) {
+    getOrCreateServerConfiguration(serverUri)
+      .addIdentity(StringUtil.toLowerCase(qualifiedUsername), new ServerConfiguration.CachedIdentity(displayName, System.currentTimeMillis()));
+  }
+
   public void setProxyUri(@NotNull URI serverUri, @Nullable URI proxyUri) {
     String proxyUriString = proxyUri != null ? proxyUri.toString() : null;
     getOrCreateServerConfiguration(serverUri).setProxyUri(proxyUriString);
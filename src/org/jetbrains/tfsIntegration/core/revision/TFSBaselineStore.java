@@ -0,0 +1,277 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.revision;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.io.DigestUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.tfs.ItemCacheDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent store of pristine content of workspace items, captured when a file is downloaded or checked out, so that "before"
+ * revisions of local changes are available without going to the server. Content is kept compressed and deduplicated by hash:
+ * index entries (server, item id, version) refer to blobs named after the MD5 of their content.
+ * Least recently used blobs are evicted when the store grows above its limit.
+ */
+public class TFSBaselineStore {
+
+  private static final Logger LOG = Logger.getInstance(TFSBaselineStore.class.getName());
+
+  private static final boolean ENABLED = !Boolean.getBoolean("org.jetbrains.tfsIntegration.disableBaselines");
+  private static final long MAX_FILE_SIZE = Long.getLong("org.jetbrains.tfsIntegration.maxBaselineFileSize", 10 * 1024 * 1024);
+  private static final long MAX_STORE_SIZE = Long.getLong("org.jetbrains.tfsIntegration.baselineStoreSize", 1024L * 1024 * 1024);
+
+  @NonNls private static final String BLOBS_DIR = "blobs";
+  @NonNls private static final String INDEX_DIR = "index";
+  @NonNls private static final String BLOB_EXTENSION = ".gz";
+  @NonNls private static final String TMP_EXTENSION = ".tmp";
+
+  private static TFSBaselineStore ourInstance;
+
+  private final File myBlobsDir;
+  private final ItemCacheDir myIndexDir;
+  private final long myMaxSize;
+  private ExecutorService myExecutor;
+
+  private long mySize = -1; // unknown until first eviction check
+  private final Object mySizeLock = new Object();
+
+  public static synchronized TFSBaselineStore getInstance() {
+    if (ourInstance == null) {
+      ourInstance = new TFSBaselineStore(ItemCacheDir.getSystemDir("baselines"), MAX_STORE_SIZE);
+    }
+    return ourInstance;
+  }
+
+  public TFSBaselineStore(@NotNull File root, long maxSize) {
+    myBlobsDir = new File(root, BLOBS_DIR);
+    myIndexDir = new ItemCacheDir(new File(root, INDEX_DIR));
+    myMaxSize = maxSize;
+  }
+
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Captures content of the file as the baseline of given item version in background. The file may be modified in the meantime,
+   * so the content is stored only if it matches the hash of the item version or, if the hash is not known, the file is still read-only.
+   *
+   * @param hash MD5 of the item version content
+   */
+  public void captureLater(@NotNull final String serverUri,
+                           final int itemId,
+                           final int version,
+                           @Nullable final byte[] hash,
+                           @NotNull final File file) {
+    getExecutor().execute(() -> {
+      if (hash != null || !file.canWrite()) {
+        capture(serverUri, itemId, version, hash, file);
+      }
+    });
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (myExecutor == null) {
+      myExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS Baseline Store", 1);
+    }
+    return myExecutor;
+  }
+
+  /**
+   * Captures content of the file as the baseline of given item version. Errors are logged and ignored: baseline is just a cache.
+   */
+  public void capture(@NotNull String serverUri, int itemId, int version, @NotNull File file) {
+    capture(serverUri, itemId, version, null, file);
+  }
+
+  /**
+   * @param hash MD5 of the item version content, if the file content doesn't match it nothing is stored
+   */
+  public void capture(@NotNull String serverUri, int itemId, int version, @Nullable byte[] hash, @NotNull File file) {
+    if (!file.isFile() || file.length() > MAX_FILE_SIZE) {
+      return;
+    }
+    File indexFile = getIndexFile(serverUri, itemId, version);
+    if (find(serverUri, itemId, version) != null) {
+      return;
+    }
+    try {
+      String blobHash = storeBlob(file, hash);
+      if (blobHash != null) {
+        writeIndex(indexFile, blobHash);
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to capture baseline of " + file, e);
+    }
+  }
+
+  @Nullable
+  public TFSContentSource find(@NotNull String serverUri, int itemId, int version) {
+    final File indexFile = getIndexFile(serverUri, itemId, version);
+    if (!indexFile.exists()) {
+      return null;
+    }
+    String hash = readIndex(indexFile);
+    final File blob = getBlobFile(hash);
+    if (hash.isEmpty() || !blob.exists()) {
+      // evicted
+      indexFile.delete();
+      return null;
+    }
+    return new TFSContentSource() {
+      @NotNull
+      @Override
+      public byte[] loadContent() throws IOException {
+        blob.setLastModified(System.currentTimeMillis()); // recently used
+        try (InputStream stream = new GZIPInputStream(new FileInputStream(blob))) {
+          return stream.readAllBytes();
+        }
+      }
+    };
+  }
+
+  /**
+   * @return MD5 of the baseline content as a hex string or null if there's no baseline for the item version
+   */
+  @Nullable
+  public String getHash(@NotNull String serverUri, int itemId, int version) {
+    File indexFile = getIndexFile(serverUri, itemId, version);
+    if (!indexFile.exists()) {
+      return null;
+    }
+    String hash = readIndex(indexFile);
+    return hash.isEmpty() ? null : hash;
+  }
+
+  /**
+   * @return hash of the stored content or null if it doesn't match the expected one
+   */
+  @Nullable
+  private String storeBlob(File file, @Nullable byte[] expectedHash) throws IOException {
+    myBlobsDir.mkdirs();
+    File tmpFile = File.createTempFile("baseline", TMP_EXTENSION, myBlobsDir);
+    try {
+      MessageDigest digest = DigestUtil.md5();
+      try (InputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(file)), digest);
+           OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+        in.transferTo(out);
+      }
+      byte[] contentHash = digest.digest();
+      if (expectedHash != null && !Arrays.equals(expectedHash, contentHash)) {
+        LOG.debug("Not capturing baseline of modified " + file);
+        return null;
+      }
+      String hash = StringUtil.toHexString(contentHash);
+      File blob = getBlobFile(hash);
+      if (blob.exists()) {
+        // same content already stored for another item or version
+        blob.setLastModified(System.currentTimeMillis());
+      }
+      else {
+        long size = tmpFile.length();
+        Files.move(tmpFile.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        blobAdded(size);
+      }
+      return hash;
+    }
+    finally {
+      tmpFile.delete();
+    }
+  }
+
+  private void blobAdded(long size) {
+    synchronized (mySizeLock) {
+      if (mySize < 0) {
+        mySize = 0;
+        for (File blob : listBlobs()) {
+          mySize += blob.length();
+        }
+      }
+      else {
+        mySize += size;
+      }
+      if (mySize > myMaxSize) {
+        evict();
+      }
+    }
+  }
+
+  /**
+   * Deletes least recently used blobs until the store shrinks to 3/4 of its limit. Index entries referring to them are
+   * cleaned up lazily.
+   */
+  private void evict() {
+    List<File> blobs = listBlobs();
+    blobs.sort(Comparator.comparingLong(File::lastModified));
+    for (File blob : blobs) {
+      if (mySize <= myMaxSize * 3 / 4) {
+        break;
+      }
+      long length = blob.length();
+      if (blob.delete()) {
+        mySize -= length;
+      }
+    }
+  }
+
+  private List<File> listBlobs() {
+    File[] files = myBlobsDir.listFiles((dir, name) -> name.endsWith(BLOB_EXTENSION));
+    return files != null ? new ArrayList<>(Arrays.asList(files)) : new ArrayList<>();
+  }
+
+  private File getIndexFile(String serverUri, int itemId, int version) {
+    return myIndexDir.getFile(serverUri, itemId, version);
+  }
+
+  private File getBlobFile(String hash) {
+    return new File(myBlobsDir, hash + BLOB_EXTENSION);
+  }
+
+  private static String readIndex(File indexFile) {
+    try {
+      return new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.US_ASCII).trim();
+    }
+    catch (IOException e) {
+      return "";
+    }
+  }
+
+  private static void writeIndex(File indexFile, String hash) throws IOException {
+    ItemCacheDir.write(indexFile, out -> out.write(hash.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.revision;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Content of revisions recently loaded, shared by all the content revisions instead of each of them keeping its own copy.
+ * Total size of the content retained is limited, least recently used content goes first, and all of it is softly referenced
+ * so that it is given up under memory pressure. Evicted content is reloaded from the content store, not from the server.
+ */
+public class TFSContentCache {
+
+  private static final long MAX_SIZE = Long.getLong("org.jetbrains.tfsIntegration.contentCacheSize", 32 * 1024 * 1024);
+
+  private static final TFSContentCache ourInstance = new TFSContentCache(MAX_SIZE);
+
+  private final long myMaxSize;
+  private final LinkedHashMap<String, Entry> myEntries = new LinkedHashMap<>(16, 0.75f, true); // access order
+  private final ReferenceQueue<byte[]> myCollected = new ReferenceQueue<>();
+  private long mySize;
+  private long myHits;
+  private long myMisses;
+
+  private static class Entry extends SoftReference<byte[]> {
+    private final String myKey;
+    private final int mySize;
+
+    Entry(String key, byte[] content, ReferenceQueue<byte[]> queue) {
+      super(content, queue);
+      myKey = key;
+      mySize = content.length;
+    }
+  }
+
+  public static TFSContentCache getInstance() {
+    return ourInstance;
+  }
+
+  public TFSContentCache(long maxSize) {
+    myMaxSize = maxSize;
+  }
+
+  @Nullable
+  public synchronized byte[] get(@NotNull String serverUri, int itemId, int changeset) {
+    removeCollected();
+    Entry entry = myEntries.get(getKey(serverUri, itemId, changeset));
+    byte[] content = entry != null ? entry.get() : null;
+    if (content != null) {
+      myHits++;
+    }
+    else {
+      myMisses++;
+    }
+    return content;
+  }
+
+  public synchronized void put(@NotNull String serverUri, int itemId, int changeset, @NotNull byte[] content) {
+    removeCollected();
+    if (content.length > myMaxSize) {
+      return;
+    }
+    String key = getKey(serverUri, itemId, changeset);
+    Entry previous = myEntries.put(key, new Entry(key, content, myCollected));
+    if (previous != null) {
+      mySize -= previous.mySize;
+    }
+    mySize += content.length;
+
+    Iterator<Entry> eldest = myEntries.values().iterator();
+    while (mySize > myMaxSize && eldest.hasNext()) {
+      mySize -= eldest.next().mySize;
+      eldest.remove();
+    }
+  }
+
+  public synchronized void clear() {
+    myEntries.clear();
+    mySize = 0;
+  }
+
+  /**
+   * @return size in bytes of the content retained
+   */
+  public synchronized long getRetainedSize() {
+    removeCollected();
+    return mySize;
+  }
+
+  public synchronized int getEntryCount() {
+    removeCollected();
+    return myEntries.size();
+  }
+
+  public synchronized long getHitCount() {
+    return myHits;
+  }
+
+  /**
+   * @return number of requests that had to load the content from the content store or the server
+   */
+  public synchronized long getMissCount() {
+    return myMisses;
+  }
+
+  private void removeCollected() {
+    Entry entry;
+    while ((entry = (Entry)myCollected.poll()) != null) {
+      // entry may have been evicted or replaced already
+      if (myEntries.remove(entry.myKey, entry)) {
+        mySize -= entry.mySize;
+      }
+    }
+  }
+
+  private static String getKey(String serverUri, int itemId, int changeset) {
+    return serverUri + "/" + itemId + "/" + changeset;
+  }
+
+  @Override
+  public String toString() {
+    return "retained=" + getRetainedSize() + ", entries=" + getEntryCount() + ", hits=" + getHitCount() + ", misses=" + getMissCount();
+  }
+}
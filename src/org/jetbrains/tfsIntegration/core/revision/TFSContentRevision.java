@@ -46,9 +46,6 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
 
   private final ServerInfo myServer;
 
-  @Nullable
-  private byte[] myContent;
-
   protected TFSContentRevision(final Project project, final ServerInfo server) {
     myProject = project;
     myServer = server;
@@ -144,6 +141,42 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
     };
   }
 
+  public static TFSContentRevision create(final Project project,
+                                          final @NotNull WorkspaceInfo workspace,
+                                          final @NotNull FilePath localPath,
+                                          final int changeset,
+                                          final @NotNull Item item) {
+    return new TFSContentRevision(project, workspace.getServer()) {
+      @Override
+      @NotNull
+      protected Item getItem() {
+        return item;
+      }
+
+      @Override
+      protected int getItemId() {
+        return item.getItemid();
+      }
+
+      @Override
+      protected int getChangeset() {
+        return changeset;
+      }
+
+      @Override
+      @NotNull
+      public FilePath getFile() {
+        return localPath;
+      }
+
+      @Override
+      @NotNull
+      public VcsRevisionNumber getRevisionNumber() {
+        return new TfsRevisionNumber(changeset, item.getItemid());
+      }
+    };
+  }
+
   public static TFSContentRevision create(final Project project, final @NotNull FilePath localPath, final int changeset)
     throws TfsException {
     final Collection<WorkspaceInfo> workspaces = Workstation.getInstance().findWorkspaces(localPath, false, project);
@@ -198,30 +231,37 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
     return new String(getContentAsBytes(), getFile().getCharset(myProject));
   }
 
+  /**
+   * Content is not kept by the revision itself: changes of the changelists browsed may hold a lot of revisions for a long time.
+   */
   @Nullable
   @Override
   public byte[] getContentAsBytes() throws VcsException {
-    if (myContent == null) {
-      try {
-        myContent = loadContent();
-      }
-      catch (TfsException e) {
-        throw new VcsException(e);
-      }
-      catch (IOException e) {
-        throw new VcsException(e);
+    try {
+      String serverUri = myServer.getUri().toASCIIString();
+      int itemId = getItemId();
+      int changeset = getChangeset();
+      byte[] content = TFSContentCache.getInstance().get(serverUri, itemId, changeset);
+      if (content == null) {
+        content = loadContent(itemId, changeset);
+        if (content != null) {
+          TFSContentCache.getInstance().put(serverUri, itemId, changeset, content);
+        }
       }
+      return content;
+    }
+    catch (TfsException e) {
+      throw new VcsException(e);
+    }
+    catch (IOException e) {
+      throw new VcsException(e);
     }
-    return myContent;
   }
 
   @Nullable
-  private byte[] loadContent() throws TfsException, IOException {
-    int itemId = getItemId();
-    int changeset = getChangeset();
-
-    TFSContentStore store = TFSContentStoreFactory.find(myServer.getUri().toASCIIString(), itemId, changeset);
-    if (store == null) {
+  private byte[] loadContent(int itemId, int changeset) throws TfsException, IOException {
+    TFSContentSource source = TFSContentStoreFactory.find(myServer.getUri().toASCIIString(), itemId, changeset);
+    if (source == null) {
       Item item = getItem();
       if (item == null) {
         return null;
@@ -234,7 +274,7 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
       final String downloadUrl = item.getDurl();
       TFSVcs.assertTrue(downloadUrl != null, "Item without download URL: " + item.getItem());
 
-      store = TFSContentStoreFactory.create(myServer.getUri().toASCIIString(), itemId, changeset);
+      TFSContentStore store = TFSContentStoreFactory.create(myServer.getUri().toASCIIString(), itemId, changeset);
       final Ref<TfsException> exception = new Ref<>();
       store.saveContent(new TfsFileUtil.ContentWriter() {
         @Override
@@ -250,8 +290,9 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
       if (!exception.isNull()) {
         throw exception.get();
       }
+      source = store;
     }
-    return store.loadContent();
+    return source.loadContent();
   }
 
   @NonNls
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.revision;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+
+import java.io.IOException;
+
+/**
+ * Content of an item revision available locally, which may be read-only
+ */
+public interface TFSContentSource {
+
+  @NotNull
+  byte[] loadContent() throws TfsException, IOException;
+}
@@ -16,16 +16,12 @@
 
 package org.jetbrains.tfsIntegration.core.revision;
 
-import org.jetbrains.annotations.NotNull;
 import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import java.io.IOException;
 
-public interface TFSContentStore {
+public interface TFSContentStore extends TFSContentSource {
 
   void saveContent(TfsFileUtil.ContentWriter contentWriter) throws TfsException, IOException;
-
-  @NotNull
-  byte[] loadContent() throws TfsException, IOException;
 }
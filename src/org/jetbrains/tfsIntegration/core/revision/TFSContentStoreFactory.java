@@ -27,8 +27,12 @@ public class TFSContentStoreFactory {
   }
 
   @Nullable
-  public static TFSContentStore find(final String serverUri, final int itemId, final int revision) throws IOException {
-    return TFSTmpFileStore.find(serverUri, itemId, revision);
+  public static TFSContentSource find(final String serverUri, final int itemId, final int revision) throws IOException {
+    TFSContentSource source = TFSTmpFileStore.find(serverUri, itemId, revision);
+    if (source == null && TFSBaselineStore.isEnabled()) {
+      source = TFSBaselineStore.getInstance().find(serverUri, itemId, revision);
+    }
+    return source;
   }
 }
 
@@ -19,13 +19,13 @@ package org.jetbrains.tfsIntegration.core.tfs;
 import com.intellij.openapi.util.io.StreamUtil;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.history.VcsFileRevision;
+import com.intellij.openapi.vcs.history.VcsRevisionNumber;
 import com.intellij.util.diff.Diff;
 import com.intellij.util.diff.FilesTooBigForDiffException;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSFileRevision;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 
 public class AnnotationBuilder {
 
@@ -33,6 +33,14 @@ public class AnnotationBuilder {
     String getContent(TFSFileRevision revision) throws VcsException;
   }
 
+  public interface KnownAnnotations {
+    /**
+     * @return changesets the lines of the revision were introduced in, null if the revision has not been annotated before
+     */
+    @Nullable
+    int[] getLineChangesets(TFSFileRevision revision);
+  }
+
   private final String myAnnotatedContent;
   private final VcsFileRevision[] myLineRevisions;
 
@@ -41,14 +49,22 @@ public class AnnotationBuilder {
   // and may be null if this line in old file does not appear in annotated file.
   private final List<Integer> myLineNumbers;
 
+  public AnnotationBuilder(List<TFSFileRevision> revisions, ContentProvider contentProvider) throws VcsException {
+    this(revisions, contentProvider, null);
+  }
+
   /**
-   * @param revisions       sorted list containing revisions of the annotated file.
-   *                        First element of the list (with zero index) must contain revision which is being annotated,
-   *                        other list elements (if any) must give all file revisions which are older than the annotated one.
-   * @param contentProvider delegate providing file content. {@link ContentProvider#getContent(TFSFileRevision)} method of provided object
-   *                        is called only for specified {@code revisions}
+   * @param revisions        sorted list containing revisions of the annotated file.
+   *                         First element of the list (with zero index) must contain revision which is being annotated,
+   *                         other list elements (if any) must give all file revisions which are older than the annotated one.
+   * @param contentProvider  delegate providing file content. {@link ContentProvider#getContent(TFSFileRevision)} method of provided object
+   *                         is called only for specified {@code revisions}
+   * @param knownAnnotations annotations of the revisions computed before, if any. Revisions older than the latest one
+   *                         annotated before are not analysed
    */
-  public AnnotationBuilder(List<TFSFileRevision> revisions, ContentProvider contentProvider) throws VcsException {
+  public AnnotationBuilder(List<TFSFileRevision> revisions,
+                           ContentProvider contentProvider,
+                           @Nullable KnownAnnotations knownAnnotations) throws VcsException {
     if (revisions == null || revisions.size() < 1) {
       throw new IllegalArgumentException();
     }
@@ -64,7 +80,15 @@ public class AnnotationBuilder {
       myLineNumbers.add(i);
     }
 
-    while (iterator.hasNext()) {
+    final Map<Integer, TFSFileRevision> changeset2Revision = new HashMap<>();
+    if (knownAnnotations != null) {
+      for (TFSFileRevision each : revisions) {
+        changeset2Revision.put(each.getRevisionNumber().getValue(), each);
+      }
+    }
+
+    boolean annotated = annotateKnown(revision, lines.length, knownAnnotations, changeset2Revision);
+    while (!annotated && iterator.hasNext()) {
       final TFSFileRevision previousRevision = iterator.next();
       final String previousContent = contentProvider.getContent(previousRevision);
       final String[] previousLines = splitLines(previousContent);
@@ -82,11 +106,35 @@ public class AnnotationBuilder {
       }
       lines = previousLines;
       revision = previousRevision;
+      annotated = annotateKnown(revision, lines.length, knownAnnotations, changeset2Revision);
     }
 
     fillAllNotAnnotated(revisions.get(revisions.size() - 1));
   }
 
+  /**
+   * Lines of the old revision not annotated yet get the revisions they have in its known annotation.
+   *
+   * @return true if the old revision has been annotated before
+   */
+  private boolean annotateKnown(final TFSFileRevision oldRevision,
+                                final int oldLinesCount,
+                                @Nullable KnownAnnotations knownAnnotations,
+                                final Map<Integer, TFSFileRevision> changeset2Revision) {
+    final int[] lineChangesets = knownAnnotations != null ? knownAnnotations.getLineChangesets(oldRevision) : null;
+    if (lineChangesets == null || lineChangesets.length != oldLinesCount) {
+      return false;
+    }
+    for (int line = 0; line < oldLinesCount; line++) {
+      Integer origLine = myLineNumbers.get(line);
+      if (origLine != null && myLineRevisions[origLine.intValue()] == null) {
+        // revisions beyond the history limit are not known, such lines are attributed to the oldest revision known
+        myLineRevisions[origLine.intValue()] = changeset2Revision.get(lineChangesets[line]);
+      }
+    }
+    return true;
+  }
+
   private void annotateAll(final Diff.Change changesList, final VcsFileRevision revision) {
     Diff.Change change = changesList;
     while (change != null) {
@@ -179,4 +227,15 @@ public class AnnotationBuilder {
   public VcsFileRevision[] getLineRevisions() {
     return myLineRevisions;
   }
+
+  /**
+   * @return changesets the lines of the annotated revision were introduced in, to be passed as known annotation later
+   */
+  public int[] getLineChangesets() {
+    int[] result = new int[myLineRevisions.length];
+    for (int i = 0; i < myLineRevisions.length; i++) {
+      result[i] = ((VcsRevisionNumber.Int)myLineRevisions[i].getRevisionNumber()).getValue();
+    }
+    return result;
+  }
 }
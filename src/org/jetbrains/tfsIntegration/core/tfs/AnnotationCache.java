@@ -0,0 +1,117 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Persistent annotations of item versions: for every line, the changeset it was introduced in. Annotation of a newer version
+ * starts from the one of the latest version annotated before, so only the changes made since then are compared.
+ */
+public class AnnotationCache {
+
+  private static final Logger LOG = Logger.getInstance(AnnotationCache.class.getName());
+
+  private static final boolean ENABLED = !Boolean.getBoolean("org.jetbrains.tfsIntegration.disableAnnotationCache");
+
+  private static final int FORMAT_VERSION = 1;
+
+  private static AnnotationCache ourInstance;
+
+  private final ItemCacheDir myDir;
+
+  public static synchronized AnnotationCache getInstance() {
+    if (ourInstance == null) {
+      ourInstance = new AnnotationCache(ItemCacheDir.getSystemDir("annotations"));
+    }
+    return ourInstance;
+  }
+
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  public AnnotationCache(@NotNull File root) {
+    myDir = new ItemCacheDir(root);
+  }
+
+  /**
+   * @return changesets the lines of the item version were introduced in, null if the version has not been annotated
+   */
+  @Nullable
+  public int[] get(@NotNull String serverUri, int itemId, int changeset) {
+    File file = myDir.getFile(serverUri, itemId, changeset);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      int[] result = new int[in.readInt()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = in.readInt();
+      }
+      return result;
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+      file.delete();
+      return null;
+    }
+  }
+
+  /**
+   * Only the latest annotated version of an item is kept, since annotation of any newer version starts from it. An older version
+   * than the one kept is not stored then. Errors are logged and ignored: annotation can always be computed again.
+   */
+  public void put(@NotNull String serverUri, int itemId, int changeset, @NotNull int[] lineChangesets) {
+    List<Integer> versions = myDir.getVersions(serverUri, itemId);
+    for (int version : versions) {
+      if (version > changeset) {
+        return;
+      }
+    }
+    File file = myDir.getFile(serverUri, itemId, changeset);
+    try {
+      ItemCacheDir.write(file, stream -> {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(lineChangesets.length);
+        for (int lineChangeset : lineChangesets) {
+          out.writeInt(lineChangeset);
+        }
+        out.flush();
+      });
+    }
+    catch (IOException e) {
+      LOG.info("Failed to store annotation of " + file, e);
+      return;
+    }
+    for (int version : versions) {
+      if (version < changeset) {
+        FileUtil.delete(myDir.getFile(serverUri, itemId, version));
+      }
+    }
+  }
+}
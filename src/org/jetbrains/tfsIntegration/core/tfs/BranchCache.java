@@ -0,0 +1,248 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
+import org.jetbrains.tfsIntegration.core.tfs.version.LatestVersionSpec;
+import org.jetbrains.tfsIntegration.core.tfs.version.VersionSpecBase;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Branch hierarchies and merge candidates of a single server. Both are expensive to query on large trees and change only when
+ * changesets are checked in, so instead of repeating the query we ask for the latest changeset, which is a single cheap request.
+ * Branch hierarchies are dropped whenever the server gets a new changeset. Merge candidates depend on the source and the target
+ * only: if just the source got new changesets, they are fetched from history and appended, otherwise the query is repeated.
+ * Pending changes of the workspace drop merge candidates (pending merges are excluded from them), a check-in drops everything.
+ */
+public class BranchCache {
+
+  // latest changeset is asked for at most this often, so that switching between branches back and forth costs nothing
+  private static final long CHECK_INTERVAL = Long.getLong("org.jetbrains.tfsIntegration.branchCacheCheckInterval", 10000);
+
+  /**
+   * Server queries the cache is backed by
+   */
+  public interface Server {
+    int getLatestChangeset(String workspaceName, String workspaceOwner, String serverPath, Object projectOrComponent, String progressTitle)
+      throws TfsException;
+
+    Collection<BranchRelative> queryBranches(String itemServerPath, VersionSpec versionSpec, Object projectOrComponent, String progressTitle)
+      throws TfsException;
+
+    Collection<MergeCandidate> queryMergeCandidates(String workspaceName,
+                                                    String ownerName,
+                                                    String sourceServerPath,
+                                                    String targetServerPath,
+                                                    Object projectOrComponent,
+                                                    String progressTitle) throws TfsException;
+
+    List<Changeset> queryHistory(String workspaceName,
+                                 String workspaceOwner,
+                                 ItemSpec itemSpec,
+                                 String user,
+                                 VersionSpec itemVersion,
+                                 VersionSpec versionFrom,
+                                 VersionSpec versionTo,
+                                 int maxCount,
+                                 Object projectOrComponent,
+                                 String progressTitle) throws TfsException;
+  }
+
+  private final Server myServer;
+  private final long myCheckInterval;
+  private final Map<Pair<String, String>, Collection<BranchRelative>> myBranches = new ConcurrentHashMap<>(); // (lower case path, version)
+  private final Map<Pair<String, String>, Candidates> myCandidates = new ConcurrentHashMap<>(); // (lower case source, lower case target)
+  private final Map<String, LatestChangeset> myLatestChangesets = new ConcurrentHashMap<>(); // lower case path -> latest changeset
+  private volatile int myBranchesChangeset;
+
+  private static class Candidates {
+    private final List<MergeCandidate> myCandidates;
+    private final int mySourceChangeset;
+    private final int myTargetChangeset;
+
+    Candidates(List<MergeCandidate> candidates, int sourceChangeset, int targetChangeset) {
+      myCandidates = Collections.unmodifiableList(candidates);
+      mySourceChangeset = sourceChangeset;
+      myTargetChangeset = targetChangeset;
+    }
+  }
+
+  private static class LatestChangeset {
+    private final int myId;
+    private final long myCheckedTime = System.currentTimeMillis();
+
+    LatestChangeset(int id) {
+      myId = id;
+    }
+  }
+
+  BranchCache(@NotNull Server server) {
+    this(server, CHECK_INTERVAL);
+  }
+
+  /**
+   * @param checkInterval how long latest changesets are considered up to date, ms
+   */
+  public BranchCache(@NotNull Server server, long checkInterval) {
+    myServer = server;
+    myCheckInterval = checkInterval;
+  }
+
+  @NotNull
+  public Collection<BranchRelative> getBranches(@NotNull String serverPath,
+                                                @NotNull VersionSpecBase version,
+                                                Object projectOrComponent,
+                                                String progressTitle) throws TfsException {
+    int latest = getLatestChangeset(null, null, VersionControlPath.ROOT_FOLDER, projectOrComponent, progressTitle);
+    if (latest != myBranchesChangeset) {
+      myBranches.clear();
+      myBranchesChangeset = latest;
+    }
+
+    Pair<String, String> key = Pair.create(StringUtil.toLowerCase(serverPath), version.getPresentableString());
+    Collection<BranchRelative> branches = myBranches.get(key);
+    if (branches == null) {
+      branches = Collections.unmodifiableCollection(myServer.queryBranches(serverPath, version, projectOrComponent, progressTitle));
+      myBranches.put(key, branches);
+    }
+    return branches;
+  }
+
+  @NotNull
+  public List<MergeCandidate> getMergeCandidates(@NotNull WorkspaceInfo workspace,
+                                                 @NotNull String sourcePath,
+                                                 @NotNull String targetPath,
+                                                 Object projectOrComponent,
+                                                 String progressTitle) throws TfsException {
+    return getMergeCandidates(workspace.getName(), workspace.getOwnerName(), sourcePath, targetPath, projectOrComponent, progressTitle);
+  }
+
+  @NotNull
+  public List<MergeCandidate> getMergeCandidates(@NotNull String workspaceName,
+                                                 @NotNull String workspaceOwner,
+                                                 @NotNull String sourcePath,
+                                                 @NotNull String targetPath,
+                                                 Object projectOrComponent,
+                                                 String progressTitle) throws TfsException {
+    int sourceChangeset = getLatestChangeset(workspaceName, workspaceOwner, sourcePath, projectOrComponent, progressTitle);
+    int targetChangeset = getLatestChangeset(workspaceName, workspaceOwner, targetPath, projectOrComponent, progressTitle);
+
+    Pair<String, String> key = Pair.create(StringUtil.toLowerCase(sourcePath), StringUtil.toLowerCase(targetPath));
+    Candidates cached = myCandidates.get(key);
+    if (cached != null && cached.myTargetChangeset == targetChangeset) {
+      if (cached.mySourceChangeset == sourceChangeset) {
+        return cached.myCandidates;
+      }
+      if (cached.mySourceChangeset < sourceChangeset) {
+        List<MergeCandidate> newCandidates =
+          getNewCandidates(workspaceName, workspaceOwner, sourcePath, cached.mySourceChangeset, sourceChangeset, projectOrComponent,
+                           progressTitle);
+        if (newCandidates != null) {
+          List<MergeCandidate> candidates = new ArrayList<>(cached.myCandidates);
+          candidates.addAll(newCandidates);
+          Candidates updated = new Candidates(candidates, sourceChangeset, targetChangeset);
+          myCandidates.put(key, updated);
+          return updated.myCandidates;
+        }
+      }
+    }
+
+    Candidates loaded = new Candidates(new ArrayList<>(
+      myServer.queryMergeCandidates(workspaceName, workspaceOwner, sourcePath, targetPath, projectOrComponent, progressTitle)),
+                                      sourceChangeset, targetChangeset);
+    myCandidates.put(key, loaded);
+    return loaded.myCandidates;
+  }
+
+  /**
+   * Merge candidates take pending merges of the workspace into account
+   */
+  public void workspaceChanged() {
+    myCandidates.clear();
+  }
+
+  /**
+   * Check-in makes the latest changesets known outdated. A merge checked in removes merge candidates and a branch checked in
+   * changes branch hierarchies, so they are dropped as well instead of waiting for the next check of the latest changeset.
+   */
+  public void checkedIn() {
+    clear();
+  }
+
+  public void clear() {
+    myBranches.clear();
+    myCandidates.clear();
+    myLatestChangesets.clear();
+  }
+
+  /**
+   * Changesets checked in to the source since it was last queried are new merge candidates unless they merge something
+   * themselves: those may bring changes from the target, which is up to the server to sort out.
+   *
+   * @return new candidates in ascending order, null if the query should be repeated
+   */
+  private List<MergeCandidate> getNewCandidates(@NotNull String workspaceName,
+                                                @NotNull String workspaceOwner,
+                                                @NotNull String sourcePath,
+                                                int fromChangeset,
+                                                int toChangeset,
+                                                Object projectOrComponent,
+                                                String progressTitle) throws TfsException {
+    List<Changeset> changesets =
+      myServer.queryHistory(workspaceName, workspaceOwner, VersionControlServer.createItemSpec(sourcePath, RecursionType.Full), null,
+                            LatestVersionSpec.INSTANCE, new ChangesetVersionSpec(fromChangeset + 1), new ChangesetVersionSpec(toChangeset), 0,
+                            projectOrComponent, progressTitle);
+    List<MergeCandidate> result = new ArrayList<>(changesets.size());
+    for (Changeset changeset : changesets) {
+      if (changeset.getChanges() != null && changeset.getChanges().getChange() != null) {
+        for (Change change : changeset.getChanges().getChange()) {
+          if (new ChangeTypeMask(change.getType()).contains(ChangeType_type0.Merge)) {
+            return null;
+          }
+        }
+      }
+      MergeCandidate candidate = new MergeCandidate();
+      candidate.setChangeset(changeset);
+      candidate.setPartial(false);
+      result.add(candidate);
+    }
+    // history goes latest first
+    Collections.reverse(result);
+    return result;
+  }
+
+  private int getLatestChangeset(String workspaceName,
+                                 String workspaceOwner,
+                                 @NotNull String serverPath,
+                                 Object projectOrComponent,
+                                 String progressTitle) throws TfsException {
+    String key = StringUtil.toLowerCase(serverPath);
+    LatestChangeset latest = myLatestChangesets.get(key);
+    if (latest == null || System.currentTimeMillis() - latest.myCheckedTime >= myCheckInterval) {
+      latest = new LatestChangeset(myServer.getLatestChangeset(workspaceName, workspaceOwner, serverPath, projectOrComponent, progressTitle));
+      myLatestChangesets.put(key, latest);
+    }
+    return latest.myId;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+/**
+ * Chooses between TFS proxy and the server itself for downloads by the time they took recently. Size of the next file is not known
+ * in advance, so routes are compared by the time expected for a file of average size: the latency measured on small files plus
+ * the size divided by the throughput measured on large ones. Every so often the other route is taken to keep its figures current.
+ */
+public class DownloadRouteSelector {
+
+  private static final int PROBE_INTERVAL = Integer.getInteger("org.jetbrains.tfsIntegration.downloadRouteProbeInterval", 20);
+
+  // downloads smaller than this take mostly latency, larger ones tell the throughput
+  private static final long SMALL_DOWNLOAD_SIZE = 64 * 1024;
+
+  // weight of the latest download in the averages
+  private static final double WEIGHT = 0.2;
+
+  private final int myProbeInterval;
+  private final Route myProxy = new Route();
+  private final Route myServer = new Route();
+  private double myAverageSize = -1;
+  private int myDownloadCount;
+
+  private static class Route {
+    private double myLatency = -1; // ms
+    private double myThroughput = -1; // bytes per ms
+
+    void downloaded(long size, long time) {
+      if (size < SMALL_DOWNLOAD_SIZE) {
+        myLatency = average(myLatency, time);
+      }
+      else {
+        myThroughput = average(myThroughput, (double)size / Math.max(time, 1));
+      }
+    }
+
+    /**
+     * @return expected time of the download in ms, -1 if not known yet
+     */
+    double getExpectedTime(double size) {
+      if (myLatency < 0 && myThroughput < 0) {
+        return -1;
+      }
+      return Math.max(myLatency, 0) + (myThroughput > 0 ? size / myThroughput : 0);
+    }
+
+    @Override
+    public String toString() {
+      return "latency=" + (long)myLatency + " ms, throughput=" + (long)myThroughput + " bytes/ms";
+    }
+  }
+
+  DownloadRouteSelector() {
+    this(PROBE_INTERVAL);
+  }
+
+  public DownloadRouteSelector(int probeInterval) {
+    myProbeInterval = probeInterval;
+  }
+
+  /**
+   * Called for every download that may go via proxy
+   */
+  public synchronized boolean shouldUseProxy() {
+    myDownloadCount++;
+    double proxyTime = myProxy.getExpectedTime(myAverageSize);
+    if (proxyTime < 0) {
+      return true;
+    }
+    boolean probe = myProbeInterval > 0 && myDownloadCount % myProbeInterval == 0;
+    double serverTime = myServer.getExpectedTime(myAverageSize);
+    if (serverTime < 0) {
+      return !probe;
+    }
+    return proxyTime <= serverTime != probe;
+  }
+
+  public synchronized void downloaded(boolean viaProxy, long size, long time) {
+    myAverageSize = average(myAverageSize, size);
+    (viaProxy ? myProxy : myServer).downloaded(size, time);
+  }
+
+  private static double average(double average, double value) {
+    return average < 0 ? value : average + WEIGHT * (value - average);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "proxy: " + myProxy + "; server: " + myServer + "; average size=" + (long)myAverageSize;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Item;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ItemType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Folder listings of a single server, shared by all the server tree browsers. Listings expire after a configurable time
+ * and are loaded only once even if requested concurrently: a caller asking for a listing being loaded waits for it.
+ * All the listings are dropped after a check-in to the server.
+ */
+public class FolderListingCache {
+
+  private static final Logger LOG = Logger.getInstance(FolderListingCache.class.getName());
+
+  private static final long TTL = Long.getLong("org.jetbrains.tfsIntegration.folderListingTtl", 60000);
+  private static final int MAX_PREFETCHED_FOLDERS = Integer.getInteger("org.jetbrains.tfsIntegration.maxPrefetchedFolders", 64);
+  private static final long WAIT_INTERVAL = 100;
+
+  private final VersionControlServer myServer;
+  private final Map<Pair<String, Boolean>, Listing> myListings = new ConcurrentHashMap<>(); // (lower case path, folders only) -> listing
+
+  private static class Listing {
+    private final CompletableFuture<List<Item>> myItems = new CompletableFuture<>();
+    private volatile long myLoadedTime;
+
+    void loaded(List<Item> items) {
+      myLoadedTime = System.currentTimeMillis();
+      myItems.complete(Collections.unmodifiableList(items));
+    }
+
+    boolean isLoaded() {
+      return myItems.isDone() && !myItems.isCompletedExceptionally();
+    }
+
+    boolean isExpired() {
+      return myItems.isDone() && System.currentTimeMillis() - myLoadedTime > TTL;
+    }
+  }
+
+  FolderListingCache(@NotNull VersionControlServer server) {
+    myServer = server;
+  }
+
+  /**
+   * @return children of the folder, from the cache if not expired
+   */
+  @NotNull
+  public List<Item> getChildItems(@NotNull String path, boolean foldersOnly, Object projectOrComponent, String progressTitle)
+    throws TfsException {
+    if (foldersOnly) {
+      // full listing is good enough
+      Listing all = myListings.get(getKey(path, false));
+      if (all != null && all.isLoaded() && !all.isExpired()) {
+        return ContainerUtil.filter(all.myItems.getNow(null), item -> item.getType() == ItemType.Folder);
+      }
+    }
+
+    Pair<String, Boolean> key = getKey(path, foldersOnly);
+    while (true) {
+      Listing listing = new Listing();
+      Listing current = claim(key, listing);
+      if (current != listing) {
+        List<Item> items = await(current);
+        if (items != null) {
+          return items;
+        }
+        // failed to load by someone else, try again
+        continue;
+      }
+
+      boolean loaded = false;
+      try {
+        listing.loaded(myServer.getChildItems(path, foldersOnly, projectOrComponent, progressTitle));
+        loaded = true;
+        return listing.myItems.getNow(null);
+      }
+      finally {
+        if (!loaded) {
+          discard(key, listing);
+        }
+      }
+    }
+  }
+
+  /**
+   * Asynchronously loads listings of the given folders, all in a single request. Folders which are already cached or being
+   * loaded are skipped. Errors are ignored since the listings will be requested again when needed.
+   */
+  public void prefetch(@NotNull Collection<String> paths, final boolean foldersOnly, final Object projectOrComponent) {
+    final Map<String, Listing> toLoad = new LinkedHashMap<>();
+    for (String path : paths) {
+      if (toLoad.size() >= MAX_PREFETCHED_FOLDERS) {
+        break;
+      }
+      Listing listing = new Listing();
+      if (claim(getKey(path, foldersOnly), listing) == listing) {
+        toLoad.put(path, listing);
+      }
+    }
+    if (toLoad.isEmpty()) {
+      return;
+    }
+
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        Map<String, List<Item>> result = myServer.getChildItems(toLoad.keySet(), foldersOnly, projectOrComponent, null);
+        for (Map.Entry<String, Listing> entry : toLoad.entrySet()) {
+          entry.getValue().loaded(result.get(entry.getKey()));
+        }
+      }
+      catch (TfsException e) {
+        LOG.debug(e);
+      }
+      catch (ProcessCanceledException e) {
+        // ignore
+      }
+      finally {
+        for (Map.Entry<String, Listing> entry : toLoad.entrySet()) {
+          if (!entry.getValue().isLoaded()) {
+            discard(getKey(entry.getKey(), foldersOnly), entry.getValue());
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Called after a check-in. Listings at latest version change only then, but renamed and deleted items also affect folders other
+   * than parents of the checked in items, so all of them are dropped.
+   */
+  public void clear() {
+    myListings.clear();
+  }
+
+  /**
+   * @return the listing to be used: either the given one, which the caller must then load, or the one already cached or being loaded
+   */
+  private Listing claim(Pair<String, Boolean> key, Listing listing) {
+    return myListings.compute(key, (k, current) -> current == null || current.isExpired() ? listing : current);
+  }
+
+  private void discard(Pair<String, Boolean> key, Listing listing) {
+    // remove before completion so that waiting callers don't get the failed listing again
+    myListings.remove(key, listing);
+    listing.myItems.completeExceptionally(new IllegalStateException("Folder listing not loaded"));
+  }
+
+  /**
+   * @return items or null if failed to load
+   */
+  @Nullable
+  private static List<Item> await(Listing listing) {
+    while (true) {
+      ProgressManager.checkCanceled();
+      try {
+        return listing.myItems.get(WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException e) {
+        // check for cancellation and continue waiting
+      }
+      catch (ExecutionException e) {
+        return null;
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+    }
+  }
+
+  private static Pair<String, Boolean> getKey(String path, boolean foldersOnly) {
+    return Pair.create(StringUtil.toLowerCase(path), foldersOnly);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.services.authorization._03.Identity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.core.TFSBundle;
+import org.jetbrains.tfsIntegration.core.configuration.ServerConfiguration;
+import org.jetbrains.tfsIntegration.core.configuration.TFSConfigurationManager;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.webservice.TfsRequestManager;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Display names of users of a single server, kept in server configuration across sessions. Display names hardly ever change,
+ * so a known one is returned at once and, if it is older than the time to live, read again in background for the next time.
+ */
+public class IdentityCache {
+
+  private static final Logger LOG = Logger.getInstance(IdentityCache.class.getName());
+
+  private static final long TIME_TO_LIVE = Long.getLong("org.jetbrains.tfsIntegration.identityCacheTtl", 7 * 24 * 60 * 60 * 1000L);
+
+  private final VersionControlServer myServer;
+  private final URI myServerUri;
+  private final Set<String> myRefreshing = ConcurrentHashMap.newKeySet(); // lower case qualified user names
+
+  IdentityCache(@NotNull VersionControlServer server, @NotNull URI serverUri) {
+    myServer = server;
+    myServerUri = serverUri;
+  }
+
+  @NotNull
+  public String getDisplayName(@NotNull final String qualifiedUsername, final Object projectOrComponent, String progressTitle)
+    throws TfsException {
+    ServerConfiguration.CachedIdentity cached =
+      TFSConfigurationManager.getInstance().getCachedIdentity(myServerUri, qualifiedUsername);
+    if (cached == null) {
+      return readDisplayName(qualifiedUsername, projectOrComponent, progressTitle);
+    }
+
+    if (System.currentTimeMillis() - cached.time > TIME_TO_LIVE && myRefreshing.add(StringUtil.toLowerCase(qualifiedUsername))) {
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        try {
+          // never ask for credentials in background
+          if (!TfsRequestManager.shouldShowLoginDialog(myServerUri)) {
+            readDisplayName(qualifiedUsername, projectOrComponent, TFSBundle.message("loading.identity"));
+          }
+        }
+        catch (TfsException e) {
+          LOG.debug(e);
+        }
+        finally {
+          myRefreshing.remove(StringUtil.toLowerCase(qualifiedUsername));
+        }
+      });
+    }
+    return cached.displayName;
+  }
+
+  @NotNull
+  private String readDisplayName(@NotNull String qualifiedUsername, Object projectOrComponent, String progressTitle)
+    throws TfsException {
+    Identity identity = myServer.readIdentity(qualifiedUsername, projectOrComponent, progressTitle);
+    if (identity == null || identity.getDisplayName() == null) {
+      return qualifiedUsername;
+    }
+    TFSConfigurationManager.getInstance().cacheIdentity(myServerUri, qualifiedUsername, identity.getDisplayName());
+    return identity.getDisplayName();
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ThrowableConsumer;
+import com.intellij.util.io.DigestUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Directory of a persistent cache keyed by item version. Every server gets its own subdirectory named after the SHA-1 of its URI,
+ * items are spread over 256 subdirectories by id, and the file of an item version is named {@code <item id>.<version>}.
+ */
+public class ItemCacheDir {
+
+  @NonNls private static final String TMP_EXTENSION = ".tmp";
+
+  private final File myRoot;
+
+  /**
+   * @param name directory name under the IDE system directory
+   */
+  @NotNull
+  public static File getSystemDir(@NonNls @NotNull String name) {
+    return new File(PathManager.getSystemPath(), "tfs" + File.separator + name);
+  }
+
+  public ItemCacheDir(@NotNull File root) {
+    myRoot = root;
+  }
+
+  @NotNull
+  public File getFile(@NotNull String serverUri, int itemId, int version) {
+    return new File(getServerDir(serverUri), (itemId & 0xff) + File.separator + itemId + "." + version);
+  }
+
+  /**
+   * @return versions of the item there are files for
+   */
+  @NotNull
+  public List<Integer> getVersions(@NotNull String serverUri, int itemId) {
+    String prefix = itemId + ".";
+    String[] names = getFile(serverUri, itemId, 0).getParentFile().list();
+    if (names == null) {
+      return Collections.emptyList();
+    }
+    List<Integer> result = new ArrayList<>();
+    for (String name : names) {
+      if (name.startsWith(prefix)) {
+        int version = StringUtil.parseInt(name.substring(prefix.length()), -1);
+        if (version >= 0) {
+          result.add(version);
+        }
+      }
+    }
+    return result;
+  }
+
+  @NotNull
+  public File getServerDir(@NotNull String serverUri) {
+    return new File(myRoot, StringUtil.toHexString(DigestUtil.sha1().digest(serverUri.getBytes(StandardCharsets.UTF_8))));
+  }
+
+  /**
+   * Writes the file through a temporary one, so that readers never see it half written
+   */
+  public static void write(@NotNull File file, @NotNull ThrowableConsumer<? super OutputStream, IOException> writer) throws IOException {
+    File tmpFile = new File(file.getPath() + TMP_EXTENSION);
+    try {
+      file.getParentFile().mkdirs();
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+        writer.consume(out);
+      }
+      try {
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      tmpFile.delete();
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.CollectionFactory;
+import com.intellij.vcsUtil.VcsUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.TFSProgressUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects existence, size, timestamp and writability of local files in a single pass, reading all the attributes of a file
+ * with one bulk NIO call instead of separate queries (on Windows they are even served from the directory listing).
+ * Subdirectories are scanned in parallel, which hides the latency of network mounted sources.
+ */
+public class LocalFileScanner {
+
+  private static final Logger LOG = Logger.getInstance(LocalFileScanner.class.getName());
+
+  private static final int PARALLELISM = Integer.getInteger("org.jetbrains.tfsIntegration.scannerParallelism",
+                                                            Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+  private static final boolean DOS_ATTRIBUTES = FileSystems.getDefault().supportedFileAttributeViews().contains("dos");
+  private static final boolean POSIX_ATTRIBUTES = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+  private static final ExecutorService ourExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS Local File Scanner", PARALLELISM);
+
+  public static class FileState {
+    public final @NotNull String path; // system independent
+    public final boolean isDirectory;
+    public final long size;
+    public final long timestamp;
+    public final boolean isWritable;
+
+    FileState(@NotNull String path, boolean isDirectory, long size, long timestamp, boolean isWritable) {
+      this.path = path;
+      this.isDirectory = isDirectory;
+      this.size = size;
+      this.timestamp = timestamp;
+      this.isWritable = isWritable;
+    }
+
+    public FilePath getFilePath() {
+      return VcsUtil.getFilePath(path, isDirectory);
+    }
+  }
+
+  /**
+   * State of the scanned files at the moment of scanning. Files that did not exist are not present in the snapshot.
+   */
+  public static class Snapshot {
+    private final Map<String, FileState> myStates = CollectionFactory.createFilePathMap();
+    private final Map<String, List<FileState>> myRootStates = CollectionFactory.createFilePathMap();
+
+    @Nullable
+    public FileState get(@NotNull File file) {
+      return myStates.get(FileUtil.toSystemIndependentName(file.getPath()));
+    }
+
+    public boolean exists(@NotNull FilePath localPath) {
+      return get(localPath.getIOFile()) != null;
+    }
+
+    public boolean isWritableFile(@NotNull FilePath localPath) {
+      FileState state = get(localPath.getIOFile());
+      return state != null && !state.isDirectory && state.isWritable;
+    }
+
+    /**
+     * @return states of the root and all the files under it (if scanned recursively), empty if root does not exist or was not scanned
+     */
+    @NotNull
+    public List<FileState> getStates(@NotNull FilePath root) {
+      List<FileState> states = myRootStates.get(FileUtil.toSystemIndependentName(root.getPath()));
+      return states != null ? states : Collections.emptyList();
+    }
+  }
+
+  private LocalFileScanner() {
+  }
+
+  @NotNull
+  public static Snapshot scan(final @NotNull Collection<? extends ItemPath> roots,
+                              boolean recursive,
+                              final @Nullable ProgressIndicator progress) {
+    Map<String, Queue<FileState>> rootStates = new LinkedHashMap<>();
+    Scan scan = new Scan(progress);
+    for (ItemPath root : roots) {
+      Path rootFile = root.getLocalPath().getIOFile().toPath();
+      String rootPath = FileUtil.toSystemIndependentName(root.getLocalPath().getPath());
+      Queue<FileState> states = new ConcurrentLinkedQueue<>();
+      rootStates.put(rootPath, states);
+      FileState rootState = readState(rootFile, rootPath);
+      if (rootState != null) {
+        states.add(rootState);
+        if (recursive && rootState.isDirectory) {
+          scan.submit(rootFile, rootPath, states);
+        }
+      }
+    }
+
+    scan.await();
+    TFSProgressUtil.checkCanceled(progress);
+
+    Snapshot snapshot = new Snapshot();
+    for (Map.Entry<String, Queue<FileState>> entry : rootStates.entrySet()) {
+      List<FileState> states = new ArrayList<>(entry.getValue());
+      snapshot.myRootStates.put(entry.getKey(), states);
+      for (FileState state : states) {
+        snapshot.myStates.put(state.path, state);
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return null if file does not exist or can't be accessed
+   */
+  @Nullable
+  private static FileState readState(@NotNull Path file, @NotNull String path) {
+    try {
+      BasicFileAttributes attributes;
+      boolean writable;
+      if (DOS_ATTRIBUTES) {
+        DosFileAttributes dosAttributes = Files.readAttributes(file, DosFileAttributes.class);
+        attributes = dosAttributes;
+        writable = !dosAttributes.isReadOnly();
+      }
+      else if (POSIX_ATTRIBUTES) {
+        // files are made read-only by clearing write permissions, so the owner one is enough to tell
+        PosixFileAttributes posixAttributes = Files.readAttributes(file, PosixFileAttributes.class);
+        attributes = posixAttributes;
+        writable = posixAttributes.permissions().contains(PosixFilePermission.OWNER_WRITE);
+      }
+      else {
+        attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        writable = Files.isWritable(file);
+      }
+      return new FileState(path, attributes.isDirectory(), attributes.size(), attributes.lastModifiedTime().toMillis(), writable);
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+    catch (IOException | SecurityException e) {
+      LOG.debug(e);
+      return null;
+    }
+  }
+
+  /**
+   * Every directory is listed by a task of its own on the shared application pool. Tasks never wait for each other, so that
+   * the pool can't be starved: a task submits the subdirectories it finds and the scan is over once no task is left.
+   */
+  private static class Scan {
+    private final @Nullable ProgressIndicator myProgress;
+    // the scanning thread counts as a task until it starts waiting
+    private final AtomicInteger myPendingTasks = new AtomicInteger(1);
+    private final Semaphore myDone = new Semaphore(0);
+
+    Scan(@Nullable ProgressIndicator progress) {
+      myProgress = progress;
+    }
+
+    void submit(@NotNull Path directory, @NotNull String path, @NotNull Queue<FileState> result) {
+      myPendingTasks.incrementAndGet();
+      ourExecutor.execute(() -> {
+        try {
+          if (!TFSProgressUtil.isCanceled(myProgress)) {
+            scanDirectory(directory, path, result);
+          }
+        }
+        finally {
+          taskDone();
+        }
+      });
+    }
+
+    void await() {
+      if (taskDone()) {
+        return;
+      }
+      try {
+        while (!myDone.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+          TFSProgressUtil.checkCanceled(myProgress);
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProcessCanceledException(e);
+      }
+    }
+
+    private boolean taskDone() {
+      if (myPendingTasks.decrementAndGet() == 0) {
+        myDone.release();
+        return true;
+      }
+      return false;
+    }
+
+    private void scanDirectory(@NotNull Path directory, @NotNull String path, @NotNull Queue<FileState> result) {
+      try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+        for (Path child : children) {
+          String childPath = path.endsWith("/") ? path + child.getFileName() : path + "/" + child.getFileName();
+          FileState state = readState(child, childPath);
+          if (state == null) {
+            continue;
+          }
+          result.add(state);
+          // don't follow directory links to avoid cycles
+          if (state.isDirectory && !Files.isSymbolicLink(child)) {
+            submit(child, childPath, result);
+          }
+        }
+      }
+      catch (IOException | DirectoryIteratorException | SecurityException e) {
+        LOG.debug(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,571 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.LocalFilePath;
+import com.intellij.util.containers.CollectionFactory;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.DigestUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.revision.TFSBaselineStore;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Status table of a local workspace: versioned items with their pending changes as last reported by the server, along with content
+ * hash of the workspace versions of the files and size and modification time they had when last found unmodified. Lets the change
+ * provider detect edits, deletions and new files without querying the server.
+ * <p/>
+ * A subtree is synchronized with the server when its status is requested for the first time. Operations that change the
+ * workspace on the server invalidate the paths they affect (pending changes, get, undo) or the whole table (check in, merge, etc.),
+ * and so do new changesets noticed by the incoming changes poller; invalidated paths are synchronized again on demand. What is
+ * known about unmodified files is kept until then, so that the files don't have to be compared by content again.
+ */
+public class LocalWorkspaceState {
+  private static final Logger LOG = Logger.getInstance(LocalWorkspaceState.class.getName());
+
+  @NonNls private static final String STATE_DIR = "localWorkspaces";
+  private static final int FORMAT_VERSION = 2;
+
+  private static final Map<String, LocalWorkspaceState> ourStates = new HashMap<>(); // key -> state
+
+  public static class Entry {
+    public final String serverItem;
+    @Nullable public final String sourceItem;
+    public final int itemId;
+    public final int localVersion;
+    public final int latestVersion;
+    public final boolean isDirectory;
+    public final ChangeType_type0[] changes;
+    private long mySize;
+    private long myTimestamp;
+    @Nullable private String myHash;
+
+    Entry(String serverItem,
+          @Nullable String sourceItem,
+          int itemId,
+          int localVersion,
+          int latestVersion,
+          boolean isDirectory,
+          ChangeType_type0[] changes,
+          long size,
+          long timestamp,
+          @Nullable String hash) {
+      this.serverItem = serverItem;
+      this.sourceItem = sourceItem;
+      this.itemId = itemId;
+      this.localVersion = localVersion;
+      this.latestVersion = latestVersion;
+      this.isDirectory = isDirectory;
+      this.changes = changes;
+      mySize = size;
+      myTimestamp = timestamp;
+      myHash = hash;
+    }
+
+    public boolean hasPendingChanges() {
+      ChangeTypeMask mask = new ChangeTypeMask(toChangeType(changes));
+      mask.remove(ChangeType_type0.None, ChangeType_type0.Lock);
+      return !mask.isEmpty();
+    }
+  }
+
+  private final String myServerUri;
+  private final File myFile;
+  private final Map<String, Entry> myEntries = CollectionFactory.createFilePathMap(); // local path -> entry
+  private final Map<String, Boolean> mySyncedRoots = CollectionFactory.createFilePathMap(); // local path -> recursive
+  private final Map<String, Entry> myDroppedEntries = CollectionFactory.createFilePathMap(); // local path -> entry, until synchronized
+  private final Set<String> myInvalidatedPaths = CollectionFactory.createFilePathSet(); // local paths, recursively
+  private boolean myDirty;
+
+  /**
+   * @param file the table is persisted to
+   */
+  public LocalWorkspaceState(@NotNull String serverUri, @NotNull File file) {
+    myServerUri = serverUri;
+    myFile = file;
+    load();
+  }
+
+  @NotNull
+  public static synchronized LocalWorkspaceState getInstance(@NotNull WorkspaceInfo workspace) {
+    String key = getKey(workspace.getServer().getGuid(), workspace.getName(), workspace.getOwnerName());
+    LocalWorkspaceState state = ourStates.get(key);
+    if (state == null) {
+      state = new LocalWorkspaceState(workspace.getServer().getUri().toASCIIString(), getFile(key));
+      ourStates.put(key, state);
+    }
+    return state;
+  }
+
+  /**
+   * To be called when the workspace is changed on the server
+   */
+  public static synchronized void invalidate(String serverGuid, String workspaceName, String workspaceOwner) {
+    String key = getKey(serverGuid, workspaceName, workspaceOwner);
+    LocalWorkspaceState state = ourStates.get(key);
+    if (state != null) {
+      state.clear();
+    }
+    else {
+      FileUtil.delete(getFile(key));
+    }
+  }
+
+  /**
+   * To be called when the given items of the workspace are changed on the server
+   *
+   * @param localPaths paths affected, recursively
+   * @param itemIds    items affected wherever they are in the table, e.g. sources of renames
+   */
+  public static synchronized void invalidate(String serverGuid,
+                                             String workspaceName,
+                                             String workspaceOwner,
+                                             Collection<String> localPaths,
+                                             Collection<Integer> itemIds) {
+    String key = getKey(serverGuid, workspaceName, workspaceOwner);
+    LocalWorkspaceState state = ourStates.get(key);
+    if (state != null) {
+      state.invalidate(localPaths, itemIds);
+    }
+    else {
+      // not loaded, nothing to mark the paths in
+      FileUtil.delete(getFile(key));
+    }
+  }
+
+  private static String getKey(String serverGuid, String workspaceName, String workspaceOwner) {
+    return StringUtil.toLowerCase(serverGuid + "/" + workspaceName + "/" + workspaceOwner);
+  }
+
+  private static File getFile(String key) {
+    String name = StringUtil.toHexString(DigestUtil.sha1().digest(key.getBytes(StandardCharsets.UTF_8)));
+    return new File(ItemCacheDir.getSystemDir(STATE_DIR), name + ".dat");
+  }
+
+  /**
+   * @return true if status of the roots can be determined without the server
+   */
+  public synchronized boolean isSynchronized(List<? extends ItemPath> roots, boolean recursive) {
+    for (ItemPath root : roots) {
+      if (!isSynchronized(getPath(root.getLocalPath().getIOFile()), recursive)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return paths to be synchronized before status of the roots can be determined without the server: the roots not synchronized
+   * yet and the invalidated paths under the roots or, if recursive, above them
+   */
+  public synchronized List<ItemPath> getOutdatedPaths(List<? extends ItemPath> roots, boolean recursive) {
+    Set<ItemPath> result = new LinkedHashSet<>();
+    for (ItemPath root : roots) {
+      String rootPath = getPath(root.getLocalPath().getIOFile());
+      if (recursive && isInvalidated(rootPath)) {
+        // the invalidation is dropped only when the whole invalidated subtree is synchronized
+        for (String path : myInvalidatedPaths) {
+          if (FileUtil.isAncestor(path, rootPath, false) && !isInvalidatedAncestor(path)) {
+            result.add(createItemPath(path));
+          }
+        }
+      }
+      else if (!isCovered(rootPath, recursive) || isInvalidated(rootPath)) {
+        result.add(root);
+      }
+      else if (recursive) {
+        for (String path : myInvalidatedPaths) {
+          if (FileUtil.isAncestor(rootPath, path, true) && !isInvalidatedAncestor(path)) {
+            result.add(createItemPath(path));
+          }
+        }
+      }
+    }
+    return new ArrayList<>(result);
+  }
+
+  private static ItemPath createItemPath(String path) {
+    return new ItemPath(new LocalFilePath(path, new File(path).isDirectory()), null);
+  }
+
+  private boolean isSynchronized(String path, boolean recursive) {
+    if (!isCovered(path, recursive) || isInvalidated(path)) {
+      return false;
+    }
+    return !recursive || !ContainerUtil.exists(myInvalidatedPaths, invalidated -> FileUtil.isAncestor(path, invalidated, true));
+  }
+
+  /**
+   * @return true if the path is under some invalidated one
+   */
+  private boolean isInvalidated(String path) {
+    return ContainerUtil.exists(myInvalidatedPaths, invalidated -> FileUtil.isAncestor(invalidated, path, false));
+  }
+
+  /**
+   * @return true if the path is under some other invalidated one, so it is synchronized along with it
+   */
+  private boolean isInvalidatedAncestor(String path) {
+    return ContainerUtil.exists(myInvalidatedPaths, invalidated -> FileUtil.isAncestor(invalidated, path, true));
+  }
+
+  private boolean isCovered(String path, boolean recursive) {
+    if (!recursive && mySyncedRoots.containsKey(path)) {
+      return true;
+    }
+    for (Map.Entry<String, Boolean> syncedRoot : mySyncedRoots.entrySet()) {
+      if (syncedRoot.getValue() && FileUtil.isAncestor(syncedRoot.getKey(), path, false)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Replaces the table content of the roots with status reported by the server
+   *
+   * @param hashes item id -> hex MD5 of the workspace version, for the files under the roots
+   */
+  public synchronized void synchronize(List<? extends ItemPath> roots,
+                                       boolean recursive,
+                                       Collection<ExtendedItem> extendedItems,
+                                       Collection<PendingChange> pendingChanges,
+                                       Map<Integer, String> hashes) {
+    List<String> rootPaths = new ArrayList<>(roots.size());
+    for (ItemPath root : roots) {
+      String rootPath = getPath(root.getLocalPath().getIOFile());
+      rootPaths.add(rootPath);
+      for (Iterator<Map.Entry<String, Entry>> i = myEntries.entrySet().iterator(); i.hasNext(); ) {
+        Map.Entry<String, Entry> entry = i.next();
+        if (isUnderRoot(entry.getKey(), rootPath, recursive)) {
+          myDroppedEntries.put(entry.getKey(), entry.getValue());
+          i.remove();
+        }
+      }
+      if (!isCovered(rootPath, recursive)) {
+        if (recursive) {
+          mySyncedRoots.keySet().removeIf(path -> FileUtil.isAncestor(rootPath, path, false));
+        }
+        mySyncedRoots.put(rootPath, recursive);
+      }
+    }
+
+    Map<Integer, PendingChange> pendingChangesById = new HashMap<>(pendingChanges.size());
+    for (PendingChange pendingChange : pendingChanges) {
+      pendingChangesById.put(pendingChange.getItemid(), pendingChange);
+    }
+    for (ExtendedItem item : extendedItems) {
+      PendingChange pendingChange = pendingChangesById.get(item.getItemid());
+      String local = pendingChange != null && pendingChange.getLocal() != null ? pendingChange.getLocal() : item.getLocal();
+      if (local == null) {
+        continue;
+      }
+      File file = new File(VersionControlPath.localPathFromTfsRepresentation(local));
+      String path = getPath(file);
+      for (String rootPath : rootPaths) {
+        if (isUnderRoot(path, rootPath, recursive)) {
+          ChangeType_type0[] changes = item.getChg() != null && item.getChg().getChangeType_type0() != null
+                                       ? item.getChg().getChangeType_type0()
+                                       : new ChangeType_type0[0];
+          Entry entry = new Entry(item.getTitem(), item.getSitem(), item.getItemid(), item.getLver(), item.getLatest(),
+                                  item.getType() == ItemType.Folder, changes, -1, -1, null);
+          setOriginalState(entry, file, myDroppedEntries.get(path), hashes.get(item.getItemid()));
+          myEntries.put(path, entry);
+          break;
+        }
+      }
+    }
+    myDroppedEntries.keySet().removeIf(path -> ContainerUtil.exists(rootPaths, rootPath -> isUnderRoot(path, rootPath, recursive)));
+    myInvalidatedPaths.removeIf(path -> ContainerUtil.exists(rootPaths, rootPath -> {
+      if (recursive) {
+        return FileUtil.isAncestor(rootPath, path, false);
+      }
+      // items under a folder are not synchronized along with it
+      Entry entry = myEntries.get(path);
+      return FileUtil.pathsEqual(rootPath, path) && entry != null && !entry.isDirectory;
+    }));
+    myDirty = true;
+    save();
+  }
+
+  private void setOriginalState(Entry entry, File file, @Nullable Entry previous, @Nullable String serverHash) {
+    if (entry.isDirectory) {
+      return;
+    }
+    if (previous != null && previous.itemId == entry.itemId && previous.localVersion == entry.localVersion && previous.myHash != null) {
+      // the file may be modified since then, so don't take its current state
+      entry.mySize = previous.mySize;
+      entry.myTimestamp = previous.myTimestamp;
+      entry.myHash = previous.myHash;
+      return;
+    }
+    entry.myHash = serverHash != null ? serverHash : getBaselineHash(entry);
+    if (entry.myHash == null) {
+      // nothing to compare with, take the current state as the original one
+      entry.mySize = file.length();
+      entry.myTimestamp = file.lastModified();
+    }
+    // otherwise content is compared when status is requested
+  }
+
+  private static boolean isUnderRoot(String path, String rootPath, boolean recursive) {
+    return recursive ? FileUtil.isAncestor(rootPath, path, false) : FileUtil.pathsEqual(rootPath, path);
+  }
+
+  /**
+   * @return null if the file is not versioned or its entry is invalidated
+   */
+  @Nullable
+  public synchronized Entry getEntry(@NotNull File file) {
+    String path = getPath(file);
+    return isInvalidated(path) ? null : myEntries.get(path);
+  }
+
+  /**
+   * @return local path -> entry, for all the items under the root
+   */
+  public synchronized Map<String, Entry> getEntries(@NotNull File root) {
+    String rootPath = getPath(root);
+    Map<String, Entry> result = CollectionFactory.createFilePathMap();
+    for (Map.Entry<String, Entry> entry : myEntries.entrySet()) {
+      if (FileUtil.isAncestor(rootPath, entry.getKey(), false)) {
+        result.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * File is considered modified if its size or timestamp changed and content differs from the workspace version.
+   * If the original content hash is not known, changed timestamp means modification.
+   */
+  public synchronized boolean isModified(@NotNull File file, @NotNull Entry entry) {
+    if (entry.isDirectory || (file.length() == entry.mySize && file.lastModified() == entry.myTimestamp)) {
+      return false;
+    }
+    String originalHash = entry.myHash != null ? entry.myHash : getBaselineHash(entry);
+    if (originalHash == null) {
+      return true;
+    }
+    try {
+      if (!originalHash.equals(StringUtil.toHexString(TfsFileUtil.calculateMD5(file)))) {
+        return true;
+      }
+    }
+    catch (IOException e) {
+      return true;
+    }
+    // touched but not modified
+    entry.mySize = file.length();
+    entry.myTimestamp = file.lastModified();
+    entry.myHash = originalHash;
+    myDirty = true;
+    return false;
+  }
+
+  @Nullable
+  private String getBaselineHash(Entry entry) {
+    return TFSBaselineStore.isEnabled() ? TFSBaselineStore.getInstance().getHash(myServerUri, entry.itemId, entry.localVersion) : null;
+  }
+
+  /**
+   * @return items among the given ones that are modified locally but have no pending edit on the server
+   */
+  public List<ItemPath> getDetectedEdits(List<? extends ItemPath> paths) {
+    List<ItemPath> result = new ArrayList<>();
+    for (ItemPath path : paths) {
+      File file = path.getLocalPath().getIOFile();
+      Entry entry = getEntry(file);
+      if (entry != null && !entry.hasPendingChanges() && file.isFile() && isModified(file, entry)) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return item as it would be reported by the server for the current local state of the file
+   */
+  @NotNull
+  public ExtendedItem toExtendedItem(@NotNull File file, @NotNull Entry entry) {
+    ChangeType_type0[] changes = entry.changes;
+    if (!entry.hasPendingChanges() && file.isFile() && isModified(file, entry)) {
+      changes = new ChangeType_type0[]{ChangeType_type0.Edit};
+    }
+    ExtendedItem item = new ExtendedItem();
+    item.setTitem(entry.serverItem);
+    item.setSitem(entry.sourceItem);
+    item.setItemid(entry.itemId);
+    item.setLver(entry.localVersion);
+    item.setLatest(entry.latestVersion);
+    item.setType(entry.isDirectory ? ItemType.Folder : ItemType.File);
+    item.setLocal(VersionControlPath.toTfsRepresentation(file.getPath()));
+    item.setChg(toChangeType(changes));
+    return item;
+  }
+
+  private static ChangeType toChangeType(ChangeType_type0[] changes) {
+    ChangeType changeType = new ChangeType();
+    changeType.setChangeType_type0(changes);
+    return changeType;
+  }
+
+  private static String getPath(File file) {
+    return FileUtil.toSystemIndependentName(file.getPath());
+  }
+
+  /**
+   * Marks the paths and everything under them to be synchronized again
+   *
+   * @param localPaths paths affected, recursively
+   * @param itemIds    items affected wherever they are in the table
+   */
+  public synchronized void invalidate(@NotNull Collection<String> localPaths, @NotNull Collection<Integer> itemIds) {
+    for (String localPath : localPaths) {
+      myInvalidatedPaths.add(getPath(new File(localPath)));
+    }
+    if (!itemIds.isEmpty()) {
+      Set<Integer> ids = new HashSet<>(itemIds);
+      for (Map.Entry<String, Entry> entry : myEntries.entrySet()) {
+        if (ids.contains(entry.getValue().itemId)) {
+          myInvalidatedPaths.add(entry.getKey());
+        }
+      }
+    }
+    myDirty = true;
+    save();
+  }
+
+  /**
+   * Drops the whole table, so that it is synchronized again on demand. What is known about unmodified files is kept.
+   */
+  public synchronized void clear() {
+    myDroppedEntries.putAll(myEntries);
+    myEntries.clear();
+    mySyncedRoots.clear();
+    myInvalidatedPaths.clear();
+    myDirty = false;
+    FileUtil.delete(myFile);
+  }
+
+  public synchronized void save() {
+    if (!myDirty) {
+      return;
+    }
+    myDirty = false;
+    FileUtil.createParentDirs(myFile);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myFile)))) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(mySyncedRoots.size());
+      for (Map.Entry<String, Boolean> root : mySyncedRoots.entrySet()) {
+        out.writeUTF(root.getKey());
+        out.writeBoolean(root.getValue());
+      }
+      out.writeInt(myInvalidatedPaths.size());
+      for (String path : myInvalidatedPaths) {
+        out.writeUTF(path);
+      }
+      out.writeInt(myEntries.size());
+      for (Map.Entry<String, Entry> e : myEntries.entrySet()) {
+        Entry entry = e.getValue();
+        out.writeUTF(e.getKey());
+        out.writeUTF(entry.serverItem);
+        writeNullable(out, entry.sourceItem);
+        out.writeInt(entry.itemId);
+        out.writeInt(entry.localVersion);
+        out.writeInt(entry.latestVersion);
+        out.writeBoolean(entry.isDirectory);
+        out.writeInt(entry.changes.length);
+        for (ChangeType_type0 change : entry.changes) {
+          out.writeUTF(change.getValue());
+        }
+        out.writeLong(entry.mySize);
+        out.writeLong(entry.myTimestamp);
+        writeNullable(out, entry.myHash);
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save local workspace state", e);
+      FileUtil.delete(myFile);
+    }
+  }
+
+  private void load() {
+    if (!myFile.exists()) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return;
+      }
+      int rootsCount = in.readInt();
+      for (int i = 0; i < rootsCount; i++) {
+        mySyncedRoots.put(in.readUTF(), in.readBoolean());
+      }
+      int invalidatedCount = in.readInt();
+      for (int i = 0; i < invalidatedCount; i++) {
+        myInvalidatedPaths.add(in.readUTF());
+      }
+      int entriesCount = in.readInt();
+      for (int i = 0; i < entriesCount; i++) {
+        String path = in.readUTF();
+        String serverItem = in.readUTF();
+        String sourceItem = readNullable(in);
+        int itemId = in.readInt();
+        int localVersion = in.readInt();
+        int latestVersion = in.readInt();
+        boolean isDirectory = in.readBoolean();
+        ChangeType_type0[] changes = new ChangeType_type0[in.readInt()];
+        for (int j = 0; j < changes.length; j++) {
+          changes[j] = ChangeType_type0.fromValue(in.readUTF());
+        }
+        long size = in.readLong();
+        long timestamp = in.readLong();
+        String hash = readNullable(in);
+        myEntries.put(path, new Entry(serverItem, sourceItem, itemId, localVersion, latestVersion, isDirectory, changes, size, timestamp,
+                                      hash));
+      }
+    }
+    catch (IOException | IllegalArgumentException e) {
+      LOG.info("Failed to load local workspace state", e);
+      myEntries.clear();
+      mySyncedRoots.clear();
+      myInvalidatedPaths.clear();
+    }
+  }
+
+  private static void writeNullable(DataOutput out, @Nullable String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  @Nullable
+  private static String readNullable(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
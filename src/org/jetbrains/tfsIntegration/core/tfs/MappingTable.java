@@ -0,0 +1,162 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.util.containers.CollectionFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.TFSConstants;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Working folders of a workspace compiled for translating paths in both directions. Server paths are looked up in a
+ * {@link ServerPathTrie}, local paths by walking up the parents in a map that follows the file system case sensitivity,
+ * so a translation takes time proportional to the path depth rather than to the number of mappings.
+ * The nearest mapping wins; paths under a cloak have no translation. A one level mapping ({@code $/folder/*}) covers the folder
+ * and its immediate children only.
+ */
+public final class MappingTable {
+
+  private static final char SEPARATOR = '/';
+
+  private final List<WorkingFolderInfo> mySource;
+  private final ServerPathTrie<Mapping> myServerPaths = new ServerPathTrie<>();
+  private final Map<String, Mapping> myLocalPaths; // system independent path
+
+  private static class Mapping {
+    private final WorkingFolderInfo myWorkingFolder;
+    private final String myServerPath; // without the one level suffix
+    private final String myLocalPath; // key
+    private final boolean myOneLevel;
+
+    Mapping(WorkingFolderInfo workingFolder) {
+      myWorkingFolder = workingFolder;
+      String serverPath = workingFolder.getServerPath();
+      myOneLevel = serverPath.endsWith(SEPARATOR + TFSConstants.SINGLE_RECURSE_STAR);
+      if (myOneLevel) {
+        serverPath = serverPath.substring(0, serverPath.length() - 2);
+        if (serverPath.equals("$")) {
+          serverPath = VersionControlPath.ROOT_FOLDER;
+        }
+      }
+      myServerPath = serverPath;
+      myLocalPath = toKey(workingFolder.getLocalPath().getPath());
+    }
+
+    boolean isCloaked() {
+      return myWorkingFolder.getStatus() == WorkingFolderInfo.Status.Cloaked;
+    }
+  }
+
+  MappingTable(@NotNull List<WorkingFolderInfo> workingFolders) {
+    this(workingFolders, SystemInfo.isFileSystemCaseSensitive);
+  }
+
+  /**
+   * @param caseSensitive whether local paths are compared case sensitively
+   */
+  public MappingTable(@NotNull List<WorkingFolderInfo> workingFolders, boolean caseSensitive) {
+    mySource = workingFolders;
+    myLocalPaths = CollectionFactory.createFilePathMap(workingFolders.size(), caseSensitive);
+    for (WorkingFolderInfo workingFolder : workingFolders) {
+      if (!StringUtil.isEmpty(workingFolder.getServerPath())) {
+        Mapping mapping = new Mapping(workingFolder);
+        myServerPaths.put(mapping.myServerPath, mapping);
+        myLocalPaths.put(mapping.myLocalPath, mapping);
+      }
+    }
+  }
+
+  boolean isCompiledFrom(@NotNull List<WorkingFolderInfo> workingFolders) {
+    return mySource == workingFolders;
+  }
+
+  @Nullable
+  public FilePath getLocalPath(@NotNull String serverPath, boolean isDirectory) {
+    Mapping mapping = myServerPaths.findAncestor(serverPath);
+    if (mapping == null || mapping.isCloaked() || mapping.myOneLevel && isDeeperThanChild(mapping.myServerPath, serverPath)) {
+      return null;
+    }
+    return VersionControlPath.getCombinedLocalPath(mapping.myWorkingFolder.getLocalPath(), mapping.myServerPath, serverPath, isDirectory);
+  }
+
+  /**
+   * @param localPath path on the local file system
+   */
+  @Nullable
+  public String getServerPath(@NotNull FilePath localPath) {
+    String path = toKey(localPath.getPath());
+    Mapping mapping = findLocalMapping(path);
+    if (mapping == null || mapping.isCloaked() || mapping.myOneLevel && isDeeperThanChild(mapping.myLocalPath, path)) {
+      return null;
+    }
+    String remainder = StringUtil.trimStart(path.substring(mapping.myLocalPath.length()), String.valueOf(SEPARATOR));
+    if (remainder.isEmpty()) {
+      return mapping.myServerPath;
+    }
+    return VersionControlPath.getCombinedServerPath(mapping.myServerPath, remainder);
+  }
+
+  /**
+   * @param path the base itself or a path under it
+   */
+  private static boolean isDeeperThanChild(@NotNull String base, @NotNull String path) {
+    String remainder = StringUtil.trimEnd(path.substring(base.length()), SEPARATOR);
+    return remainder.indexOf(SEPARATOR, 1) != -1;
+  }
+
+  @Nullable
+  private Mapping findLocalMapping(@NotNull String path) {
+    while (true) {
+      Mapping mapping = myLocalPaths.get(path);
+      if (mapping != null) {
+        return mapping;
+      }
+      int index = path.lastIndexOf(SEPARATOR);
+      if (index == -1) {
+        return null;
+      }
+      String parent = path.substring(0, index);
+      if (index == 0 || parent.endsWith(":")) {
+        // file system root keeps its separator
+        parent = path.substring(0, index + 1);
+      }
+      if (parent.equals(path)) {
+        return null;
+      }
+      path = parent;
+    }
+  }
+
+  private static String toKey(@NotNull String path) {
+    String result = FileUtil.toSystemIndependentName(path);
+    if (result.length() > 1 && result.charAt(result.length() - 1) == SEPARATOR && !result.endsWith(":/")) {
+      result = result.substring(0, result.length() - 1);
+    }
+    else if (result.length() == 2 && result.charAt(1) == ':') {
+      // drive root
+      result += SEPARATOR;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+/**
+ * Number of items sent to the server in a single request. Adapts to the observed time the server spends per item
+ * (which includes transferring its part of the payload), so that a request takes about the target duration:
+ * groups grow on a fast server and shrink on a slow one or for heavy items.
+ */
+public class RequestGroupSize {
+
+  // weight of the latest observation in the moving average
+  private static final double SMOOTHING = 0.3;
+
+  private final int myInitialSize;
+  private final int myMinSize;
+  private final int myMaxSize;
+  private final long myTargetDuration;
+  private final boolean myAdaptive;
+
+  private double myMillisPerItem = -1;
+
+  /**
+   * @param initialSize    size used until first observation, also the only size if not adaptive
+   * @param targetDuration desired duration of a single request, in milliseconds
+   */
+  public RequestGroupSize(int initialSize, int minSize, int maxSize, long targetDuration, boolean adaptive) {
+    myInitialSize = initialSize;
+    myMinSize = Math.max(1, Math.min(minSize, initialSize));
+    myMaxSize = Math.max(maxSize, initialSize);
+    myTargetDuration = targetDuration;
+    myAdaptive = adaptive;
+  }
+
+  public synchronized int get() {
+    if (!myAdaptive || myMillisPerItem < 0) {
+      return myInitialSize;
+    }
+    long size = myMillisPerItem > 0 ? Math.round(myTargetDuration / myMillisPerItem) : myMaxSize;
+    return (int)Math.max(myMinSize, Math.min(myMaxSize, size));
+  }
+
+  /**
+   * @param items    number of items sent in a request
+   * @param duration time the request took, in milliseconds
+   */
+  public synchronized void update(int items, long duration) {
+    if (items <= 0) {
+      return;
+    }
+    double millisPerItem = (double)Math.max(duration, 0) / items;
+    myMillisPerItem = myMillisPerItem < 0 ? millisPerItem : myMillisPerItem * (1 - SMOOTHING) + millisPerItem * SMOOTHING;
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Maps server paths to values, one node per path component. Components are compared case insensitively, the same way
+ * {@link VersionControlPath#isUnder(String, String)} does. Lookups walk the characters of the given path in place and do not
+ * allocate, so checking whether a path is covered by any of the stored ones takes time proportional to the path length only.
+ */
+public class ServerPathTrie<T> {
+
+  private static final char SEPARATOR = VersionControlPath.SERVER_PATH_SEPARATOR.charAt(0);
+
+  private final Node<T> myRoot = new Node<>(null, 0);
+  private int mySize;
+
+  /**
+   * @return previous value stored for the path
+   */
+  @Nullable
+  public T put(@NotNull String path, @NotNull T value) {
+    Node<T> node = myRoot;
+    int start = 0;
+    while (start < path.length()) {
+      int end = componentEnd(path, start);
+      if (end > start) {
+        int hash = hash(path, start, end);
+        Node<T> child = node.findChild(path, start, end, hash);
+        if (child == null) {
+          child = new Node<>(path.substring(start, end), hash);
+          node.addChild(child);
+        }
+        node = child;
+      }
+      start = end + 1;
+    }
+    T previous = node.myValue;
+    node.myValue = value;
+    if (previous == null) {
+      mySize++;
+    }
+    return previous;
+  }
+
+  @Nullable
+  public T get(@NotNull String path) {
+    Node<T> node = myRoot;
+    int start = 0;
+    while (start < path.length() && node != null) {
+      int end = componentEnd(path, start);
+      if (end > start) {
+        node = node.findChild(path, start, end, hash(path, start, end));
+      }
+      start = end + 1;
+    }
+    return node != null ? node.myValue : null;
+  }
+
+  /**
+   * @return value of the deepest stored path that is the same as the given one or its ancestor, null if there is no such
+   */
+  @Nullable
+  public T findAncestor(@NotNull String path) {
+    Node<T> node = myRoot;
+    T result = null;
+    int start = 0;
+    while (start < path.length()) {
+      int end = componentEnd(path, start);
+      if (end > start) {
+        node = node.findChild(path, start, end, hash(path, start, end));
+        if (node == null) {
+          break;
+        }
+        if (node.myValue != null) {
+          result = node.myValue;
+        }
+      }
+      start = end + 1;
+    }
+    return result;
+  }
+
+  public boolean hasAncestor(@NotNull String path) {
+    return findAncestor(path) != null;
+  }
+
+  /**
+   * Spelling of components is taken from the path that was stored first.
+   *
+   * @return the deepest path all the stored paths are under, null if nothing is stored
+   */
+  @Nullable
+  public String getCommonAncestor() {
+    if (mySize == 0) {
+      return null;
+    }
+    StringBuilder result = new StringBuilder();
+    Node<T> node = myRoot;
+    int depth = 0;
+    while (node.myValue == null && node.myChildCount == 1) {
+      node = node.getSingleChild();
+      if (depth++ > 0) {
+        result.append(SEPARATOR);
+      }
+      result.append(node.myName);
+    }
+    // the root folder is "$/", not "$"
+    return depth == 1 ? VersionControlPath.ROOT_FOLDER : result.toString();
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public boolean isEmpty() {
+    return mySize == 0;
+  }
+
+  private static int componentEnd(String path, int start) {
+    int end = path.indexOf(SEPARATOR, start);
+    return end != -1 ? end : path.length();
+  }
+
+  private static int hash(String path, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(path.charAt(i)));
+    }
+    return hash;
+  }
+
+  private static class Node<T> {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final String myName;
+    private final int myHash;
+    private T myValue;
+
+    // open addressing hash table, capacity is a power of two
+    private Node<T>[] myChildren;
+    private int myChildCount;
+
+    Node(String name, int hash) {
+      myName = name;
+      myHash = hash;
+    }
+
+    @Nullable
+    Node<T> findChild(String path, int start, int end, int hash) {
+      if (myChildren == null) {
+        return null;
+      }
+      int mask = myChildren.length - 1;
+      for (int i = index(hash, mask); myChildren[i] != null; i = (i + 1) & mask) {
+        Node<T> child = myChildren[i];
+        if (child.myHash == hash && child.myName.length() == end - start &&
+            child.myName.regionMatches(true, 0, path, start, end - start)) {
+          return child;
+        }
+      }
+      return null;
+    }
+
+    void addChild(Node<T> child) {
+      if (myChildren == null) {
+        //noinspection unchecked
+        myChildren = new Node[INITIAL_CAPACITY];
+      }
+      else if ((myChildCount + 1) * 4 > myChildren.length * 3) {
+        Node<T>[] oldChildren = myChildren;
+        //noinspection unchecked
+        myChildren = new Node[oldChildren.length * 2];
+        for (Node<T> oldChild : oldChildren) {
+          if (oldChild != null) {
+            insert(oldChild);
+          }
+        }
+      }
+      insert(child);
+      myChildCount++;
+    }
+
+    private void insert(Node<T> child) {
+      int mask = myChildren.length - 1;
+      int i = index(child.myHash, mask);
+      while (myChildren[i] != null) {
+        i = (i + 1) & mask;
+      }
+      myChildren[i] = child;
+    }
+
+    private static int index(int hash, int mask) {
+      return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    Node<T> getSingleChild() {
+      for (Node<T> child : myChildren) {
+        if (child != null) {
+          return child;
+        }
+      }
+      throw new IllegalStateException();
+    }
+  }
+}
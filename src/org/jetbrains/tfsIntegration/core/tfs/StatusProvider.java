@@ -17,10 +17,10 @@
 package org.jetbrains.tfsIntegration.core.tfs;
 
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
-import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileVisitor;
 import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
 import org.jetbrains.annotations.NotNull;
@@ -43,21 +43,35 @@ public class StatusProvider {
                                    final @Nullable ProgressIndicator progress,
                                    final @NotNull StatusVisitor statusVisitor,
                                    Object projectOrComponent) throws TfsException {
+    visitByStatus(workspace, roots, recursive, progress, statusVisitor, projectOrComponent, null);
+  }
+
+  /**
+   * @param localFiles state of the local files under the roots, scanned here if not given
+   */
+  public static void visitByStatus(final @NotNull WorkspaceInfo workspace,
+                                   final List<? extends ItemPath> roots,
+                                   boolean recursive,
+                                   final @Nullable ProgressIndicator progress,
+                                   final @NotNull StatusVisitor statusVisitor,
+                                   Object projectOrComponent,
+                                   @Nullable LocalFileScanner.Snapshot localFiles) throws TfsException {
     if (roots.isEmpty()) {
       return;
     }
 
-    List<ItemSpec> itemSpecs = new ArrayList<>(roots.size());
-    for (ItemPath root : roots) {
-      final VirtualFile file = root.getLocalPath().getVirtualFile();
-      RecursionType recursionType =
-        recursive && (file == null || !file.exists() || file.isDirectory()) ? RecursionType.Full : RecursionType.None;
-      itemSpecs.add(VersionControlServer.createItemSpec(root.getLocalPath(), recursionType));
-    }
-
+    List<ItemSpec> itemSpecs = createItemSpecs(roots, recursive);
     VersionControlServer.ExtendedItemsAndPendingChanges extendedItemsAndPendingChanges = workspace.getServer().getVCS()
       .getExtendedItemsAndPendingChanges(workspace.getName(), workspace.getOwnerName(), itemSpecs, ItemType.Any, projectOrComponent,
                                          TFSBundle.message("loading.changes"));
+    if (workspace.isLocal()) {
+      synchronizeLocalState(workspace, roots, recursive, itemSpecs, extendedItemsAndPendingChanges, projectOrComponent);
+      if (visitByLocalStatus(workspace, roots, recursive, progress, statusVisitor, localFiles)) {
+        return;
+      }
+      // a folder above the roots is invalidated, so the table can't tell about files not versioned; take status as the server
+      // reports it
+    }
 
     Map<Integer, PendingChange> pendingChanges = new HashMap<>(extendedItemsAndPendingChanges.pendingChanges.size());
     for (PendingChange pendingChange : extendedItemsAndPendingChanges.pendingChanges) {
@@ -71,11 +85,15 @@ public class StatusProvider {
 
     TFSProgressUtil.checkCanceled(progress);
 
+    if (localFiles == null) {
+      localFiles = LocalFileScanner.scan(roots, recursive, progress);
+    }
+
     for (ItemPath root : roots) {
       Collection<FilePath> localItems = new HashSet<>();
       localItems.add(root.getLocalPath());
       if (recursive) {
-        addExistingFilesRecursively(localItems, root.getLocalPath().getVirtualFile());
+        addExistingFilesRecursively(localItems, localFiles, root.getLocalPath());
       }
 
       // first process all local items given
@@ -106,7 +124,7 @@ public class StatusProvider {
           }
         }
 
-        final boolean localItemExists = TfsFileUtil.localItemExists(localItem);
+        final boolean localItemExists = localFiles.exists(localItem);
         if (!localItemExists && extendedItem != null) {
           // if path is the original one from dirtyScope, it may have invalid 'isDirectory' status
           localItem = VcsUtil.getFilePath(localItem.getPath(), extendedItem.getType() == ItemType.Folder);
@@ -129,15 +147,150 @@ public class StatusProvider {
     }
   }
 
-  private static void addExistingFilesRecursively(final @NotNull Collection<? super FilePath> result, final @Nullable VirtualFile root) {
-    if (root != null && root.exists()) {
-      VfsUtilCore.visitChildrenRecursively(root, new VirtualFileVisitor<Void>() {
-        @Override
-        public boolean visitFile(@NotNull VirtualFile file) {
-          result.add(TfsFileUtil.getFilePath(file));
-          return true;
+  /**
+   * Loads the status of the roots into the local state table of the workspace
+   */
+  private static void synchronizeLocalState(final @NotNull WorkspaceInfo workspace,
+                                            final List<? extends ItemPath> roots,
+                                            boolean recursive,
+                                            Object projectOrComponent) throws TfsException {
+    List<ItemSpec> itemSpecs = createItemSpecs(roots, recursive);
+    VersionControlServer.ExtendedItemsAndPendingChanges extendedItemsAndPendingChanges = workspace.getServer().getVCS()
+      .getExtendedItemsAndPendingChanges(workspace.getName(), workspace.getOwnerName(), itemSpecs, ItemType.Any, projectOrComponent,
+                                         TFSBundle.message("loading.changes"));
+    synchronizeLocalState(workspace, roots, recursive, itemSpecs, extendedItemsAndPendingChanges, projectOrComponent);
+  }
+
+  private static void synchronizeLocalState(final @NotNull WorkspaceInfo workspace,
+                                            final List<? extends ItemPath> roots,
+                                            boolean recursive,
+                                            List<ItemSpec> itemSpecs,
+                                            VersionControlServer.ExtendedItemsAndPendingChanges extendedItemsAndPendingChanges,
+                                            Object projectOrComponent) throws TfsException {
+    // server doesn't know about files edited without pending changes, so they are detected by comparing with the hashes of
+    // workspace versions
+    final Map<Integer, String> hashes = new HashMap<>();
+    workspace.getServer().getVCS().queryWorkspaceFiles(workspace.getName(), workspace.getOwnerName(), itemSpecs, item -> {
+      byte[] hash = TfsFileUtil.readHash(item.getHash());
+      if (hash != null) {
+        hashes.put(item.getItemid(), StringUtil.toHexString(hash));
+      }
+    }, projectOrComponent, TFSBundle.message("loading.changes"));
+    LocalWorkspaceState.getInstance(workspace)
+      .synchronize(roots, recursive, extendedItemsAndPendingChanges.extendedItems, extendedItemsAndPendingChanges.pendingChanges, hashes);
+  }
+
+  /**
+   * Determines status of the items in a local workspace like {@link #visitByLocalStatus}, after synchronizing the parts of
+   * the roots its local state table does not know or has invalidated. Nothing is requested from the server if there are none.
+   *
+   * @param localFiles state of the local files under the roots, scanned here if not given
+   */
+  public static void visitByLocalStatusSynchronized(final @NotNull WorkspaceInfo workspace,
+                                                    final List<? extends ItemPath> roots,
+                                                    boolean recursive,
+                                                    final @Nullable ProgressIndicator progress,
+                                                    final @NotNull StatusVisitor statusVisitor,
+                                                    Object projectOrComponent,
+                                                    @Nullable LocalFileScanner.Snapshot localFiles) throws TfsException {
+    List<ItemPath> outdated = LocalWorkspaceState.getInstance(workspace).getOutdatedPaths(roots, recursive);
+    if (!outdated.isEmpty()) {
+      synchronizeLocalState(workspace, outdated, recursive, projectOrComponent);
+    }
+    if (!visitByLocalStatus(workspace, roots, recursive, progress, statusVisitor, localFiles)) {
+      // invalidated meanwhile
+      visitByStatus(workspace, roots, recursive, progress, statusVisitor, projectOrComponent, localFiles);
+    }
+  }
+
+  private static List<ItemSpec> createItemSpecs(List<? extends ItemPath> roots, boolean recursive) {
+    List<ItemSpec> itemSpecs = new ArrayList<>(roots.size());
+    for (ItemPath root : roots) {
+      final VirtualFile file = root.getLocalPath().getVirtualFile();
+      RecursionType recursionType =
+        recursive && (file == null || !file.exists() || file.isDirectory()) ? RecursionType.Full : RecursionType.None;
+      itemSpecs.add(VersionControlServer.createItemSpec(root.getLocalPath(), recursionType));
+    }
+    return itemSpecs;
+  }
+
+  /**
+   * Determines status of the items in a local workspace using its local state table, with no server requests. Edits, deletions
+   * and new files are detected by comparing the table with the file system.
+   *
+   * @return false if the state of some root is not known locally, nothing is visited in this case
+   */
+  public static boolean visitByLocalStatus(final @NotNull WorkspaceInfo workspace,
+                                           final List<? extends ItemPath> roots,
+                                           boolean recursive,
+                                           final @Nullable ProgressIndicator progress,
+                                           final @NotNull StatusVisitor statusVisitor) throws TfsException {
+    return visitByLocalStatus(workspace, roots, recursive, progress, statusVisitor, null);
+  }
+
+  /**
+   * @param localFiles state of the local files under the roots, scanned here if not given
+   */
+  public static boolean visitByLocalStatus(final @NotNull WorkspaceInfo workspace,
+                                           final List<? extends ItemPath> roots,
+                                           boolean recursive,
+                                           final @Nullable ProgressIndicator progress,
+                                           final @NotNull StatusVisitor statusVisitor,
+                                           @Nullable LocalFileScanner.Snapshot localFiles) throws TfsException {
+    TFSVcs.assertTrue(workspace.isLocal());
+    LocalWorkspaceState state = LocalWorkspaceState.getInstance(workspace);
+    if (!state.isSynchronized(roots, recursive)) {
+      return false;
+    }
+    if (localFiles == null) {
+      localFiles = LocalFileScanner.scan(roots, recursive, progress);
+    }
+
+    for (ItemPath root : roots) {
+      Collection<FilePath> localItems = new HashSet<>();
+      localItems.add(root.getLocalPath());
+      if (recursive) {
+        addExistingFilesRecursively(localItems, localFiles, root.getLocalPath());
+      }
+
+      Map<String, LocalWorkspaceState.Entry> notVisited =
+        recursive ? state.getEntries(root.getLocalPath().getIOFile()) : new HashMap<>();
+      for (FilePath localItem : localItems) {
+        File file = localItem.getIOFile();
+        LocalWorkspaceState.Entry entry = state.getEntry(file);
+        final boolean localItemExists = localFiles.exists(localItem);
+        if (entry == null) {
+          ServerStatus.Unversioned.INSTANCE.visitBy(localItem, localItemExists, statusVisitor);
+          continue;
+        }
+        notVisited.remove(FileUtil.toSystemIndependentName(file.getPath()));
+        if (!localItemExists) {
+          // if path is the original one from dirtyScope, it may have invalid 'isDirectory' status
+          localItem = VcsUtil.getFilePath(localItem.getPath(), entry.isDirectory);
         }
-      });
+        determineServerStatus(null, state.toExtendedItem(file, entry)).visitBy(localItem, localItemExists, statusVisitor);
+      }
+
+      // locally deleted
+      for (Map.Entry<String, LocalWorkspaceState.Entry> entry : notVisited.entrySet()) {
+        File file = new File(entry.getKey());
+        FilePath localPath = VcsUtil.getFilePath(file, entry.getValue().isDirectory);
+        determineServerStatus(null, state.toExtendedItem(file, entry.getValue())).visitBy(localPath, false, statusVisitor);
+      }
+      TFSProgressUtil.checkCanceled(progress);
+    }
+    state.save();
+    return true;
+  }
+
+  private static void addExistingFilesRecursively(final @NotNull Collection<? super FilePath> result,
+                                                  final @NotNull LocalFileScanner.Snapshot localFiles,
+                                                  final @NotNull FilePath root) {
+    for (LocalFileScanner.FileState state : localFiles.getStates(root)) {
+      // root itself is already there
+      if (!FileUtil.pathsEqual(state.path, root.getPath())) {
+        result.add(state.getFilePath());
+      }
     }
   }
 
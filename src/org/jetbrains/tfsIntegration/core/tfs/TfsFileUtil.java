@@ -22,6 +22,7 @@ import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.actions.VcsContextFactory;
 import com.intellij.openapi.vcs.changes.VcsDirtyScopeManager;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
@@ -30,9 +31,11 @@ import com.intellij.ui.GuiUtils;
 import com.intellij.util.io.DigestUtil;
 import com.intellij.util.io.ReadOnlyAttributeUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSVcs;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
+import javax.activation.DataHandler;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.security.MessageDigest;
@@ -42,6 +45,8 @@ import java.util.*;
 
 public class TfsFileUtil {
 
+  private static final int REFRESH_BATCH_SIZE = 1000;
+
   public interface ContentWriter {
     void write(OutputStream outputStream) throws TfsException;
   }
@@ -165,6 +170,65 @@ public class TfsFileUtil {
     }, roots);
   }
 
+  /**
+   * Refreshes and marks dirty just the paths given and their parents, which is much cheaper than doing so with the roots they are under
+   * when few of the files have changed. Folders are refreshed recursively since they could have been moved along with their content.
+   * Files are refreshed in batches, so that none of the refresh sessions holds the write lock for long.
+   */
+  public static void refreshAndMarkDirtyChanged(final Project project, final Collection<? extends FilePath> paths, boolean async) {
+    if (paths.isEmpty()) {
+      return;
+    }
+
+    final Set<FilePath> dirtyFiles = new LinkedHashSet<>();
+    final Set<FilePath> dirtyFolders = new LinkedHashSet<>();
+    Set<VirtualFile> refreshFiles = new LinkedHashSet<>();
+    Set<VirtualFile> refreshFolders = new LinkedHashSet<>();
+    for (FilePath path : paths) {
+      (path.isDirectory() ? dirtyFolders : dirtyFiles).add(path);
+      FilePath parent = path.getParentPath();
+      if (parent != null) {
+        dirtyFiles.add(parent);
+      }
+      // files not known to VFS yet are found by refreshing the nearest parent it knows
+      VirtualFile file = findExistingAncestor(path.getIOFile());
+      if (file != null) {
+        (path.isDirectory() && file.getPath().equals(path.getPath()) ? refreshFolders : refreshFiles).add(file);
+        if (file.getParent() != null) {
+          refreshFiles.add(file.getParent());
+        }
+      }
+    }
+
+    final Runnable markDirty = () -> ApplicationManager.getApplication().runReadAction(
+      () -> VcsDirtyScopeManager.getInstance(project).filePathsDirty(dirtyFiles, dirtyFolders));
+    List<VirtualFile> files = new ArrayList<>(refreshFiles);
+    for (int i = 0; i < files.size(); i += REFRESH_BATCH_SIZE) {
+      // refresh sessions are processed in order, so dirty scope is marked after the last one
+      int end = Math.min(i + REFRESH_BATCH_SIZE, files.size());
+      boolean last = refreshFolders.isEmpty() && end == files.size();
+      RefreshQueue.getInstance().refresh(async, false, last ? markDirty : null, files.subList(i, end));
+    }
+    if (!refreshFolders.isEmpty()) {
+      RefreshQueue.getInstance().refresh(async, true, markDirty, refreshFolders);
+    }
+    else if (files.isEmpty()) {
+      markDirty.run();
+    }
+  }
+
+  @Nullable
+  private static VirtualFile findExistingAncestor(@Nullable File file) {
+    while (file != null) {
+      VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByIoFile(file);
+      if (virtualFile != null) {
+        return virtualFile;
+      }
+      file = file.getParentFile();
+    }
+    return null;
+  }
+
   public static void refreshAndFindFile(final FilePath path) {
       ApplicationManager.getApplication().invokeAndWait(() -> ApplicationManager.getApplication().runWriteAction(() -> {
         VirtualFileManager.getInstance().refreshAndFindFileByUrl(path.getPath());
@@ -221,6 +285,23 @@ public class TfsFileUtil {
     return file != null && file.isValid() && file.exists();
   }
 
+  /**
+   * @return hash value as sent by the server or null if not known
+   */
+  @Nullable
+  public static byte[] readHash(@Nullable DataHandler hashValue) {
+    if (hashValue == null) {
+      return null;
+    }
+    try (InputStream stream = hashValue.getInputStream()) {
+      byte[] hash = stream.readAllBytes();
+      return hash.length > 0 ? hash : null;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
   public static byte[] calculateMD5(File file) throws IOException {
     final MessageDigest digest = DigestUtil.md5();
     InputStream is = null;
@@ -88,9 +88,25 @@ public class VersionControlPath {
     return serverPath.substring(ROOT_FOLDER.length(), secondSlashPos != -1 ? secondSlashPos : serverPath.length());
   }
 
-  public static boolean isUnder(String parent, String child) {
-    parent = StringUtil.toLowerCase(parent);
-    return parent.equals(getCommonAncestor(parent, StringUtil.toLowerCase(child)));
+  /**
+   * Case insensitive, does not allocate.
+   *
+   * @return true if child is the same path as parent or is located under it
+   */
+  public static boolean isUnder(@NotNull String parent, @NotNull String child) {
+    int length = parent.length();
+    if (parent.endsWith(SERVER_PATH_SEPARATOR)) {
+      // root folder
+      length--;
+    }
+    return child.regionMatches(true, 0, parent, 0, length) && isComponentEnd(child, length);
+  }
+
+  /**
+   * @return true if the path ends at given offset or there is a separator there
+   */
+  public static boolean isComponentEnd(@NotNull String path, int offset) {
+    return offset == path.length() || offset < path.length() && path.charAt(offset) == SERVER_PATH_SEPARATOR.charAt(0);
   }
 
   /**
@@ -158,6 +174,14 @@ public class VersionControlPath {
     return i == 1 ? ROOT_FOLDER : StringUtil.join(Arrays.asList(components1).subList(0, i), SERVER_PATH_SEPARATOR);
   }
 
+  /**
+   * @return parent server path, {@link #ROOT_FOLDER} for team projects
+   */
+  public static String getParentPath(final @NotNull String serverPath) {
+    int index = serverPath.lastIndexOf(SERVER_PATH_SEPARATOR);
+    return index < ROOT_FOLDER.length() ? ROOT_FOLDER : serverPath.substring(0, index);
+  }
+
   public static String getLastComponent(final @NotNull String serverPath) {
     return serverPath.substring(serverPath.lastIndexOf(SERVER_PATH_SEPARATOR) + 1);
   }
@@ -16,16 +16,18 @@
 
 package org.jetbrains.tfsIntegration.core.tfs;
 
-import com.intellij.openapi.application.ApplicationNamesInfo;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.util.ClassLoaderUtil;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.ThrowableConsumer;
 import com.intellij.util.containers.ContainerUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.services.authorization._03.Identity;
 import com.microsoft.schemas.teamfoundation._2005._06.services.authorization._03.QueryMembership;
@@ -36,6 +38,7 @@ import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservi
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.MergeOptions;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
 import com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.*;
+import org.apache.axis2.databinding.ADBBean;
 import org.apache.commons.httpclient.methods.multipart.FilePart;
 import org.apache.commons.httpclient.methods.multipart.Part;
 import org.apache.commons.httpclient.methods.multipart.StringPart;
@@ -47,26 +50,34 @@ import org.jetbrains.tfsIntegration.core.TFSConstants;
 import org.jetbrains.tfsIntegration.core.TFSVcs;
 import org.jetbrains.tfsIntegration.core.TfsBeansHolder;
 import org.jetbrains.tfsIntegration.core.configuration.Credentials;
+import org.jetbrains.tfsIntegration.core.configuration.ServerConfiguration;
 import org.jetbrains.tfsIntegration.core.configuration.TFSConfigurationManager;
 import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
 import org.jetbrains.tfsIntegration.core.tfs.version.LatestVersionSpec;
 import org.jetbrains.tfsIntegration.core.tfs.version.VersionSpecBase;
+import org.jetbrains.tfsIntegration.core.tfs.version.WorkspaceVersionSpec;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemField;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemSerialize;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsCache;
 import org.jetbrains.tfsIntegration.exceptions.HostNotApplicableException;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.webservice.StreamingResponseReader;
 import org.jetbrains.tfsIntegration.webservice.TfsRequestManager;
 import org.jetbrains.tfsIntegration.webservice.WebServiceHelper;
 
+import javax.xml.namespace.QName;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.rmi.RemoteException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-public class VersionControlServer {
+public class VersionControlServer implements BranchCache.Server {
   @NonNls public static final String WORKSPACE_NAME_FIELD = "wsname";
   @NonNls public static final String WORKSPACE_OWNER_FIELD = "wsowner";
   @NonNls public static final String RANGE_FIELD = "range";
@@ -78,22 +89,37 @@ public class VersionControlServer {
   public static final int LOCAL_CONFLICT_REASON_SOURCE = 1;
   public static final int LOCAL_CONFLICT_REASON_TARGET = 3;
 
-  private static final int ITEMS_IN_GROUP = Integer.getInteger("org.jetbrains.tfsIntegration.requestGroupSize", 200);
+  // explicitly specified group size turns off its adaptation
+  private static final Integer FIXED_ITEMS_IN_GROUP = Integer.getInteger("org.jetbrains.tfsIntegration.requestGroupSize");
+  private static final int ITEMS_IN_GROUP = FIXED_ITEMS_IN_GROUP != null ? FIXED_ITEMS_IN_GROUP : 200;
+  private static final long GROUP_REQUEST_DURATION = Long.getLong("org.jetbrains.tfsIntegration.requestGroupDuration", 3000);
+  // 1 means groups of items are always sent one after another
+  private static final int MAX_PARALLEL_REQUESTS = Integer.getInteger("org.jetbrains.tfsIntegration.maxParallelRequests", 4);
+
+  @NonNls private static final String CLIENT_SERVICES_NAMESPACE =
+    "http://schemas.microsoft.com/TeamFoundation/2005/06/VersionControl/ClientServices/03";
 
   private final URI myServerUri;
   private final String myInstanceId;
 
   @NotNull private final TfsBeansHolder myBeans;
+  private final RequestGroupSize myGroupSize =
+    new RequestGroupSize(ITEMS_IN_GROUP, ITEMS_IN_GROUP / 8, ITEMS_IN_GROUP * 5, GROUP_REQUEST_DURATION, FIXED_ITEMS_IN_GROUP == null);
+  private final FolderListingCache myFolderListingCache = new FolderListingCache(this);
+  private final BranchCache myBranchCache = new BranchCache(this);
+  private final DownloadRouteSelector myDownloadRouteSelector = new DownloadRouteSelector();
+  private final IdentityCache myIdentityCache;
+  private final WorkItemsCache myWorkItemsCache = new WorkItemsCache();
   private static final Logger LOG = Logger.getInstance(VersionControlServer.class.getName());
 
   private interface OperationOnCollection<T, U> {
-    U execute(Collection<T> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, HostNotApplicableException;
+    U execute(Collection<T> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, TfsException;
 
     U merge(Collection<U> results);
   }
 
   private interface OperationOnList<T, U> {
-    U execute(List<T> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, HostNotApplicableException;
+    U execute(List<T> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, TfsException;
 
     U merge(Collection<U> results);
   }
@@ -102,9 +128,20 @@ public class VersionControlServer {
                            Object projectOrComponent,
                            final Collection<T> items, String progressTitle)
     throws TfsException {
-    return execute(new OperationOnList<T, U>() {
+    return execute(asOperationOnList(operation), projectOrComponent, new ArrayList<>(items), progressTitle);
+  }
+
+  private <T, U> U executeSequentially(final OperationOnCollection<T, U> operation,
+                                       Object projectOrComponent,
+                                       final Collection<T> items, String progressTitle)
+    throws TfsException {
+    return executeSequentially(asOperationOnList(operation), projectOrComponent, new ArrayList<>(items), progressTitle);
+  }
+
+  private static <T, U> OperationOnList<T, U> asOperationOnList(final OperationOnCollection<T, U> operation) {
+    return new OperationOnList<T, U>() {
       @Override
-      public U execute(List<T> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, HostNotApplicableException {
+      public U execute(List<T> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, TfsException {
         return operation.execute(items, credentials, pi);
       }
 
@@ -112,9 +149,14 @@ public class VersionControlServer {
       public U merge(Collection<U> results) {
         return operation.merge(results);
       }
-    }, projectOrComponent, new ArrayList<>(items), progressTitle);
+    };
   }
 
+  /**
+   * Executes the operation for groups of items whose size adapts to server response time. If there are several groups, they are sent
+   * concurrently (up to {@link #MAX_PARALLEL_REQUESTS}), so the operation should not depend on the order groups are processed in.
+   * Results are merged in the order of the items anyway.
+   */
   private <T, U> U execute(final OperationOnList<T, U> operation,
                            final Object projectOrComponent,
                            final List<T> items,
@@ -124,6 +166,49 @@ public class VersionControlServer {
       return operation.merge(Collections.emptyList());
     }
 
+    if (MAX_PARALLEL_REQUESTS <= 1 || items.size() <= myGroupSize.get()) {
+      final Collection<U> results = new ArrayList<>();
+      int from = 0;
+      while (from < items.size()) {
+        final List<T> group = items.subList(from, Math.min(items.size(), from + myGroupSize.get()));
+        results.add(TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<U>(progressTitle) {
+          @Override
+          public U execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+            long start = System.currentTimeMillis();
+            U result = operation.execute(group, credentials, pi);
+            myGroupSize.update(group.size(), System.currentTimeMillis() - start);
+            return result;
+          }
+        }));
+        from += group.size();
+      }
+      return operation.merge(results);
+    }
+
+    // the request lock is held by this thread while groups are executed by concurrent workers
+    List<U> results =
+      TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<List<U>>(progressTitle) {
+        @Override
+        public List<U> execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+          return new ConcurrentGroups<>(operation, items, credentials, pi).execute();
+        }
+      });
+    return operation.merge(results);
+  }
+
+  /**
+   * Executes the operation for fixed size groups of items one after another, for operations whose groups depend on previous ones
+   * (e.g. pending changes to children after their parents) or whose results should be delivered in order
+   */
+  private <T, U> U executeSequentially(final OperationOnList<T, U> operation,
+                                       final Object projectOrComponent,
+                                       final List<T> items,
+                                       final String progressTitle)
+    throws TfsException {
+    if (items.isEmpty()) {
+      return operation.merge(Collections.emptyList());
+    }
+
     final Collection<U> results = new ArrayList<>();
     TfsUtil.consumeInParts(items, ITEMS_IN_GROUP, ts -> {
       U result = TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<U>(progressTitle) {
@@ -137,10 +222,147 @@ public class VersionControlServer {
     return operation.merge(results);
   }
 
+  private class ConcurrentGroups<T, U> {
+    private final OperationOnList<T, U> myOperation;
+    private final List<T> myItems;
+    private final Credentials myCredentials;
+    @Nullable private final ProgressIndicator myProgressIndicator;
+
+    private final SortedMap<Integer, U> myResults = new TreeMap<>(); // group start -> result
+    private int myNextGroupStart;
+    private Exception myError;
+
+    ConcurrentGroups(OperationOnList<T, U> operation, List<T> items, Credentials credentials, @Nullable ProgressIndicator pi) {
+      myOperation = operation;
+      myItems = items;
+      myCredentials = credentials;
+      myProgressIndicator = pi;
+    }
+
+    public List<U> execute() throws Exception {
+      // make sure stubs are created before workers ask for their own ones
+      myBeans.getRepositoryStub(myCredentials, myProgressIndicator);
+
+      int groupsCount = (myItems.size() + myGroupSize.get() - 1) / myGroupSize.get();
+      List<Future<?>> workers = new ArrayList<>();
+      for (int i = 1; i < Math.min(MAX_PARALLEL_REQUESTS, groupsCount); i++) {
+        workers.add(ApplicationManager.getApplication().executeOnPooledThread(
+          () -> ClassLoaderUtil.computeWithClassLoader(VersionControlServer.class.getClassLoader(),
+                                                       () -> myBeans.computeWithOwnRepositoryStub(() -> {
+                                                         executeGroups();
+                                                         return null;
+                                                       }))));
+      }
+      executeGroups();
+      for (Future<?> worker : workers) {
+        try {
+          worker.get();
+        }
+        catch (ExecutionException e) {
+          setError(e.getCause() instanceof Exception ? (Exception)e.getCause() : e);
+        }
+      }
+
+      synchronized (this) {
+        if (myError != null) {
+          throw myError;
+        }
+        return new ArrayList<>(myResults.values());
+      }
+    }
+
+    private void executeGroups() {
+      Pair<Integer, List<T>> group;
+      while ((group = nextGroup()) != null) {
+        try {
+          if (myProgressIndicator != null) {
+            myProgressIndicator.checkCanceled();
+          }
+          long start = System.currentTimeMillis();
+          U result = myOperation.execute(group.second, myCredentials, myProgressIndicator);
+          myGroupSize.update(group.second.size(), System.currentTimeMillis() - start);
+          synchronized (this) {
+            myResults.put(group.first, result);
+          }
+        }
+        catch (Exception e) {
+          setError(e);
+        }
+      }
+    }
+
+    @Nullable
+    private synchronized Pair<Integer, List<T>> nextGroup() {
+      if (myError != null || myNextGroupStart >= myItems.size()) {
+        return null;
+      }
+      int start = myNextGroupStart;
+      myNextGroupStart = Math.min(myItems.size(), start + myGroupSize.get());
+      return Pair.create(start, myItems.subList(start, myNextGroupStart));
+    }
+
+    private synchronized void setError(Exception e) {
+      if (myError == null) {
+        myError = e;
+      }
+    }
+  }
+
+  /**
+   * Invokes Repository web service operation and streams elements of its result array to the consumer
+   *
+   * @param operationName     operation name as in WSDL, SOAP action is derived from it
+   * @param resultElementName name of result array element
+   */
+  private static <T> void streamResult(RepositoryStub stub,
+                                       @NonNls String operationName,
+                                       ADBBean request,
+                                       QName requestElementName,
+                                       @NonNls String resultElementName,
+                                       StreamingResponseReader.ElementParser<T> parser,
+                                       ThrowableConsumer<? super T, TfsException> consumer) throws RemoteException, TfsException {
+    StreamingResponseReader.invoke(stub, new QName(CLIENT_SERVICES_NAMESPACE, operationName),
+                                   CLIENT_SERVICES_NAMESPACE + "/" + StringUtil.capitalize(operationName), request, requestElementName,
+                                   new QName(CLIENT_SERVICES_NAMESPACE, resultElementName), parser, consumer);
+  }
+
+  /**
+   * Passes streamed elements to the consumer at most once. A request may be executed again after re-authentication, then the server
+   * sends the same elements from the beginning and the ones delivered during the previous attempt are skipped.
+   */
+  private static class DeliverOnce<T> {
+    private final ThrowableConsumer<? super T, TfsException> myConsumer;
+    private Object myRequest;
+    private int myDelivered;
+
+    DeliverOnce(ThrowableConsumer<? super T, TfsException> consumer) {
+      myConsumer = consumer;
+    }
+
+    /**
+     * @param request identifies the request being (re)executed, counting starts over for another one
+     */
+    ThrowableConsumer<T, TfsException> attempt(Object request) {
+      if (request != myRequest) {
+        myRequest = request;
+        myDelivered = 0;
+      }
+      final int[] received = new int[1];
+      return element -> {
+        if (received[0]++ < myDelivered) {
+          return;
+        }
+        myConsumer.consume(element);
+        myDelivered++;
+      };
+    }
+  }
+
   public VersionControlServer(URI uri, @NotNull TfsBeansHolder beans, String instanceId) {
     myServerUri = uri;
     myBeans = beans;
     myInstanceId = instanceId;
+    myIdentityCache = new IdentityCache(this, uri);
   }
 
   /**
@@ -165,7 +387,7 @@ public class VersionControlServer {
     return itemSpec;
   }
 
-  private List<Item> queryItemsById(final int[] itemIds,
+  public List<Item> queryItemsById(final int[] itemIds,
                                     final int changeSet,
                                     final boolean generateDownloadUrl,
                                     Object projectOrComponent,
@@ -351,6 +573,7 @@ public class VersionControlServer {
                                                            final ChangeRequestProvider<T> changeRequestProvider,
                                                            Object projectOrComponent,
                                                            String progressTitle) throws TfsException {
+    final WorkspaceChanges changes = new WorkspaceChanges();
     OperationOnCollection<T, ResultWithFailures<GetOperation>> operation =
       new OperationOnCollection<T, ResultWithFailures<GetOperation>>() {
         @Override
@@ -359,7 +582,10 @@ public class VersionControlServer {
           ResultWithFailures<GetOperation> result = new ResultWithFailures<>();
           List<ChangeRequest> changeRequests = new ArrayList<>(items.size());
           for (T path : items) {
-            changeRequests.add(changeRequestProvider.createChangeRequest(path));
+            ChangeRequest changeRequest = changeRequestProvider.createChangeRequest(path);
+            changes.addPath(changeRequest.getItem().getItem());
+            changes.addPath(changeRequest.getTarget());
+            changeRequests.add(changeRequest);
           }
 
           final ArrayOfChangeRequest arrayOfChangeRequest = new ArrayOfChangeRequest();
@@ -389,6 +615,7 @@ public class VersionControlServer {
 
           if (response.getPendChangesResult().getGetOperation() != null) {
             ContainerUtil.addAll(result.getResult(), response.getPendChangesResult().getGetOperation());
+            changes.addGetOperations(response.getPendChangesResult().getGetOperation());
           }
 
           if (response.getFailures().getFailure() != null) {
@@ -403,7 +630,14 @@ public class VersionControlServer {
         }
       };
 
-    return execute(operation, projectOrComponent, paths, progressTitle);
+    try {
+      ResultWithFailures<GetOperation> result = executeSequentially(operation, projectOrComponent, paths, progressTitle);
+      changes.complete();
+      return result;
+    }
+    finally {
+      workspaceChanged(workspaceName, workspaceOwner, changes);
+    }
   }
 
 
@@ -469,41 +703,123 @@ public class VersionControlServer {
 
   public List<Item> getChildItems(final String parentServerItem, final boolean foldersOnly, Object projectOrComponent, String progressTitle)
     throws TfsException {
-    final ArrayOfItemSpec itemSpecs = new ArrayOfItemSpec();
-    itemSpecs.setItemSpec(new ItemSpec[]{createItemSpec(parentServerItem, RecursionType.OneLevel)});
+    final List<Item> result = new ArrayList<>();
+    ItemType itemType = foldersOnly ? ItemType.Folder : ItemType.Any;
+    ItemSpec[] itemSpecs = {createItemSpec(parentServerItem, RecursionType.OneLevel)};
+    queryItems(null, null, itemSpecs, LatestVersionSpec.INSTANCE, itemType, item -> {
+      if (!item.getItem().equals(parentServerItem)) {
+        result.add(item);
+      }
+    }, projectOrComponent, progressTitle);
+    return result;
+  }
 
-    final ArrayOfItemSet arrayOfItemSet =
-      TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<ArrayOfItemSet>(progressTitle) {
-        @Override
-        public ArrayOfItemSet execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
-          QueryItems param = new QueryItems();
-          param.setWorkspaceName(null);
-          param.setWorkspaceOwner(null);
-          param.setItems(itemSpecs);
-          param.setVersion(LatestVersionSpec.INSTANCE);
-          param.setDeletedState(DeletedState.NonDeleted);
-          param.setItemType(foldersOnly ? ItemType.Folder : ItemType.Any);
-          param.setGenerateDownloadUrls(false);
-          return myBeans.getRepositoryStub(credentials, pi).queryItems(param).getQueryItemsResult();
-        }
-      });
+  /**
+   * Lists children of several folders in a single request
+   *
+   * @return parent server item -> its children, for every requested parent
+   */
+  public Map<String, List<Item>> getChildItems(final Collection<String> parentServerItems,
+                                               final boolean foldersOnly,
+                                               Object projectOrComponent,
+                                               String progressTitle) throws TfsException {
+    final Map<String, List<Item>> result = new HashMap<>();
+    final Map<String, List<Item>> parentsLowerCase = new HashMap<>();
+    final List<ItemSpec> itemSpecs = new ArrayList<>(parentServerItems.size());
+    for (String parent : parentServerItems) {
+      List<Item> children = new ArrayList<>();
+      result.put(parent, children);
+      parentsLowerCase.put(StringUtil.toLowerCase(parent), children);
+      itemSpecs.add(createItemSpec(parent, RecursionType.OneLevel));
+    }
+    if (itemSpecs.isEmpty()) {
+      return result;
+    }
 
-    TFSVcs.assertTrue(arrayOfItemSet.getItemSet() != null && arrayOfItemSet.getItemSet().length == 1);
-    final ItemSet itemSet = arrayOfItemSet.getItemSet()[0];
-    if (itemSet.getItems() != null && itemSet.getItems().getItem() != null) {
-      List<Item> result = new ArrayList<>(itemSet.getItems().getItem().length);
-      for (Item item : itemSet.getItems().getItem()) {
-        if (!item.getItem().equals(parentServerItem)) {
-          result.add(item);
-        }
+    ItemType itemType = foldersOnly ? ItemType.Folder : ItemType.Any;
+    final Set<String> received = new HashSet<>();
+    queryItems(null, null, itemSpecs.toArray(new ItemSpec[0]), LatestVersionSpec.INSTANCE, itemType, item -> {
+      // item sets of all the parents come in one stream, sort them out by parent path;
+      // a parent comes in its own item set and may also come in the item set of its parent
+      if (VersionControlPath.ROOT_FOLDER.equals(item.getItem()) || !received.add(StringUtil.toLowerCase(item.getItem()))) {
+        return;
       }
-      return result;
+      List<Item> children = parentsLowerCase.get(StringUtil.toLowerCase(VersionControlPath.getParentPath(item.getItem())));
+      if (children != null) {
+        children.add(item);
+      }
+    }, projectOrComponent, progressTitle);
+    return result;
+  }
+
+  private void workspaceChanged(String workspaceName, String workspaceOwner) {
+    LocalWorkspaceState.invalidate(myInstanceId, workspaceName, workspaceOwner);
+    myBranchCache.workspaceChanged();
+  }
+
+  private void workspaceChanged(String workspaceName, String workspaceOwner, WorkspaceChanges changes) {
+    if (changes.myComplete) {
+      LocalWorkspaceState.invalidate(myInstanceId, workspaceName, workspaceOwner, changes.myLocalPaths, changes.myItemIds);
+      myBranchCache.workspaceChanged();
     }
     else {
-      return Collections.emptyList();
+      workspaceChanged(workspaceName, workspaceOwner);
+    }
+  }
+
+  /**
+   * Local paths and items affected by an operation on the workspace. Unless the operation completed, it is not known what
+   * has been changed on the server, and the whole workspace is considered changed.
+   */
+  private static class WorkspaceChanges {
+    private final Collection<String> myLocalPaths = new ArrayList<>();
+    private final Collection<Integer> myItemIds = new ArrayList<>();
+    private boolean myComplete;
+
+    void addPath(@Nullable String path) {
+      // server paths are affected as well, their local paths come in get operations
+      if (path != null && !path.startsWith(VersionControlPath.ROOT_FOLDER)) {
+        myLocalPaths.add(VersionControlPath.localPathFromTfsRepresentation(path));
+      }
+    }
+
+    void addItem(int itemId) {
+      myItemIds.add(itemId);
+    }
+
+    void addGetOperations(GetOperation[] operations) {
+      for (GetOperation operation : operations) {
+        addPath(operation.getSlocal());
+        addPath(operation.getTlocal());
+        addItem(operation.getItemid());
+      }
+    }
+
+    void complete() {
+      myComplete = true;
     }
   }
 
+  @NotNull
+  public FolderListingCache getFolderListingCache() {
+    return myFolderListingCache;
+  }
+
+  @NotNull
+  public BranchCache getBranchCache() {
+    return myBranchCache;
+  }
+
+  @NotNull
+  public IdentityCache getIdentityCache() {
+    return myIdentityCache;
+  }
+
+  @NotNull
+  public WorkItemsCache getWorkItemsCache() {
+    return myWorkItemsCache;
+  }
+
   public static class ExtendedItemsAndPendingChanges {
     public final List<ExtendedItem> extendedItems;
     public final Collection<PendingChange> pendingChanges;
@@ -526,28 +842,13 @@ public class VersionControlServer {
         public ExtendedItemsAndPendingChanges execute(Collection<ItemSpec> items,
                                                       Credentials credentials,
                                                       ProgressIndicator pi)
-          throws RemoteException, HostNotApplicableException {
+          throws RemoteException, TfsException {
           final ArrayOfItemSpec arrayOfItemSpec = new ArrayOfItemSpec();
           arrayOfItemSpec.setItemSpec(items.toArray(new ItemSpec[0]));
-          QueryItemsExtended param = new QueryItemsExtended();
-          param.setWorkspaceName(workspaceName);
-          param.setWorkspaceOwner(ownerName);
-          param.setItems(arrayOfItemSpec);
-          param.setDeletedState(DeletedState.NonDeleted);
-          param.setItemType(itemType);
-          ArrayOfExtendedItem[] extendedItemsArray =
-            myBeans.getRepositoryStub(credentials, pi).queryItemsExtended(param).getQueryItemsExtendedResult().getArrayOfExtendedItem();
-
-          TFSVcs.assertTrue(extendedItemsArray != null && extendedItemsArray.length == items.size());
-
-          List<ExtendedItem> extendedItems = new ArrayList<>();
-          //noinspection ConstantConditions
-          for (ArrayOfExtendedItem extendedItem : extendedItemsArray) {
-            if (extendedItem.getExtendedItem() != null) {
-              // no need to chooseExtendedItem() since DeletedState.NonDeleted specified
-              ContainerUtil.addAll(extendedItems, extendedItem.getExtendedItem());
-            }
-          }
+          // no need to chooseExtendedItem() since DeletedState.NonDeleted specified
+          final List<ExtendedItem> extendedItems = new ArrayList<>();
+          queryItemsExtended(myBeans.getRepositoryStub(credentials, pi), workspaceName, ownerName, arrayOfItemSpec, DeletedState.NonDeleted,
+                             itemType, extendedItems::add);
 
           QueryPendingSets param2 = new QueryPendingSets();
           param2.setLocalWorkspaceName(workspaceName);
@@ -585,6 +886,53 @@ public class VersionControlServer {
     return execute(operation, projectOrComponent, itemsSpecs, progressTitle);
   }
 
+  /**
+   * Passes extended items to the consumer one by one while the server response is being read
+   */
+  public void getExtendedItems(final String workspaceName,
+                               final String ownerName,
+                               List<ItemSpec> itemsSpecs,
+                               final DeletedState deletedState,
+                               final ItemType itemType,
+                               final ThrowableConsumer<ExtendedItem, TfsException> consumer,
+                               Object projectOrComponent, String progressTitle)
+    throws TfsException {
+    final DeliverOnce<ExtendedItem> deliverOnce = new DeliverOnce<>(consumer);
+    OperationOnCollection<ItemSpec, Void> operation = new OperationOnCollection<ItemSpec, Void>() {
+      @Override
+      public Void execute(Collection<ItemSpec> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, TfsException {
+        final ArrayOfItemSpec arrayOfItemSpec = new ArrayOfItemSpec();
+        arrayOfItemSpec.setItemSpec(items.toArray(new ItemSpec[0]));
+        queryItemsExtended(myBeans.getRepositoryStub(credentials, pi), workspaceName, ownerName, arrayOfItemSpec, deletedState, itemType,
+                           deliverOnce.attempt(items));
+        return null;
+      }
+
+      @Override
+      public Void merge(Collection<Void> results) {
+        return null;
+      }
+    };
+
+    executeSequentially(operation, projectOrComponent, itemsSpecs, progressTitle);
+  }
+
+  private static void queryItemsExtended(RepositoryStub stub,
+                                         String workspaceName,
+                                         String ownerName,
+                                         ArrayOfItemSpec itemSpecs,
+                                         DeletedState deletedState,
+                                         ItemType itemType,
+                                         ThrowableConsumer<ExtendedItem, TfsException> consumer) throws RemoteException, TfsException {
+    QueryItemsExtended param = new QueryItemsExtended();
+    param.setWorkspaceName(workspaceName);
+    param.setWorkspaceOwner(ownerName);
+    param.setItems(itemSpecs);
+    param.setDeletedState(deletedState);
+    param.setItemType(itemType);
+    streamResult(stub, "queryItemsExtended", param, QueryItemsExtended.MY_QNAME, "ExtendedItem", ExtendedItem.Factory::parse, consumer);
+  }
+
   @Nullable
   public ExtendedItem getExtendedItem(final String workspaceName,
                                       final String ownerName,
@@ -703,7 +1051,7 @@ public class VersionControlServer {
 
   public void downloadItem(Project project, final String downloadKey, final OutputStream outputStream, String progressTitle)
     throws TfsException {
-    final boolean tryProxy = TFSConfigurationManager.getInstance().shouldTryProxy(myServerUri);
+    final boolean tryProxy = TFSConfigurationManager.getInstance().shouldTryProxy(myServerUri) && myDownloadRouteSelector.shouldUseProxy();
     try {
       TfsRequestManager.executeRequest(myServerUri, project, new TfsRequestManager.Request<Void>(progressTitle) {
         @Override
@@ -721,7 +1069,25 @@ public class VersionControlServer {
             downloadUrl = TfsUtil.appendPath(serverUri, myBeans.getDownloadUrl(credentials, pi) + "?" + downloadKey);
           }
           LOG.debug((tryProxy ? "Downloading via proxy: " : "Downloading: ") + downloadUrl);
-          WebServiceHelper.httpGet(myServerUri, downloadUrl, outputStream, credentials, myBeans.getUploadDownloadClient(tryProxy));
+          final long[] size = new long[1];
+          OutputStream countingStream = new FilterOutputStream(outputStream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+              out.write(b, off, len);
+              size[0] += len;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+              out.write(b);
+              size[0]++;
+            }
+          };
+          long start = System.currentTimeMillis();
+          WebServiceHelper.httpGet(myServerUri, downloadUrl, countingStream, credentials, myBeans.getUploadDownloadClient(tryProxy));
+          if (TFSConfigurationManager.getInstance().getProxyUri(myServerUri) != null) {
+            myDownloadRouteSelector.downloaded(tryProxy, size[0], System.currentTimeMillis() - start);
+          }
           return null;
         }
       });
@@ -732,8 +1098,7 @@ public class VersionControlServer {
         TFSVcs.LOG.warn("Disabling proxy");
         String messageHtml = TFSBundle
           .message("proxy.failed", TfsUtil.getPresentableUri(myServerUri), TFSConfigurationManager.getInstance().getProxyUri(myServerUri),
-                   StringUtil.trimEnd(e.getMessage(), "."),
-                   ApplicationNamesInfo.getInstance().getFullProductName());
+                   StringUtil.trimEnd(e.getMessage(), "."), ServerConfiguration.PROXY_RECHECK_INTERVAL / 60000);
         TfsUtil.showBalloon(project, MessageType.WARNING, messageHtml);
         TFSConfigurationManager.getInstance().setProxyInaccessible(myServerUri);
         downloadItem(project, downloadKey, outputStream, progressTitle);
@@ -751,10 +1116,27 @@ public class VersionControlServer {
                                       final VersionSpec versionFrom,
                                       final VersionSpec versionTo,
                                       Object projectOrComponent, String progressTitle, int maxCount) throws TfsException {
+    List<Changeset> allChangeSets = new ArrayList<>();
+    queryHistory(workspace, serverPath, recursive, user, versionFrom, versionTo, allChangeSets::add, projectOrComponent, progressTitle,
+                 maxCount);
+    return allChangeSets;
+  }
+
+  /**
+   * Passes changesets to the consumer one by one while the server response is being read, latest first
+   */
+  public void queryHistory(final WorkspaceInfo workspace,
+                           final String serverPath,
+                           final boolean recursive,
+                           final String user,
+                           final VersionSpec versionFrom,
+                           final VersionSpec versionTo,
+                           final ThrowableConsumer<Changeset, TfsException> consumer,
+                           Object projectOrComponent, String progressTitle, int maxCount) throws TfsException {
     final VersionSpec itemVersion = LatestVersionSpec.INSTANCE;
     ItemSpec itemSpec = createItemSpec(serverPath, recursive ? RecursionType.Full : null);
-    return queryHistory(workspace.getName(), workspace.getOwnerName(), itemSpec, user, itemVersion, versionFrom, versionTo,
-                        maxCount, projectOrComponent, progressTitle);
+    queryHistory(workspace.getName(), workspace.getOwnerName(), itemSpec, user, itemVersion, versionFrom, versionTo, maxCount, consumer,
+                 projectOrComponent, progressTitle);
   }
 
   public List<Changeset> queryHistory(final String workspaceName,
@@ -766,50 +1148,102 @@ public class VersionControlServer {
                                       final VersionSpec versionTo,
                                       int maxCount,
                                       Object projectOrComponent, String progressTitle) throws TfsException {
+    List<Changeset> allChangeSets = new ArrayList<>();
+    queryHistory(workspaceName, workspaceOwner, itemSpec, user, itemVersion, versionFrom, versionTo, maxCount, allChangeSets::add,
+                 projectOrComponent, progressTitle);
+    return allChangeSets;
+  }
+
+  /**
+   * Passes changesets to the consumer one by one while the server response is being read, latest first
+   */
+  public void queryHistory(final String workspaceName,
+                           final String workspaceOwner,
+                           final ItemSpec itemSpec,
+                           final String user,
+                           final VersionSpec itemVersion,
+                           final VersionSpec versionFrom,
+                           final VersionSpec versionTo,
+                           int maxCount,
+                           final ThrowableConsumer<Changeset, TfsException> consumer,
+                           Object projectOrComponent, String progressTitle) throws TfsException {
     // TODO: slot mode
     // TODO: include allChangeSets
 
-    List<Changeset> allChangeSets = new ArrayList<>();
     int total = maxCount > 0 ? maxCount : Integer.MAX_VALUE;
     final Ref<VersionSpec> versionToCurrent = new Ref<>(versionTo);
 
     while (total > 0) {
       final int batchMax = Math.min(256, total);
+      final Ref<Changeset> lastChangeSet = new Ref<>();
+      final int[] count = new int[1];
+      final DeliverOnce<Changeset> deliverOnce = new DeliverOnce<>(changeset -> {
+        count[0]++;
+        lastChangeSet.set(changeset);
+        consumer.consume(changeset);
+      });
 
-      Changeset[] currentChangeSets =
-        TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Changeset[]>(progressTitle) {
-          @Override
-          public Changeset[] execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
-            QueryHistory param = new QueryHistory();
-            param.setWorkspaceName(workspaceName);
-            param.setWorkspaceOwner(workspaceOwner);
-            param.setItemSpec(itemSpec);
-            param.setVersionItem(itemVersion);
-            param.setUser(user);
-            param.setVersionFrom(versionFrom);
-            param.setVersionTo(versionToCurrent.get());
-            param.setMaxCount(batchMax);
-            param.setIncludeFiles(true);
-            param.setGenerateDownloadUrls(false);
-            param.setSlotMode(false);
-            return myBeans.getRepositoryStub(credentials, pi).queryHistory(param).getQueryHistoryResult().getChangeset();
-          }
-        });
-
-      if (currentChangeSets != null) {
-        ContainerUtil.addAll(allChangeSets, currentChangeSets);
-      }
-
+      TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Void>(progressTitle) {
+        @Override
+        public Void execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+          QueryHistory param = new QueryHistory();
+          param.setWorkspaceName(workspaceName);
+          param.setWorkspaceOwner(workspaceOwner);
+          param.setItemSpec(itemSpec);
+          param.setVersionItem(itemVersion);
+          param.setUser(user);
+          param.setVersionFrom(versionFrom);
+          param.setVersionTo(versionToCurrent.get());
+          param.setMaxCount(batchMax);
+          param.setIncludeFiles(true);
+          param.setGenerateDownloadUrls(false);
+          param.setSlotMode(false);
+          streamResult(myBeans.getRepositoryStub(credentials, pi), "queryHistory", param, QueryHistory.MY_QNAME, "Changeset",
+                       Changeset.Factory::parse, deliverOnce.attempt(this));
+          return null;
+        }
+      });
 
-      if (currentChangeSets == null || currentChangeSets.length < batchMax) {
+      if (count[0] < batchMax) {
         break;
       }
 
-      total -= currentChangeSets.length;
-      Changeset lastChangeSet = currentChangeSets[currentChangeSets.length - 1];
-      versionToCurrent.set(new ChangesetVersionSpec(lastChangeSet.getCset()));
+      total -= count[0];
+      versionToCurrent.set(new ChangesetVersionSpec(lastChangeSet.get().getCset()));
     }
-    return allChangeSets;
+  }
+
+  /**
+   * Cheap check for new changes: no changed items are transferred.
+   *
+   * @return id of the latest changeset affecting the path or anything under it, 0 if there is none
+   */
+  public int getLatestChangeset(final String workspaceName,
+                                final String workspaceOwner,
+                                final String serverPath,
+                                Object projectOrComponent,
+                                String progressTitle) throws TfsException {
+    final ItemSpec itemSpec = createItemSpec(serverPath, RecursionType.Full);
+    Changeset[] changesets =
+      TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Changeset[]>(progressTitle) {
+        @Override
+        public Changeset[] execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+          QueryHistory param = new QueryHistory();
+          param.setWorkspaceName(workspaceName);
+          param.setWorkspaceOwner(workspaceOwner);
+          param.setItemSpec(itemSpec);
+          param.setVersionItem(LatestVersionSpec.INSTANCE);
+          param.setVersionFrom(new ChangesetVersionSpec(1));
+          param.setVersionTo(LatestVersionSpec.INSTANCE);
+          param.setMaxCount(1);
+          param.setIncludeFiles(false);
+          param.setGenerateDownloadUrls(false);
+          param.setSlotMode(false);
+          ArrayOfChangeset result = myBeans.getRepositoryStub(credentials, pi).queryHistory(param).getQueryHistoryResult();
+          return result != null ? result.getChangeset() : null;
+        }
+      });
+    return changesets != null && changesets.length > 0 ? changesets[0].getCset() : 0;
   }
 
   public Workspace[] queryWorkspaces(final String computer, Object projectOrComponent, boolean force) throws TfsException {
@@ -859,6 +1293,12 @@ public class VersionControlServer {
   public void updateLocalVersions(final String workspaceName, final String workspaceOwnerName, Collection<LocalVersionUpdate> updates,
                                   Object projectOrComponent, String progressTitle)
     throws TfsException {
+    final WorkspaceChanges changes = new WorkspaceChanges();
+    for (LocalVersionUpdate update : updates) {
+      changes.addPath(update.getTlocal());
+      changes.addItem(update.getItemid());
+    }
+    changes.complete();
     OperationOnCollection<LocalVersionUpdate, Void> operation = new OperationOnCollection<LocalVersionUpdate, Void>() {
       @Override
       public Void execute(Collection<LocalVersionUpdate> items, Credentials credentials, ProgressIndicator pi)
@@ -879,13 +1319,19 @@ public class VersionControlServer {
       }
     };
 
-    execute(operation, projectOrComponent, updates, progressTitle);
+    try {
+      execute(operation, projectOrComponent, updates, progressTitle);
+    }
+    finally {
+      workspaceChanged(workspaceName, workspaceOwnerName, changes);
+    }
   }
 
   public ResultWithFailures<GetOperation> undoPendingChanges(final String workspaceName,
                                                              final String workspaceOwner,
                                                              Collection<String> serverPaths,
                                                              Object projectOrComponent, String progressTitle) throws TfsException {
+    final WorkspaceChanges changes = new WorkspaceChanges();
     OperationOnCollection<String, ResultWithFailures<GetOperation>> operation =
       new OperationOnCollection<String, ResultWithFailures<GetOperation>>() {
         @Override
@@ -905,6 +1351,9 @@ public class VersionControlServer {
           GetOperation[] getOperations =
             response.getUndoPendingChangesResult() != null ? response.getUndoPendingChangesResult().getGetOperation() : null;
           Failure[] failures = response.getFailures() != null ? response.getFailures().getFailure() : null;
+          if (getOperations != null) {
+            changes.addGetOperations(getOperations);
+          }
           return new ResultWithFailures<>(getOperations, failures);
         }
 
@@ -914,7 +1363,14 @@ public class VersionControlServer {
         }
       };
 
-    return execute(operation, projectOrComponent, serverPaths, progressTitle);
+    try {
+      ResultWithFailures<GetOperation> result = executeSequentially(operation, projectOrComponent, serverPaths, progressTitle);
+      changes.complete();
+      return result;
+    }
+    finally {
+      workspaceChanged(workspaceName, workspaceOwner, changes);
+    }
   }
 
   public List<GetOperation> get(final String workspaceName,
@@ -923,10 +1379,27 @@ public class VersionControlServer {
                                 Object projectOrComponent,
                                 String progressTitle)
     throws TfsException {
-    OperationOnList<GetRequestParams, List<GetOperation>> operation = new OperationOnList<GetRequestParams, List<GetOperation>>() {
+    final List<GetOperation> result = new ArrayList<>();
+    get(workspaceName, workspaceOwner, requests, result::add, projectOrComponent, progressTitle);
+    return result;
+  }
+
+  /**
+   * Passes get operations to the consumer one by one while the server response is being read, in the order they should be applied.
+   * Consumer is called within the request, so it should neither block nor issue requests to the same server (e.g. download files).
+   */
+  public void get(final String workspaceName,
+                  final String workspaceOwner,
+                  List<GetRequestParams> requests,
+                  final ThrowableConsumer<GetOperation, TfsException> consumer,
+                  Object projectOrComponent,
+                  String progressTitle)
+    throws TfsException {
+    final DeliverOnce<GetOperation> deliverOnce = new DeliverOnce<>(consumer);
+    OperationOnList<GetRequestParams, Void> operation = new OperationOnList<GetRequestParams, Void>() {
       @Override
-      public List<GetOperation> execute(List<GetRequestParams> items, Credentials credentials, ProgressIndicator pi)
-        throws RemoteException, HostNotApplicableException {
+      public Void execute(List<GetRequestParams> items, Credentials credentials, ProgressIndicator pi)
+        throws RemoteException, TfsException {
         List<GetRequest> getRequests = new ArrayList<>(items.size());
         for (GetRequestParams getRequestParams : items) {
           final GetRequest getRequest = new GetRequest();
@@ -942,29 +1415,18 @@ public class VersionControlServer {
         param.setRequests(arrayOfGetRequests);
         param.setForce(true);
         param.setNoGet(false);
-        ArrayOfArrayOfGetOperation response = myBeans.getRepositoryStub(credentials, pi).get(param).getGetResult();
-        TFSVcs.assertTrue(response.getArrayOfGetOperation() != null && response.getArrayOfGetOperation().length >= items.size());
-
-        List<GetOperation> results = new ArrayList<>();
-        for (ArrayOfGetOperation arrayOfGetOperation : response.getArrayOfGetOperation()) {
-          if (arrayOfGetOperation.getGetOperation() != null) {
-            ContainerUtil.addAll(results, arrayOfGetOperation.getGetOperation());
-          }
-        }
-        return results;
+        streamResult(myBeans.getRepositoryStub(credentials, pi), "get", param, Get.MY_QNAME, "GetOperation", GetOperation.Factory::parse,
+                     deliverOnce.attempt(items));
+        return null;
       }
 
       @Override
-      public List<GetOperation> merge(Collection<List<GetOperation>> results) {
-        List<GetOperation> merged = new ArrayList<>();
-        for (List<GetOperation> r : results) {
-          merged.addAll(r);
-        }
-        return merged;
+      public Void merge(Collection<Void> results) {
+        return null;
       }
     };
 
-    return execute(operation, projectOrComponent, requests, progressTitle);
+    executeSequentially(operation, projectOrComponent, requests, progressTitle);
   }
 
   public void addLocalConflict(final String workspaceName,
@@ -1061,7 +1523,7 @@ public class VersionControlServer {
   public ResolveResponse resolveConflict(final String workspaceName, final String workspasceOwnerName, final ResolveConflictParams params,
                                          Object projectOrComponent, String progressTitle)
     throws TfsException {
-    return TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<ResolveResponse>(progressTitle) {
+    ResolveResponse response = TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<ResolveResponse>(progressTitle) {
       @Override
       public ResolveResponse execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
         Resolve param = new Resolve();
@@ -1075,6 +1537,8 @@ public class VersionControlServer {
         return myBeans.getRepositoryStub(credentials, pi).resolve(param);
       }
     });
+    workspaceChanged(workspaceName, workspasceOwnerName);
+    return response;
   }
 
 
@@ -1245,7 +1709,14 @@ public class VersionControlServer {
         }
       };
 
-    return execute(operation, projectOrComponent, serverItems, progressTitle);
+    try {
+      return executeSequentially(operation, projectOrComponent, serverItems, progressTitle);
+    }
+    finally {
+      myFolderListingCache.clear();
+      myBranchCache.checkedIn();
+      workspaceChanged(workspaceName, workspaceOwnerName);
+    }
   }
 
   @Nullable
@@ -1281,7 +1752,7 @@ public class VersionControlServer {
     final ItemSpec source = createItemSpec(sourceServerPath, RecursionType.Full);
     final ItemSpec target = createItemSpec(targetServerPath, null);
 
-    return TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<MergeResponse>(progressTitle) {
+    MergeResponse response = TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<MergeResponse>(progressTitle) {
       @Override
       public MergeResponse execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
         Merge param = new Merge();
@@ -1298,6 +1769,8 @@ public class VersionControlServer {
         return myBeans.getRepositoryStub(credentials, pi).merge(param);
       }
     });
+    workspaceChanged(workspaceName, ownerName);
+    return response;
   }
 
   /**
@@ -1428,36 +1901,71 @@ public class VersionControlServer {
 
   public List<Item> queryItems(final ItemSpec itemSpec, final VersionSpec version, Object projectOrComponent, String progressTitle)
     throws TfsException {
-    final ArrayOfItemSpec itemSpecs = new ArrayOfItemSpec();
-    itemSpecs.setItemSpec(new ItemSpec[]{itemSpec});
+    final List<Item> result = new ArrayList<>();
+    queryItems(itemSpec, version, result::add, projectOrComponent, progressTitle);
+    return result;
+  }
 
-    final ArrayOfItemSet arrayOfItemSet =
-      TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<ArrayOfItemSet>(progressTitle) {
-        @Override
-        public ArrayOfItemSet execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
-          QueryItems param = new QueryItems();
-          param.setWorkspaceName(null);
-          param.setWorkspaceOwner(null);
-          param.setItems(itemSpecs);
-          param.setVersion(version);
-          param.setDeletedState(DeletedState.NonDeleted);
-          param.setItemType(ItemType.Any);
-          param.setGenerateDownloadUrls(false);
-          return myBeans.getRepositoryStub(credentials, pi).queryItems(param).getQueryItemsResult();
-        }
-      });
+  /**
+   * Passes items to the consumer one by one while the server response is being read
+   */
+  public void queryItems(final ItemSpec itemSpec,
+                         final VersionSpec version,
+                         final ThrowableConsumer<Item, TfsException> consumer,
+                         Object projectOrComponent,
+                         String progressTitle)
+    throws TfsException {
+    queryItems(null, null, new ItemSpec[]{itemSpec}, version, ItemType.Any, consumer, projectOrComponent, progressTitle);
+  }
 
-    TFSVcs.assertTrue(arrayOfItemSet.getItemSet() != null && arrayOfItemSet.getItemSet().length == 1);
+  /**
+   * Passes files of the workspace as of the versions it has, along with their content hashes, to the consumer one by one
+   *
+   * @param itemSpecs local paths of the workspace
+   */
+  public void queryWorkspaceFiles(final String workspaceName,
+                                  final String workspaceOwner,
+                                  List<ItemSpec> itemSpecs,
+                                  final ThrowableConsumer<Item, TfsException> consumer,
+                                  Object projectOrComponent,
+                                  String progressTitle)
+    throws TfsException {
+    queryItems(workspaceName, workspaceOwner, itemSpecs.toArray(new ItemSpec[0]), new WorkspaceVersionSpec(workspaceName, workspaceOwner),
+               ItemType.File, consumer, projectOrComponent, progressTitle);
+  }
 
-    final ItemSet itemSet = arrayOfItemSet.getItemSet()[0];
-    if (itemSet.getItems() != null && itemSet.getItems().getItem() != null) {
-      List<Item> result = new ArrayList<>(itemSet.getItems().getItem().length);
-      ContainerUtil.addAll(result, itemSet.getItems().getItem());
-      return result;
-    }
-    else {
-      return Collections.emptyList();
-    }
+  /**
+   * @param workspaceName workspace to resolve local paths in item specs, null if item specs are server paths
+   */
+  private void queryItems(@Nullable final String workspaceName,
+                          @Nullable final String workspaceOwner,
+                          final ItemSpec[] itemSpecArray,
+                          final VersionSpec version,
+                          final ItemType itemType,
+                          final ThrowableConsumer<Item, TfsException> consumer,
+                          Object projectOrComponent,
+                          String progressTitle)
+    throws TfsException {
+    final ArrayOfItemSpec itemSpecs = new ArrayOfItemSpec();
+    itemSpecs.setItemSpec(itemSpecArray);
+    final DeliverOnce<Item> deliverOnce = new DeliverOnce<>(consumer);
+
+    TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Void>(progressTitle) {
+      @Override
+      public Void execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+        QueryItems param = new QueryItems();
+        param.setWorkspaceName(workspaceName);
+        param.setWorkspaceOwner(workspaceOwner);
+        param.setItems(itemSpecs);
+        param.setVersion(version);
+        param.setDeletedState(DeletedState.NonDeleted);
+        param.setItemType(itemType);
+        param.setGenerateDownloadUrls(false);
+        streamResult(myBeans.getRepositoryStub(credentials, pi), "queryItems", param, QueryItems.MY_QNAME, "Item", Item.Factory::parse,
+                     deliverOnce.attempt(this));
+        return null;
+      }
+    });
   }
 
 
@@ -1547,7 +2055,7 @@ public class VersionControlServer {
       };
 
 
-    return execute(operation, projectOrComponent, labelItemSpecs, progressTitle);
+    return executeSequentially(operation, projectOrComponent, labelItemSpecs, progressTitle);
   }
 
   public Collection<BranchRelative> queryBranches(final String itemServerPath,
@@ -1639,7 +2147,12 @@ public class VersionControlServer {
     return requestHeader3;
   }
 
-  public List<WorkItem> queryWorkItems(Query_type0E query, Object projectOrComponent, String progressTitle) throws TfsException {
+  /**
+   * Work items found by the query last time are kept in {@link #getWorkItemsCache()} under the given key: only those that are new
+   * or have got a new revision since are loaded in full. Revisions are asked for the cached work items only.
+   */
+  public List<WorkItem> queryWorkItems(@NotNull String queryKey, Query_type0E query, Object projectOrComponent, String progressTitle)
+    throws TfsException {
     final PsQuery_type1 psQuery_type1 = new PsQuery_type1();
     psQuery_type1.setQuery(query);
 
@@ -1656,7 +2169,19 @@ public class VersionControlServer {
 
     final List<Integer> ids = parseWorkItemsIds(queryWorkitemsResponse);
     Collections.sort(ids);
-    return pageWorkitemsByIds(ids, projectOrComponent, progressTitle);
+
+    // work items not cached are loaded in full anyway, so the first run of the query doesn't ask for revisions at all
+    Map<Integer, Integer> revisions = new HashMap<>();
+    List<Integer> cached = myWorkItemsCache.getCached(ids);
+    for (String[] row : pageWorkitemsByIds(cached, WorkItemSerialize.REVISION_FIELDS, projectOrComponent, progressTitle)) {
+      revisions.put(Integer.parseInt(row[0]), Integer.parseInt(row[1]));
+    }
+    List<WorkItem> loaded = new ArrayList<>();
+    for (String[] row : pageWorkitemsByIds(myWorkItemsCache.getOutdated(ids, revisions), WorkItemSerialize.FIELDS, projectOrComponent,
+                                           progressTitle)) {
+      loaded.add(WorkItemSerialize.createFromFields(row));
+    }
+    return myWorkItemsCache.update(queryKey, ids, loaded, null);
   }
 
   private static List<Integer> parseWorkItemsIds(final QueryWorkitemsResponse queryWorkitemsResponse) {
@@ -1683,8 +2208,10 @@ public class VersionControlServer {
     return workItemsIdSet;
   }
 
-  private List<WorkItem> pageWorkitemsByIds(Collection<Integer> workItemsIds, Object projectOrComponent, String progressTitle)
-    throws TfsException {
+  private List<String[]> pageWorkitemsByIds(Collection<Integer> workItemsIds,
+                                            List<WorkItemField> fields,
+                                            Object projectOrComponent,
+                                            String progressTitle) throws TfsException {
     if (workItemsIds.isEmpty()) {
       return Collections.emptyList();
     }
@@ -1704,7 +2231,7 @@ public class VersionControlServer {
       new com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.ArrayOfString();
 
     List<String> serializedFields = new ArrayList<>();
-    for (WorkItemField field : WorkItemSerialize.FIELDS) {
+    for (WorkItemField field : fields) {
       serializedFields.add(field.getSerialized());
     }
     workItemFields.setString(ArrayUtilRt.toStringArray(serializedFields));
@@ -1726,11 +2253,11 @@ public class VersionControlServer {
           }
         });
 
-    List<WorkItem> workItems = new ArrayList<>();
+    List<String[]> rows = new ArrayList<>();
     for (R_type0 row : pageWorkitemsByIdsResponse.getItems().getTable().getRows().getR()) {
-      workItems.add(WorkItemSerialize.createFromFields(row.getF()));
+      rows.add(row.getF());
     }
-    return workItems;
+    return rows;
   }
 
   public void updateWorkItemsAfterCheckin(final String workspaceOwnerName,
@@ -1741,7 +2268,7 @@ public class VersionControlServer {
       return;
     }
 
-    String identity = readIdentity(workspaceOwnerName, projectOrComponent, progressTitle).getDisplayName();
+    String identity = myIdentityCache.getDisplayName(workspaceOwnerName, projectOrComponent, progressTitle);
     for (WorkItem workItem : workItems.keySet()) {
       CheckinWorkItemAction checkinWorkItemAction = workItems.get(workItem);
       if (checkinWorkItemAction != CheckinWorkItemAction.None) {
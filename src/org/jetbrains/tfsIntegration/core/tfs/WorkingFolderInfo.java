@@ -73,14 +73,6 @@ public class WorkingFolderInfo {
     return new WorkingFolderInfo(myStatus, myLocalPath, myServerPath);
   }
 
-  @Nullable
-  String getServerPathByLocalPath(final @NotNull FilePath localPath) {
-    if (!StringUtil.isEmpty(getServerPath()) && localPath.isUnder(getLocalPath(), false)) {
-      return VersionControlPath.getCombinedServerPath(getLocalPath(), getServerPath(), localPath);
-    }
-    return null;
-  }
-
   @Nullable
   public FilePath getLocalPathByServerPath(final String serverPath, final boolean isDirectory) {
     if (!StringUtil.isEmpty(getServerPath()) && VersionControlPath.isUnder(getServerPath(), serverPath)) {
@@ -50,7 +50,9 @@ public class WorkspaceInfo {
   @Nullable private String mySecurityToken;
   private int myOptions;
 
-  private List<WorkingFolderInfo> myWorkingFoldersInfos = new ArrayList<>();
+  // replaced rather than modified, so that the compiled table can tell it is outdated
+  private volatile List<WorkingFolderInfo> myWorkingFoldersInfos = new ArrayList<>();
+  private volatile @Nullable MappingTable myMappingTable;
 
   public WorkspaceInfo(final @NotNull ServerInfo serverInfo, final @NotNull String owner, final @NotNull String computer) {
     myServerInfo = serverInfo;
@@ -163,6 +165,21 @@ public class WorkspaceInfo {
     return Collections.unmodifiableList(myWorkingFoldersInfos);
   }
 
+  /**
+   * Callers translating many paths should take the table once instead of going through the workspace for every path.
+   */
+  @NotNull
+  public MappingTable getMappingTable(Object projectOrComponent) throws TfsException {
+    loadFromServer(projectOrComponent, false);
+    List<WorkingFolderInfo> workingFolders = myWorkingFoldersInfos;
+    MappingTable table = myMappingTable;
+    if (table == null || !table.isCompiledFrom(workingFolders)) {
+      table = new MappingTable(workingFolders);
+      myMappingTable = table;
+    }
+    return table;
+  }
+
   public void loadFromServer(Object projectOrComponent, boolean force) throws TfsException {
     if (myOriginalName == null || myLoaded || !hasCurrentOwnerAndComputer()) {
       return;
@@ -213,9 +230,9 @@ public class WorkspaceInfo {
                                                        Object projectOrComponent)
     throws TfsException {
     final FilePath localPathOnLocalFileSystem = VcsUtil.getFilePath(localPath.getPath(), localPath.isDirectory());
-    final WorkingFolderInfo parentMapping = findNearestParentMapping(localPathOnLocalFileSystem, projectOrComponent);
-    if (parentMapping != null) {
-      return Collections.singletonList(parentMapping.getServerPathByLocalPath(localPathOnLocalFileSystem));
+    final String serverPath = getMappingTable(projectOrComponent).getServerPath(localPathOnLocalFileSystem);
+    if (serverPath != null) {
+      return Collections.singletonList(serverPath);
     }
 
     if (considerChildMappings) {
@@ -235,44 +252,17 @@ public class WorkspaceInfo {
   @Nullable
   public FilePath findLocalPathByServerPath(final @NotNull String serverPath, final boolean isDirectory,
                                             Object projectOrComponent) throws TfsException {
-    final WorkingFolderInfo parentMapping = findNearestParentMapping(serverPath, isDirectory, projectOrComponent);
-    return parentMapping != null ? parentMapping.getLocalPathByServerPath(serverPath, isDirectory) : null;
+    return getMappingTable(projectOrComponent).getLocalPath(serverPath, isDirectory);
   }
 
   public boolean hasLocalPathForServerPath(final @NotNull String serverPath, Object projectOrComponent) throws TfsException {
     return findLocalPathByServerPath(serverPath, false, projectOrComponent) != null;
   }
 
-  // TODO inline?
-
-  @Nullable
-  private WorkingFolderInfo findNearestParentMapping(final @NotNull FilePath localPath, Object projectOrComponent) throws TfsException {
-    WorkingFolderInfo mapping = null;
-    for (WorkingFolderInfo folderInfo : getWorkingFolders(projectOrComponent)) {
-      if (folderInfo.getServerPathByLocalPath(localPath) != null &&
-          (mapping == null || folderInfo.getLocalPath().isUnder(mapping.getLocalPath(), false))) {
-        mapping = folderInfo;
-      }
-    }
-    return mapping;
-  }
-
-  @Nullable
-  private WorkingFolderInfo findNearestParentMapping(final @NotNull String serverPath, boolean isDirectory, Object projectOrComponent)
-    throws TfsException {
-    WorkingFolderInfo mapping = null;
-    for (WorkingFolderInfo folderInfo : getWorkingFolders(projectOrComponent)) {
-      if (folderInfo.getLocalPathByServerPath(serverPath, isDirectory) != null &&
-          (mapping == null || VersionControlPath.isUnder(mapping.getServerPath(), folderInfo.getServerPath()))) {
-        mapping = folderInfo;
-      }
-    }
-    return mapping;
-  }
-
-
   public void addWorkingFolderInfo(final WorkingFolderInfo workingFolderInfo) {
-    myWorkingFoldersInfos.add(workingFolderInfo);
+    List<WorkingFolderInfo> workingFolders = new ArrayList<>(myWorkingFoldersInfos);
+    workingFolders.add(workingFolderInfo);
+    myWorkingFoldersInfos = workingFolders;
   }
 
   public void addOwnerAlias(@NotNull String alias) {
@@ -281,13 +271,14 @@ public class WorkspaceInfo {
 
   public void removeWorkingFolderInfo(final WorkingFolderInfo folderInfo) {
     checkCurrentOwnerAndComputer();
-    myWorkingFoldersInfos.remove(folderInfo);
+    List<WorkingFolderInfo> workingFolders = new ArrayList<>(myWorkingFoldersInfos);
+    workingFolders.remove(folderInfo);
+    myWorkingFoldersInfos = workingFolders;
   }
 
   public void setWorkingFolders(final List<WorkingFolderInfo> workingFolders) {
     checkCurrentOwnerAndComputer();
-    myWorkingFoldersInfos.clear();
-    myWorkingFoldersInfos.addAll(workingFolders);
+    myWorkingFoldersInfos = new ArrayList<>(workingFolders);
   }
 
   public void saveToServer(Object projectOrComponent, WorkspaceInfo originalWorkspace) throws TfsException {
@@ -393,9 +384,11 @@ public class WorkspaceInfo {
     copy.mySecurityToken = mySecurityToken;
     copy.myOptions = myOptions;
 
+    List<WorkingFolderInfo> workingFolders = new ArrayList<>(myWorkingFoldersInfos.size());
     for (WorkingFolderInfo workingFolder : myWorkingFoldersInfos) {
-      copy.myWorkingFoldersInfos.add(workingFolder.getCopy());
+      workingFolders.add(workingFolder.getCopy());
     }
+    copy.myWorkingFoldersInfos = workingFolders;
     return copy;
   }
 
@@ -16,13 +16,23 @@
 
 package org.jetbrains.tfsIntegration.core.tfs;
 
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.JDOMUtil;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.ShutDownTracker;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.util.Function;
 import com.intellij.util.Functions;
 import com.intellij.util.JdomKt;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import org.apache.axis2.databinding.utils.ConverterUtil;
 import org.jdom.Element;
@@ -31,9 +41,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.config.TfsServerConnectionHelper;
 import org.jetbrains.tfsIntegration.core.TfsSdkManager;
 import org.jetbrains.tfsIntegration.core.configuration.TFSConfigurationManager;
-import org.jetbrains.tfsIntegration.exceptions.DuplicateMappingException;
-import org.jetbrains.tfsIntegration.exceptions.TfsException;
-import org.jetbrains.tfsIntegration.exceptions.WorkspaceHasNoMappingException;
+import org.jetbrains.tfsIntegration.exceptions.*;
 import org.xml.sax.InputSource;
 
 import javax.xml.parsers.SAXParserFactory;
@@ -42,12 +50,13 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.jetbrains.tfsIntegration.core.tfs.TfsUtil.forcePluginClassLoader;
 import static org.jetbrains.tfsIntegration.core.tfs.XmlConstants.*;
@@ -59,14 +68,29 @@ public class Workstation {
 
   private static final Logger LOG = Logger.getInstance(Workstation.class.getName());
 
-  @NotNull private final List<ServerInfo> myServerInfos;
+  private static final long DISCOVERY_TIMEOUT = Long.getLong("org.jetbrains.tfsIntegration.workspaceDiscoveryTimeout", 30000);
+  private static final long UNREACHABLE_SERVER_RETRY_INTERVAL =
+    Long.getLong("org.jetbrains.tfsIntegration.unreachableServerRetryInterval", 60000);
 
-  private @Nullable Ref<FilePath> myDuplicateMappedPath;
+  // immutable, replaced on every change; loaded on first access
+  private volatile List<ServerInfo> myServerInfos;
+
+  private volatile @Nullable Ref<FilePath> myDuplicateMappedPath;
+  private @Nullable List<List<FilePath>> myMappedPaths; // guarded by this, per server, the ones last checked for duplicates
+
+  private final Map<URI, Long> myUnreachableServers = new ConcurrentHashMap<>(); // server uri -> time it failed to answer
+
+  // cache file writes are coalesced: only the latest state is written, in background
+  private final ExecutorService myWriteExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS Workstation Cache", 1);
+  private final AtomicReference<Element> myPendingState = new AtomicReference<>();
+  // states are built and published in the same order, so that an older one never replaces a newer one
+  private final Object myStateLock = new Object();
+  private @Nullable Element myWrittenState; // guarded by myPendingState
 
   private static String ourComputerName;
 
   private Workstation() {
-    myServerInfos = loadCache();
+    ShutDownTracker.getInstance().registerShutdownTask(this::writePendingState);
   }
 
   private static class WorkstationHolder {
@@ -80,7 +104,16 @@ public class Workstation {
 
   @NotNull
   public List<ServerInfo> getServers() {
-    return Collections.unmodifiableList(myServerInfos);
+    List<ServerInfo> servers = myServerInfos;
+    if (servers == null) {
+      synchronized (this) {
+        if (myServerInfos == null) {
+          myServerInfos = Collections.unmodifiableList(loadCache());
+        }
+        servers = myServerInfos;
+      }
+    }
+    return servers;
   }
 
   @Nullable
@@ -89,17 +122,9 @@ public class Workstation {
   }
 
   @NotNull
-  private List<WorkspaceInfo> getAllWorkspacesForCurrentOwnerAndComputer(boolean showLoginIfNoCredentials) {
+  private List<WorkspaceInfo> getAllWorkspacesForCurrentOwnerAndComputer() {
     List<WorkspaceInfo> result = new ArrayList<>();
     for (final ServerInfo server : getServers()) {
-      if (showLoginIfNoCredentials && server.getQualifiedUsername() == null) {
-        try {
-          TfsServerConnectionHelper.ensureAuthenticated(null, server.getUri(), false);
-        }
-        catch (TfsException e) {
-          continue;
-        }
-      }
       result.addAll(server.getWorkspacesForCurrentOwnerAndComputer());
     }
     return result;
@@ -136,44 +161,73 @@ public class Workstation {
   }
 
   void update() {
-    invalidateDuplicateMappedPath();
+    invalidateDuplicateMappedPathIfChanged();
 
-    Path cacheFile = getCacheFile(false);
-    if (cacheFile != null) {
-      try {
-        Element serversElement = new Element(SERVERS);
-
-        for (ServerInfo serverInfo : getServers()) {
-          Element serverInfoElement = new Element(SERVER_INFO)
-            .setAttribute(URI_ATTR, serverInfo.getUri().toString())
-            .setAttribute(GUID_ATTR, serverInfo.getGuid());
-
-          serversElement.addContent(serverInfoElement);
-
-          for (WorkspaceInfo workspaceInfo : serverInfo.getWorkspaces()) {
-            Element workspaceInfoElement = new Element(WORKSPACE_INFO)
-              .setAttribute(COMPUTER_ATTR, workspaceInfo.getComputer())
-              .setAttribute(OWNER_NAME_ATTR, workspaceInfo.getOwnerName())
-              .setAttribute(TIMESTAMP_ATTR, ConverterUtil.convertToString(workspaceInfo.getTimestamp()))
-              .setAttribute(NAME_ATTR, workspaceInfo.getName())
-              .setAttribute(IS_LOCAL_WORKSPACE_ATTR, String.valueOf(workspaceInfo.isLocal()))
-              .setAttribute(OPTIONS_ATTR, String.valueOf(workspaceInfo.getOptions()))
-              // "comment" and "ownerDisplayName" attributes are required (otherwise Eclipse TFS plug-in fails to read cache)
-              .setAttribute(COMMENT_ATTR, StringUtil.notNullize(workspaceInfo.getComment()))
-              .setAttribute(OWNER_DISPLAY_NAME_ATTR, StringUtil.notNullize(workspaceInfo.getOwnerDisplayName()));
-            setIfNotNull(workspaceInfoElement, SECURITY_TOKEN_ATTR, workspaceInfo.getSecurityToken());
-
-            addItems(workspaceInfoElement, MAPPED_PATHS, MAPPED_PATH, PATH_ATTR, workspaceInfo.getWorkingFoldersCached(),
-                     folderInfo -> folderInfo.getLocalPath().getPresentableUrl());
-
-            addItems(workspaceInfoElement, OWNER_ALIASES, OWNER_ALIAS, OWNER_ALIAS_ATTR,
-                     workspaceInfo.getOwnerAliases(), Functions.TO_STRING());
-
-            serverInfoElement.addContent(workspaceInfoElement);
-          }
+    if (getCacheFile(false) != null) {
+      // the tree is built right away to get a consistent state of the mutable server and workspace objects
+      synchronized (myStateLock) {
+        if (myPendingState.getAndSet(createState()) == null) {
+          myWriteExecutor.execute(this::writePendingState);
         }
+      }
+    }
+  }
 
-        JdomKt.write(new Element(ROOT).addContent(serversElement), cacheFile);
+  @NotNull
+  private Element createState() {
+    Element serversElement = new Element(SERVERS);
+
+    for (ServerInfo serverInfo : getServers()) {
+      Element serverInfoElement = new Element(SERVER_INFO)
+        .setAttribute(URI_ATTR, serverInfo.getUri().toString())
+        .setAttribute(GUID_ATTR, serverInfo.getGuid());
+
+      serversElement.addContent(serverInfoElement);
+
+      for (WorkspaceInfo workspaceInfo : serverInfo.getWorkspaces()) {
+        Element workspaceInfoElement = new Element(WORKSPACE_INFO)
+          .setAttribute(COMPUTER_ATTR, workspaceInfo.getComputer())
+          .setAttribute(OWNER_NAME_ATTR, workspaceInfo.getOwnerName())
+          .setAttribute(TIMESTAMP_ATTR, ConverterUtil.convertToString(workspaceInfo.getTimestamp()))
+          .setAttribute(NAME_ATTR, workspaceInfo.getName())
+          .setAttribute(IS_LOCAL_WORKSPACE_ATTR, String.valueOf(workspaceInfo.isLocal()))
+          .setAttribute(OPTIONS_ATTR, String.valueOf(workspaceInfo.getOptions()))
+          // "comment" and "ownerDisplayName" attributes are required (otherwise Eclipse TFS plug-in fails to read cache)
+          .setAttribute(COMMENT_ATTR, StringUtil.notNullize(workspaceInfo.getComment()))
+          .setAttribute(OWNER_DISPLAY_NAME_ATTR, StringUtil.notNullize(workspaceInfo.getOwnerDisplayName()));
+        setIfNotNull(workspaceInfoElement, SECURITY_TOKEN_ATTR, workspaceInfo.getSecurityToken());
+
+        addItems(workspaceInfoElement, MAPPED_PATHS, MAPPED_PATH, PATH_ATTR, workspaceInfo.getWorkingFoldersCached(),
+                 folderInfo -> folderInfo.getLocalPath().getPresentableUrl());
+
+        addItems(workspaceInfoElement, OWNER_ALIASES, OWNER_ALIAS, OWNER_ALIAS_ATTR,
+                 workspaceInfo.getOwnerAliases(), Functions.TO_STRING());
+
+        serverInfoElement.addContent(workspaceInfoElement);
+      }
+    }
+
+    return new Element(ROOT).addContent(serversElement);
+  }
+
+  private void writePendingState() {
+    synchronized (myPendingState) {
+      Element state = myPendingState.getAndSet(null);
+      Path cacheFile = getCacheFile(false);
+      if (state == null || cacheFile == null || myWrittenState != null && JDOMUtil.areElementsEqual(state, myWrittenState)) {
+        return;
+      }
+      try {
+        // replace atomically, so that neither we nor other clients sharing the file ever read it half written
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        JdomKt.write(state, tempFile);
+        try {
+          Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+          Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        myWrittenState = state;
       }
       catch (IOException e) {
         LOG.info("Cannot update workspace cache", e);
@@ -202,12 +256,20 @@ public class Workstation {
   }
 
   public void addServer(final ServerInfo serverInfo) {
-    myServerInfos.add(serverInfo);
+    synchronized (this) {
+      List<ServerInfo> servers = new ArrayList<>(getServers());
+      servers.add(serverInfo);
+      myServerInfos = Collections.unmodifiableList(servers);
+    }
     update();
   }
 
   public void removeServer(final ServerInfo serverInfo) {
-    myServerInfos.remove(serverInfo);
+    synchronized (this) {
+      List<ServerInfo> servers = new ArrayList<>(getServers());
+      servers.remove(serverInfo);
+      myServerInfos = Collections.unmodifiableList(servers);
+    }
 
     TFSConfigurationManager.getInstance().remove(serverInfo.getUri());
     update();
@@ -242,7 +304,7 @@ public class Workstation {
   public Collection<WorkspaceInfo> findWorkspacesCached(final @NotNull FilePath localPath, boolean considerChildMappings) {
     // try cached working folders first
     Collection<WorkspaceInfo> result = new ArrayList<>();
-    for (WorkspaceInfo workspace : getAllWorkspacesForCurrentOwnerAndComputer(false)) {
+    for (WorkspaceInfo workspace : getAllWorkspacesForCurrentOwnerAndComputer()) {
       if (workspace.hasMappingCached(localPath, considerChildMappings)) {
         result.add(workspace);
         if (!considerChildMappings) {
@@ -270,31 +332,147 @@ public class Workstation {
       return resultCached;
     }
     else {
-      // TODO: exclude servers that are unavailable during current application run
       // not found in cached info, but workspaces may be out of date -> try to search all the workspaces reloaded
-      Collection<WorkspaceInfo> result = new ArrayList<>();
-      Collection<ServerInfo> serversToSkip = new ArrayList<>();
-      for (WorkspaceInfo workspace : getAllWorkspacesForCurrentOwnerAndComputer(true)) {
-        if (serversToSkip.contains(workspace.getServer())) {
-          // if server is somehow unavailable, don't try every workspace on it
+      return findWorkspacesReloaded(localPath, considerChildMappings, projectOrComponent);
+    }
+  }
+
+  /**
+   * Every server is searched concurrently and is given {@link #DISCOVERY_TIMEOUT} to answer, results are merged as they arrive.
+   * A server that cannot be connected to or does not answer in time is not searched again for a while.
+   */
+  @NotNull
+  private Collection<WorkspaceInfo> findWorkspacesReloaded(final @NotNull FilePath localPath,
+                                                           final boolean considerChildMappings,
+                                                           final Object projectOrComponent) {
+    List<ServerInfo> servers = new ArrayList<>();
+    for (ServerInfo server : getServers()) {
+      if (isUnreachable(server)) {
+        continue;
+      }
+      if (server.getQualifiedUsername() == null) {
+        try {
+          TfsServerConnectionHelper.ensureAuthenticated(null, server.getUri(), false);
+        }
+        catch (TfsException e) {
           continue;
         }
+      }
+      servers.add(server);
+    }
+
+    Collection<WorkspaceInfo> result = new ArrayList<>();
+    if (servers.size() <= 1 || ApplicationManager.getApplication().isDispatchThread()) {
+      // requests from the dispatch thread run under modal progress of their own and can't be waited for here
+      for (ServerInfo server : servers) {
+        result.addAll(findWorkspacesReloaded(server, localPath, considerChildMappings, projectOrComponent));
+        if (!considerChildMappings && !result.isEmpty()) {
+          return result;
+        }
+      }
+      return result;
+    }
+
+    final ProgressIndicator pi = ProgressManager.getInstance().getProgressIndicator();
+    CompletionService<Collection<WorkspaceInfo>> completionService =
+      new ExecutorCompletionService<>(AppExecutorUtil.getAppExecutorService());
+    Map<Future<Collection<WorkspaceInfo>>, ServerInfo> pending = new HashMap<>();
+    Map<Future<Collection<WorkspaceInfo>>, ProgressIndicator> indicators = new HashMap<>();
+    for (final ServerInfo server : servers) {
+      // searches are cancelled along with the caller, and separately once their result is not needed
+      final ProgressIndicator indicator = pi != null ? new SensitiveProgressWrapper(pi) : new EmptyProgressIndicator();
+      Computable<Collection<WorkspaceInfo>> search =
+        () -> findWorkspacesReloaded(server, localPath, considerChildMappings, projectOrComponent);
+      Future<Collection<WorkspaceInfo>> future =
+        completionService.submit(() -> ProgressManager.getInstance().runProcess(search, indicator));
+      pending.put(future, server);
+      indicators.put(future, indicator);
+    }
+
+    long deadline = System.currentTimeMillis() + DISCOVERY_TIMEOUT;
+    try {
+      while (!pending.isEmpty()) {
+        ProgressManager.checkCanceled();
+        long timeout = deadline - System.currentTimeMillis();
+        if (timeout <= 0) {
+          break;
+        }
+        Future<Collection<WorkspaceInfo>> done = completionService.poll(Math.min(timeout, 100), TimeUnit.MILLISECONDS);
+        if (done == null) {
+          continue;
+        }
+        pending.remove(done);
         try {
-          if (workspace.hasMapping(localPath, considerChildMappings, projectOrComponent)) {
-            result.add(workspace);
-            if (!considerChildMappings) {
-              // optmimization: same local path can't be mapped in different workspaces, so don't process other workspaces
-              return result;
-            }
+          result.addAll(done.get());
+        }
+        catch (ExecutionException e) {
+          if (!(e.getCause() instanceof ProcessCanceledException)) {
+            LOG.warn(e.getCause());
           }
+          continue;
         }
-        catch (TfsException e) {
-          // if some server failed, try next one, otherwise user will get strange error messages
-          serversToSkip.add(workspace.getServer());
+        if (!considerChildMappings && !result.isEmpty()) {
+          // optimization: same local path can't be mapped in different workspaces, so don't wait for other servers
+          return result;
         }
       }
+
+      for (ServerInfo server : pending.values()) {
+        LOG.info("Server " + server.getUri() + " did not answer in " + DISCOVERY_TIMEOUT + " ms, skipping it");
+        myUnreachableServers.put(server.getUri(), System.currentTimeMillis());
+      }
       return result;
     }
+    catch (InterruptedException e) {
+      throw new ProcessCanceledException(e);
+    }
+    finally {
+      // searches still running would keep connections and pool threads busy for nothing
+      for (Future<Collection<WorkspaceInfo>> future : pending.keySet()) {
+        indicators.get(future).cancel();
+        future.cancel(false);
+      }
+    }
+  }
+
+  @NotNull
+  private Collection<WorkspaceInfo> findWorkspacesReloaded(@NotNull ServerInfo server,
+                                                           @NotNull FilePath localPath,
+                                                           boolean considerChildMappings,
+                                                           Object projectOrComponent) {
+    Collection<WorkspaceInfo> result = new ArrayList<>();
+    for (WorkspaceInfo workspace : server.getWorkspacesForCurrentOwnerAndComputer()) {
+      try {
+        if (workspace.hasMapping(localPath, considerChildMappings, projectOrComponent)) {
+          result.add(workspace);
+          if (!considerChildMappings) {
+            // optimization: same local path can't be mapped in different workspaces, so don't process other workspaces
+            break;
+          }
+        }
+      }
+      catch (ConnectionFailedException | ConnectionTimeoutException | HostNotFoundException e) {
+        myUnreachableServers.put(server.getUri(), System.currentTimeMillis());
+        break;
+      }
+      catch (TfsException e) {
+        // if server is somehow unavailable, don't try every workspace on it, otherwise user will get strange error messages
+        break;
+      }
+    }
+    return result;
+  }
+
+  private boolean isUnreachable(@NotNull ServerInfo server) {
+    Long failedTime = myUnreachableServers.get(server.getUri());
+    if (failedTime == null) {
+      return false;
+    }
+    if (System.currentTimeMillis() - failedTime > UNREACHABLE_SERVER_RETRY_INTERVAL) {
+      myUnreachableServers.remove(server.getUri(), failedTime);
+      return false;
+    }
+    return true;
   }
 
   public void checkDuplicateMappings() throws DuplicateMappingException {
@@ -306,8 +484,21 @@ public class Workstation {
     }
   }
 
-  private void invalidateDuplicateMappedPath() {
-    myDuplicateMappedPath = null;
+  private synchronized void invalidateDuplicateMappedPathIfChanged() {
+    List<List<FilePath>> mappedPaths = new ArrayList<>();
+    for (ServerInfo server : getServers()) {
+      List<FilePath> serverPaths = new ArrayList<>();
+      for (WorkspaceInfo workspace : server.getWorkspacesForCurrentOwnerAndComputer()) {
+        for (WorkingFolderInfo workingFolder : workspace.getWorkingFoldersCached()) {
+          serverPaths.add(workingFolder.getLocalPath());
+        }
+      }
+      mappedPaths.add(serverPaths);
+    }
+    if (!mappedPaths.equals(myMappedPaths)) {
+      myMappedPaths = mappedPaths;
+      myDuplicateMappedPath = null;
+    }
   }
 
   @Nullable
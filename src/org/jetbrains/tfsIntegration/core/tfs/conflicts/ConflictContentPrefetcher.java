@@ -0,0 +1,201 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs.conflicts;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Conflict;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ConflictType;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Item;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.core.TFSBundle;
+import org.jetbrains.tfsIntegration.core.revision.TFSContentRevision;
+import org.jetbrains.tfsIntegration.core.revision.TFSContentStoreFactory;
+import org.jetbrains.tfsIntegration.core.tfs.WorkspaceInfo;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Downloads base, yours and theirs revisions of content conflicts to the local content store in background, so that they are
+ * at hand by the time user gets to merge them. Items are queried with a single request per changeset rather than one per revision.
+ * Requests to a server are executed one at a time anyway, so the conflicts are processed sequentially, in the given order.
+ * Prefetching stops when cancelled, i.e. once conflicts are not being resolved anymore.
+ */
+class ConflictContentPrefetcher {
+
+  private static final Logger LOG = Logger.getInstance(ConflictContentPrefetcher.class.getName());
+
+  private static final int ITEMS_BATCH_SIZE = 200;
+
+  private static final CompletableFuture<Void> CLAIMED = CompletableFuture.completedFuture(null);
+
+  private final @NotNull Project myProject;
+  private final Map<WorkspaceInfo, List<Conflict>> myWorkspace2Conflicts = new LinkedHashMap<>();
+  // completed once contents of the conflict are loaded or failed to, CLAIMED if the conflict should not be loaded in background
+  private final Map<Conflict, CompletableFuture<Void>> myLoads = new ConcurrentHashMap<>();
+  private final ProgressIndicator myIndicator = new EmptyProgressIndicator();
+  private volatile Future<?> myTask;
+
+  ConflictContentPrefetcher(@NotNull Project project, @NotNull Map<Conflict, WorkspaceInfo> conflict2Workspace) {
+    myProject = project;
+    for (Map.Entry<Conflict, WorkspaceInfo> entry : conflict2Workspace.entrySet()) {
+      myWorkspace2Conflicts.computeIfAbsent(entry.getValue(), workspace -> new ArrayList<>()).add(entry.getKey());
+    }
+  }
+
+  void start() {
+    if (!myWorkspace2Conflicts.isEmpty()) {
+      myTask = ApplicationManager.getApplication()
+        .executeOnPooledThread(() -> ProgressManager.getInstance().runProcess(this::prefetch, myIndicator));
+    }
+  }
+
+  /**
+   * Stops prefetching: the request being executed is cancelled and the rest are not sent.
+   */
+  void cancel() {
+    myIndicator.cancel();
+    Future<?> task = myTask;
+    if (task != null) {
+      task.cancel(false);
+    }
+    for (Conflict conflict : ContainerUtil.flatten(myWorkspace2Conflicts.values())) {
+      forget(conflict);
+    }
+  }
+
+  /**
+   * Takes the conflict out of prefetching. If its contents are being loaded already, waits for them.
+   */
+  void claim(@NotNull Conflict conflict) {
+    CompletableFuture<Void> load = myLoads.putIfAbsent(conflict, CLAIMED);
+    while (load != null && !load.isDone()) {
+      ProgressManager.checkCanceled();
+      try {
+        load.get(100, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException e) {
+        // check cancellation and wait further
+      }
+      catch (InterruptedException | ExecutionException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Conflict has been resolved or skipped, no need to load it.
+   */
+  void forget(@NotNull Conflict conflict) {
+    myLoads.putIfAbsent(conflict, CLAIMED);
+  }
+
+  private void prefetch() {
+    for (Map.Entry<WorkspaceInfo, List<Conflict>> entry : myWorkspace2Conflicts.entrySet()) {
+      try {
+        ProgressManager.checkCanceled();
+        prefetch(entry.getKey(), entry.getValue());
+      }
+      catch (ProcessCanceledException e) {
+        return;
+      }
+      catch (Exception e) {
+        // nothing lost, contents will be loaded on demand
+        LOG.debug(e);
+      }
+    }
+  }
+
+  private void prefetch(@NotNull WorkspaceInfo workspace, @NotNull List<Conflict> conflicts) throws Exception {
+    String serverUri = workspace.getServer().getUri().toASCIIString();
+
+    Map<Integer, Set<Integer>> changeset2ItemIds = new LinkedHashMap<>();
+    for (Conflict conflict : conflicts) {
+      for (int[] revision : getRevisions(conflict)) {
+        if (TFSContentStoreFactory.find(serverUri, revision[1], revision[0]) == null) {
+          changeset2ItemIds.computeIfAbsent(revision[0], changeset -> new LinkedHashSet<>()).add(revision[1]);
+        }
+      }
+    }
+
+    Map<Long, Item> items = new HashMap<>();
+    for (Map.Entry<Integer, Set<Integer>> entry : changeset2ItemIds.entrySet()) {
+      int[] itemIds = ArrayUtil.toIntArray(entry.getValue());
+      for (int i = 0; i < itemIds.length; i += ITEMS_BATCH_SIZE) {
+        ProgressManager.checkCanceled();
+        int[] batch = Arrays.copyOfRange(itemIds, i, Math.min(i + ITEMS_BATCH_SIZE, itemIds.length));
+        List<Item> batchItems =
+          workspace.getServer().getVCS().queryItemsById(batch, entry.getKey(), true, myProject, TFSBundle.message("loading.items"));
+        for (Item item : batchItems) {
+          if (item != null) {
+            items.put(getKey(entry.getKey(), item.getItemid()), item);
+          }
+        }
+      }
+    }
+
+    for (Conflict conflict : conflicts) {
+      ProgressManager.checkCanceled();
+      CompletableFuture<Void> load = new CompletableFuture<>();
+      if (myLoads.putIfAbsent(conflict, load) != null) {
+        continue;
+      }
+      try {
+        for (int[] revision : getRevisions(conflict)) {
+          Item item = items.get(getKey(revision[0], revision[1]));
+          if (item != null && TFSContentStoreFactory.find(serverUri, revision[1], revision[0]) == null) {
+            TFSContentRevision.create(myProject, workspace, ResolveConflictHelper.getLocalPath(conflict), revision[0], item)
+              .getContentAsBytes();
+          }
+        }
+      }
+      catch (IOException | VcsException e) {
+        LOG.debug(e);
+      }
+      finally {
+        load.complete(null);
+      }
+    }
+  }
+
+  /**
+   * @return changeset and item id of the server revisions the merge needs
+   */
+  private static List<int[]> getRevisions(@NotNull Conflict conflict) {
+    List<int[]> result = new ArrayList<>(3);
+    result.add(new int[]{conflict.getTver(), conflict.getTitemid()});
+    result.add(new int[]{conflict.getBver(), conflict.getBitemid()});
+    if (conflict.getCtype() == ConflictType.Merge) {
+      result.add(new int[]{conflict.getYver(), conflict.getYitemid()});
+    }
+    return result;
+  }
+
+  private static long getKey(int changeset, int itemId) {
+    return ((long)changeset << 32) | (itemId & 0xffffffffL);
+  }
+}
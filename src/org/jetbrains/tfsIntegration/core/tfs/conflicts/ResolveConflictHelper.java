@@ -16,6 +16,10 @@
 
 package org.jetbrains.tfsIntegration.core.tfs.conflicts;
 
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Ref;
@@ -26,6 +30,8 @@ import com.intellij.openapi.vcs.update.FileGroup;
 import com.intellij.openapi.vcs.update.UpdatedFiles;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.vcsUtil.VcsRunnable;
 import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
@@ -41,13 +47,21 @@ import org.jetbrains.tfsIntegration.exceptions.TfsException;
 import org.jetbrains.tfsIntegration.ui.ContentTriplet;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
-public class ResolveConflictHelper {
+public class ResolveConflictHelper implements Disposable {
     private final @NotNull Project myProject;
     private final @Nullable UpdatedFiles myUpdatedFiles;
     private final Map<Conflict, WorkspaceInfo> myConflict2Workspace = new HashMap<>();
+    private final @NotNull ConflictContentPrefetcher myPrefetcher;
+
+    private static final ExecutorService ourMergeExecutor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS Auto Merge", Runtime.getRuntime().availableProcessors());
 
     public ResolveConflictHelper(final Project project,
                                  Map<WorkspaceInfo, Collection<Conflict>> workspace2Conflicts,
@@ -60,6 +74,17 @@ public class ResolveConflictHelper {
             }
         }
         myUpdatedFiles = updatedFiles;
+
+        // the user will most likely merge contents, so have them ready
+        Map<Conflict, WorkspaceInfo> contentConflicts = new LinkedHashMap<>();
+        for (Map.Entry<Conflict, WorkspaceInfo> e : myConflict2Workspace.entrySet()) {
+            Conflict conflict = e.getKey();
+            if (conflict.getYtype() == ItemType.File && isContentConflict(conflict) && canMerge(conflict)) {
+                contentConflicts.put(conflict, e.getValue());
+            }
+        }
+        myPrefetcher = new ConflictContentPrefetcher(project, contentConflicts);
+        myPrefetcher.start();
     }
 
     public void acceptMerge(final @NotNull Conflict conflict) throws TfsException, VcsException {
@@ -67,34 +92,17 @@ public class ResolveConflictHelper {
 
         final WorkspaceInfo workspace = myConflict2Workspace.get(conflict);
 
-        @NotNull final FilePath localPath = VersionControlPath
-                .getFilePath(conflict.getSrclitem() != null ? conflict.getSrclitem() : conflict.getTgtlitem(),
-                        conflict.getYtype() == ItemType.Folder);
+        @NotNull final FilePath localPath = getLocalPath(conflict);
 
-        final ContentTriplet contentTriplet = new ContentTriplet();
+        final Ref<ContentTriplet> contentTriplet = new Ref<>();
         VcsRunnable runnable = new VcsRunnable() {
             @Override
             public void run() throws VcsException {
                 // virtual file can be out of the current project so force its discovery
                 TfsFileUtil.refreshAndFindFile(localPath);
-                try {
-                    if (conflict.getYtype() == ItemType.File) {
-                        byte[] current;
-                        byte[] last;
-                        if (conflict.getCtype() == ConflictType.Merge) {
-                            current = TFSContentRevision.create(myProject, workspace, conflict.getTver(), conflict.getTitemid()).getContentAsBytes();
-                            last = TFSContentRevision.create(myProject, workspace, conflict.getYver(), conflict.getYitemid()).getContentAsBytes();
-                        } else {
-                            current = ((CurrentContentRevision) CurrentContentRevision.create(localPath)).getContentAsBytes();
-                            last = TFSContentRevision.create(myProject, workspace, conflict.getTver(), conflict.getTitemid()).getContentAsBytes();
-                        }
-                        byte[] original = TFSContentRevision.create(myProject, workspace, conflict.getBver(), conflict.getBitemid()).getContentAsBytes();
-                        contentTriplet.baseContent = original != null ? original : ArrayUtilRt.EMPTY_BYTE_ARRAY;
-                        contentTriplet.localContent = current != null ? current : ArrayUtilRt.EMPTY_BYTE_ARRAY;
-                        contentTriplet.serverContent = last != null ? last : ArrayUtilRt.EMPTY_BYTE_ARRAY;
-                    }
-                } catch (TfsException e) {
-                    throw new VcsException(TFSBundle.message("cannot.load.revisions", localPath.getPresentableUrl(), e.getMessage()));
+                if (conflict.getYtype() == ItemType.File) {
+                    myPrefetcher.claim(conflict);
+                    contentTriplet.set(loadContents(conflict, workspace, localPath));
                 }
             }
 
@@ -145,7 +153,7 @@ public class ResolveConflictHelper {
                 try {
                     TfsFileUtil.setReadOnly(vFile, false);
                     resolved = ConflictsEnvironment.getContentMerger()
-                            .mergeContent(conflict, contentTriplet, myProject, vFile, localName, new TfsRevisionNumber(conflict.getTver(),
+                            .mergeContent(conflict, contentTriplet.get(), myProject, vFile, localName, new TfsRevisionNumber(conflict.getTver(),
                                     conflict.getTitemid()));
                 } catch (IOException e) {
                     throw new VcsException(e);
@@ -160,6 +168,107 @@ public class ResolveConflictHelper {
         }
     }
 
+    /**
+     * Merges contents of the conflicts that have no overlapping changes and resolves them, the rest is left to the user.
+     * Contents are merged in parallel, then resolutions are reported one by one.
+     *
+     * @return number of conflicts resolved
+     */
+    public int autoMerge(final @NotNull Collection<? extends Conflict> conflicts, final @NotNull List<? super VcsException> errors) {
+        final List<Conflict> candidates = ContainerUtil.filter(conflicts, ResolveConflictHelper::canAutoMerge);
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        final Ref<Integer> resolved = new Ref<>(0);
+        ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
+            final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+            indicator.setIndeterminate(false);
+            List<Future<byte[]>> merges = new ArrayList<>(candidates.size());
+            try {
+                for (Conflict conflict : candidates) {
+                    final WorkspaceInfo workspace = myConflict2Workspace.get(conflict);
+                    merges.add(ourMergeExecutor.submit(() -> mergeContent(conflict, workspace, indicator)));
+                }
+                for (int i = 0; i < candidates.size(); i++) {
+                    indicator.checkCanceled();
+                    indicator.setFraction((double)i / candidates.size());
+                    Conflict conflict = candidates.get(i);
+                    FilePath localPath = getLocalPath(conflict);
+                    indicator.setText2(localPath.getPresentableUrl());
+                    try {
+                        byte[] merged = merges.get(i).get();
+                        if (merged != null) {
+                            setContent(localPath, merged);
+                            conflictResolved(conflict, Resolution.AcceptMerge,
+                                    VersionControlPath.localPathFromTfsRepresentation(conflict.getTgtlitem()), false);
+                            resolved.set(resolved.get() + 1);
+                        }
+                    } catch (ExecutionException e) {
+                        errors.add(e.getCause() instanceof VcsException ? (VcsException)e.getCause() : new VcsException(e.getCause()));
+                    } catch (InterruptedException e) {
+                        throw new ProcessCanceledException(e);
+                    } catch (TfsException | IOException e) {
+                        errors.add(new VcsException(e));
+                    } catch (VcsException e) {
+                        errors.add(e);
+                    }
+                }
+            } finally {
+                for (Future<byte[]> merge : merges) {
+                    merge.cancel(false);
+                }
+            }
+        }, TFSBundle.message("merging"), true, myProject);
+        return resolved.get();
+    }
+
+    /**
+     * @return merged content, null if the changes overlap
+     */
+    @Nullable
+    private byte[] mergeContent(final @NotNull Conflict conflict, final @NotNull WorkspaceInfo workspace, final @NotNull ProgressIndicator indicator)
+            throws VcsException {
+        FilePath localPath = getLocalPath(conflict);
+        myPrefetcher.claim(conflict);
+        ContentTriplet contents = loadContents(conflict, workspace, localPath);
+        Charset charset = localPath.getCharset(myProject);
+        String merged = ThreeWayTextMerger.merge(new String(contents.localContent, charset), new String(contents.baseContent, charset),
+                new String(contents.serverContent, charset), indicator);
+        return merged != null ? merged.getBytes(charset) : null;
+    }
+
+    private static void setContent(final @NotNull FilePath localPath, final @NotNull byte[] content) throws IOException, VcsException {
+        TfsFileUtil.refreshAndFindFile(localPath);
+        final VirtualFile vFile = localPath.getVirtualFile();
+        if (vFile == null) {
+            String errorMessage = MessageFormat.format("File ''{0}'' is missing", localPath.getPresentableUrl());
+            throw new VcsException(errorMessage);
+        }
+        TfsFileUtil.setReadOnly(vFile, false);
+        WriteAction.runAndWait(() -> vFile.setBinaryContent(content));
+    }
+
+    @NotNull
+    private ContentTriplet loadContents(final @NotNull Conflict conflict, final @NotNull WorkspaceInfo workspace, final @NotNull FilePath localPath)
+            throws VcsException {
+        final ContentTriplet contentTriplet = new ContentTriplet();
+        byte[] current;
+        byte[] last;
+        // revisions are expected to be in content store already, so avoid querying items
+        if (conflict.getCtype() == ConflictType.Merge) {
+            current = TFSContentRevision.create(myProject, workspace, localPath, conflict.getTver(), conflict.getTitemid()).getContentAsBytes();
+            last = TFSContentRevision.create(myProject, workspace, localPath, conflict.getYver(), conflict.getYitemid()).getContentAsBytes();
+        } else {
+            current = ((CurrentContentRevision) CurrentContentRevision.create(localPath)).getContentAsBytes();
+            last = TFSContentRevision.create(myProject, workspace, localPath, conflict.getTver(), conflict.getTitemid()).getContentAsBytes();
+        }
+        byte[] original = TFSContentRevision.create(myProject, workspace, localPath, conflict.getBver(), conflict.getBitemid()).getContentAsBytes();
+        contentTriplet.baseContent = original != null ? original : ArrayUtilRt.EMPTY_BYTE_ARRAY;
+        contentTriplet.localContent = current != null ? current : ArrayUtilRt.EMPTY_BYTE_ARRAY;
+        contentTriplet.serverContent = last != null ? last : ArrayUtilRt.EMPTY_BYTE_ARRAY;
+        return contentTriplet;
+    }
+
     public void acceptYours(final @NotNull Conflict conflict) throws TfsException, VcsException {
         String localPath =
                 VersionControlPath.localPathFromTfsRepresentation(conflict.getSrclitem() != null ? conflict.getSrclitem() : conflict.getTgtlitem());
@@ -177,6 +286,7 @@ public class ResolveConflictHelper {
     }
 
     public void skip(final @NotNull Conflict conflict) {
+        myPrefetcher.forget(conflict);
         if (myUpdatedFiles != null) {
             String localPath =
                     VersionControlPath.localPathFromTfsRepresentation(conflict.getSrclitem() != null ? conflict.getSrclitem() : conflict.getTgtlitem());
@@ -184,10 +294,28 @@ public class ResolveConflictHelper {
         }
     }
 
+    /**
+     * Conflicts are not resolved anymore, stops loading their contents
+     */
+    @Override
+    public void dispose() {
+        myPrefetcher.cancel();
+    }
+
     public Collection<Conflict> getConflicts() {
         return Collections.unmodifiableCollection(myConflict2Workspace.keySet());
     }
 
+    public static boolean canAutoMerge(final @NotNull Conflict conflict) {
+        return conflict.getYtype() == ItemType.File && isContentConflict(conflict) && !isNameConflict(conflict) && canMerge(conflict) &&
+                !getLocalPath(conflict).getFileType().isBinary();
+    }
+
+    static FilePath getLocalPath(final @NotNull Conflict conflict) {
+        return VersionControlPath.getFilePath(conflict.getSrclitem() != null ? conflict.getSrclitem() : conflict.getTgtlitem(),
+                conflict.getYtype() == ItemType.Folder);
+    }
+
     public static boolean canMerge(final @NotNull Conflict conflict) {
         if (conflict.getSrclitem() == null) {
             return false;
@@ -235,34 +363,42 @@ public class ResolveConflictHelper {
                         TFSBundle.message("reporting.conflict.resolved"));
 
         final UpdatedFiles updatedFiles = resolution != Resolution.AcceptMerge ? myUpdatedFiles : null;
-
-        if (response.getResolveResult().getGetOperation() != null) {
-            ApplyGetOperations.DownloadMode downloadMode =
-                    resolution == Resolution.AcceptTheirs ? ApplyGetOperations.DownloadMode.FORCE : ApplyGetOperations.DownloadMode.MERGE;
-
-            final Collection<VcsException> applyErrors = ApplyGetOperations
-                    .execute(myProject, workspace, Arrays.asList(response.getResolveResult().getGetOperation()), ApplyProgress.EMPTY, updatedFiles,
-                            downloadMode);
-            if (!applyErrors.isEmpty()) {
-                throw TfsUtil.collectExceptions(applyErrors);
+        // resolution may download, move or delete files the caller doesn't know about, so refresh what has changed right here
+        final Collection<FilePath> changedPaths = new ArrayList<>();
+        try {
+            if (response.getResolveResult().getGetOperation() != null) {
+                ApplyGetOperations.DownloadMode downloadMode =
+                        resolution == Resolution.AcceptTheirs ? ApplyGetOperations.DownloadMode.FORCE : ApplyGetOperations.DownloadMode.MERGE;
+
+                final Collection<VcsException> applyErrors = ApplyGetOperations
+                        .execute(myProject, workspace, Arrays.asList(response.getResolveResult().getGetOperation()), ApplyProgress.EMPTY,
+                                updatedFiles, changedPaths, downloadMode);
+                if (!applyErrors.isEmpty()) {
+                    throw TfsUtil.collectExceptions(applyErrors);
+                }
             }
-        }
 
-        if (response.getUndoOperations().getGetOperation() != null) {
-            final Collection<VcsException> applyErrors = ApplyGetOperations
-                    .execute(myProject, workspace, Arrays.asList(response.getUndoOperations().getGetOperation()), ApplyProgress.EMPTY, updatedFiles,
-                            ApplyGetOperations.DownloadMode.FORCE);
-            if (!applyErrors.isEmpty()) {
-                throw TfsUtil.collectExceptions(applyErrors);
+            if (response.getUndoOperations().getGetOperation() != null) {
+                final Collection<VcsException> applyErrors = ApplyGetOperations
+                        .execute(myProject, workspace, Arrays.asList(response.getUndoOperations().getGetOperation()), ApplyProgress.EMPTY,
+                                updatedFiles, changedPaths, ApplyGetOperations.DownloadMode.FORCE);
+                if (!applyErrors.isEmpty()) {
+                    throw TfsUtil.collectExceptions(applyErrors);
+                }
             }
-        }
 
-        if (resolution == Resolution.AcceptMerge) {
-            if (myUpdatedFiles != null) {
-                myUpdatedFiles.getGroupById(FileGroup.MERGED_ID).add(newLocalPath, TFSVcs.getKey(), null);
+            if (resolution == Resolution.AcceptMerge) {
+                // merged content is written through VFS, but the status of the file changes as well
+                changedPaths.add(VcsUtil.getFilePath(newLocalPath, false));
+                if (myUpdatedFiles != null) {
+                    myUpdatedFiles.getGroupById(FileGroup.MERGED_ID).add(newLocalPath, TFSVcs.getKey(), null);
+                }
             }
+        } finally {
+            TfsFileUtil.refreshAndMarkDirtyChanged(myProject, changedPaths, true);
         }
         myConflict2Workspace.remove(conflict);
+        myPrefetcher.forget(conflict);
     }
 
     private static boolean isNameConflict(final @NotNull Conflict conflict) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs.conflicts;
+
+import com.intellij.diff.comparison.ComparisonManager;
+import com.intellij.diff.comparison.ComparisonPolicy;
+import com.intellij.diff.comparison.DiffTooBigException;
+import com.intellij.diff.fragments.MergeLineFragment;
+import com.intellij.diff.util.ThreeSide;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line based three-way merge that succeeds only if every changed block is changed on one side or identically on both.
+ */
+public final class ThreeWayTextMerger {
+
+  private ThreeWayTextMerger() {
+  }
+
+  /**
+   * @return merged text, null if local and server changes overlap
+   */
+  @Nullable
+  public static String merge(@NotNull String local, @NotNull String base, @NotNull String server, @NotNull ProgressIndicator indicator) {
+    List<MergeLineFragment> fragments;
+    try {
+      fragments = ComparisonManager.getInstance().mergeLines(local, base, server, ComparisonPolicy.DEFAULT, indicator);
+    }
+    catch (DiffTooBigException e) {
+      return null;
+    }
+
+    List<String> localLines = splitLines(local);
+    List<String> baseLines = splitLines(base);
+    List<String> serverLines = splitLines(server);
+
+    StringBuilder result = new StringBuilder(Math.max(local.length(), server.length()));
+    int baseLine = 0;
+    for (MergeLineFragment fragment : fragments) {
+      // outside of the fragments all three texts are the same
+      append(result, baseLines, baseLine, fragment.getStartLine(ThreeSide.BASE));
+      baseLine = fragment.getEndLine(ThreeSide.BASE);
+
+      List<String> localChange = getLines(localLines, fragment, ThreeSide.LEFT);
+      List<String> baseChange = getLines(baseLines, fragment, ThreeSide.BASE);
+      List<String> serverChange = getLines(serverLines, fragment, ThreeSide.RIGHT);
+      if (localChange.equals(baseChange)) {
+        append(result, serverChange, 0, serverChange.size());
+      }
+      else if (serverChange.equals(baseChange) || serverChange.equals(localChange)) {
+        append(result, localChange, 0, localChange.size());
+      }
+      else {
+        return null;
+      }
+    }
+    append(result, baseLines, baseLine, baseLines.size());
+    return result.toString();
+  }
+
+  /**
+   * Line separators are kept with the lines, the last line is always there even if empty.
+   */
+  private static List<String> splitLines(@NotNull String text) {
+    List<String> result = new ArrayList<>();
+    int start = 0;
+    int end;
+    while ((end = text.indexOf('\n', start)) != -1) {
+      result.add(text.substring(start, end + 1));
+      start = end + 1;
+    }
+    result.add(text.substring(start));
+    return result;
+  }
+
+  private static List<String> getLines(@NotNull List<String> lines, @NotNull MergeLineFragment fragment, @NotNull ThreeSide side) {
+    return lines.subList(fragment.getStartLine(side), fragment.getEndLine(side));
+  }
+
+  private static void append(@NotNull StringBuilder result, @NotNull List<String> lines, int start, int end) {
+    for (int i = start; i < end; i++) {
+      result.append(lines.get(i));
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.jetbrains.tfsIntegration.core.tfs.labels;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Item;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.LabelItemSpec;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.core.tfs.ServerPathTrie;
 import org.jetbrains.tfsIntegration.core.tfs.VersionControlPath;
 
 import java.util.*;
@@ -53,21 +54,17 @@ public class LabelModel {
     Collections.sort(myLabelSpecs, ITEM_SPEC_PARENT_FIRST);
     final List<ItemAndVersion> result = new ArrayList<>();
 
-    for (int i = 0; i < myLabelSpecs.size(); i++) {
+    // walk from the last spec so that the trie holds exactly the specs following the current one
+    final ServerPathTrie<LabelItemSpecWithItems> followingSpecs = new ServerPathTrie<>();
+    for (int i = myLabelSpecs.size() - 1; i >= 0; i--) {
       final LabelItemSpecWithItems labelSpec = myLabelSpecs.get(i);
       // removal label spec has no items anyway
       for (Item item : labelSpec.getItemsList()) {
-        boolean appearsUnderChild = false;
-        for (int j = i + 1; j < myLabelSpecs.size(); j++) {
-          if (VersionControlPath.isUnder(myLabelSpecs.get(j).getServerPath(), item.getItem())) {
-            appearsUnderChild = true;
-            break;
-          }
-        }
-        if (!appearsUnderChild) {
+        if (!followingSpecs.hasAncestor(item.getItem())) {
           result.add(new ItemAndVersion(item, labelSpec.getLabelItemSpec().getVersion()));
         }
       }
+      followingSpecs.put(labelSpec.getServerPath(), labelSpec);
     }
 
     Collections.sort(result, ITEM_AND_VERSION_PARENT_FIRST);
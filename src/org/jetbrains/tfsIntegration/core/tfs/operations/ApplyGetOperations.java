@@ -16,33 +16,45 @@
 
 package org.jetbrains.tfsIntegration.core.tfs.operations;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.ThrowableComputable;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.update.FileGroup;
 import com.intellij.openapi.vcs.update.UpdatedFiles;
 import com.intellij.util.WaitForProgressToShow;
+import com.intellij.util.io.DigestUtil;
+import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ChangeType_type0;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ItemType;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.LocalVersionUpdate;
+import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSBundle;
 import org.jetbrains.tfsIntegration.core.TFSVcs;
+import org.jetbrains.tfsIntegration.core.revision.TFSBaselineStore;
 import org.jetbrains.tfsIntegration.core.tfs.*;
 import org.jetbrains.tfsIntegration.exceptions.OperationFailedException;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
-
-import java.io.File;
-import java.io.IOException;
-import java.io.OutputStream;
+import org.jetbrains.tfsIntegration.exceptions.UserCancelledException;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -50,6 +62,14 @@ import java.util.List;
 
 @SuppressWarnings({"HardCodedStringLiteral"})
 public class ApplyGetOperations {
+  private static final Logger LOG = Logger.getInstance(ApplyGetOperations.class.getName());
+
+  @NonNls private static final String TMP_EXTENSION = ".tmp";
+  @NonNls private static final String DOWNLOADS_DIR = "downloads";
+  @NonNls private static final String SPOOL_PREFIX = "get";
+
+  private static boolean ourDownloadDirCleaned;
+
   private static LocalConflictHandlingType ourLocalConflictHandlingType = LocalConflictHandlingType.SHOW_MESSAGE;
 
 
@@ -58,9 +78,16 @@ public class ApplyGetOperations {
   private final Collection<GetOperation> myOperations;
   private final @NotNull ApplyProgress myProgress;
   private final @Nullable UpdatedFiles myUpdatedFiles;
+  private final @Nullable Collection<? super FilePath> myChangedPaths;
   private final Collection<VcsException> myErrors = new ArrayList<>();
   private final Collection<LocalVersionUpdate> myUpdateLocalVersions = new ArrayList<>();
   private final DownloadMode myDownloadMode;
+  // used when operations are applied in the order received
+  private final List<Pair<String, String>> myFolderMoves = new ArrayList<>();
+  private final List<GetOperation> myPostponedFolderDeletions = new ArrayList<>();
+  private boolean myCancelled;
+  // used when a branch is created: server path of the branch source and target
+  private @Nullable Pair<String, String> myBranch;
 
   public enum DownloadMode {
     FORCE,
@@ -79,12 +106,14 @@ public class ApplyGetOperations {
                              Collection<GetOperation> operations,
                              final @NotNull ApplyProgress progress,
                              final @Nullable UpdatedFiles updatedFiles,
+                             final @Nullable Collection<? super FilePath> changedPaths,
                              final DownloadMode downloadMode) {
     myProject = project;
     myWorkspace = workspace;
     myOperations = operations;
     myProgress = progress;
     myUpdatedFiles = updatedFiles;
+    myChangedPaths = changedPaths;
     myDownloadMode = downloadMode;
   }
 
@@ -102,11 +131,61 @@ public class ApplyGetOperations {
                                                  final @NotNull ApplyProgress progress,
                                                  final @Nullable UpdatedFiles updatedFiles,
                                                  DownloadMode downloadMode) {
-    ApplyGetOperations session = new ApplyGetOperations(project, workspace, operations, progress, updatedFiles, downloadMode);
+    return execute(project, workspace, operations, progress, updatedFiles, null, downloadMode);
+  }
+
+  /**
+   * @param changedPaths receives local paths of the files and folders created, updated, deleted or moved, so that only those
+   *                     have to be refreshed afterwards
+   */
+  public static Collection<VcsException> execute(Project project,
+                                                 WorkspaceInfo workspace,
+                                                 Collection<GetOperation> operations,
+                                                 final @NotNull ApplyProgress progress,
+                                                 final @Nullable UpdatedFiles updatedFiles,
+                                                 final @Nullable Collection<? super FilePath> changedPaths,
+                                                 DownloadMode downloadMode) {
+    ApplyGetOperations session = new ApplyGetOperations(project, workspace, operations, progress, updatedFiles, changedPaths, downloadMode);
     session.execute();
     return session.myErrors;
   }
 
+  /**
+   * Applies operations that create working copies of a new branch. Files of the branch source that are found in the workspace
+   * with the same content as the target are copied locally, the rest are downloaded.
+   */
+  public static Collection<VcsException> executeBranch(Project project,
+                                                       WorkspaceInfo workspace,
+                                                       Collection<GetOperation> operations,
+                                                       final @NotNull ApplyProgress progress,
+                                                       @NotNull String sourceServerPath,
+                                                       @NotNull String targetServerPath) {
+    ApplyGetOperations session = new ApplyGetOperations(project, workspace, operations, progress, null, null, DownloadMode.ALLOW);
+    session.myBranch = Pair.create(sourceServerPath, targetServerPath);
+    session.execute();
+    return session.myErrors;
+  }
+
+  /**
+   * Requests get operations from the server and applies them in the order received. Operations are spooled to a temporary file while
+   * the response is read and applied once the request is over, so that the server connection is not held while files are downloaded
+   * or local conflicts are asked about. Folder deletions are postponed until all the operations are known.
+   *
+   * @param changedPaths receives local paths of the files and folders created, updated, deleted or moved
+   */
+  public static Collection<VcsException> executeGet(Project project,
+                                                    WorkspaceInfo workspace,
+                                                    List<VersionControlServer.GetRequestParams> requests,
+                                                    final @NotNull ApplyProgress progress,
+                                                    final @Nullable UpdatedFiles updatedFiles,
+                                                    final @Nullable Collection<? super FilePath> changedPaths,
+                                                    DownloadMode downloadMode) {
+    ApplyGetOperations session =
+      new ApplyGetOperations(project, workspace, new ArrayList<>(), progress, updatedFiles, changedPaths, downloadMode);
+    session.executeGet(requests);
+    return session.myErrors;
+  }
+
   private void execute() {
     if (myOperations.isEmpty()) {
       return;
@@ -123,61 +202,181 @@ public class ApplyGetOperations {
         }
 
         GetOperation operationToExecute = sortedOperations.get(i);
-
-        String currentPath = VersionControlPath.localPathFromTfsRepresentation(
-          operationToExecute.getTlocal() != null ? operationToExecute.getTlocal() : operationToExecute.getSlocal());
-        if (currentPath == null) {
-          FilePath unexistingPath = myWorkspace
-            .findLocalPathByServerPath(operationToExecute.getTitem(), operationToExecute.getType() == ItemType.Folder, myProject);
-          currentPath = unexistingPath.getPresentableUrl();
-        }
-        myProgress.setFraction(i / sortedOperations.size());
-        myProgress.setText(currentPath);
-
-        if (operationToExecute.getCnflct()) {
-          // TODO can be confict on undo?
-          // conflict will be resolved later
-          processConflict(operationToExecute);
-        }
-        else if (operationToExecute.getSlocal() == null && operationToExecute.getTlocal() == null) {
-          updateLocalVersion(operationToExecute);
-        }
-        else if (operationToExecute.getTlocal() == null) {
-          if (operationToExecute.getType() == ItemType.File) {
-            processDeleteFile(operationToExecute);
-          }
-          else {
-            processDeleteFolder(operationToExecute);
-          }
-        }
-        else if (operationToExecute.getSlocal() == null) {
-          if (operationToExecute.getType() == ItemType.File) {
-            processCreateFile(operationToExecute);
-          }
-          else {
-            processCreateFolder(operationToExecute);
-          }
-        }
-        else if (operationToExecute.getType() == ItemType.File) {
-          processFileChange(operationToExecute);
-        }
-        else {
-          processFolderChange(operationToExecute);
-          if (!operationToExecute.getSlocal().equals(operationToExecute.getTlocal())) {
-            GetOperationsUtil.updateSourcePaths(sortedOperations, i, operationToExecute);
-          }
+        myProgress.setFraction((double)i / sortedOperations.size());
+        apply(operationToExecute);
+        if (isFolderMove(operationToExecute)) {
+          GetOperationsUtil.updateSourcePaths(sortedOperations, i, operationToExecute);
         }
       }
 
-      myWorkspace.getServer().getVCS()
-        .updateLocalVersions(myWorkspace.getName(), myWorkspace.getOwnerName(), myUpdateLocalVersions, myProject,
-                             TFSBundle.message("updating.local.version"));
+      updateLocalVersions();
     }
     catch (TfsException e) {
       myErrors.add(new VcsException(e));
     }
   }
 
+  private void executeGet(List<VersionControlServer.GetRequestParams> requests) {
+    File spoolFile = null;
+    try {
+      spoolFile = FileUtil.createTempFile(getDownloadDir(), SPOOL_PREFIX, TMP_EXTENSION, true, false);
+      try (GetOperationSpool spool = new GetOperationSpool(spoolFile)) {
+        // nothing is applied while the response is read, the request is over before any download starts or a dialog is shown
+        myWorkspace.getServer().getVCS()
+          .get(myWorkspace.getName(), myWorkspace.getOwnerName(), requests, operation -> spool(spool, operation), myProject,
+               TFSBundle.message("preparing.for.download"));
+        final int count = spool.getCount();
+        final int[] applied = new int[1];
+        spool.read(operation -> {
+          myProgress.setFraction((double)applied[0]++ / count);
+          applyStreamed(operation);
+        });
+      }
+      flushPostponedFolderDeletions();
+      updateLocalVersions();
+    }
+    catch (UserCancelledException e) {
+      if (myCancelled) {
+        throw new ProcessCanceledException();
+      }
+      myErrors.add(new VcsException(e));
+    }
+    catch (TfsException e) {
+      myErrors.add(new VcsException(e));
+    }
+    catch (IOException e) {
+      myErrors.add(new VcsException(MessageFormat.format("Cannot store get operations: {0}", e.getMessage()), e));
+    }
+    finally {
+      if (spoolFile != null) {
+        FileUtil.delete(spoolFile);
+      }
+    }
+  }
+
+  private void spool(GetOperationSpool spool, GetOperation operation) throws TfsException {
+    // we are called within the request, so cancellation should be reported in terms of TfsException
+    if (myProgress.isCancelled()) {
+      myCancelled = true;
+      throw new UserCancelledException();
+    }
+    try {
+      spool.add(operation);
+    }
+    catch (IOException e) {
+      throw new OperationFailedException(MessageFormat.format("Cannot store get operations: {0}", e.getMessage()), e);
+    }
+  }
+
+  private void applyStreamed(GetOperation operation) throws TfsException {
+    if (myProgress.isCancelled()) {
+      throw new ProcessCanceledException();
+    }
+
+    // the same as GetOperationsUtil.updateSourcePaths() does for the operations known in advance
+    for (Pair<String, String> move : myFolderMoves) {
+      if (operation.getSlocal() != null) {
+        operation.setSlocal(operation.getSlocal().replace(move.first, move.second));
+      }
+    }
+    if (operation.getSlocal() != null && operation.getTlocal() == null) {
+      // only deletions are looked up later (see canDeleteFolder()), the rest are not kept to save memory on large gets
+      myOperations.add(operation);
+    }
+
+    if (isFolderDeletion(operation)) {
+      // can't tell if folder can be deleted until we know what happens to its children
+      myPostponedFolderDeletions.add(operation);
+      return;
+    }
+    if (operation.getTlocal() != null && isUnderPostponedFolderDeletion(VersionControlPath.getFile(operation.getTlocal()))) {
+      // don't let the deletion affect an item created at the same place
+      flushPostponedFolderDeletions();
+    }
+
+    apply(operation);
+    if (isFolderMove(operation)) {
+      myFolderMoves.add(Pair.create(operation.getSlocal(), operation.getTlocal()));
+    }
+  }
+
+  private boolean isUnderPostponedFolderDeletion(File file) {
+    for (GetOperation deletion : myPostponedFolderDeletions) {
+      if (FileUtil.isAncestor(VersionControlPath.getFile(deletion.getSlocal()), file, false)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void flushPostponedFolderDeletions() throws TfsException {
+    for (GetOperation deletion : myPostponedFolderDeletions) {
+      myProgress.setText(VersionControlPath.localPathFromTfsRepresentation(deletion.getSlocal()));
+      processDeleteFolder(deletion);
+    }
+    myPostponedFolderDeletions.clear();
+  }
+
+  private void updateLocalVersions() throws TfsException {
+    myWorkspace.getServer().getVCS()
+      .updateLocalVersions(myWorkspace.getName(), myWorkspace.getOwnerName(), myUpdateLocalVersions, myProject,
+                           TFSBundle.message("updating.local.version"));
+  }
+
+  private static boolean isFolderDeletion(GetOperation operation) {
+    return !operation.getCnflct() && operation.getSlocal() != null && operation.getTlocal() == null && operation.getType() != ItemType.File;
+  }
+
+  private static boolean isFolderMove(GetOperation operation) {
+    return !operation.getCnflct() &&
+           operation.getSlocal() != null &&
+           operation.getTlocal() != null &&
+           operation.getType() != ItemType.File &&
+           !operation.getSlocal().equals(operation.getTlocal());
+  }
+
+  private void apply(GetOperation operationToExecute) throws TfsException {
+    String currentPath = VersionControlPath.localPathFromTfsRepresentation(
+      operationToExecute.getTlocal() != null ? operationToExecute.getTlocal() : operationToExecute.getSlocal());
+    if (currentPath == null) {
+      FilePath unexistingPath = myWorkspace
+        .findLocalPathByServerPath(operationToExecute.getTitem(), operationToExecute.getType() == ItemType.Folder, myProject);
+      currentPath = unexistingPath.getPresentableUrl();
+    }
+    myProgress.setText(currentPath);
+
+    if (operationToExecute.getCnflct()) {
+      // TODO can be confict on undo?
+      // conflict will be resolved later
+      processConflict(operationToExecute);
+    }
+    else if (operationToExecute.getSlocal() == null && operationToExecute.getTlocal() == null) {
+      updateLocalVersion(operationToExecute);
+    }
+    else if (operationToExecute.getTlocal() == null) {
+      if (operationToExecute.getType() == ItemType.File) {
+        processDeleteFile(operationToExecute);
+      }
+      else {
+        processDeleteFolder(operationToExecute);
+      }
+    }
+    else if (operationToExecute.getSlocal() == null) {
+      if (operationToExecute.getType() == ItemType.File) {
+        processCreateFile(operationToExecute);
+      }
+      else {
+        processCreateFolder(operationToExecute);
+      }
+    }
+    else if (operationToExecute.getType() == ItemType.File) {
+      processFileChange(operationToExecute);
+    }
+    else {
+      processFolderChange(operationToExecute);
+    }
+  }
+
   private void processDeleteFile(final GetOperation operation) throws TfsException {
     File source = VersionControlPath.getFile(operation.getSlocal());
     if (source.isDirectory()) {
@@ -246,6 +445,7 @@ public class ApplyGetOperations {
         myErrors.add(new VcsException(errorMessage));
         return;
       }
+      changed(target, false);
     }
 
     if (!createFolder(target.getParentFile())) {
@@ -264,11 +464,14 @@ public class ApplyGetOperations {
       return;
     }
 
-    if (target.isFile() && !FileUtil.delete(target)) {
-      String errorMessage =
-        MessageFormat.format("Cannot create folder ''{0}'' because there is a folder with the same name", target.getPath());
-      myErrors.add(new VcsException(errorMessage));
-      return;
+    if (target.isFile()) {
+      if (!FileUtil.delete(target)) {
+        String errorMessage =
+          MessageFormat.format("Cannot create folder ''{0}'' because there is a folder with the same name", target.getPath());
+        myErrors.add(new VcsException(errorMessage));
+        return;
+      }
+      changed(target, false);
     }
 
     boolean folderExists = target.exists();
@@ -447,14 +650,20 @@ public class ApplyGetOperations {
   }
 
   private boolean deleteFile(File target) {
-    if (myDownloadMode != DownloadMode.FORBID && !FileUtil.delete(target)) {
+    if (myDownloadMode == DownloadMode.FORBID) {
+      return true;
+    }
+    boolean isDirectory = target.isDirectory();
+    boolean exists = isDirectory || target.exists();
+    if (!FileUtil.delete(target)) {
       String errorMessage = MessageFormat.format("Cannot delete {0} ''{1}''", target.isFile() ? "file" : "folder", target.getPath());
       myErrors.add(new VcsException(errorMessage));
       return false;
     }
-    else {
-      return true;
+    if (exists) {
+      changed(target, isDirectory);
     }
+    return true;
   }
 
   private boolean canDeleteFolder(final File folder) {
@@ -489,25 +698,37 @@ public class ApplyGetOperations {
   }
 
   private boolean createFolder(File target) {
-    if (myDownloadMode != DownloadMode.FORBID && !target.exists() && !target.mkdirs()) {
+    if (myDownloadMode == DownloadMode.FORBID || target.exists()) {
+      return true;
+    }
+    if (!target.mkdirs()) {
       String errorMessage = MessageFormat.format("Cannot create folder ''{0}''", target.getPath());
       myErrors.add(new VcsException(errorMessage));
       return false;
     }
-    else {
-      return true;
-    }
+    changed(target, true);
+    return true;
   }
 
   private boolean rename(File source, File target) {
-    if (myDownloadMode != DownloadMode.FORBID && !source.equals(target) && !source.renameTo(target)) {
+    if (myDownloadMode == DownloadMode.FORBID || source.equals(target)) {
+      return true;
+    }
+    boolean isDirectory = source.isDirectory();
+    if (!source.renameTo(target)) {
       String errorMessage = MessageFormat
         .format("Cannot rename {0} ''{1}'' to ''{2}''", source.isFile() ? "file" : "folder", source.getPath(), target.getPath());
       myErrors.add(new VcsException(errorMessage));
       return false;
     }
-    else {
-      return true;
+    changed(source, isDirectory);
+    changed(target, isDirectory);
+    return true;
+  }
+
+  private void changed(File file, boolean isDirectory) {
+    if (myChangedPaths != null) {
+      myChangedPaths.add(VcsUtil.getFilePath(file, isDirectory));
     }
   }
 
@@ -521,18 +742,20 @@ public class ApplyGetOperations {
 
     final File target = VersionControlPath.getFile(operation.getTlocal());
     try {
-      TfsFileUtil.setFileContent(target, new TfsFileUtil.ContentWriter() {
-        @Override
-        public void write(final OutputStream outputStream) throws TfsException {
-          myWorkspace.getServer().getVCS()
-            .downloadItem(myProject, operation.getDurl(), outputStream, TFSBundle.message("downloading.0", target.getName()));
-        }
-      });
+      if (!copyFromBranchSource(operation, target) && !downloadVerified(operation, target)) {
+        return false;
+      }
+      changed(target, false);
       if (!target.setReadOnly()) {
         String errorMessage = MessageFormat.format("Cannot write to file ''{0}''", target.getPath());
         myErrors.add(new VcsException(errorMessage));
         return false;
       }
+      if (TFSBaselineStore.isEnabled()) {
+        TFSBaselineStore.getInstance()
+          .captureLater(myWorkspace.getServer().getUri().toASCIIString(), operation.getItemid(), operation.getSver(),
+                        GetOperationsUtil.getHash(operation), target);
+      }
       return true;
     }
     catch (IOException e) {
@@ -542,6 +765,132 @@ public class ApplyGetOperations {
     }
   }
 
+  /**
+   * Partial downloads are kept out of the workspace, so that nothing is left there if the IDE is killed in the middle of a download.
+   * Those left by the previous session are deleted on first use.
+   */
+  private static synchronized File getDownloadDir() {
+    File dir = ItemCacheDir.getSystemDir(DOWNLOADS_DIR);
+    if (!ourDownloadDirCleaned) {
+      ourDownloadDirCleaned = true;
+      FileUtil.delete(dir);
+    }
+    dir.mkdirs();
+    return dir;
+  }
+
+  /**
+   * Content is downloaded to a temporary file, the target is replaced only once the content is complete and matches the hash
+   * of the item.
+   */
+  private boolean downloadVerified(final GetOperation operation, final File target) throws TfsException, IOException {
+    final File tmpFile = FileUtil.createTempFile(getDownloadDir(), target.getName(), TMP_EXTENSION, true, false);
+    try {
+      final MessageDigest digest = DigestUtil.md5();
+      try (OutputStream outputStream = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)), digest)) {
+        myWorkspace.getServer().getVCS()
+          .downloadItem(myProject, operation.getDurl(), outputStream, TFSBundle.message("downloading.0", target.getName()));
+      }
+      byte[] hash = GetOperationsUtil.getHash(operation);
+      if (hash != null && !Arrays.equals(hash, digest.digest())) {
+        String errorMessage = MessageFormat.format("Downloaded content of ''{0}'' does not match the server hash", target.getPath());
+        myErrors.add(new VcsException(errorMessage));
+        return false;
+      }
+      moveIntoPlace(tmpFile, target);
+      return true;
+    }
+    finally {
+      FileUtil.delete(tmpFile);
+    }
+  }
+
+  /**
+   * Replaces the target in one step, so that a killed IDE leaves it either old or new but never truncated or missing. A temporary
+   * file on another volume than the target can't be moved so, it is copied next to the target first.
+   */
+  private static void moveIntoPlace(@NotNull File tmpFile, @NotNull File target) throws IOException {
+    if (target.exists() && !target.canWrite()) {
+      FileUtil.setReadOnlyAttribute(target.getPath(), false);
+    }
+    try {
+      Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      FileUtil.createParentDirs(target);
+      File sibling = FileUtil.createTempFile(target.getParentFile(), target.getName(), TMP_EXTENSION, true, false);
+      try {
+        Files.copy(tmpFile.toPath(), sibling.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(sibling.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        FileUtil.delete(sibling);
+      }
+    }
+  }
+
+  private boolean copyFromBranchSource(final GetOperation operation, final File target) {
+    if (myBranch == null || operation.getTitem() == null || !VersionControlPath.isUnder(myBranch.second, operation.getTitem())) {
+      return false;
+    }
+    String sourceServerPath = myBranch.first + operation.getTitem().substring(myBranch.second.length());
+    return copyFromBranchSource(() -> myWorkspace.getMappingTable(myProject).getLocalPath(sourceServerPath, false),
+                                GetOperationsUtil.getHash(operation), target, getDownloadDir());
+  }
+
+  /**
+   * The copy is checked against the hash of the target item, so a source file modified locally or synchronized to another
+   * version is never taken for the target. Like a download, the copy is made and checked in a temporary file, and the target is
+   * replaced only once it passed. Files are copied rather than linked since working copies are made writable on checkout.
+   * Failing to find the source is not an error: the target is downloaded then.
+   *
+   * @param sourcePath local path of the branch source of the target, null if it is not mapped
+   * @param tmpDir     directory the copy is made in
+   * @return true if the target has been copied from the local source file, false if it should be downloaded
+   */
+  public static boolean copyFromBranchSource(@NotNull ThrowableComputable<FilePath, TfsException> sourcePath,
+                                             @Nullable byte[] hash,
+                                             @NotNull File target,
+                                             @NotNull File tmpDir) {
+    if (hash == null) {
+      return false;
+    }
+    File source;
+    try {
+      FilePath path = sourcePath.compute();
+      if (path == null || !path.getIOFile().isFile()) {
+        return false;
+      }
+      source = path.getIOFile();
+    }
+    catch (TfsException e) {
+      LOG.info("Branch source of " + target + " is not known, downloading", e);
+      return false;
+    }
+
+    File tmpFile = null;
+    try {
+      tmpFile = FileUtil.createTempFile(tmpDir, target.getName(), TMP_EXTENSION, true, false);
+      Files.copy(source.toPath(), tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      // the source may be changed meanwhile, so check what we've got
+      if (!Arrays.equals(hash, TfsFileUtil.calculateMD5(tmpFile))) {
+        return false;
+      }
+      FileUtil.createParentDirs(target);
+      moveIntoPlace(tmpFile, target);
+      return true;
+    }
+    catch (IOException e) {
+      // download will tell if the target can't be written
+      return false;
+    }
+    finally {
+      if (tmpFile != null) {
+        FileUtil.delete(tmpFile);
+      }
+    }
+  }
+
   private boolean canOverrideLocalConflictingItem(final GetOperation operation, boolean sourceNotTarget) throws TfsException {
     if (myDownloadMode == DownloadMode.FORCE || myDownloadMode == DownloadMode.MERGE) {
       return true;
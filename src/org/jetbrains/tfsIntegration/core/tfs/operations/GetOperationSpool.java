@@ -0,0 +1,120 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs.operations;
+
+import com.intellij.util.ThrowableConsumer;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.util.StAXUtils;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.webservice.StreamingResponseReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+
+/**
+ * Get operations written to a file as they are received and read back once the response is complete. Lets the Get request be
+ * finished before the operations are applied, without keeping all of them in memory on large gets.
+ */
+public class GetOperationSpool implements Closeable {
+
+  @NonNls private static final String ROOT_ELEMENT = "GetOperations";
+  private static final QName ELEMENT_NAME = new QName("GetOperation");
+
+  private final @NotNull File myFile;
+  private final OutputStream myOutput;
+  private final XMLStreamWriter myWriter;
+  private int myCount;
+  private boolean myClosed;
+
+  public GetOperationSpool(@NotNull File file) throws IOException {
+    myFile = file;
+    myOutput = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      myWriter = StAXUtils.createXMLStreamWriter(myOutput, "UTF-8");
+      myWriter.writeStartDocument();
+      myWriter.writeStartElement(ROOT_ELEMENT);
+    }
+    catch (XMLStreamException e) {
+      myOutput.close();
+      throw new IOException(e);
+    }
+  }
+
+  public void add(@NotNull GetOperation operation) throws IOException {
+    try {
+      operation.getOMElement(ELEMENT_NAME, OMAbstractFactory.getOMFactory()).serializeAndConsume(myWriter);
+    }
+    catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+    myCount++;
+  }
+
+  public int getCount() {
+    return myCount;
+  }
+
+  /**
+   * Passes the operations added to the consumer in the order they were received
+   */
+  public void read(@NotNull ThrowableConsumer<? super GetOperation, TfsException> consumer) throws IOException, TfsException {
+    try {
+      myWriter.writeEndElement();
+      myWriter.writeEndDocument();
+    }
+    catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+    close();
+
+    try (InputStream input = new BufferedInputStream(new FileInputStream(myFile))) {
+      XMLStreamReader reader = StAXUtils.createXMLStreamReader(input);
+      try {
+        StreamingResponseReader.readElements(reader, ELEMENT_NAME, GetOperation.Factory::parse, consumer);
+      }
+      finally {
+        reader.close();
+      }
+    }
+    catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (myClosed) {
+      return;
+    }
+    myClosed = true;
+    try {
+      myWriter.close();
+    }
+    catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+    finally {
+      myOutput.close();
+    }
+  }
+}
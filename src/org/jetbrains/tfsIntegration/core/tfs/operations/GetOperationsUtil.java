@@ -18,7 +18,9 @@ package org.jetbrains.tfsIntegration.core.tfs.operations;
 
 import com.intellij.openapi.util.io.FileUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSVcs;
+import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
 import org.jetbrains.tfsIntegration.core.tfs.VersionControlPath;
 
 import java.io.File;
@@ -57,4 +59,12 @@ public class GetOperationsUtil {
       }
     }
   }
+
+  /**
+   * @return MD5 of the item content the operation refers to or null if not known
+   */
+  @Nullable
+  public static byte[] getHash(final GetOperation operation) {
+    return TfsFileUtil.readHash(operation.getHashValue());
+  }
 }
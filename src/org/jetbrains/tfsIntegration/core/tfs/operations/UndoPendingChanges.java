@@ -40,9 +40,19 @@ public class UndoPendingChanges {
     // TODO only local paths are used actually
     public final Map<ItemPath, ItemPath> undonePaths;
 
+    // local files and folders created, updated, deleted or moved
+    public final Collection<FilePath> changedPaths;
+
     public UndoPendingChangesResult(final Map<ItemPath, ItemPath> undonePaths, final Collection<VcsException> errors) {
+      this(undonePaths, errors, Collections.emptyList());
+    }
+
+    public UndoPendingChangesResult(final Map<ItemPath, ItemPath> undonePaths,
+                                    final Collection<VcsException> errors,
+                                    final Collection<FilePath> changedPaths) {
       this.undonePaths = undonePaths;
       this.errors = errors;
+      this.changedPaths = changedPaths;
     }
   }
 
@@ -89,10 +99,11 @@ public class UndoPendingChanges {
 
       final ApplyGetOperations.DownloadMode downloadMode =
         forbidDownload ? ApplyGetOperations.DownloadMode.FORBID : ApplyGetOperations.DownloadMode.FORCE;
+      final Collection<FilePath> changedPaths = new ArrayList<>();
       final Collection<VcsException> applyingErrors =
-        ApplyGetOperations.execute(project, workspace, result.getResult(), progress, null, downloadMode);
+        ApplyGetOperations.execute(project, workspace, result.getResult(), progress, null, changedPaths, downloadMode);
       errors.addAll(applyingErrors);
-      return new UndoPendingChangesResult(undonePaths, errors);
+      return new UndoPendingChangesResult(undonePaths, errors, changedPaths);
     }
     catch (TfsException e) {
       return new UndoPendingChangesResult(Collections.emptyMap(), Collections.singletonList(new VcsException(e)));
@@ -34,6 +34,9 @@ public class WorkItemSerialize {
     ContainerUtil.immutableList(WorkItemField.ID, WorkItemField.STATE, WorkItemField.TITLE, WorkItemField.REVISION, WorkItemField.TYPE,
                                 WorkItemField.REASON, WorkItemField.ASSIGNED_TO);
 
+  // enough to tell whether a work item has changed
+  public static final List<WorkItemField> REVISION_FIELDS = ContainerUtil.immutableList(WorkItemField.ID, WorkItemField.REVISION);
+
   private static final String SERVER_DATE_TIME = "ServerDateTime";
   private static final Logger LOG = Logger.getInstance(WorkItemSerialize.class);
 
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs.workitems;
+
+import com.microsoft.tfs.core.clients.workitem.query.WorkItemLinkInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Results of the work item queries last run against a single server. Running a query again returns the ids only, which is cheap,
+ * and asking for revisions of those cached is cheap too: only the work items that are new or have got a new revision are loaded
+ * in full, the rest are taken from here. Meanwhile the previous result can be shown as is.
+ */
+public class WorkItemsCache {
+
+  private final Map<String, Result> myResults = new HashMap<>(); // query key -> last result
+  private final Map<Integer, WorkItem> myWorkItems = new HashMap<>(); // id -> work item of any of the results
+
+  private static class Result {
+    private final List<Integer> myIds;
+    private final @Nullable List<WorkItemLinkInfo> myLinks;
+
+    Result(List<Integer> ids, @Nullable List<WorkItemLinkInfo> links) {
+      myIds = ids;
+      myLinks = links;
+    }
+  }
+
+  /**
+   * @return work items found by the query when it was last run, null if it was not
+   */
+  @Nullable
+  public synchronized List<WorkItem> getWorkItems(@NotNull String queryKey) {
+    Result result = myResults.get(queryKey);
+    return result != null ? collect(result.myIds) : null;
+  }
+
+  @Nullable
+  public synchronized List<WorkItemLinkInfo> getLinks(@NotNull String queryKey) {
+    Result result = myResults.get(queryKey);
+    return result != null ? result.myLinks : null;
+  }
+
+  /**
+   * @return those of the given work items that are cached, only their revisions are worth asking for: the rest are loaded anyway
+   */
+  @NotNull
+  public synchronized List<Integer> getCached(@NotNull Collection<Integer> ids) {
+    List<Integer> result = new ArrayList<>();
+    for (Integer id : ids) {
+      if (myWorkItems.containsKey(id)) {
+        result.add(id);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param revisions current revisions of the work items found by the query
+   * @return ids of the work items that should be loaded, in the order given
+   */
+  @NotNull
+  public List<Integer> getOutdated(@NotNull Map<Integer, Integer> revisions) {
+    return getOutdated(revisions.keySet(), revisions);
+  }
+
+  /**
+   * @param ids       work items found by the query
+   * @param revisions current revisions of the cached ones, see {@link #getCached(Collection)}
+   * @return ids of the work items that should be loaded, in the order given
+   */
+  @NotNull
+  public synchronized List<Integer> getOutdated(@NotNull Collection<Integer> ids, @NotNull Map<Integer, Integer> revisions) {
+    List<Integer> result = new ArrayList<>();
+    for (Integer id : ids) {
+      WorkItem cached = myWorkItems.get(id);
+      Integer revision = revisions.get(id);
+      if (cached == null || revision != null && cached.getRevision() != revision) {
+        result.add(id);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param ids    work items found by the query
+   * @param loaded work items loaded since {@link #getOutdated(Collection, Map)}
+   * @return work items found by the query, in the order of their ids; those that could not be loaded are omitted
+   */
+  @NotNull
+  public synchronized List<WorkItem> update(@NotNull String queryKey,
+                                            @NotNull List<Integer> ids,
+                                            @NotNull Collection<WorkItem> loaded,
+                                            @Nullable List<WorkItemLinkInfo> links) {
+    for (WorkItem workItem : loaded) {
+      myWorkItems.put(workItem.getId(), workItem);
+    }
+    myResults.put(queryKey, new Result(new ArrayList<>(ids), links));
+
+    // work items found by none of the queries any more
+    Set<Integer> retained = new HashSet<>();
+    for (Result result : myResults.values()) {
+      retained.addAll(result.myIds);
+    }
+    myWorkItems.keySet().retainAll(retained);
+
+    return collect(ids);
+  }
+
+  public synchronized void clear() {
+    myResults.clear();
+    myWorkItems.clear();
+  }
+
+  private List<WorkItem> collect(List<Integer> ids) {
+    List<WorkItem> result = new ArrayList<>(ids.size());
+    for (Integer id : ids) {
+      WorkItem workItem = myWorkItems.get(id);
+      if (workItem != null) {
+        result.add(workItem);
+      }
+    }
+    return result;
+  }
+}
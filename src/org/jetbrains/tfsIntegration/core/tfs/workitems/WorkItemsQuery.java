@@ -17,6 +17,7 @@
 package org.jetbrains.tfsIntegration.core.tfs.workitems;
 
 import com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.*;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.tfs.ServerInfo;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
@@ -29,8 +30,8 @@ public enum WorkItemsQuery {
       Expression_type0 expression1 = new Expression_type0();
       expression1.setColumn(WorkItemField.ASSIGNED_TO.getSerialized());
       expression1.setOperator(OperatorType.equals);
-      expression1
-        .setString(server.getVCS().readIdentity(server.getQualifiedUsername(), projectOrComponent, progressMessage).getDisplayName());
+      expression1.setString(
+        server.getVCS().getIdentityCache().getDisplayName(server.getQualifiedUsername(), projectOrComponent, progressMessage));
 
       Expression_type0 expression2 = new Expression_type0();
       expression2.setColumn(WorkItemField.STATE.getSerialized());
@@ -53,8 +54,8 @@ public enum WorkItemsQuery {
       Expression_type0 expression1 = new Expression_type0();
       expression1.setColumn(WorkItemField.ASSIGNED_TO.getSerialized());
       expression1.setOperator(OperatorType.equals);
-      expression1
-        .setString(server.getVCS().readIdentity(server.getQualifiedUsername(), projectOrComponent, progressMessage).getDisplayName());
+      expression1.setString(
+        server.getVCS().getIdentityCache().getDisplayName(server.getQualifiedUsername(), projectOrComponent, progressMessage));
 
       Query_type0E query_type01 = new Query_type0E();
       query_type01.setExpression(expression1);
@@ -102,10 +103,18 @@ public enum WorkItemsQuery {
 
   public abstract List<WorkItem> queryWorkItems(ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException;
 
-  protected static List<WorkItem> queryWorkItems(ServerInfo server,
-                                                 Query_type0E query_type01,
-                                                 Object projectOrComponent,
-                                                 String progressMessage) throws TfsException {
-    return server.getVCS().queryWorkItems(query_type01, projectOrComponent, progressMessage);
+  /**
+   * @return work items found when the query was last run against the server, null if it was not
+   */
+  @Nullable
+  public List<WorkItem> getCachedWorkItems(ServerInfo server) {
+    return server.getVCS().getWorkItemsCache().getWorkItems(name());
+  }
+
+  protected List<WorkItem> queryWorkItems(ServerInfo server,
+                                          Query_type0E query_type01,
+                                          Object projectOrComponent,
+                                          String progressMessage) throws TfsException {
+    return server.getVCS().queryWorkItems(name(), query_type01, projectOrComponent, progressMessage);
   }
 }
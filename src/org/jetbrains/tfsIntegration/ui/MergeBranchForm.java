@@ -194,9 +194,8 @@ public class MergeBranchForm {
     List<Changeset> changesets = new ArrayList<>();
     if (myTargetCombo.getSelectedIndex() != -1) {
       try {
-        final Collection<MergeCandidate> mergeCandidates = myWorkspace.getServer().getVCS()
-          .queryMergeCandidates(myWorkspace.getName(), myWorkspace.getOwnerName(), mySourceField.getText(), getTargetPath(), myProject,
-                                TFSBundle.message("loading.branches"));
+        final Collection<MergeCandidate> mergeCandidates = myWorkspace.getServer().getVCS().getBranchCache()
+          .getMergeCandidates(myWorkspace, mySourceField.getText(), getTargetPath(), myProject, TFSBundle.message("loading.branches"));
         for (MergeCandidate candidate : mergeCandidates) {
           changesets.add(candidate.getChangeset());
         }
@@ -274,8 +273,8 @@ public class MergeBranchForm {
     final Collection<Item> targetBranches = new ArrayList<>();
     try {
       final Collection<BranchRelative> allBranches =
-        myWorkspace.getServer().getVCS()
-          .queryBranches(mySourceField.getText(), LatestVersionSpec.INSTANCE, myProject, TFSBundle.message("loading.branches"));
+        myWorkspace.getServer().getVCS().getBranchCache()
+          .getBranches(mySourceField.getText(), LatestVersionSpec.INSTANCE, myProject, TFSBundle.message("loading.branches"));
 
       BranchRelative subject = null;
       for (BranchRelative branch : allBranches) {
@@ -7,9 +7,12 @@ import com.intellij.ui.treeStructure.SimpleNode;
 import com.intellij.ui.treeStructure.SimpleTree;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsQuery;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
+import java.util.List;
+
 public class PredefinedQueryNode extends BaseQueryNode {
 
   @NotNull private final WorkItemsQuery myQuery;
@@ -46,7 +49,10 @@ public class PredefinedQueryNode extends BaseQueryNode {
 
   @Override
   public void handleSelection(@NotNull final SimpleTree tree) {
-    myQueriesTreeContext.queryWorkItems(new TfsExecutionUtil.Process<WorkItemsQueryResult>() {
+    List<WorkItem> cached = myQuery.getCachedWorkItems(getServer());
+    WorkItemsQueryResult cachedResult = cached != null ? new WorkItemsQueryResult(cached) : null;
+
+    myQueriesTreeContext.queryWorkItems(cachedResult, new TfsExecutionUtil.Process<WorkItemsQueryResult>() {
       @NotNull
       @Override
       public WorkItemsQueryResult run() throws TfsException, VcsException {
@@ -2,6 +2,7 @@ package org.jetbrains.tfsIntegration.ui;
 
 import com.microsoft.tfs.core.TFSTeamProjectCollection;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.checkin.CheckinParameters;
 import org.jetbrains.tfsIntegration.core.tfs.ServerInfo;
 import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
@@ -17,5 +18,8 @@ public interface QueriesTreeContext {
   @NotNull
   TFSTeamProjectCollection getProjectCollection();
 
-  void queryWorkItems(@NotNull TfsExecutionUtil.Process<WorkItemsQueryResult> query);
+  /**
+   * @param cachedResult result of the query last run, shown while the query runs again
+   */
+  void queryWorkItems(@Nullable WorkItemsQueryResult cachedResult, @NotNull TfsExecutionUtil.Process<WorkItemsQueryResult> query);
 }
@@ -17,6 +17,7 @@
 package org.jetbrains.tfsIntegration.ui;
 
 import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.util.Disposer;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Conflict;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -30,6 +31,7 @@ public class ResolveConflictsDialog extends DialogWrapper {
   public ResolveConflictsDialog(final ResolveConflictHelper resolveConflictHelper) {
     super(true);
     myResolveConflictHelper = resolveConflictHelper;
+    Disposer.register(getDisposable(), resolveConflictHelper);
     setTitle("Resolve Conflicts");
     setResizable(true);
     setOKButtonText("Close");
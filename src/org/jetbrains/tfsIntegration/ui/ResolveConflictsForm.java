@@ -17,8 +17,10 @@
 package org.jetbrains.tfsIntegration.ui;
 
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.util.EventDispatcher;
+import com.intellij.util.containers.ContainerUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Conflict;
 import org.jetbrains.tfsIntegration.core.tfs.conflicts.ResolveConflictHelper;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
@@ -45,6 +47,7 @@ public class ResolveConflictsForm {
   private JButton myAcceptTheirsButton;
 
   private JButton myMergeButton;
+  private JButton myAutoMergeButton;
   private final ConflictsTableModel myItemsTableModel;
   private final ResolveConflictHelper myResolveConflictHelper;
 
@@ -72,6 +75,7 @@ public class ResolveConflictsForm {
     final List<Conflict> conflicts = new ArrayList<>(myResolveConflictHelper.getConflicts());
     Collections.sort(conflicts, CONFLICTS_COMPARATOR);
     myItemsTableModel.setConflicts(conflicts);
+    myAutoMergeButton.setEnabled(ContainerUtil.exists(conflicts, ResolveConflictHelper::canAutoMerge));
   }
 
 
@@ -113,6 +117,19 @@ public class ResolveConflictsForm {
         myResolveConflictHelper.acceptMerge(conflict);
       }
     });
+
+    myAutoMergeButton.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(final ActionEvent ae) {
+        List<VcsException> errors = new ArrayList<>();
+        myResolveConflictHelper.autoMerge(myItemsTableModel.getConflicts(), errors);
+        if (!errors.isEmpty()) {
+          String message = "Failed to resolve conlict.\n" + StringUtil.join(errors, VcsException::getMessage, "\n");
+          Messages.showErrorDialog(myContentPanel, message, "Resolve Conflicts");
+        }
+        updateConflictsTable();
+      }
+    });
   }
 
   public JComponent getPanel() {
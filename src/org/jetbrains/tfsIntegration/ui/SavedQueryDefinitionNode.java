@@ -12,9 +12,11 @@ import com.microsoft.tfs.core.clients.workitem.queryhierarchy.QueryDefinition;
 import com.microsoft.tfs.core.clients.workitem.queryhierarchy.QueryType;
 import com.microsoft.tfs.core.ws.runtime.exceptions.ProxyException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemSerialize;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsCache;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import java.util.*;
@@ -24,6 +26,9 @@ public class SavedQueryDefinitionNode extends BaseQueryNode {
   private static final String[] WORK_ITEM_FIELDS =
     ContainerUtil.map2Array(WorkItemSerialize.FIELDS, String.class, field -> field.getSerialized());
   private static final String WORK_ITEMS_QUERY = "SELECT " + WorkItemQueryUtils.formatFieldList(WORK_ITEM_FIELDS) + " FROM WorkItems";
+  private static final String[] REVISION_FIELDS =
+    ContainerUtil.map2Array(WorkItemSerialize.REVISION_FIELDS, String.class, field -> field.getSerialized());
+  private static final String REVISIONS_QUERY = "SELECT " + WorkItemQueryUtils.formatFieldList(REVISION_FIELDS) + " FROM WorkItems";
 
   @NotNull private final QueryDefinition myQueryDefinition;
 
@@ -60,8 +65,11 @@ public class SavedQueryDefinitionNode extends BaseQueryNode {
   @Override
   public void handleSelection(@NotNull SimpleTree tree) {
     final boolean isList = isListQuery();
+    WorkItemsCache cache = getServer().getVCS().getWorkItemsCache();
+    List<WorkItem> cached = cache.getWorkItems(getCacheKey());
+    WorkItemsQueryResult cachedResult = cached != null ? new WorkItemsQueryResult(cached, cache.getLinks(getCacheKey())) : null;
 
-    myQueriesTreeContext.queryWorkItems(new TfsExecutionUtil.Process<WorkItemsQueryResult>() {
+    myQueriesTreeContext.queryWorkItems(cachedResult, new TfsExecutionUtil.Process<WorkItemsQueryResult>() {
       @NotNull
       @Override
       public WorkItemsQueryResult run() throws TfsException, VcsException {
@@ -85,8 +93,51 @@ public class SavedQueryDefinitionNode extends BaseQueryNode {
   @NotNull
   private WorkItemsQueryResult runListQuery() throws WorkItemException, ProxyException {
     WorkItemCollection workItems = getWorkItemClient().query(myQueryDefinition.getQueryText(), buildQueryContext());
+    List<Integer> ids = new ArrayList<>(workItems.size());
 
-    return new WorkItemsQueryResult(toList(workItems));
+    for (int id : workItems.getIDs()) {
+      ids.add(id);
+    }
+
+    return new WorkItemsQueryResult(loadWorkItems(ids, null));
+  }
+
+  /**
+   * Only the work items that are new or have got a new revision since the query was last run are loaded in full. Revisions are
+   * asked for the cached work items only.
+   */
+  @NotNull
+  private List<WorkItem> loadWorkItems(@NotNull List<Integer> ids, @Nullable List<WorkItemLinkInfo> links)
+    throws WorkItemException, ProxyException {
+    WorkItemsCache cache = getServer().getVCS().getWorkItemsCache();
+    List<WorkItem> loaded = Collections.emptyList();
+
+    if (!ids.isEmpty()) {
+      List<Integer> cached = cache.getCached(ids);
+      Map<Integer, Integer> revisionsById = new HashMap<>();
+
+      // the rest are loaded in full anyway
+      if (!cached.isEmpty()) {
+        WorkItemCollection revisions = getWorkItemClient().createQuery(REVISIONS_QUERY, toBatchReadCollection(cached)).runQuery();
+
+        for (int i = 0; i < revisions.size(); i++) {
+          com.microsoft.tfs.core.clients.workitem.WorkItem workItem = revisions.getWorkItem(i);
+          revisionsById.put(workItem.getID(), workItem.getFields().getRevision());
+        }
+      }
+
+      List<Integer> outdated = cache.getOutdated(ids, revisionsById);
+      if (!outdated.isEmpty()) {
+        loaded = toList(getWorkItemClient().createQuery(WORK_ITEMS_QUERY, toBatchReadCollection(outdated)).runQuery());
+      }
+    }
+
+    return cache.update(getCacheKey(), ids, loaded, links);
+  }
+
+  @NotNull
+  private String getCacheKey() {
+    return myQueryDefinition.getID().toString();
   }
 
   @NotNull
@@ -104,9 +155,10 @@ public class SavedQueryDefinitionNode extends BaseQueryNode {
   private WorkItemsQueryResult runLinkQuery() throws WorkItemException, ProxyException {
     Query linksQuery = getWorkItemClient().createQuery(myQueryDefinition.getQueryText(), buildQueryContext());
     List<WorkItemLinkInfo> links = ContainerUtil.newArrayList(linksQuery.runLinkQuery());
-    Query workItemsQuery = getWorkItemClient().createQuery(WORK_ITEMS_QUERY, toBatchReadCollection(getWorkItemIds(links)));
+    List<Integer> ids = new ArrayList<>(getWorkItemIds(links));
+    Collections.sort(ids);
 
-    return new WorkItemsQueryResult(toList(workItemsQuery.runQuery()), links);
+    return new WorkItemsQueryResult(loadWorkItems(ids, links), links);
   }
 
   @NotNull
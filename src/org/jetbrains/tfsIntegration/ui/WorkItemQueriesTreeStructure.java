@@ -4,6 +4,7 @@ import com.intellij.openapi.Disposable;
 import com.intellij.ui.treeStructure.SimpleTreeStructure;
 import com.microsoft.tfs.core.TFSTeamProjectCollection;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.checkin.CheckinParameters;
 import org.jetbrains.tfsIntegration.core.TfsSdkManager;
 import org.jetbrains.tfsIntegration.core.tfs.ServerInfo;
@@ -60,8 +61,9 @@ public class WorkItemQueriesTreeStructure extends SimpleTreeStructure implements
   }
 
   @Override
-  public void queryWorkItems(@NotNull TfsExecutionUtil.Process<WorkItemsQueryResult> query) {
-    myPanel.queryWorkItems(query);
+  public void queryWorkItems(@Nullable WorkItemsQueryResult cachedResult,
+                             @NotNull TfsExecutionUtil.Process<WorkItemsQueryResult> query) {
+    myPanel.queryWorkItems(cachedResult, query);
   }
 
   @Override
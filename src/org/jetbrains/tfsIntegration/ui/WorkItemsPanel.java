@@ -2,8 +2,13 @@ package org.jetbrains.tfsIntegration.ui;
 
 import com.intellij.ide.util.treeView.AbstractTreeStructure;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vcs.VcsException;
 import com.intellij.ui.TreeTableSpeedSearch;
 import com.intellij.ui.dualView.TreeTableView;
 import com.intellij.ui.treeStructure.NullNode;
@@ -13,10 +18,13 @@ import com.intellij.util.ObjectUtils;
 import com.intellij.util.ui.UIUtil;
 import com.intellij.util.ui.tree.TreeUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.checkin.CheckinParameters;
 import org.jetbrains.tfsIntegration.core.tfs.ServerInfo;
 import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
 import org.jetbrains.tfsIntegration.core.tfs.WorkItemsCheckinParameters;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.exceptions.UserCancelledException;
 
 import javax.swing.*;
 import javax.swing.event.TableModelEvent;
@@ -33,6 +41,8 @@ public class WorkItemsPanel implements Disposable {
   private WorkItemsTableModel myWorkItemsTableModel;
 
   private final CheckinParametersForm myForm;
+  private int myQueryCount;
+  private boolean myDisposed;
 
   public WorkItemsPanel(CheckinParametersForm form) {
     myForm = form;
@@ -52,18 +62,55 @@ public class WorkItemsPanel implements Disposable {
     Disposer.register(this, myTreeBuilder);
   }
 
-  public void queryWorkItems(@NotNull TfsExecutionUtil.Process<WorkItemsQueryResult> query) {
-    final TfsExecutionUtil.ResultWithError<WorkItemsQueryResult> result =
-      TfsExecutionUtil.executeInBackground("Performing Query", getProject(), query);
-
-    final String title = "Query Work Items";
-    if (result.cancelled || result.showDialogIfError(title)) {
-      return;
+  /**
+   * Shows the cached result, if any, right away and runs the query in background, so that the dialog stays responsive meanwhile.
+   * The table is updated with the result of the query run last only.
+   */
+  public void queryWorkItems(@Nullable WorkItemsQueryResult cachedResult, @NotNull TfsExecutionUtil.Process<WorkItemsQueryResult> query) {
+    final ServerInfo server = myForm.getSelectedServer();
+    if (cachedResult != null) {
+      getState().getWorkItems(server).update(cachedResult);
+      updateWorkItemsTable();
     }
 
-    // if process is not cancelled and there are no errors - we should get not null result
-    getState().getWorkItems(myForm.getSelectedServer()).update(ObjectUtils.assertNotNull(result.result));
-    updateWorkItemsTable();
+    final int queryCount = ++myQueryCount;
+    new Task.Backgroundable(getProject(), "Performing Query", true) {
+      private WorkItemsQueryResult myResult;
+      private VcsException myError;
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(true);
+        try {
+          myResult = query.run();
+        }
+        catch (UserCancelledException e) {
+          throw new ProcessCanceledException(e);
+        }
+        catch (TfsException e) {
+          myError = new VcsException(e.getMessage(), e);
+        }
+        catch (VcsException e) {
+          myError = e;
+        }
+      }
+
+      @Override
+      public void onSuccess() {
+        if (myDisposed || queryCount != myQueryCount) {
+          return;
+        }
+        if (myError != null) {
+          Messages.showErrorDialog(getProject(), myError.getMessage(), "Query Work Items");
+          return;
+        }
+        // if process is not cancelled and there are no errors - we should get not null result
+        getState().getWorkItems(server).update(ObjectUtils.assertNotNull(myResult));
+        if (server == myForm.getSelectedServer()) {
+          updateWorkItemsTable();
+        }
+      }
+    }.queue();
   }
 
   private void updateWorkItemsTable() {
@@ -117,6 +164,7 @@ public class WorkItemsPanel implements Disposable {
 
   @Override
   public void dispose() {
+    myDisposed = true;
   }
 
   private void createUIComponents() {
@@ -65,6 +65,7 @@ public class TfsTreeBuilder extends AbstractTreeBuilder {
   @Override
   protected void runBackgroundLoading(@NotNull Runnable runnable) {
     if (isDisposed()) return;
+    // already called on the tree background worker; don't hold read action while waiting for the server
     runnable.run();
   }
 
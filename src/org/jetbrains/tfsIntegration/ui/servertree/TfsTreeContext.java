@@ -7,6 +7,7 @@ import org.jetbrains.tfsIntegration.core.TFSBundle;
 import org.jetbrains.tfsIntegration.core.tfs.ServerInfo;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
+import java.util.Collection;
 import java.util.List;
 
 public class TfsTreeContext {
@@ -30,6 +31,14 @@ public class TfsTreeContext {
   }
 
   public List<Item> getChildItems(String path) throws TfsException {
-    return myServer.getVCS().getChildItems(path, myFoldersOnly, myProjectOrComponent, TFSBundle.message("loading.items"));
+    return myServer.getVCS().getFolderListingCache()
+      .getChildItems(path, myFoldersOnly, myProjectOrComponent, TFSBundle.message("loading.items"));
+  }
+
+  /**
+   * Starts loading children of the folders in background, so that they are ready by the time the folders are expanded
+   */
+  public void prefetchChildItems(Collection<String> paths) {
+    myServer.getVCS().getFolderListingCache().prefetch(paths, myFoldersOnly, myProjectOrComponent);
   }
 }
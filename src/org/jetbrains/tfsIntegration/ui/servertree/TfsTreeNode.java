@@ -68,9 +68,16 @@ public class TfsTreeNode extends SimpleNode {
     }
 
     final List<TfsTreeNode> result = new ArrayList<>(myVirtualChildren);
+    final List<String> childFolders = new ArrayList<>();
     for (final Item childItem : children) {
-      result.add(new TfsTreeNode(this, childItem.getItem(), childItem.getType() == ItemType.Folder, false));
+      boolean isDirectory = childItem.getType() == ItemType.Folder;
+      result.add(new TfsTreeNode(this, childItem.getItem(), isDirectory, false));
+      if (isDirectory) {
+        childFolders.add(childItem.getItem());
+      }
     }
+    // next level is likely to be expanded soon
+    myTreeContext.prefetchChildItems(childFolders);
     return result.toArray(new SimpleNode[0]);
   }
 
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.webservice;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Response body of a download that survives broken connections. When reading fails or the body ends before its declared length,
+ * the download is requested again starting from the first byte not read yet, after a delay that doubles with every attempt.
+ * If the server ignores the range requested or sends more than requested, the bytes read already are skipped. Body is read as is, so content
+ * compressed by the server is resumed correctly, decompression is up to the caller.
+ */
+public class ResumingDownloadStream extends InputStream {
+
+  private static final Logger LOG = Logger.getInstance(ResumingDownloadStream.class.getName());
+
+  private static final int MAX_RETRIES = Integer.getInteger("org.jetbrains.tfsIntegration.downloadRetries", 5);
+  private static final long INITIAL_DELAY = 1000;
+  private static final long MAX_DELAY = 30000;
+
+  @NonNls private static final String RANGE_HEADER = "Range";
+  @NonNls private static final String CONTENT_RANGE_HEADER = "Content-Range";
+
+  private final HttpClient myHttpClient;
+  private final String myUrl;
+  private final long myInitialDelay;
+  private final long myLength; // -1 if unknown
+  private GetMethod myMethod;
+  private InputStream myStream;
+  private long myOffset;
+  private int myRetries;
+
+  /**
+   * @param method download request executed successfully
+   */
+  public ResumingDownloadStream(@NotNull HttpClient httpClient, @NotNull String url, @NotNull GetMethod method) throws IOException {
+    this(httpClient, url, method, INITIAL_DELAY);
+  }
+
+  /**
+   * @param initialDelay delay before the first retry, ms
+   */
+  public ResumingDownloadStream(@NotNull HttpClient httpClient, @NotNull String url, @NotNull GetMethod method, long initialDelay)
+    throws IOException {
+    myHttpClient = httpClient;
+    myUrl = url;
+    myInitialDelay = initialDelay;
+    myMethod = method;
+    myLength = method.getResponseContentLength();
+    myStream = method.getResponseBodyAsStream();
+  }
+
+  /**
+   * @return request currently read, its connection should be released when done
+   */
+  public GetMethod getMethod() {
+    return myMethod;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int read = read(b, 0, 1);
+    return read == -1 ? -1 : b[0] & 0xff;
+  }
+
+  @Override
+  public int read(@NotNull byte[] b, int off, int len) throws IOException {
+    while (true) {
+      try {
+        int read = myStream.read(b, off, len);
+        if (read == -1) {
+          if (myLength >= 0 && myOffset < myLength) {
+            throw new EOFException("Download ended at " + myOffset + " of " + myLength + " bytes");
+          }
+          return -1;
+        }
+        myOffset += read;
+        myRetries = 0;
+        return read;
+      }
+      catch (IOException e) {
+        resume(e);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    myStream.close();
+  }
+
+  private void resume(IOException e) throws IOException {
+    if (myRetries >= MAX_RETRIES) {
+      throw e;
+    }
+    long delay = Math.min(myInitialDelay << myRetries, MAX_DELAY);
+    myRetries++;
+    LOG.info("Download of " + myUrl + " interrupted at " + myOffset + " bytes, retrying in " + delay + " ms: " + e.getMessage());
+    sleep(delay);
+
+    myMethod.releaseConnection();
+    myMethod = new GetMethod(myUrl);
+    if (myOffset > 0) {
+      myMethod.setRequestHeader(RANGE_HEADER, "bytes=" + myOffset + "-");
+    }
+    int statusCode;
+    try {
+      statusCode = myHttpClient.executeMethod(myMethod);
+    }
+    catch (IOException e1) {
+      resume(e1);
+      return;
+    }
+
+    long start;
+    if (statusCode == HttpStatus.SC_PARTIAL_CONTENT) {
+      start = getRangeStart(myMethod);
+    }
+    else if (statusCode == HttpStatus.SC_OK) {
+      // range is not supported, the whole content is sent again
+      start = 0;
+    }
+    else {
+      throw e;
+    }
+    if (start < 0 || start > myOffset) {
+      throw new IOException("Download of " + myUrl + " can't be resumed at " + myOffset + " bytes: server sent content from " + start, e);
+    }
+
+    myStream = myMethod.getResponseBodyAsStream();
+    try {
+      skipFully(myStream, myOffset - start);
+    }
+    catch (IOException e1) {
+      resume(e1);
+    }
+  }
+
+  private static long getRangeStart(GetMethod method) {
+    // bytes <start>-<end>/<length>
+    Header contentRange = method.getResponseHeader(CONTENT_RANGE_HEADER);
+    if (contentRange == null) {
+      return -1;
+    }
+    String value = contentRange.getValue().trim();
+    int start = value.indexOf(' ') + 1;
+    int end = value.indexOf('-', start);
+    try {
+      return end != -1 ? Long.parseLong(value.substring(start, end).trim()) : -1;
+    }
+    catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void skipFully(InputStream stream, long count) throws IOException {
+    byte[] buffer = new byte[8192];
+    while (count > 0) {
+      int read = stream.read(buffer, 0, (int)Math.min(buffer.length, count));
+      if (read == -1) {
+        throw new EOFException("Download ended while skipping content read before");
+      }
+      count -= read;
+    }
+  }
+
+  private static void sleep(long delay) throws IOException {
+    long end = System.currentTimeMillis() + delay;
+    while (System.currentTimeMillis() < end) {
+      ProgressManager.checkCanceled();
+      try {
+        Thread.sleep(Math.min(100, Math.max(end - System.currentTimeMillis(), 1)));
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Download interrupted", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.webservice;
+
+import com.intellij.util.ThrowableConsumer;
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.soap.SOAP11Constants;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.SOAPFactory;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.client.OperationClient;
+import org.apache.axis2.client.Options;
+import org.apache.axis2.client.ServiceClient;
+import org.apache.axis2.client.Stub;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.databinding.ADBBean;
+import org.apache.axis2.description.WSDL2Constants;
+import org.apache.axis2.wsdl.WSDLConstants;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.rmi.RemoteException;
+
+/**
+ * Invokes a web service operation the same way generated stubs do, but instead of deserializing the whole response bean
+ * pulls the elements of its (possibly huge) result array one by one directly from the response stream.
+ * Every element is passed to the consumer as soon as it is parsed, so neither the response tree nor the whole bean graph
+ * is kept in memory.
+ */
+public class StreamingResponseReader {
+
+  @NonNls private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+  @NonNls private static final String NIL_ATTRIBUTE = "nil";
+
+  public interface ElementParser<T> {
+    /**
+     * @param reader positioned at the start element to be parsed, see generated {@code Factory.parse(XMLStreamReader)} methods
+     */
+    T parse(XMLStreamReader reader) throws Exception;
+  }
+
+  private StreamingResponseReader() {
+  }
+
+  /**
+   * @param operationName      name of the operation as registered in the stub, e.g. {@code get}
+   * @param soapAction         SOAP action of the operation
+   * @param request            request bean
+   * @param requestElementName top level element name of the request bean
+   * @param resultElementName  name of the result array elements to be streamed
+   * @param parser             parser of a single result element
+   * @param consumer           receives parsed result elements in order of arrival; its exceptions are rethrown as is
+   */
+  public static <T, E extends Exception> void invoke(@NotNull Stub stub,
+                                                     @NotNull QName operationName,
+                                                     @NotNull String soapAction,
+                                                     @NotNull ADBBean request,
+                                                     @NotNull QName requestElementName,
+                                                     @NotNull QName resultElementName,
+                                                     @NotNull ElementParser<? extends T> parser,
+                                                     @NotNull ThrowableConsumer<? super T, E> consumer) throws RemoteException, E {
+    ServiceClient serviceClient = stub._getServiceClient();
+    MessageContext messageContext = new MessageContext();
+    try {
+      OperationClient operationClient = serviceClient.createClient(operationName);
+      Options options = operationClient.getOptions();
+      options.setAction(soapAction);
+      options.setExceptionToBeThrownOnSOAPFault(true);
+      options.setProperty(WSDL2Constants.ATTR_WHTTP_QUERY_PARAMETER_SEPARATOR, "&");
+
+      SOAPFactory factory = getFactory(options.getSoapVersionURI());
+      SOAPEnvelope envelope = factory.getDefaultEnvelope();
+      envelope.getBody().addChild(request.getOMElement(requestElementName, factory));
+      serviceClient.addHeadersToEnvelope(envelope);
+      messageContext.setEnvelope(envelope);
+      operationClient.addMessageContext(messageContext);
+      operationClient.execute(true);
+
+      MessageContext returnMessageContext = operationClient.getMessageContext(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
+      OMElement payload = returnMessageContext.getEnvelope().getBody().getFirstElement();
+      if (payload != null) {
+        // don't cache: the rest of the response is built neither into the OM tree nor into response beans
+        readElements(payload.getXMLStreamReaderWithoutCaching(), resultElementName, parser, consumer);
+      }
+    }
+    finally {
+      if (messageContext.getTransportOut() != null) {
+        messageContext.getTransportOut().getSender().cleanup(messageContext);
+      }
+    }
+  }
+
+  /**
+   * Parses elements with the given name one by one, wherever they are in the document
+   *
+   * @param consumer receives parsed elements in document order; its exceptions are rethrown as is
+   */
+  public static <T, E extends Exception> void readElements(@NotNull XMLStreamReader reader,
+                                                           @NotNull QName elementName,
+                                                           @NotNull ElementParser<? extends T> parser,
+                                                           @NotNull ThrowableConsumer<? super T, E> consumer) throws AxisFault, E {
+    while (true) {
+      T element;
+      try {
+        if (!skipToElement(reader, elementName)) {
+          return;
+        }
+        element = parser.parse(reader);
+        // the same as generated array parsers do: move past the end of parsed element
+        while (!reader.isEndElement()) {
+          reader.next();
+        }
+        reader.next();
+      }
+      catch (Exception e) {
+        throw AxisFault.makeFault(e);
+      }
+      // consumer is invoked outside of the try block to let its own exceptions through
+      consumer.consume(element);
+    }
+  }
+
+  /**
+   * @return true if reader is positioned at the start of non-nil element with given name, false if end of document reached
+   */
+  private static boolean skipToElement(XMLStreamReader reader, QName elementName) throws XMLStreamException {
+    while (true) {
+      if (reader.isStartElement() && elementName.equals(reader.getName())) {
+        if (!isNil(reader)) {
+          return true;
+        }
+      }
+      if (!reader.hasNext()) {
+        return false;
+      }
+      reader.next();
+    }
+  }
+
+  private static boolean isNil(XMLStreamReader reader) {
+    String nil = reader.getAttributeValue(XSI_NAMESPACE, NIL_ATTRIBUTE);
+    return "true".equals(nil) || "1".equals(nil);
+  }
+
+  private static SOAPFactory getFactory(String soapVersionUri) {
+    return SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI.equals(soapVersionUri)
+           ? OMAbstractFactory.getSOAP11Factory()
+           : OMAbstractFactory.getSOAP12Factory();
+  }
+}
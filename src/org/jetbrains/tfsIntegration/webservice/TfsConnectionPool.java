@@ -0,0 +1,140 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.webservice;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpClientParams;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpParams;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded keep-alive connection pool of a single server. Web service stubs and upload/download clients
+ * share it, so connections already authenticated via NTLM (which is connection based) are reused across requests.
+ */
+public class TfsConnectionPool {
+
+  @NonNls public static final String POOL_PARAMETER = TfsConnectionPool.class.getName();
+
+  private static final int MAX_CONNECTIONS_PER_HOST = Integer.getInteger("org.jetbrains.tfsIntegration.maxConnectionsPerHost", 8);
+  private static final int MAX_TOTAL_CONNECTIONS = Integer.getInteger("org.jetbrains.tfsIntegration.maxTotalConnections", 32);
+  private static final long IDLE_CONNECTION_TIMEOUT = Long.getLong("org.jetbrains.tfsIntegration.idleConnectionTimeout", 60000);
+  // Set the default timeout in case we have a connection pool starvation to 30sec
+  private static final long CONNECTION_MANAGER_TIMEOUT = 30000;
+
+  private final PooledConnectionManager myConnectionManager = new PooledConnectionManager();
+  private final HttpClient myStubsClient;
+  private final HttpClient[] myUploadDownloadClients = new HttpClient[2]; // regular, proxy
+
+  private final AtomicLong myConnectionRequests = new AtomicLong();
+  private final AtomicLong myPoolHits = new AtomicLong();
+  private final AtomicLong myNtlmHandshakes = new AtomicLong();
+  private volatile long myLastIdleCheck = System.currentTimeMillis();
+
+  public TfsConnectionPool() {
+    HttpConnectionManagerParams params = myConnectionManager.getParams();
+    params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+    params.setMaxTotalConnections(MAX_TOTAL_CONNECTIONS);
+    params.setStaleCheckingEnabled(true);
+    myStubsClient = createClient();
+  }
+
+  /**
+   * @return client to be cached in Axis2 configuration context and used by all the web service stubs of the server
+   */
+  @NotNull
+  public HttpClient getStubsClient() {
+    return myStubsClient;
+  }
+
+  @NotNull
+  public synchronized HttpClient getUploadDownloadClient(boolean forProxy) {
+    int index = forProxy ? 1 : 0;
+    if (myUploadDownloadClients[index] == null) {
+      myUploadDownloadClients[index] = createClient();
+    }
+    return myUploadDownloadClients[index];
+  }
+
+  private HttpClient createClient() {
+    HttpClient client = new HttpClient(myConnectionManager);
+    HttpClientParams clientParams = new HttpClientParams();
+    clientParams.setConnectionManagerTimeout(CONNECTION_MANAGER_TIMEOUT);
+    clientParams.setParameter(POOL_PARAMETER, this);
+    client.setParams(clientParams);
+    return client;
+  }
+
+  /**
+   * @return number of connections requested from the pool
+   */
+  public long getConnectionRequestCount() {
+    return myConnectionRequests.get();
+  }
+
+  /**
+   * @return number of requests served by an already open (and possibly authenticated) connection
+   */
+  public long getPoolHitCount() {
+    return myPoolHits.get();
+  }
+
+  /**
+   * @return number of NTLM handshakes started on connections of this pool
+   */
+  public long getNtlmHandshakeCount() {
+    return myNtlmHandshakes.get();
+  }
+
+  public static void ntlmHandshakeStarted(@NotNull HttpParams params) {
+    Object pool = params.getParameter(POOL_PARAMETER);
+    if (pool instanceof TfsConnectionPool) {
+      ((TfsConnectionPool)pool).myNtlmHandshakes.incrementAndGet();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "requests=" + getConnectionRequestCount() + ", pool hits=" + getPoolHitCount() + ", NTLM handshakes=" + getNtlmHandshakeCount();
+  }
+
+  private class PooledConnectionManager extends MultiThreadedHttpConnectionManager {
+    @Override
+    public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+      throws ConnectionPoolTimeoutException {
+      long now = System.currentTimeMillis();
+      if (now - myLastIdleCheck > IDLE_CONNECTION_TIMEOUT) {
+        myLastIdleCheck = now;
+        closeIdleConnections(IDLE_CONNECTION_TIMEOUT);
+      }
+
+      HttpConnection connection = super.getConnectionWithTimeout(hostConfiguration, timeout);
+      myConnectionRequests.incrementAndGet();
+      if (connection.isOpen()) {
+        myPoolHits.incrementAndGet();
+      }
+      return connection;
+    }
+  }
+}
@@ -60,6 +60,7 @@ public class TfsRequestManager {
   // Don't make several requests to the same server simultaneously.
   // Indeed, this way we don't protect from simultaneous request to the existing server when trying to add it as a new one
   // (finally and getting 'duplicate server' error), but I believe it won't hurt
+  // Note: a request holding the lock may still send independent groups of items concurrently, see VersionControlServer.execute()
   private final ReentrantLock myRequestLock = new ReentrantLock();
 
   private TfsRequestManager(@Nullable URI serverUri) {
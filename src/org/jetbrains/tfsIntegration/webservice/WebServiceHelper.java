@@ -111,11 +111,13 @@ public class WebServiceHelper {
     TFSVcs.assertTrue(downloadUrl != null);
     setupHttpClient(credentials, serverUri, httpClient);
 
-    HttpMethod method = new GetMethod(downloadUrl);
+    GetMethod method = new GetMethod(downloadUrl);
+    ResumingDownloadStream body = null;
     try {
       int statusCode = httpClient.executeMethod(method);
       if (statusCode == HttpStatus.SC_OK) {
-        StreamUtil.copyStreamContent(getInputStream(method), outputStream);
+        body = new ResumingDownloadStream(httpClient, downloadUrl, method);
+        StreamUtil.copyStreamContent(getInputStream(method, body), outputStream);
       }
       else if (statusCode == HttpStatus.SC_INTERNAL_SERVER_ERROR) {
         throw new OperationFailedException(method.getResponseBodyAsString());
@@ -126,7 +128,7 @@ public class WebServiceHelper {
     }
     finally {
       // enforce connection release since GZipInputStream may not trigger underlying AutoCloseInputStream.close()
-      method.releaseConnection();
+      (body != null ? body.getMethod() : method).releaseConnection();
     }
   }
 
@@ -177,6 +179,18 @@ public class WebServiceHelper {
     });
   }
 
+  /**
+   * @return configuration context whose stubs send requests through the given server connection pool
+   */
+  public static ConfigurationContext getStubConfigurationContext(@NotNull TfsConnectionPool connectionPool) {
+    ConfigurationContext configContext = getStubConfigurationContext();
+    if (configContext != null) {
+      configContext.setProperty(HTTPConstants.REUSE_HTTP_CLIENT, Boolean.TRUE);
+      configContext.setProperty(HTTPConstants.CACHED_HTTP_CLIENT, connectionPool.getStubsClient());
+    }
+    return configContext;
+  }
+
   private static void setProxy(HttpClient httpClient) {
     final HTTPProxyInfo proxy = HTTPProxyInfo.getCurrent();
     if (proxy.host != null) {
@@ -284,12 +298,16 @@ public class WebServiceHelper {
   }
 
   private static InputStream getInputStream(HttpMethod method) throws IOException {
+    return getInputStream(method, method.getResponseBodyAsStream());
+  }
+
+  private static InputStream getInputStream(HttpMethod method, InputStream body) throws IOException {
     Header contentType = method.getResponseHeader(HTTPConstants.HEADER_CONTENT_TYPE);
     if (contentType != null && CONTENT_TYPE_GZIP.equalsIgnoreCase(contentType.getValue())) {
-      return new GZIPInputStream(method.getResponseBodyAsStream());
+      return new GZIPInputStream(body);
     }
     else {
-      return method.getResponseBodyAsStream();
+      return body;
     }
   }
 
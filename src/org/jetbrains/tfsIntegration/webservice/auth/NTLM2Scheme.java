@@ -31,6 +31,7 @@ import org.apache.commons.httpclient.NTCredentials;
 import org.apache.commons.httpclient.auth.*;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.jetbrains.tfsIntegration.core.tfs.Workstation;
+import org.jetbrains.tfsIntegration.webservice.TfsConnectionPool;
 
 import java.io.IOException;
 
@@ -366,6 +367,7 @@ public class NTLM2Scheme extends NTLMScheme {
     if (state == INITIATED || state == FAILED) {
       response = getType1MessageResponse(ntcredentials, method.getParams());
       state = TYPE1_MSG_GENERATED;
+      TfsConnectionPool.ntlmHandshakeStarted(method.getParams());
     }
     else {
       response = getType3MessageResponse(ntlmchallenge, ntcredentials, method.getParams());
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Post-processes sources generated by Axis2 ADB codegen: every {@code new javax.xml.namespace.QName("ns", "name")} with constant
+ * arguments is replaced with a reference to a static constant of the top level class. Generated {@code parse()} and
+ * {@code serialize()} methods otherwise allocate a new QName for every element name comparison.
+ * <p/>
+ * Usage: {@code java InternQNames <generated sources root>}
+ */
+public class InternQNames {
+
+  private static final String QNAME_CLASS = "javax.xml.namespace.QName";
+  private static final String FIELD_PREFIX = "INTERNED_QNAME_";
+
+  private static final String STRING_LITERAL = "\"(?:[^\"\\\\]|\\\\.)*\"";
+  private static final Pattern QNAME_CREATION =
+    Pattern.compile("new\\s+javax\\.xml\\.namespace\\.QName\\(\\s*(" + STRING_LITERAL + ")\\s*,\\s*(" + STRING_LITERAL + ")\\s*\\)");
+  private static final Pattern CLASS_DECLARATION =
+    Pattern.compile("public\\s+(?:abstract\\s+|final\\s+)*class\\s+\\w+[^{]*\\{");
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: java InternQNames <generated sources root>");
+      System.exit(1);
+    }
+    int[] stats = new int[2]; // files, replaced creations
+    process(new File(args[0]), stats);
+    System.out.println("Interned " + stats[1] + " QName creations in " + stats[0] + " files");
+  }
+
+  private static void process(File file, int[] stats) throws IOException {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        process(child, stats);
+      }
+    }
+    else if (file.getName().endsWith(".java")) {
+      String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      int replaced = countCreations(text);
+      String result = intern(text);
+      if (result != null) {
+        Files.write(file.toPath(), result.getBytes(StandardCharsets.UTF_8));
+        stats[0]++;
+        stats[1] += replaced;
+      }
+    }
+  }
+
+  private static int countCreations(String text) {
+    int count = 0;
+    Matcher matcher = QNAME_CREATION.matcher(text);
+    while (matcher.find()) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * @return processed text or null if nothing to replace
+   */
+  static String intern(String text) {
+    if (text.contains(FIELD_PREFIX)) {
+      // already processed
+      return null;
+    }
+    Matcher classMatcher = CLASS_DECLARATION.matcher(text);
+    if (!classMatcher.find()) {
+      return null;
+    }
+    int fieldsOffset = classMatcher.end();
+
+    Map<String, String> fields = new LinkedHashMap<>(); // creation expression -> field name
+    StringBuffer body = new StringBuffer();
+    Matcher matcher = QNAME_CREATION.matcher(text);
+    while (matcher.find()) {
+      if (matcher.start() < fieldsOffset) {
+        // not in class body
+        continue;
+      }
+      String expression = "new " + QNAME_CLASS + "(" + matcher.group(1) + ", " + matcher.group(2) + ")";
+      String field = fields.get(expression);
+      if (field == null) {
+        field = FIELD_PREFIX + fields.size();
+        fields.put(expression, field);
+      }
+      matcher.appendReplacement(body, field);
+    }
+    if (fields.isEmpty()) {
+      return null;
+    }
+    matcher.appendTail(body);
+
+    // static fields go first so they are initialized before any other static initializer uses them
+    StringBuilder declarations = new StringBuilder("\n");
+    for (Map.Entry<String, String> entry : fields.entrySet()) {
+      declarations.append("    private static final ").append(QNAME_CLASS).append(' ').append(entry.getValue()).append(" = ")
+        .append(entry.getKey()).append(";\n");
+    }
+    body.insert(fieldsOffset, declarations);
+    return body.toString();
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.VcsException;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.TFSFileRevision;
+import org.jetbrains.tfsIntegration.core.tfs.AnnotationBuilder;
+import org.jetbrains.tfsIntegration.core.tfs.AnnotationCache;
+
+import java.io.File;
+import java.util.*;
+
+public class AnnotationCacheTest extends TestCase {
+
+  private static final String SERVER = "http://tfs:8080/";
+  private static final int ITEM_ID = 10;
+
+  private static final String[] CONTENTS = {
+    "a\n",
+    "a\nb\n",
+    "a\nb\nc\n",
+    "a\nd\nb\nc\n"
+  };
+
+  private File myRoot;
+  private final List<Integer> myLoaded = new ArrayList<>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("annotations", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myRoot);
+    super.tearDown();
+  }
+
+  public void testNewerRevisionStartsFromCached() throws VcsException {
+    annotate(new AnnotationCache(myRoot), 2);
+    assertEquals(Arrays.asList(2, 1), myLoaded);
+
+    myLoaded.clear();
+    // persisted, a new instance sees the annotation
+    int[] lineChangesets = annotate(new AnnotationCache(myRoot), 4);
+    assertEquals(Arrays.asList(4, 3, 2), myLoaded);
+    assertTrue(Arrays.toString(lineChangesets), Arrays.equals(new int[]{1, 4, 2, 3}, lineChangesets));
+  }
+
+  public void testSameResultAsWithoutCache() throws VcsException {
+    int[] expected = annotate(null, 4);
+    AnnotationCache cache = new AnnotationCache(myRoot);
+    annotate(cache, 3);
+    assertTrue(Arrays.equals(expected, annotate(cache, 4)));
+  }
+
+  public void testCachedRevisionReturnedAsIs() throws VcsException {
+    AnnotationCache cache = new AnnotationCache(myRoot);
+    annotate(cache, 3);
+
+    myLoaded.clear();
+    int[] lineChangesets = annotate(cache, 3);
+    assertEquals(Collections.singletonList(3), myLoaded);
+    assertTrue(Arrays.equals(new int[]{1, 2, 3}, lineChangesets));
+  }
+
+  public void testMismatchingAnnotationIgnored() throws VcsException {
+    AnnotationCache cache = new AnnotationCache(myRoot);
+    // stored for a different content of the revision
+    cache.put(SERVER, ITEM_ID, 2, new int[]{2});
+
+    int[] lineChangesets = annotate(cache, 3);
+    assertEquals(Arrays.asList(3, 2, 1), myLoaded);
+    assertTrue(Arrays.equals(new int[]{1, 2, 3}, lineChangesets));
+  }
+
+  public void testServersSeparate() {
+    // same String.hashCode()
+    String server1 = "http://Aa/";
+    String server2 = "http://BB/";
+    assertEquals(server1.hashCode(), server2.hashCode());
+
+    AnnotationCache cache = new AnnotationCache(myRoot);
+    cache.put(server1, ITEM_ID, 5, new int[]{1, 5, 3});
+    assertTrue(Arrays.equals(new int[]{1, 5, 3}, cache.get(server1, ITEM_ID, 5)));
+    assertNull(cache.get(server2, ITEM_ID, 5));
+    assertNull(cache.get(server1, ITEM_ID, 6));
+  }
+
+  public void testOlderVersionsEvicted() {
+    AnnotationCache cache = new AnnotationCache(myRoot);
+    cache.put(SERVER, ITEM_ID, 2, new int[]{1, 2});
+    cache.put(SERVER, ITEM_ID + 256, 2, new int[]{2});
+    cache.put(SERVER, ITEM_ID, 3, new int[]{1, 2, 3});
+    assertNull(cache.get(SERVER, ITEM_ID, 2));
+    assertTrue(Arrays.equals(new int[]{1, 2, 3}, cache.get(SERVER, ITEM_ID, 3)));
+    // other items in the same directory are kept
+    assertTrue(Arrays.equals(new int[]{2}, cache.get(SERVER, ITEM_ID + 256, 2)));
+
+    // an older version than the one kept is not stored
+    cache.put(SERVER, ITEM_ID, 1, new int[]{1});
+    assertNull(cache.get(SERVER, ITEM_ID, 1));
+    assertTrue(Arrays.equals(new int[]{1, 2, 3}, cache.get(SERVER, ITEM_ID, 3)));
+  }
+
+  /**
+   * Annotates the given changeset the way the annotation provider does: known annotations are taken from the cache and
+   * the result is stored there
+   */
+  private int[] annotate(final AnnotationCache cache, int changeset) throws VcsException {
+    List<TFSFileRevision> revisions = new ArrayList<>();
+    for (int i = changeset; i >= 1; i--) {
+      revisions.add(new TFSFileRevision(null, null, ITEM_ID, new Date(), "", "user", i));
+    }
+    AnnotationBuilder.KnownAnnotations knownAnnotations = cache == null ? null : new AnnotationBuilder.KnownAnnotations() {
+      @Override
+      public int[] getLineChangesets(TFSFileRevision revision) {
+        return cache.get(SERVER, ITEM_ID, revision.getRevisionNumber().getValue());
+      }
+    };
+    AnnotationBuilder builder = new AnnotationBuilder(revisions, new AnnotationBuilder.ContentProvider() {
+      @Override
+      public String getContent(TFSFileRevision revision) {
+        int revisionChangeset = revision.getRevisionNumber().getValue();
+        myLoaded.add(revisionChangeset);
+        return CONTENTS[revisionChangeset - 1];
+      }
+    }, knownAnnotations);
+    int[] result = builder.getLineChangesets();
+    if (cache != null) {
+      cache.put(SERVER, ITEM_ID, changeset, result);
+    }
+    return result;
+  }
+}
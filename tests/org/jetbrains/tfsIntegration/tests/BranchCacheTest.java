@@ -0,0 +1,216 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.BranchCache;
+import org.jetbrains.tfsIntegration.core.tfs.version.LatestVersionSpec;
+
+import java.util.*;
+
+public class BranchCacheTest extends TestCase {
+
+  private static final String SOURCE = "$/project/main";
+  private static final String TARGET = "$/project/release";
+
+  private static class TestServer implements BranchCache.Server {
+    private final Map<String, Integer> myLatestChangesets = new HashMap<>();
+    private final List<Changeset> myHistory = new ArrayList<>();
+    private int myBranchQueries;
+    private int myCandidateQueries;
+    private int myHistoryQueries;
+
+    @Override
+    public int getLatestChangeset(String workspaceName, String workspaceOwner, String serverPath, Object projectOrComponent,
+                                  String progressTitle) {
+      Integer latest = myLatestChangesets.get(serverPath);
+      return latest != null ? latest : 1;
+    }
+
+    @Override
+    public Collection<BranchRelative> queryBranches(String itemServerPath, VersionSpec versionSpec, Object projectOrComponent,
+                                                    String progressTitle) {
+      myBranchQueries++;
+      return Collections.singletonList(new BranchRelative());
+    }
+
+    @Override
+    public Collection<MergeCandidate> queryMergeCandidates(String workspaceName,
+                                                           String ownerName,
+                                                           String sourceServerPath,
+                                                           String targetServerPath,
+                                                           Object projectOrComponent,
+                                                           String progressTitle) {
+      myCandidateQueries++;
+      return Collections.singletonList(candidate(1));
+    }
+
+    @Override
+    public List<Changeset> queryHistory(String workspaceName,
+                                        String workspaceOwner,
+                                        ItemSpec itemSpec,
+                                        String user,
+                                        VersionSpec itemVersion,
+                                        VersionSpec versionFrom,
+                                        VersionSpec versionTo,
+                                        int maxCount,
+                                        Object projectOrComponent,
+                                        String progressTitle) {
+      myHistoryQueries++;
+      return myHistory;
+    }
+  }
+
+  public void testBranchesCached() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, 0);
+    cache.getBranches(SOURCE, LatestVersionSpec.INSTANCE, null, null);
+    cache.getBranches(SOURCE.toUpperCase(), LatestVersionSpec.INSTANCE, null, null);
+    assertEquals(1, server.myBranchQueries);
+  }
+
+  public void testBranchesReloadedOnNewChangeset() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, 0);
+    cache.getBranches(SOURCE, LatestVersionSpec.INSTANCE, null, null);
+    server.myLatestChangesets.put("$/", 2);
+    cache.getBranches(SOURCE, LatestVersionSpec.INSTANCE, null, null);
+    assertEquals(2, server.myBranchQueries);
+  }
+
+  public void testBranchesReloadedAfterCheckin() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, Long.MAX_VALUE);
+    cache.getBranches(SOURCE, LatestVersionSpec.INSTANCE, null, null);
+    // a new branch is checked in
+    server.myLatestChangesets.put("$/", 2);
+    cache.checkedIn();
+    cache.getBranches(SOURCE, LatestVersionSpec.INSTANCE, null, null);
+    assertEquals(2, server.myBranchQueries);
+  }
+
+  public void testServersIsolated() throws Exception {
+    TestServer server1 = new TestServer();
+    TestServer server2 = new TestServer();
+    BranchCache cache1 = new BranchCache(server1, Long.MAX_VALUE);
+    BranchCache cache2 = new BranchCache(server2, Long.MAX_VALUE);
+    cache1.getBranches(SOURCE, LatestVersionSpec.INSTANCE, null, null);
+    cache1.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    cache2.getBranches(SOURCE, LatestVersionSpec.INSTANCE, null, null);
+    cache2.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    assertEquals(1, server2.myBranchQueries);
+    assertEquals(1, server2.myCandidateQueries);
+
+    cache1.checkedIn();
+    cache2.getBranches(SOURCE, LatestVersionSpec.INSTANCE, null, null);
+    cache2.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    assertEquals(1, server2.myBranchQueries);
+    assertEquals(1, server2.myCandidateQueries);
+  }
+
+  public void testCandidatesCached() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, 0);
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    assertEquals(1, server.myCandidateQueries);
+  }
+
+  public void testCandidatesReloadedAfterPendingMerge() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, Long.MAX_VALUE);
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    cache.workspaceChanged();
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    assertEquals(2, server.myCandidateQueries);
+  }
+
+  public void testCandidatesReloadedAfterMergeCheckin() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, Long.MAX_VALUE);
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    server.myLatestChangesets.put(TARGET, 2);
+    cache.checkedIn();
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    assertEquals(2, server.myCandidateQueries);
+    assertEquals(0, server.myHistoryQueries);
+  }
+
+  public void testCandidatesReloadedOnNewTargetChangeset() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, 0);
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    // merge checked in from another workspace
+    server.myLatestChangesets.put(TARGET, 2);
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    assertEquals(2, server.myCandidateQueries);
+  }
+
+  public void testNewSourceChangesetsAppended() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, 0);
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    server.myLatestChangesets.put(SOURCE, 3);
+    // history goes latest first
+    server.myHistory.add(changeset(3, ChangeType_type0.Edit));
+    server.myHistory.add(changeset(2, ChangeType_type0.Add));
+    List<MergeCandidate> candidates = cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    assertEquals(1, server.myCandidateQueries);
+    assertEquals(1, server.myHistoryQueries);
+    assertEquals(Arrays.asList(1, 2, 3), getChangesets(candidates));
+  }
+
+  public void testSourceMergeChangesetReloads() throws Exception {
+    TestServer server = new TestServer();
+    BranchCache cache = new BranchCache(server, 0);
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    server.myLatestChangesets.put(SOURCE, 2);
+    server.myHistory.add(changeset(2, ChangeType_type0.Merge));
+    cache.getMergeCandidates("ws", "owner", SOURCE, TARGET, null, null);
+    assertEquals(2, server.myCandidateQueries);
+  }
+
+  private static MergeCandidate candidate(int changesetId) {
+    Changeset changeset = new Changeset();
+    changeset.setCset(changesetId);
+    MergeCandidate candidate = new MergeCandidate();
+    candidate.setChangeset(changeset);
+    return candidate;
+  }
+
+  private static Changeset changeset(int id, ChangeType_type0 changeType) {
+    ChangeType type = new ChangeType();
+    type.setChangeType_type0(new ChangeType_type0[]{changeType});
+    Change change = new Change();
+    change.setType(type);
+    ArrayOfChange changes = new ArrayOfChange();
+    changes.setChange(new Change[]{change});
+    Changeset changeset = new Changeset();
+    changeset.setCset(id);
+    changeset.setChanges(changes);
+    return changeset;
+  }
+
+  private static List<Integer> getChangesets(List<MergeCandidate> candidates) {
+    List<Integer> result = new ArrayList<>(candidates.size());
+    for (MergeCandidate candidate : candidates) {
+      result.add(candidate.getChangeset().getCset());
+    }
+    return result;
+  }
+}
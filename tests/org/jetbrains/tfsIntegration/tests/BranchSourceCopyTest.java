@@ -0,0 +1,104 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.LocalFilePath;
+import com.intellij.util.io.DigestUtil;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.operations.ApplyGetOperations;
+import org.jetbrains.tfsIntegration.exceptions.OperationFailedException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class BranchSourceCopyTest extends TestCase {
+
+  private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+
+  private File myDir;
+  private File mySource;
+  private File myTarget;
+  private File myTmpDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("branchSource", null);
+    mySource = new File(myDir, "main/a.txt");
+    myTarget = new File(myDir, "release/a.txt");
+    myTmpDir = new File(myDir, "downloads");
+    assertTrue(myTmpDir.mkdirs());
+    FileUtil.writeToFile(mySource, CONTENT);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testCopied() throws IOException {
+    assertTrue(ApplyGetOperations.copyFromBranchSource(() -> new LocalFilePath(mySource.getPath(), false), md5(CONTENT),
+                                                       myTarget, myTmpDir));
+    assertEquals("content", FileUtil.loadFile(myTarget));
+    assertEquals(0, myTmpDir.list().length);
+  }
+
+  public void testMappingsNotLoaded() {
+    assertFalse(ApplyGetOperations.copyFromBranchSource(() -> {
+      throw new OperationFailedException("connection lost");
+    }, md5(CONTENT), myTarget, myTmpDir));
+    assertFalse(myTarget.exists());
+  }
+
+  public void testSourceNotMapped() {
+    assertFalse(ApplyGetOperations.copyFromBranchSource(() -> null, md5(CONTENT), myTarget, myTmpDir));
+    assertFalse(myTarget.exists());
+  }
+
+  public void testSourceMissing() {
+    FileUtil.delete(mySource);
+    assertFalse(ApplyGetOperations.copyFromBranchSource(() -> new LocalFilePath(mySource.getPath(), false), md5(CONTENT),
+                                                    myTarget, myTmpDir));
+    assertFalse(myTarget.exists());
+  }
+
+  public void testNoHash() {
+    assertFalse(ApplyGetOperations.copyFromBranchSource(() -> new LocalFilePath(mySource.getPath(), false), null, myTarget, myTmpDir));
+    assertFalse(myTarget.exists());
+  }
+
+  public void testSourceModified() {
+    assertFalse(ApplyGetOperations.copyFromBranchSource(() -> new LocalFilePath(mySource.getPath(), false),
+                                                        md5("other".getBytes(StandardCharsets.UTF_8)), myTarget, myTmpDir));
+    assertFalse(myTarget.exists());
+    assertEquals(0, myTmpDir.list().length);
+  }
+
+  public void testExistingTargetKeptWhenSourceModified() throws IOException {
+    FileUtil.writeToFile(myTarget, "old");
+    assertFalse(ApplyGetOperations.copyFromBranchSource(() -> new LocalFilePath(mySource.getPath(), false),
+                                                        md5("other".getBytes(StandardCharsets.UTF_8)), myTarget, myTmpDir));
+    assertEquals("old", FileUtil.loadFile(myTarget));
+  }
+
+  private static byte[] md5(byte[] content) {
+    return DigestUtil.md5().digest(content);
+  }
+}
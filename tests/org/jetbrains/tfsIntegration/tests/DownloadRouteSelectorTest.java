@@ -0,0 +1,50 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.DownloadRouteSelector;
+
+public class DownloadRouteSelectorTest extends TestCase {
+
+  public void testProxyTriedFirst() {
+    DownloadRouteSelector selector = new DownloadRouteSelector(0);
+    assertTrue(selector.shouldUseProxy());
+    selector.downloaded(true, 1000, 100);
+    assertTrue(selector.shouldUseProxy());
+  }
+
+  public void testFasterRouteChosen() {
+    DownloadRouteSelector selector = new DownloadRouteSelector(0);
+    selector.downloaded(true, 1000, 500);
+    selector.downloaded(false, 1000, 50);
+    assertFalse(selector.shouldUseProxy());
+
+    selector.downloaded(true, 1000000, 100);
+    selector.downloaded(false, 1000000, 10000);
+    assertTrue(selector.shouldUseProxy());
+  }
+
+  public void testOtherRouteProbed() {
+    DownloadRouteSelector selector = new DownloadRouteSelector(3);
+    selector.downloaded(true, 1000, 100);
+    assertTrue(selector.shouldUseProxy());
+    assertTrue(selector.shouldUseProxy());
+    assertFalse(selector.shouldUseProxy());
+    assertTrue(selector.shouldUseProxy());
+  }
+}
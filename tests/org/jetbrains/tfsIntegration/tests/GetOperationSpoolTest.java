@@ -0,0 +1,92 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ItemType;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.operations.GetOperationSpool;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GetOperationSpoolTest extends TestCase {
+
+  private File myFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFile = FileUtil.createTempFile("spool", ".tmp", true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myFile);
+    super.tearDown();
+  }
+
+  public void testOperationsReadInOrder() throws IOException, TfsException {
+    List<GetOperation> read = new ArrayList<>();
+    try (GetOperationSpool spool = new GetOperationSpool(myFile)) {
+      spool.add(createOperation(1, null, "C:\\ws\\added.txt", ItemType.File, false));
+      spool.add(createOperation(2, "C:\\ws\\old", "C:\\ws\\new", ItemType.Folder, false));
+      spool.add(createOperation(3, "C:\\ws\\deleted.txt", null, ItemType.File, true));
+      assertEquals(3, spool.getCount());
+      spool.read(read::add);
+    }
+
+    assertEquals(3, read.size());
+    assertEquals(1, read.get(0).getItemid());
+    assertNull(read.get(0).getSlocal());
+    assertEquals("C:\\ws\\added.txt", read.get(0).getTlocal());
+    assertEquals(ItemType.File, read.get(0).getType());
+    assertEquals("$/project/1", read.get(0).getTitem());
+    assertEquals(5, read.get(0).getSver());
+
+    assertEquals("C:\\ws\\old", read.get(1).getSlocal());
+    assertEquals("C:\\ws\\new", read.get(1).getTlocal());
+    assertEquals(ItemType.Folder, read.get(1).getType());
+
+    assertNull(read.get(2).getTlocal());
+    assertTrue(read.get(2).getCnflct());
+  }
+
+  public void testEmpty() throws IOException, TfsException {
+    List<GetOperation> read = new ArrayList<>();
+    try (GetOperationSpool spool = new GetOperationSpool(myFile)) {
+      spool.read(read::add);
+    }
+    assertTrue(read.isEmpty());
+  }
+
+  private static GetOperation createOperation(int itemId, String sourceLocal, String targetLocal, ItemType type, boolean conflict) {
+    GetOperation operation = new GetOperation();
+    operation.setItemid(itemId);
+    operation.setSlocal(sourceLocal);
+    operation.setTlocal(targetLocal);
+    operation.setType(type);
+    operation.setTitem("$/project/" + itemId);
+    operation.setSver(5);
+    operation.setCnflct(conflict);
+    return operation;
+  }
+}
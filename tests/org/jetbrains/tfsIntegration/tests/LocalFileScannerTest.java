@@ -0,0 +1,96 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.LocalFilePath;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.ItemPath;
+import org.jetbrains.tfsIntegration.core.tfs.LocalFileScanner;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class LocalFileScannerTest extends TestCase {
+
+  private File myRoot;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("scanner", null);
+    FileUtil.writeToFile(new File(myRoot, "a.txt"), "abc");
+    FileUtil.writeToFile(new File(myRoot, "dir/b.txt"), "12345");
+    File readOnly = new File(myRoot, "dir/sub/c.txt");
+    FileUtil.writeToFile(readOnly, "");
+    assertTrue(readOnly.setReadOnly());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myRoot);
+    super.tearDown();
+  }
+
+  public void testRecursive() {
+    LocalFileScanner.Snapshot snapshot = LocalFileScanner.scan(Collections.singletonList(item(myRoot)), true, null);
+
+    Set<String> paths = new HashSet<>();
+    for (LocalFileScanner.FileState state : snapshot.getStates(path(myRoot))) {
+      paths.add(FileUtil.getRelativePath(FileUtil.toSystemIndependentName(myRoot.getPath()), state.path, '/'));
+    }
+    assertEquals(new HashSet<>(Arrays.asList(".", "a.txt", "dir", "dir/b.txt", "dir/sub", "dir/sub/c.txt")), paths);
+
+    assertEquals(3, snapshot.get(new File(myRoot, "a.txt")).size);
+    assertEquals(5, snapshot.get(new File(myRoot, "dir/b.txt")).size);
+    assertTrue(snapshot.get(new File(myRoot, "dir")).isDirectory);
+
+    assertTrue(snapshot.isWritableFile(path(new File(myRoot, "a.txt"))));
+    assertFalse(snapshot.isWritableFile(path(new File(myRoot, "dir/sub/c.txt"))));
+    // directories are never writable files
+    assertFalse(snapshot.isWritableFile(path(new File(myRoot, "dir"))));
+
+    assertTrue(snapshot.exists(path(new File(myRoot, "dir/sub/c.txt"))));
+    assertFalse(snapshot.exists(path(new File(myRoot, "missing.txt"))));
+  }
+
+  public void testNotRecursive() {
+    File dir = new File(myRoot, "dir");
+    LocalFileScanner.Snapshot snapshot = LocalFileScanner.scan(Collections.singletonList(item(dir)), false, null);
+    assertEquals(1, snapshot.getStates(path(dir)).size());
+    assertTrue(snapshot.exists(path(dir)));
+    assertFalse(snapshot.exists(path(new File(dir, "b.txt"))));
+  }
+
+  public void testMissingRoot() {
+    File missing = new File(myRoot, "missing");
+    LocalFileScanner.Snapshot snapshot = LocalFileScanner.scan(Collections.singletonList(item(missing)), true, null);
+    assertTrue(snapshot.getStates(path(missing)).isEmpty());
+    assertFalse(snapshot.exists(path(missing)));
+  }
+
+  private static LocalFilePath path(File file) {
+    return new LocalFilePath(file.getPath(), file.isDirectory());
+  }
+
+  private static ItemPath item(File file) {
+    return new ItemPath(path(file), null);
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.LocalFilePath;
+import com.intellij.util.io.DigestUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.ItemPath;
+import org.jetbrains.tfsIntegration.core.tfs.LocalWorkspaceState;
+import org.jetbrains.tfsIntegration.core.tfs.VersionControlPath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class LocalWorkspaceStateTest extends TestCase {
+
+  private static final String SERVER = "http://tfs:8080/";
+
+  private File myDir;
+  private File myRoot;
+  private File myStateFile;
+  private final List<ExtendedItem> myItems = new ArrayList<>();
+  private final Map<Integer, String> myHashes = new HashMap<>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("localWorkspace", null);
+    myRoot = new File(myDir, "root");
+    myStateFile = new File(myDir, "state.dat");
+    addItem(myRoot, 1, 1, ItemType.Folder, null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testEdit() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    LocalWorkspaceState state = synchronize();
+    LocalWorkspaceState.Entry entry = state.getEntry(file);
+    assertNotNull(entry);
+    assertFalse(state.isModified(file, entry));
+    assertEquals(Collections.emptyList(), state.getDetectedEdits(Collections.singletonList(itemPath(file))));
+
+    FileUtil.writeToFile(file, "bb");
+    assertTrue(state.isModified(file, entry));
+    assertEquals(Collections.singletonList(itemPath(file)), state.getDetectedEdits(Collections.singletonList(itemPath(file))));
+    assertTrue(Arrays.asList(state.toExtendedItem(file, entry).getChg().getChangeType_type0()).contains(ChangeType_type0.Edit));
+  }
+
+  public void testTouchedNotModified() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    LocalWorkspaceState state = synchronize();
+    assertTrue(file.setLastModified(file.lastModified() - 10000));
+    assertFalse(state.isModified(file, state.getEntry(file)));
+  }
+
+  public void testAdd() throws IOException {
+    File added = new File(myRoot, "added.txt");
+    FileUtil.writeToFile(added, "added");
+    addItem(added, 3, 0, ItemType.File, ChangeType_type0.Add);
+    myHashes.put(3, md5("added"));
+    File unversioned = new File(myRoot, "unversioned.txt");
+    FileUtil.writeToFile(unversioned, "new");
+
+    LocalWorkspaceState state = synchronize();
+    LocalWorkspaceState.Entry entry = state.getEntry(added);
+    assertNotNull(entry);
+    assertTrue(entry.hasPendingChanges());
+    // pending edit is not detected for an added file
+    assertEquals(Collections.emptyList(), state.getDetectedEdits(Collections.singletonList(itemPath(added))));
+    assertNull(state.getEntry(unversioned));
+  }
+
+  public void testDelete() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    LocalWorkspaceState state = synchronize();
+    FileUtil.delete(file);
+
+    // still in the table and synchronized, so reported as deleted locally
+    assertTrue(state.isSynchronized(Collections.singletonList(itemPath(myRoot)), true));
+    assertTrue(state.getEntries(myRoot).containsKey(FileUtil.toSystemIndependentName(file.getPath())));
+    assertEquals(Collections.emptyList(), state.getDetectedEdits(Collections.singletonList(itemPath(file))));
+  }
+
+  public void testPersisted() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    synchronize().save();
+
+    LocalWorkspaceState state = new LocalWorkspaceState(SERVER, myStateFile);
+    assertTrue(state.isSynchronized(Collections.singletonList(itemPath(myRoot)), true));
+    LocalWorkspaceState.Entry entry = state.getEntry(file);
+    assertNotNull(entry);
+    assertEquals(5, entry.localVersion);
+    assertFalse(state.isModified(file, entry));
+  }
+
+  public void testInvalidatedPathSynchronizedAlone() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    File other = createFile("b.txt", "b", 3, 5);
+    LocalWorkspaceState state = synchronize();
+    List<ItemPath> roots = Collections.singletonList(itemPath(myRoot));
+
+    state.invalidate(Collections.singletonList(file.getPath()), Collections.emptyList());
+    assertFalse(state.isSynchronized(roots, true));
+    assertNull(state.getEntry(file));
+    assertNotNull(state.getEntry(other));
+    // status of the other files is still known
+    assertTrue(state.isSynchronized(Collections.singletonList(itemPath(other)), false));
+
+    List<ItemPath> outdated = state.getOutdatedPaths(roots, true);
+    assertEquals(Collections.singletonList(itemPath(file)), outdated);
+
+    state.synchronize(outdated, true, itemsUnder(file), Collections.emptyList(), myHashes);
+    assertTrue(state.isSynchronized(roots, true));
+    assertNotNull(state.getEntry(file));
+    assertEquals(Collections.emptyList(), state.getOutdatedPaths(roots, true));
+  }
+
+  public void testInvalidatedAboveRoot() throws IOException {
+    File dir = new File(myRoot, "dir");
+    addItem(dir, 4, 5, ItemType.Folder, null);
+    File file = createFile("dir/a.txt", "a", 2, 5);
+    LocalWorkspaceState state = synchronize();
+
+    state.invalidate(Collections.singletonList(myRoot.getPath()), Collections.emptyList());
+    List<ItemPath> roots = Collections.singletonList(itemPath(dir));
+    assertFalse(state.isSynchronized(roots, true));
+    // the whole invalidated subtree is synchronized
+    assertEquals(Collections.singletonList(itemPath(myRoot)), state.getOutdatedPaths(roots, true));
+
+    state.synchronize(state.getOutdatedPaths(roots, true), true, myItems, Collections.emptyList(), myHashes);
+    assertTrue(state.isSynchronized(roots, true));
+    assertNotNull(state.getEntry(file));
+  }
+
+  public void testInvalidatedByItemId() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    LocalWorkspaceState state = synchronize();
+
+    // renamed: the new path and the item are reported
+    state.invalidate(Collections.singletonList(new File(myRoot, "renamed.txt").getPath()), Collections.singletonList(2));
+    assertNull(state.getEntry(file));
+    assertFalse(state.isSynchronized(Collections.singletonList(itemPath(myRoot)), true));
+  }
+
+  public void testInvalidationPersisted() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    synchronize().invalidate(Collections.singletonList(file.getPath()), Collections.emptyList());
+
+    LocalWorkspaceState state = new LocalWorkspaceState(SERVER, myStateFile);
+    assertFalse(state.isSynchronized(Collections.singletonList(itemPath(myRoot)), true));
+    assertNull(state.getEntry(file));
+  }
+
+  public void testDroppedEntryReused() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    LocalWorkspaceState state = synchronize();
+    FileUtil.writeToFile(file, "bb");
+
+    state.invalidate(Collections.singletonList(myRoot.getPath()), Collections.emptyList());
+    myHashes.clear();
+    state.synchronize(Collections.singletonList(itemPath(myRoot)), true, myItems, Collections.emptyList(), myHashes);
+    // the hash of the unchanged local version is known without the server
+    assertTrue(state.isModified(file, state.getEntry(file)));
+  }
+
+  public void testDroppedEntryNotReusedForOtherVersion() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    LocalWorkspaceState state = synchronize();
+    FileUtil.writeToFile(file, "bb");
+
+    state.invalidate(Collections.singletonList(file.getPath()), Collections.emptyList());
+    myItems.clear();
+    addItem(myRoot, 1, 1, ItemType.Folder, null);
+    addItem(file, 2, 6, ItemType.File, null);
+    myHashes.put(2, md5("bb"));
+    state.synchronize(Collections.singletonList(itemPath(myRoot)), true, myItems, Collections.emptyList(), myHashes);
+    LocalWorkspaceState.Entry entry = state.getEntry(file);
+    assertEquals(6, entry.localVersion);
+    assertFalse(state.isModified(file, entry));
+  }
+
+  public void testCleared() throws IOException {
+    File file = createFile("a.txt", "a", 2, 5);
+    LocalWorkspaceState state = synchronize();
+    state.save();
+    state.clear();
+    assertNull(state.getEntry(file));
+    assertFalse(state.isSynchronized(Collections.singletonList(itemPath(myRoot)), true));
+    assertFalse(myStateFile.exists());
+  }
+
+  private LocalWorkspaceState synchronize() {
+    LocalWorkspaceState state = new LocalWorkspaceState(SERVER, myStateFile);
+    state.synchronize(Collections.singletonList(itemPath(myRoot)), true, myItems, Collections.emptyList(), myHashes);
+    return state;
+  }
+
+  private File createFile(String name, String content, int itemId, int version) throws IOException {
+    File file = new File(myRoot, name);
+    FileUtil.writeToFile(file, content);
+    addItem(file, itemId, version, ItemType.File, null);
+    myHashes.put(itemId, md5(content));
+    return file;
+  }
+
+  private void addItem(File file, int itemId, int version, ItemType type, ChangeType_type0 change) {
+    ExtendedItem item = new ExtendedItem();
+    item.setTitem("$/project/" + FileUtil.getRelativePath(myDir, file).replace(File.separatorChar, '/'));
+    item.setItemid(itemId);
+    item.setLver(version);
+    item.setLatest(version);
+    item.setType(type);
+    item.setLocal(VersionControlPath.toTfsRepresentation(file.getPath()));
+    ChangeType changeType = new ChangeType();
+    changeType.setChangeType_type0(new ChangeType_type0[]{change != null ? change : ChangeType_type0.None});
+    item.setChg(changeType);
+    myItems.add(item);
+  }
+
+  private List<ExtendedItem> itemsUnder(File root) {
+    List<ExtendedItem> result = new ArrayList<>();
+    for (ExtendedItem item : myItems) {
+      if (FileUtil.isAncestor(root, new File(VersionControlPath.localPathFromTfsRepresentation(item.getLocal())), false)) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  private static ItemPath itemPath(File file) {
+    return new ItemPath(new LocalFilePath(file.getPath(), file.isDirectory()), null);
+  }
+
+  private static String md5(String content) {
+    return StringUtil.toHexString(DigestUtil.md5().digest(content.getBytes(StandardCharsets.UTF_8)));
+  }
+}
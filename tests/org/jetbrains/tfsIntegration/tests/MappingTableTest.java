@@ -0,0 +1,143 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.MappingTable;
+import org.jetbrains.tfsIntegration.core.tfs.WorkingFolderInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MappingTableTest extends TestCase {
+
+  private final List<WorkingFolderInfo> myWorkingFolders = new ArrayList<>();
+
+  public void testNearestMappingWins() {
+    map("$/proj", "/ws");
+    map("$/proj/lib", "/libs");
+    MappingTable table = new MappingTable(myWorkingFolders, true);
+
+    assertEquals("/ws/src/A.java", getLocalPath(table, "$/proj/src/A.java"));
+    assertEquals("/libs/x.jar", getLocalPath(table, "$/proj/lib/x.jar"));
+    assertEquals("/libs", getLocalPath(table, "$/proj/lib"));
+    assertEquals("/ws/library/y.jar", getLocalPath(table, "$/proj/library/y.jar"));
+    assertNull(getLocalPath(table, "$/other/A.java"));
+
+    assertEquals("$/proj/src/A.java", table.getServerPath(file("/ws/src/A.java")));
+    assertEquals("$/proj/lib/x.jar", table.getServerPath(file("/libs/x.jar")));
+    assertEquals("$/proj", table.getServerPath(folder("/ws")));
+    assertNull(table.getServerPath(file("/wsx/A.java")));
+  }
+
+  public void testServerPathsCaseInsensitive() {
+    map("$/Proj/Lib", "/libs");
+    MappingTable table = new MappingTable(myWorkingFolders, true);
+
+    assertEquals("/libs/x.jar", getLocalPath(table, "$/PROJ/lib/x.jar"));
+  }
+
+  public void testCloakedSubtree() {
+    map("$/proj", "/ws");
+    cloak("$/proj/bin", "/ws/bin");
+    map("$/proj/bin/keep", "/keep");
+    MappingTable table = new MappingTable(myWorkingFolders, true);
+
+    assertNull(getLocalPath(table, "$/proj/bin"));
+    assertNull(getLocalPath(table, "$/proj/bin/out/A.class"));
+    assertNull(table.getServerPath(file("/ws/bin/out/A.class")));
+    assertEquals("/ws/binary/A.class", getLocalPath(table, "$/proj/binary/A.class"));
+    assertEquals("/keep/a.txt", getLocalPath(table, "$/proj/bin/keep/a.txt"));
+    assertEquals("$/proj/bin/keep/a.txt", table.getServerPath(file("/keep/a.txt")));
+  }
+
+  public void testOneLevelMapping() {
+    map("$/proj/docs/*", "/docs");
+    map("$/proj/docs/api/v2", "/api");
+    MappingTable table = new MappingTable(myWorkingFolders, true);
+
+    assertEquals("/docs", getLocalPath(table, "$/proj/docs"));
+    assertEquals("/docs/readme.txt", getLocalPath(table, "$/proj/docs/readme.txt"));
+    assertEquals("/docs/api", getLocalPath(table, "$/proj/docs/api"));
+    assertNull(getLocalPath(table, "$/proj/docs/api/index.html"));
+    assertEquals("/api/index.html", getLocalPath(table, "$/proj/docs/api/v2/index.html"));
+
+    assertEquals("$/proj/docs", table.getServerPath(folder("/docs")));
+    assertEquals("$/proj/docs/readme.txt", table.getServerPath(file("/docs/readme.txt")));
+    assertNull(table.getServerPath(file("/docs/api/index.html")));
+  }
+
+  public void testOneLevelRootMapping() {
+    map("$/*", "/root");
+    MappingTable table = new MappingTable(myWorkingFolders, true);
+
+    assertEquals("/root/proj", getLocalPath(table, "$/proj"));
+    assertNull(getLocalPath(table, "$/proj/a.txt"));
+    assertEquals("$/proj", table.getServerPath(folder("/root/proj")));
+    assertNull(table.getServerPath(file("/root/proj/a.txt")));
+  }
+
+  public void testDriveRoot() {
+    map("$/proj", "C:/");
+    MappingTable table = new MappingTable(myWorkingFolders, false);
+
+    assertEquals("$/proj/src/A.java", table.getServerPath(file("C:/src/A.java")));
+    assertEquals("$/proj/a.txt", table.getServerPath(file("C:/a.txt")));
+    assertEquals("$/proj", table.getServerPath(folder("C:/")));
+    assertNull(table.getServerPath(file("D:/a.txt")));
+  }
+
+  public void testLocalPathsCaseInsensitive() {
+    map("$/proj", "C:/Work/Proj");
+    map("$/other", "D:/");
+    MappingTable table = new MappingTable(myWorkingFolders, false);
+
+    assertEquals("$/proj/src/A.java", table.getServerPath(file("c:/work/proj/src/A.java")));
+    assertEquals("$/other/a.txt", table.getServerPath(file("d:/a.txt")));
+  }
+
+  public void testLocalPathsCaseSensitive() {
+    map("$/proj", "/ws/Proj");
+    MappingTable table = new MappingTable(myWorkingFolders, true);
+
+    assertEquals("$/proj/A.java", table.getServerPath(file("/ws/Proj/A.java")));
+    assertNull(table.getServerPath(file("/ws/proj/A.java")));
+  }
+
+  private void map(String serverPath, String localPath) {
+    myWorkingFolders.add(new WorkingFolderInfo(WorkingFolderInfo.Status.Active, folder(localPath), serverPath));
+  }
+
+  private void cloak(String serverPath, String localPath) {
+    myWorkingFolders.add(new WorkingFolderInfo(WorkingFolderInfo.Status.Cloaked, folder(localPath), serverPath));
+  }
+
+  private static String getLocalPath(MappingTable table, String serverPath) {
+    FilePath localPath = table.getLocalPath(serverPath, false);
+    return localPath != null ? localPath.getPath() : null;
+  }
+
+  private static FilePath file(String path) {
+    return new LocalFilePath(path, false);
+  }
+
+  private static FilePath folder(String path) {
+    return new LocalFilePath(path, true);
+  }
+}
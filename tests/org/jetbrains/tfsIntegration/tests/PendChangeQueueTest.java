@@ -0,0 +1,132 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.PendChangeQueue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PendChangeQueueTest extends TestCase {
+
+  public void testAddThenDeleteCancels() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.add(file("/ws/a.txt"));
+    changes.delete(file("/ws/a.txt"));
+    assertTrue(changes.isEmpty());
+  }
+
+  public void testDeleteFolderCancelsAddsUnderIt() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.add(file("/ws/dir/a.txt"));
+    changes.delete(folder("/ws/dir"));
+    assertEquals(Collections.emptyList(), changes.getAdds());
+    assertEquals(Collections.singletonList(folder("/ws/dir")), changes.getDeletes());
+  }
+
+  public void testDeleteThenAddCancels() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.delete(file("/ws/a.txt"));
+    changes.add(file("/ws/a.txt"));
+    assertTrue(changes.isEmpty());
+  }
+
+  public void testRenameChainCollapses() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.rename(file("/ws/a.txt"), file("/ws/b.txt"));
+    changes.rename(file("/ws/b.txt"), file("/ws/c.txt"));
+    assertEquals(map(file("/ws/a.txt"), file("/ws/c.txt")), changes.getRenames());
+  }
+
+  public void testRenameBackCancels() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.rename(file("/ws/a.txt"), file("/ws/b.txt"));
+    changes.rename(file("/ws/b.txt"), file("/ws/a.txt"));
+    assertTrue(changes.isEmpty());
+  }
+
+  public void testRenameOfAddedIsAdd() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.add(file("/ws/a.txt"));
+    changes.rename(file("/ws/a.txt"), file("/ws/b.txt"));
+    assertEquals(Collections.emptyMap(), changes.getRenames());
+    assertEquals(Collections.singletonList(file("/ws/b.txt")), changes.getAdds());
+  }
+
+  public void testDeleteOfRenamedDeletesSource() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.rename(file("/ws/a.txt"), file("/ws/b.txt"));
+    changes.delete(file("/ws/b.txt"));
+    assertEquals(Collections.emptyMap(), changes.getRenames());
+    assertEquals(Collections.singletonList(file("/ws/a.txt")), changes.getDeletes());
+  }
+
+  public void testDeleteUnderRenamedFolderGoesAfterRename() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.delete(file("/ws/dir/a.txt"));
+    changes.rename(folder("/ws/dir"), folder("/ws/moved"));
+    assertEquals(map(folder("/ws/dir"), folder("/ws/moved")), changes.getRenames());
+    assertEquals(Collections.emptyList(), changes.getDeletesBeforeRenames());
+    assertEquals(Collections.singletonList(file("/ws/moved/a.txt")), changes.getDeletes());
+  }
+
+  public void testDeleteThenRenameOnto() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.delete(file("/ws/x.txt"));
+    changes.rename(file("/ws/y.txt"), file("/ws/x.txt"));
+    assertEquals(Collections.singletonList(file("/ws/x.txt")), changes.getDeletesBeforeRenames());
+    assertEquals(map(file("/ws/y.txt"), file("/ws/x.txt")), changes.getRenames());
+    assertEquals(Collections.emptyList(), changes.getDeletes());
+  }
+
+  public void testDeleteFolderThenRenameOnto() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.delete(file("/ws/x/a.txt"));
+    changes.delete(folder("/ws/x"));
+    changes.rename(folder("/ws/y"), folder("/ws/x"));
+    assertEquals(Arrays.asList(file("/ws/x/a.txt"), folder("/ws/x")), changes.getDeletesBeforeRenames());
+    assertEquals(Collections.emptyList(), changes.getDeletes());
+  }
+
+  public void testDeleteThenRenameOntoThenAway() {
+    PendChangeQueue.Changes changes = new PendChangeQueue.Changes();
+    changes.delete(file("/ws/x.txt"));
+    changes.rename(file("/ws/y.txt"), file("/ws/x.txt"));
+    changes.rename(file("/ws/x.txt"), file("/ws/z.txt"));
+    assertEquals(Collections.singletonList(file("/ws/x.txt")), changes.getDeletesBeforeRenames());
+    assertEquals(map(file("/ws/y.txt"), file("/ws/z.txt")), changes.getRenames());
+  }
+
+  private static FilePath file(String path) {
+    return new LocalFilePath(path, false);
+  }
+
+  private static FilePath folder(String path) {
+    return new LocalFilePath(path, true);
+  }
+
+  private static Map<FilePath, FilePath> map(FilePath source, FilePath target) {
+    Map<FilePath, FilePath> result = new LinkedHashMap<>();
+    result.put(source, target);
+    return result;
+  }
+}
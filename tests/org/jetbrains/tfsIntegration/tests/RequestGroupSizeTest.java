@@ -0,0 +1,63 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.RequestGroupSize;
+
+public class RequestGroupSizeTest extends TestCase {
+
+  public void testInitial() {
+    RequestGroupSize size = new RequestGroupSize(200, 25, 1000, 3000, true);
+    assertEquals(200, size.get());
+  }
+
+  public void testGrowsOnFastServer() {
+    RequestGroupSize size = new RequestGroupSize(200, 25, 1000, 3000, true);
+    size.update(200, 1000); // 5 ms per item
+    assertEquals(600, size.get());
+  }
+
+  public void testShrinksOnSlowServer() {
+    RequestGroupSize size = new RequestGroupSize(200, 25, 1000, 3000, true);
+    size.update(200, 12000); // 60 ms per item
+    assertEquals(50, size.get());
+  }
+
+  public void testBounds() {
+    RequestGroupSize size = new RequestGroupSize(200, 25, 1000, 3000, true);
+    size.update(200, 0);
+    assertEquals(1000, size.get());
+
+    size = new RequestGroupSize(200, 25, 1000, 3000, true);
+    size.update(1, 60000);
+    assertEquals(25, size.get());
+  }
+
+  public void testSmoothing() {
+    RequestGroupSize size = new RequestGroupSize(200, 25, 1000, 3000, true);
+    size.update(100, 1000); // 10 ms per item
+    size.update(100, 2000); // 20 ms per item, average becomes 13 ms per item
+    assertEquals(231, size.get());
+  }
+
+  public void testNotAdaptive() {
+    RequestGroupSize size = new RequestGroupSize(200, 25, 1000, 3000, false);
+    size.update(200, 100);
+    assertEquals(200, size.get());
+  }
+}
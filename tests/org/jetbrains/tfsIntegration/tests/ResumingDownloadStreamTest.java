@@ -0,0 +1,217 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import junit.framework.TestCase;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.jetbrains.tfsIntegration.webservice.ResumingDownloadStream;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ResumingDownloadStreamTest extends TestCase {
+
+  private static final int LENGTH = 10000;
+
+  private interface Handler {
+    /**
+     * @param range value of the Range header, null if there's none
+     * @return raw response, the connection is closed after it is sent
+     */
+    byte[] respond(int request, String range) throws IOException;
+  }
+
+  private final byte[] myContent = new byte[LENGTH];
+  private final List<String> myRanges = Collections.synchronizedList(new ArrayList<>());
+  private ServerSocket myServerSocket;
+  private Thread myServerThread;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    new Random(42).nextBytes(myContent);
+    myServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    myServerSocket.close();
+    if (myServerThread != null) {
+      myServerThread.join(10000);
+    }
+    super.tearDown();
+  }
+
+  public void testResumedFromOffset() throws IOException {
+    start((request, range) -> {
+      if (request == 0) {
+        return response(HttpStatus.SC_OK, null, LENGTH, 0, 4000);
+      }
+      return response(HttpStatus.SC_PARTIAL_CONTENT, "bytes 4000-9999/10000", LENGTH - 4000, 4000, LENGTH);
+    });
+    assertTrue(Arrays.equals(myContent, download()));
+    assertEquals(Arrays.asList(null, "bytes=4000-"), myRanges);
+  }
+
+  public void testResumedSeveralTimes() throws IOException {
+    start((request, range) -> {
+      switch (request) {
+        case 0:
+          return response(HttpStatus.SC_OK, null, LENGTH, 0, 4000);
+        case 1:
+          return response(HttpStatus.SC_PARTIAL_CONTENT, "bytes 4000-9999/10000", LENGTH - 4000, 4000, 7000);
+        default:
+          return response(HttpStatus.SC_PARTIAL_CONTENT, "bytes 7000-9999/10000", LENGTH - 7000, 7000, LENGTH);
+      }
+    });
+    assertTrue(Arrays.equals(myContent, download()));
+    assertEquals(Arrays.asList(null, "bytes=4000-", "bytes=7000-"), myRanges);
+  }
+
+  public void testRangeIgnored() throws IOException {
+    start((request, range) -> request == 0 ? response(HttpStatus.SC_OK, null, LENGTH, 0, 4000)
+                                           : response(HttpStatus.SC_OK, null, LENGTH, 0, LENGTH));
+    assertTrue(Arrays.equals(myContent, download()));
+    assertEquals(Arrays.asList(null, "bytes=4000-"), myRanges);
+  }
+
+  public void testBytesReadBeforeSkipped() throws IOException {
+    // the server sends more than requested, content read already should not be duplicated
+    start((request, range) -> request == 0
+                              ? response(HttpStatus.SC_OK, null, LENGTH, 0, 4000)
+                              : response(HttpStatus.SC_PARTIAL_CONTENT, "bytes 3000-9999/10000", LENGTH - 3000, 3000, LENGTH));
+    assertTrue(Arrays.equals(myContent, download()));
+  }
+
+  public void testContentRangeMismatch() {
+    start((request, range) -> request == 0
+                              ? response(HttpStatus.SC_OK, null, LENGTH, 0, 4000)
+                              : response(HttpStatus.SC_PARTIAL_CONTENT, "bytes 5000-9999/10000", LENGTH - 5000, 5000, LENGTH));
+    try {
+      download();
+      fail("Content after a gap must not be taken");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testNotResumedOnError() {
+    start((request, range) -> request == 0
+                              ? response(HttpStatus.SC_OK, null, LENGTH, 0, 4000)
+                              : response(HttpStatus.SC_NOT_FOUND, null, 0, 0, 0));
+    try {
+      download();
+      fail();
+    }
+    catch (IOException e) {
+      // expected
+    }
+    assertEquals(2, myRanges.size());
+  }
+
+  public void testGivesUp() {
+    start((request, range) -> response(HttpStatus.SC_OK, null, LENGTH, 0, 4000));
+    try {
+      download();
+      fail();
+    }
+    catch (IOException e) {
+      // expected
+    }
+    // the first request and retries
+    assertTrue(myRanges.size() > 1);
+    assertTrue(myRanges.size() < 10);
+  }
+
+  private byte[] download() throws IOException {
+    String url = "http://localhost:" + myServerSocket.getLocalPort() + "/item";
+    HttpClient httpClient = new HttpClient();
+    GetMethod method = new GetMethod(url);
+    assertEquals(HttpStatus.SC_OK, httpClient.executeMethod(method));
+    ResumingDownloadStream stream = new ResumingDownloadStream(httpClient, url, method, 0);
+    try {
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      stream.transferTo(result);
+      return result.toByteArray();
+    }
+    finally {
+      stream.getMethod().releaseConnection();
+    }
+  }
+
+  /**
+   * @param declaredLength Content-Length sent
+   * @param from           first byte of the content sent
+   * @param to             byte after the last one sent, the connection is broken if the declared length is not reached
+   */
+  private byte[] response(int statusCode, String contentRange, int declaredLength, int from, int to) {
+    StringBuilder headers = new StringBuilder();
+    headers.append("HTTP/1.1 ").append(statusCode).append(" ").append(HttpStatus.getStatusText(statusCode)).append("\r\n");
+    if (contentRange != null) {
+      headers.append("Content-Range: ").append(contentRange).append("\r\n");
+    }
+    headers.append("Content-Length: ").append(declaredLength).append("\r\n");
+    headers.append("Connection: close\r\n\r\n");
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    result.writeBytes(headers.toString().getBytes(StandardCharsets.US_ASCII));
+    result.write(myContent, from, to - from);
+    return result.toByteArray();
+  }
+
+  private void start(final Handler handler) {
+    myServerThread = new Thread(() -> {
+      try {
+        for (int request = 0; ; request++) {
+          try (Socket socket = myServerSocket.accept()) {
+            String range = readRange(socket.getInputStream());
+            myRanges.add(range);
+            OutputStream out = socket.getOutputStream();
+            out.write(handler.respond(request, range));
+            out.flush();
+          }
+        }
+      }
+      catch (IOException e) {
+        // server socket closed
+      }
+    }, "Download server");
+    myServerThread.start();
+  }
+
+  private static String readRange(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+    String range = null;
+    String line;
+    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+      if (line.regionMatches(true, 0, "Range:", 0, "Range:".length())) {
+        range = line.substring("Range:".length()).trim();
+      }
+    }
+    return range;
+  }
+}
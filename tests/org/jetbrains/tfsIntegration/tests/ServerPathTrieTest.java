@@ -0,0 +1,83 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.ServerPathTrie;
+import org.jetbrains.tfsIntegration.core.tfs.VersionControlPath;
+
+public class ServerPathTrieTest extends TestCase {
+
+  public void testIsUnder() {
+    assertTrue(VersionControlPath.isUnder("$/Project/Folder", "$/project/folder"));
+    assertTrue(VersionControlPath.isUnder("$/Project/Folder", "$/project/FOLDER/file.txt"));
+    assertTrue(VersionControlPath.isUnder("$/", "$/Project"));
+    assertTrue(VersionControlPath.isUnder("$/", "$/"));
+    assertFalse(VersionControlPath.isUnder("$/Project/Folder", "$/Project/Folder2"));
+    assertFalse(VersionControlPath.isUnder("$/Project/Folder", "$/Project"));
+  }
+
+  public void testFindAncestor() {
+    ServerPathTrie<String> trie = new ServerPathTrie<>();
+    trie.put("$/Project/Folder", "folder");
+    trie.put("$/Project/Folder/Sub", "sub");
+
+    assertEquals("folder", trie.findAncestor("$/project/folder/file.txt"));
+    assertEquals("sub", trie.findAncestor("$/Project/Folder/SUB/file.txt"));
+    assertEquals("folder", trie.findAncestor("$/Project/Folder"));
+    assertNull(trie.findAncestor("$/Project/Folder2"));
+    assertNull(trie.findAncestor("$/Project"));
+    assertEquals("sub", trie.get("$/project/folder/sub"));
+    assertNull(trie.get("$/Project"));
+  }
+
+  public void testRoot() {
+    ServerPathTrie<String> trie = new ServerPathTrie<>();
+    trie.put(VersionControlPath.ROOT_FOLDER, "root");
+    assertEquals("root", trie.findAncestor("$/Project"));
+    assertEquals(VersionControlPath.ROOT_FOLDER, trie.getCommonAncestor());
+  }
+
+  public void testCommonAncestor() {
+    ServerPathTrie<String> trie = new ServerPathTrie<>();
+    assertNull(trie.getCommonAncestor());
+
+    trie.put("$/Project/A/file.txt", "file");
+    assertEquals("$/Project/A/file.txt", trie.getCommonAncestor());
+
+    trie.put("$/project/a/B/file2.txt", "file2");
+    assertEquals("$/Project/A", trie.getCommonAncestor());
+
+    trie.put("$/Project/C", "c");
+    assertEquals("$/Project", trie.getCommonAncestor());
+
+    trie.put("$/Other", "other");
+    assertEquals(VersionControlPath.ROOT_FOLDER, trie.getCommonAncestor());
+  }
+
+  public void testManyChildren() {
+    ServerPathTrie<Integer> trie = new ServerPathTrie<>();
+    for (int i = 0; i < 1000; i++) {
+      trie.put("$/Project/Item" + i, i);
+    }
+    assertEquals(1000, trie.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(Integer.valueOf(i), trie.get("$/project/ITEM" + i));
+    }
+    assertEquals("$/Project", trie.getCommonAncestor());
+  }
+}
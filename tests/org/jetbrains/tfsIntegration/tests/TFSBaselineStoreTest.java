@@ -0,0 +1,169 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.io.DigestUtil;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.revision.TFSBaselineStore;
+import org.jetbrains.tfsIntegration.core.revision.TFSContentSource;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TFSBaselineStoreTest extends TestCase {
+
+  private static final String SERVER = "http://tfs:8080/";
+  private static final int CONTENT_SIZE = 1000;
+
+  private File myRoot;
+  private File myStoreRoot;
+  private final Random myRandom = new Random(42);
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = FileUtil.createTempDirectory("baselines", null);
+    myStoreRoot = new File(myRoot, "store");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myRoot);
+    super.tearDown();
+  }
+
+  public void testOnlyCapturedVersionFound() throws Exception {
+    TFSBaselineStore store = new TFSBaselineStore(myStoreRoot, Long.MAX_VALUE);
+    byte[] version5 = randomContent();
+    byte[] version6 = randomContent();
+    File file = createFile("a.txt", version5);
+    store.capture(SERVER, 10, 5, file);
+    assertNull(store.find(SERVER, 10, 6));
+
+    Files.write(file.toPath(), version6);
+    store.capture(SERVER, 10, 6, file);
+    assertContent(version5, store.find(SERVER, 10, 5));
+    assertContent(version6, store.find(SERVER, 10, 6));
+    assertEquals(StringUtil.toHexString(md5(version5)), store.getHash(SERVER, 10, 5));
+    assertNull(store.find("http://other:8080/", 10, 5));
+  }
+
+  public void testModifiedFileNotCaptured() throws Exception {
+    TFSBaselineStore store = new TFSBaselineStore(myStoreRoot, Long.MAX_VALUE);
+    byte[] serverContent = randomContent();
+    File file = createFile("a.txt", randomContent());
+    store.capture(SERVER, 10, 5, md5(serverContent), file);
+    assertNull(store.find(SERVER, 10, 5));
+    assertNull(store.getHash(SERVER, 10, 5));
+
+    Files.write(file.toPath(), serverContent);
+    store.capture(SERVER, 10, 5, md5(serverContent), file);
+    assertContent(serverContent, store.find(SERVER, 10, 5));
+  }
+
+  public void testFirstCaptureKept() throws Exception {
+    TFSBaselineStore store = new TFSBaselineStore(myStoreRoot, Long.MAX_VALUE);
+    byte[] content = randomContent();
+    store.capture(SERVER, 10, 5, createFile("a.txt", content));
+    // a file modified locally is not the baseline of the version it was synchronized to
+    store.capture(SERVER, 10, 5, createFile("b.txt", randomContent()));
+    assertContent(content, store.find(SERVER, 10, 5));
+  }
+
+  public void testSameContentStoredOnce() throws Exception {
+    TFSBaselineStore store = new TFSBaselineStore(myStoreRoot, Long.MAX_VALUE);
+    byte[] content = randomContent();
+    store.capture(SERVER, 10, 5, createFile("a.txt", content));
+    store.capture(SERVER, 11, 7, createFile("b.txt", content));
+    store.capture(SERVER, 12, 7, createFile("c.txt", randomContent()));
+
+    assertContent(content, store.find(SERVER, 11, 7));
+    assertEquals(2, getBlobs().length);
+  }
+
+  public void testEvictionKeepsRecentlyUsed() throws Exception {
+    long maxSize = 7 * CONTENT_SIZE / 2;
+    TFSBaselineStore store = new TFSBaselineStore(myStoreRoot, maxSize);
+    byte[][] contents = new byte[4][];
+    for (int i = 0; i < 3; i++) {
+      contents[i] = randomContent();
+      store.capture(SERVER, i, 1, createFile(i + ".txt", contents[i]));
+    }
+    assertEquals(3, getBlobs().length);
+    // make the order of use independent of the file system timestamp resolution
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 3; i++) {
+      assertTrue(getBlob(contents[i]).setLastModified(now - (3 - i) * 1000000L));
+    }
+    assertContent(contents[0], store.find(SERVER, 0, 1));
+
+    contents[3] = randomContent();
+    store.capture(SERVER, 3, 1, createFile("3.txt", contents[3]));
+
+    assertContent(contents[0], store.find(SERVER, 0, 1));
+    assertNull(store.find(SERVER, 1, 1));
+    assertNull(store.find(SERVER, 2, 1));
+    assertContent(contents[3], store.find(SERVER, 3, 1));
+    long size = 0;
+    for (File blob : getBlobs()) {
+      size += blob.length();
+    }
+    assertTrue(String.valueOf(size), size <= maxSize * 3 / 4);
+  }
+
+  public void testTooSmallStoreKeepsNothing() throws Exception {
+    TFSBaselineStore store = new TFSBaselineStore(myStoreRoot, 1);
+    store.capture(SERVER, 10, 5, createFile("a.txt", randomContent()));
+    assertNull(store.find(SERVER, 10, 5));
+  }
+
+  private File createFile(String name, byte[] content) throws Exception {
+    File file = new File(myRoot, name);
+    Files.write(file.toPath(), content);
+    return file;
+  }
+
+  // random content is not compressed, so blobs are a bit larger than that
+  private byte[] randomContent() {
+    byte[] result = new byte[CONTENT_SIZE];
+    myRandom.nextBytes(result);
+    return result;
+  }
+
+  private File[] getBlobs() {
+    File[] blobs = new File(myStoreRoot, "blobs").listFiles((dir, name) -> name.endsWith(".gz"));
+    assertNotNull(blobs);
+    return blobs;
+  }
+
+  private File getBlob(byte[] content) {
+    return new File(new File(myStoreRoot, "blobs"), StringUtil.toHexString(md5(content)) + ".gz");
+  }
+
+  private static byte[] md5(byte[] content) {
+    return DigestUtil.md5().digest(content);
+  }
+
+  private static void assertContent(byte[] expected, TFSContentSource content) throws Exception {
+    assertNotNull(content);
+    assertTrue(Arrays.equals(expected, content.loadContent()));
+  }
+}
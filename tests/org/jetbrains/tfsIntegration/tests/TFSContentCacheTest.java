@@ -0,0 +1,96 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.revision.TFSContentCache;
+
+import java.util.Random;
+
+public class TFSContentCacheTest extends TestCase {
+
+  private static final String SERVER = "http://tfs:8080/";
+
+  public void testRetainedSizeBounded() {
+    TFSContentCache cache = new TFSContentCache(100);
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      int itemId = random.nextInt(20);
+      byte[] content = new byte[random.nextInt(60) + 1];
+      cache.put(SERVER, itemId, 1, content);
+      assertTrue(cache.getRetainedSize() <= 100);
+      // the content just put is the last to go
+      assertSame(content, cache.get(SERVER, itemId, 1));
+    }
+  }
+
+  public void testLeastRecentlyUsedEvicted() {
+    TFSContentCache cache = new TFSContentCache(100);
+    cache.put(SERVER, 1, 5, new byte[40]);
+    cache.put(SERVER, 2, 5, new byte[40]);
+    cache.get(SERVER, 1, 5);
+    cache.put(SERVER, 3, 5, new byte[40]);
+
+    assertNotNull(cache.get(SERVER, 1, 5));
+    assertNull(cache.get(SERVER, 2, 5));
+    assertNotNull(cache.get(SERVER, 3, 5));
+    assertEquals(80, cache.getRetainedSize());
+  }
+
+  public void testEvictedUntilWithinBound() {
+    TFSContentCache cache = new TFSContentCache(100);
+    cache.put(SERVER, 1, 5, new byte[30]);
+    cache.put(SERVER, 2, 5, new byte[30]);
+    cache.put(SERVER, 3, 5, new byte[30]);
+    cache.put(SERVER, 4, 5, new byte[70]);
+
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(70, cache.getRetainedSize());
+  }
+
+  public void testReplacedContentNotCountedTwice() {
+    TFSContentCache cache = new TFSContentCache(100);
+    cache.put(SERVER, 1, 5, new byte[40]);
+    cache.put(SERVER, 2, 5, new byte[40]);
+    cache.put(SERVER, 1, 5, new byte[50]);
+
+    assertEquals(90, cache.getRetainedSize());
+    assertNotNull(cache.get(SERVER, 2, 5));
+  }
+
+  public void testTooLargeNotCached() {
+    TFSContentCache cache = new TFSContentCache(100);
+    cache.put(SERVER, 1, 5, new byte[50]);
+    cache.put(SERVER, 2, 5, new byte[101]);
+
+    assertNull(cache.get(SERVER, 2, 5));
+    // nothing is evicted for content that is not cached anyway
+    assertNotNull(cache.get(SERVER, 1, 5));
+    assertEquals(50, cache.getRetainedSize());
+  }
+
+  public void testHitsAndMisses() {
+    TFSContentCache cache = new TFSContentCache(100);
+    cache.put(SERVER, 10, 5, new byte[10]);
+    cache.get(SERVER, 10, 5);
+    cache.get(SERVER, 10, 6);
+    cache.get("http://other:8080/", 10, 5);
+
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+}
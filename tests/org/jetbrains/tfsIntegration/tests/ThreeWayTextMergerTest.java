@@ -0,0 +1,48 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.progress.DumbProgressIndicator;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.jetbrains.tfsIntegration.core.tfs.conflicts.ThreeWayTextMerger;
+
+public class ThreeWayTextMergerTest extends BasePlatformTestCase {
+
+  public void testChangesInDifferentLines() {
+    assertEquals("A\nb\nC\n", merge("A\nb\nc\n", "a\nb\nc\n", "a\nb\nC\n"));
+  }
+
+  public void testSameChangeOnBothSides() {
+    assertEquals("a\nB\nc\n", merge("a\nB\nc\n", "a\nb\nc\n", "a\nB\nc\n"));
+  }
+
+  public void testOverlappingChanges() {
+    assertNull(merge("a\nX\nc\n", "a\nb\nc\n", "a\nY\nc\n"));
+  }
+
+  public void testInsertAtEnd() {
+    assertEquals("A\nb\nc\n", merge("a\nb\nc\n", "a\nb\n", "A\nb\n"));
+  }
+
+  public void testDifferentInsertsAtEnd() {
+    assertNull(merge("a\nb\nc\n", "a\nb\n", "a\nb\nd\n"));
+  }
+
+  private static String merge(String local, String base, String server) {
+    return ThreeWayTextMerger.merge(local, base, server, DumbProgressIndicator.INSTANCE);
+  }
+}
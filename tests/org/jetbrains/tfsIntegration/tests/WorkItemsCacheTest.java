@@ -0,0 +1,90 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemState;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemType;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsCache;
+
+import java.util.*;
+
+public class WorkItemsCacheTest extends TestCase {
+
+  private static final String QUERY = "query";
+
+  public void testNotCached() {
+    WorkItemsCache cache = new WorkItemsCache();
+    assertNull(cache.getWorkItems(QUERY));
+    assertEquals(Arrays.asList(1, 2), cache.getOutdated(revisions(1, 3, 2, 1)));
+  }
+
+  public void testOnlyChangedOutdated() {
+    WorkItemsCache cache = new WorkItemsCache();
+    cache.update(QUERY, Arrays.asList(1, 2, 3), Arrays.asList(workItem(1, 3), workItem(2, 1), workItem(3, 7)), null);
+
+    assertEquals(Arrays.asList(2, 4), cache.getOutdated(revisions(1, 3, 2, 2, 3, 7, 4, 1)));
+  }
+
+  public void testRevisionsOfCachedOnly() {
+    WorkItemsCache cache = new WorkItemsCache();
+    assertEquals(Collections.emptyList(), cache.getCached(Arrays.asList(1, 2)));
+    assertEquals(Arrays.asList(1, 2), cache.getOutdated(Arrays.asList(1, 2), Collections.emptyMap()));
+
+    cache.update(QUERY, Arrays.asList(1, 2, 3), Arrays.asList(workItem(1, 3), workItem(2, 1), workItem(3, 7)), null);
+    assertEquals(Arrays.asList(2, 3), cache.getCached(Arrays.asList(4, 2, 3)));
+    assertEquals(Arrays.asList(4, 2), cache.getOutdated(Arrays.asList(4, 2, 3), revisions(2, 2, 3, 7)));
+  }
+
+  public void testUpdateKeepsOrderAndUnchangedItems() {
+    WorkItemsCache cache = new WorkItemsCache();
+    WorkItem unchanged = workItem(1, 3);
+    cache.update(QUERY, Arrays.asList(1, 2), Arrays.asList(unchanged, workItem(2, 1)), null);
+
+    List<WorkItem> result = cache.update(QUERY, Arrays.asList(3, 2, 1), Arrays.asList(workItem(2, 2), workItem(3, 1)), null);
+    assertEquals(3, result.size());
+    assertEquals(3, result.get(0).getId());
+    assertEquals(2, result.get(1).getRevision());
+    assertSame(unchanged, result.get(2));
+    assertEquals(result, cache.getWorkItems(QUERY));
+  }
+
+  public void testItemsOfOtherQueriesRetained() {
+    WorkItemsCache cache = new WorkItemsCache();
+    cache.update(QUERY, Arrays.asList(1, 2), Arrays.asList(workItem(1, 1), workItem(2, 1)), null);
+    cache.update("other", Collections.singletonList(2), Collections.emptyList(), null);
+    assertEquals(1, cache.getWorkItems("other").size());
+
+    cache.update(QUERY, Collections.singletonList(1), Collections.emptyList(), null);
+    cache.update("other", Collections.singletonList(3), Collections.singletonList(workItem(3, 1)), null);
+    // work item 2 is found by none of the queries any more
+    assertEquals(Collections.singletonList(2), cache.getOutdated(revisions(1, 1, 2, 1)));
+  }
+
+  private static WorkItem workItem(int id, int revision) {
+    return new WorkItem(id, null, WorkItemState.ACTIVE, "Work item " + id, revision, WorkItemType.BUG, "New");
+  }
+
+  private static Map<Integer, Integer> revisions(int... idsAndRevisions) {
+    Map<Integer, Integer> result = new LinkedHashMap<>();
+    for (int i = 0; i < idsAndRevisions.length; i += 2) {
+      result.put(idsAndRevisions[i], idsAndRevisions[i + 1]);
+    }
+    return result;
+  }
+}